@@ -0,0 +1,132 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.math.AffineKernel;
+import engine.dengine.math.MathUtil;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link AffineKernelBenchmark}</h2>
+ * <br>
+ * The {@link AffineKernelBenchmark} class compares the ways of computing the world space corners of many
+ * <b>sprites</b>. The <b>legacy</b> benchmark transforms every corner using
+ * {@link MathUtil#rotatePointOnZAxis(float, float, float, float)} followed by scaling and translation, as
+ * {@link engine.dengine.shapes.Shape} did before the {@link AffineKernel} existed. The <b>scalar</b> and
+ * <b>vector</b> benchmarks transform each corner of all <b>sprites</b> at once using the per-entity <b>matrix</b>
+ * arrays, the same layout {@link engine.dengine.ecs.Chunk} stores its <b>world matrices</b> in.
+ * <br>
+ * The forks are started with <b>--add-modules jdk.incubator.vector</b>, so {@link AffineKernel#getInstance()}
+ * returns the <b>SIMD</b> implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class AffineKernelBenchmark
+{
+    private static final float[] CORNER_X = {-0.5f, 0.5f, 0.5f, -0.5f};
+    private static final float[] CORNER_Y = {0.5f, 0.5f, -0.5f, -0.5f};
+
+    @Param({"1000", "10000", "100000"})
+    public int sprites;
+
+    private float[] rotations, scaleX, scaleY, positionX, positionY;
+    private float[] m00, m01, m10, m11, m20, m21;
+    private float[] interleaved;
+    private float[][] outX, outY;
+
+    @Setup
+    public void setup ()
+    {
+        final Random random = new Random(42);
+        rotations = new float[sprites];
+        scaleX = new float[sprites];
+        scaleY = new float[sprites];
+        positionX = new float[sprites];
+        positionY = new float[sprites];
+        m00 = new float[sprites];
+        m01 = new float[sprites];
+        m10 = new float[sprites];
+        m11 = new float[sprites];
+        m20 = new float[sprites];
+        m21 = new float[sprites];
+
+        for (int i = 0; i < sprites; i++)
+        {
+            rotations[i] = random.nextFloat() * 360f;
+            scaleX[i] = 1f + random.nextFloat();
+            scaleY[i] = 1f + random.nextFloat();
+            positionX[i] = random.nextFloat() * 1000f;
+            positionY[i] = random.nextFloat() * 1000f;
+
+            final float radians = (float) Math.toRadians(rotations[i]);
+            final float sin = (float) Math.sin(radians);
+            final float cos = (float) Math.cos(radians);
+            m00[i] = cos * scaleX[i];
+            m01[i] = sin * scaleX[i];
+            m10[i] = -sin * scaleY[i];
+            m11[i] = cos * scaleY[i];
+            m20[i] = positionX[i];
+            m21[i] = positionY[i];
+        }
+
+        interleaved = new float[sprites * CORNER_X.length * 3];
+        outX = new float[CORNER_X.length][sprites];
+        outY = new float[CORNER_X.length][sprites];
+    }
+
+    @Benchmark
+    public float[] legacy ()
+    {
+        int j = 0;
+        for (int i = 0; i < sprites; i++)
+        {
+            for (int k = 0; k < CORNER_X.length; k++)
+            {
+                final Vector3f rotated = MathUtil.rotatePointOnZAxis(rotations[i], CORNER_X[k], CORNER_Y[k], 0f);
+                interleaved[j++] = rotated.x * scaleX[i] + positionX[i];
+                interleaved[j++] = rotated.y * scaleY[i] + positionY[i];
+                interleaved[j++] = rotated.z;
+            }
+        }
+        return interleaved;
+    }
+
+    @Benchmark
+    public float[][] scalar ()
+    {
+        return transform(AffineKernel.getScalar());
+    }
+
+    @Benchmark
+    public float[][] vector ()
+    {
+        return transform(AffineKernel.getInstance());
+    }
+
+    private float[][] transform (AffineKernel kernel)
+    {
+        for (int k = 0; k < CORNER_X.length; k++)
+            kernel.transform(m00, m01, m10, m11, m20, m21, CORNER_X[k], CORNER_Y[k], outX[k], outY[k], 0, sprites);
+        return outX;
+    }
+}
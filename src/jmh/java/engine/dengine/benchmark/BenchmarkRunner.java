@@ -0,0 +1,45 @@
+package engine.dengine.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link BenchmarkRunner}</h2>
+ * <br>
+ * The {@link BenchmarkRunner} class is the entry point of <b>benchmarks.jar</b>. It runs all <b>benchmarks</b> of
+ * this package headless, with the {@link GCProfiler} enabled, and writes the results as <b>JSON</b> to
+ * <b>jmh-result.json</b>, which can be compared with <b>benchmarks/baseline.json</b>. All arguments are passed
+ * to <b>JMH</b>, so for example <b>-p entities=1000</b> or a <b>benchmark</b> name pattern restrict the run, and
+ * <b>-rff</b> changes the result file.
+ */
+public final class BenchmarkRunner
+{
+    private BenchmarkRunner () {}
+
+    public static void main (String[] args) throws RunnerException, CommandLineOptionException
+    {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final OptionsBuilder builder = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) builder.include(BenchmarkRunner.class.getPackageName() + "\\.");
+
+        final Options options = builder
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Djava.awt.headless=true")
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result.json"))
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.scene.Scene;
+import engine.dengine.shapes.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link EntityBenchmark}</h2>
+ * <br>
+ * The {@link EntityBenchmark} class measures {@link Entity#getComponent(Class)} on <b>entities</b> with a
+ * number of <b>component types</b>, both for <b>entities</b> which are stored in a {@link Scene} and for detached
+ * ones, and both for present and missing <b>component types</b>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityBenchmark
+{
+    @Param({"1", "4"})
+    public int components;
+
+    private Entity stored;
+    private Entity detached;
+
+    @Setup
+    public void setup ()
+    {
+        final Scene scene = new Scene();
+        stored = createEntity();
+        scene.addEntity(stored);
+        detached = createEntity();
+    }
+
+    private Entity createEntity ()
+    {
+        final Entity entity = new Entity();
+        entity.addComponent(new RenderComponent(new Rectangle(0, 0, 0, 1, 1), null));
+        if (components > 1) entity.addComponent(new ComponentA());
+        if (components > 2) entity.addComponent(new ComponentB());
+        if (components > 3) entity.addComponent(new ComponentC());
+        return entity;
+    }
+
+    @Benchmark
+    public RenderComponent getComponentStored ()
+    {
+        return stored.getComponent(RenderComponent.class);
+    }
+
+    @Benchmark
+    public RenderComponent getComponentDetached ()
+    {
+        return detached.getComponent(RenderComponent.class);
+    }
+
+    @Benchmark
+    public Missing getComponentMissing ()
+    {
+        return stored.getComponent(Missing.class);
+    }
+
+    /**
+     * The first additional <b>component type</b>.
+     */
+    public static class ComponentA extends Component {}
+
+    /**
+     * The second additional <b>component type</b>.
+     */
+    public static class ComponentB extends Component {}
+
+    /**
+     * The third additional <b>component type</b>.
+     */
+    public static class ComponentC extends Component {}
+
+    /**
+     * A <b>component type</b> no <b>entity</b> has.
+     */
+    public static class Missing extends Component {}
+}
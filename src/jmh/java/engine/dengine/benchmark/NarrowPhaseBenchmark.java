@@ -0,0 +1,191 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.collision.Manifold;
+import engine.dengine.collision.NarrowPhase;
+import engine.dengine.math.MathUtil;
+import engine.dengine.shapes.Polygon;
+import engine.dengine.shapes.Rectangle;
+import engine.dengine.shapes.Shape;
+import engine.dengine.shapes.Triangle;
+import org.joml.Matrix3x2f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link NarrowPhaseBenchmark}</h2>
+ * <br>
+ * The {@link NarrowPhaseBenchmark} class compares the <b>separating axis</b> tests of the {@link NarrowPhase}
+ * with the previous {@link Shape#collidesWith(Shape)}, which checked every <b>vertex</b> of one shape against
+ * the untransformed area of the other one and allocated a triangle per sub-triangle of a {@link Polygon}. The
+ * previous implementation is kept here as the <b>legacy</b> baseline. Every benchmark tests {@link Rectangle}
+ * <b>pairs</b> and {@link Polygon} <b>pairs</b> with <b>triangles</b> triangles, half of which overlap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NarrowPhaseBenchmark
+{
+    private static final int PAIRS = 64;
+
+    @Param({"1", "16", "64"})
+    public int triangles;
+
+    private Rectangle[] rectangles;
+    private Polygon[] polygons;
+    private Matrix3x2f[] matrices;
+    private NarrowPhase narrowPhase;
+    private Manifold manifold;
+
+    @Setup
+    public void setup ()
+    {
+        final Random random = new Random(42);
+        rectangles = new Rectangle[PAIRS * 2];
+        polygons = new Polygon[PAIRS * 2];
+        matrices = new Matrix3x2f[PAIRS * 2];
+        for (int i = 0; i < PAIRS * 2; i++)
+        {
+            // Every second pair is moved apart
+            final float offset = (i / 2) % 2 == 0 ? random.nextFloat() * 5 : 50 + random.nextFloat() * 5;
+            final float x = i % 2 == 0 ? 0 : offset;
+            rectangles[i] = new Rectangle(x, x + 10, 0, 10, 10);
+            polygons[i] = createPolygon(random, x);
+            matrices[i] = new Matrix3x2f().translate(x, x).rotate(random.nextFloat() * 6.28f);
+        }
+        narrowPhase = new NarrowPhase();
+        manifold = new Manifold();
+    }
+
+    private Polygon createPolygon (Random random, float offset)
+    {
+        // A fan of triangles around a center, so the area is a connected star
+        final float[] vertices = new float[triangles * 9];
+        for (int i = 0; i < triangles; i++)
+        {
+            final double from = Math.PI * 2 * i / triangles;
+            final double to = Math.PI * 2 * (i + 1) / triangles;
+            final float radius = 4 + random.nextFloat() * 4;
+            vertices[i * 9] = offset;
+            vertices[i * 9 + 1] = offset;
+            vertices[i * 9 + 3] = offset + (float) Math.cos(from) * radius;
+            vertices[i * 9 + 4] = offset + (float) Math.sin(from) * radius;
+            vertices[i * 9 + 6] = offset + (float) Math.cos(to) * radius;
+            vertices[i * 9 + 7] = offset + (float) Math.sin(to) * radius;
+        }
+        return new Polygon(vertices);
+    }
+
+    @Benchmark
+    public int legacyRectangles ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (legacyRectangleCollidesWith(rectangles[i], rectangles[i + 1])) colliding++;
+        return colliding;
+    }
+
+    @Benchmark
+    public int overlapsRectangles ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (narrowPhase.overlaps(rectangles[i], matrices[i], rectangles[i + 1], matrices[i + 1])) colliding++;
+        return colliding;
+    }
+
+    @Benchmark
+    public int collideRectangles ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (narrowPhase.collide(rectangles[i], matrices[i], rectangles[i + 1], matrices[i + 1], manifold))
+                colliding++;
+        return colliding;
+    }
+
+    @Benchmark
+    public int legacyPolygons ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (legacyPolygonCollidesWith(polygons[i], polygons[i + 1])) colliding++;
+        return colliding;
+    }
+
+    @Benchmark
+    public int overlapsPolygons ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (narrowPhase.overlaps(polygons[i], matrices[i], polygons[i + 1], matrices[i + 1])) colliding++;
+        return colliding;
+    }
+
+    @Benchmark
+    public int collidePolygons ()
+    {
+        int colliding = 0;
+        for (int i = 0; i < PAIRS * 2; i += 2)
+            if (narrowPhase.collide(polygons[i], matrices[i], polygons[i + 1], matrices[i + 1], manifold))
+                colliding++;
+        return colliding;
+    }
+
+    private static boolean legacyRectangleCollidesWith (Shape rectangle, Shape anotherShape)
+    {
+        final float[] vertices = rectangle.getVertices();
+        final float[] anotherVertices = anotherShape.getVertices();
+        for (int i = 0; i < anotherVertices.length; i += 3)
+        {
+            if (anotherVertices[i + 2] == vertices[2] && MathUtil.isPointInRectangle(vertices[0], vertices[1],
+                    vertices[3], vertices[4], vertices[6], vertices[7], vertices[9], vertices[10],
+                    anotherVertices[i], anotherVertices[i + 1])) return true;
+        }
+        return false;
+    }
+
+    private static boolean legacyTriangleCollidesWith (float[] vertices, Shape anotherShape)
+    {
+        if (anotherShape.getVertices()[2] != vertices[2]) return false;
+
+        final float[] anotherVertices = anotherShape.getVertices();
+        for (int i = 0; i < anotherVertices.length; i += 3)
+        {
+            if (anotherVertices[i + 2] == vertices[2] && MathUtil.isPointInTriangle(vertices[0], vertices[1],
+                    vertices[3], vertices[4], vertices[6], vertices[7], anotherVertices[i], anotherVertices[i + 1]))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean legacyPolygonCollidesWith (Shape polygon, Shape anotherShape)
+    {
+        final float[] vertices = polygon.getVertices();
+        for (int i = 0; i < vertices.length; i += 9)
+        {
+            final float[] temp = new float[9];
+            System.arraycopy(vertices, i, temp, 0, 9);
+            if (legacyTriangleCollidesWith(new Triangle(temp).getVertices(), anotherShape)) return true;
+        }
+        return false;
+    }
+}
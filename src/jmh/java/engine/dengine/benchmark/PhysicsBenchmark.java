@@ -0,0 +1,103 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.collision.Collider;
+import engine.dengine.ecs.Entity;
+import engine.dengine.physics.PhysicsWorld;
+import engine.dengine.physics.RigidBody;
+import engine.dengine.scene.Scene;
+import engine.dengine.shapes.Rectangle;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PhysicsBenchmark}</h2>
+ * <br>
+ * The {@link PhysicsBenchmark} class measures one <b>tick</b> of a {@link Scene} with <b>stacks</b> resting
+ * stacks of boxes on a static ground, where every stack is its own island. The boxes may not sleep, so every
+ * <b>tick</b> runs the narrow phase and the solver on all of them, which is the worst case sleeping avoids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PhysicsBenchmark
+{
+    private static final int HEIGHT = 10;
+    private static final float DELTA_TIME = 1 / 60f;
+
+    @Param({"10", "100", "1000"})
+    public int stacks;
+
+    private Scene scene;
+    private PhysicsWorld world;
+
+    @Setup(Level.Trial)
+    public void setup ()
+    {
+        scene = new Scene();
+        final float width = stacks * 2f;
+        final Entity ground = new Entity();
+        ground.addComponent(new Collider(new Rectangle(-1, 0.5f, 0, width + 2, 1)));
+        ground.getTransform().setPosition(new Vector3f(0, -0.5f, 0));
+        scene.addEntity(ground);
+
+        for (int stack = 0; stack < stacks; stack++)
+        {
+            for (int i = 0; i < HEIGHT; i++)
+            {
+                final Entity box = new Entity();
+                box.addComponent(new Collider(new Rectangle(-0.5f, 0.5f, 0, 1, 1)));
+                final RigidBody body = new RigidBody();
+                body.setSleepingAllowed(false);
+                box.addComponent(body);
+                box.getTransform().setPosition(new Vector3f(stack * 2f, 0.5f + i, 0));
+                scene.addEntity(box);
+            }
+        }
+        world = scene.getPhysicsWorld();
+
+        // Let the stacks settle, so the measured ticks have resting contacts
+        for (int i = 0; i < 120; i++)
+            scene.update(DELTA_TIME);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown ()
+    {
+        scene.dispose();
+    }
+
+    @Benchmark
+    public int sceneUpdate ()
+    {
+        scene.update(DELTA_TIME);
+        return world.getContactCount();
+    }
+
+    @Benchmark
+    public int physicsStep ()
+    {
+        world.step(DELTA_TIME);
+        return world.getContactCount();
+    }
+}
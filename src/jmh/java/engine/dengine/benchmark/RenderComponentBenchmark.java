@@ -0,0 +1,96 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.scene.Scene;
+import engine.dengine.shapes.Polygon;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RenderComponentBenchmark}</h2>
+ * <br>
+ * The {@link RenderComponentBenchmark} class measures packing the <b>vertices</b> of a {@link RenderComponent}
+ * into the <b>OpenGL vertex</b> layout, once through the allocating
+ * {@link RenderComponent#getRawOpenGLVertices(float)} and once through
+ * {@link RenderComponent#writeRawOpenGLVertices(float, float[], int)} into a reused array, and once through
+ * {@link RenderComponent#writeRawOpenGLVertices(float, FloatBuffer, int)} into a direct buffer like
+ * {@link engine.dengine.graphics.RenderBatch} does. All are called with an <b>interpolation</b> factor below 1,
+ * so the <b>vertices</b> are transformed on every call. No {@link engine.dengine.graphics.Sprite} is set, so no
+ * <b>OpenGL context</b> is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderComponentBenchmark
+{
+    @Param({"4", "64", "1024"})
+    public int vertices;
+
+    private RenderComponent component;
+    private float[] dest;
+    private FloatBuffer buffer;
+
+    @Setup
+    public void setup ()
+    {
+        // A regular polygon, whose outline keeps every vertex
+        final float[] outline = new float[vertices * 3];
+        for (int i = 0; i < vertices; i++)
+        {
+            final double angle = 2 * Math.PI * i / vertices;
+            outline[i * 3] = (float) Math.cos(angle) * 5;
+            outline[i * 3 + 1] = (float) Math.sin(angle) * 5;
+        }
+
+        final Scene scene = new Scene();
+        final Entity entity = new Entity();
+        component = new RenderComponent(Polygon.fromOutline(outline), null);
+        entity.addComponent(component);
+        scene.addEntity(entity);
+        scene.update(0);
+
+        dest = new float[component.getRawOpenGLVertexLength()];
+        buffer = BufferUtils.createFloatBuffer(component.getRawOpenGLVertexLength());
+    }
+
+    @Benchmark
+    public float[] getRawOpenGLVertices ()
+    {
+        return component.getRawOpenGLVertices(0.5f);
+    }
+
+    @Benchmark
+    public float[] writeRawOpenGLVertices ()
+    {
+        component.writeRawOpenGLVertices(0.5f, dest, 0);
+        return dest;
+    }
+
+    @Benchmark
+    public FloatBuffer writeRawOpenGLVerticesToBuffer ()
+    {
+        component.writeRawOpenGLVertices(0.5f, buffer, 0);
+        return buffer;
+    }
+}
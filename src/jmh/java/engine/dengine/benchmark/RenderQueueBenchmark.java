@@ -0,0 +1,64 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.graphics.RenderQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RenderQueueBenchmark}</h2>
+ * <br>
+ * The {@link RenderQueueBenchmark} class measures submitting and sorting <b>sort keys</b> of <b>sprites</b> on
+ * one <b>layer</b> with 4 <b>shaders</b>, 64 <b>textures</b> and random <b>depths</b>, of which a quarter is
+ * translucent. Equal <b>layers</b> leave a byte of every <b>sort key</b> to be skipped.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderQueueBenchmark
+{
+    @Param({"1000", "10000", "100000"})
+    public int submissions;
+
+    private long[] keys;
+    private RenderQueue queue;
+
+    @Setup
+    public void setup ()
+    {
+        final Random random = new Random(42);
+        keys = new long[submissions];
+        for (int i = 0; i < submissions; i++)
+            keys[i] = RenderQueue.key(0, random.nextInt(4) == 0, random.nextInt(4) + 1, random.nextInt(64) + 1,
+                    random.nextFloat() * 2 - 1);
+        queue = new RenderQueue();
+    }
+
+    @Benchmark
+    public int sort ()
+    {
+        queue.clear();
+        for (int i = 0; i < submissions; i++)
+            queue.submit(keys[i], i);
+        queue.sort();
+        return queue.getItem(0);
+    }
+}
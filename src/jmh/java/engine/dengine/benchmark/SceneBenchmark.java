@@ -0,0 +1,109 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.EntitySystem;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.scene.Scene;
+import engine.dengine.shapes.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SceneBenchmark}</h2>
+ * <br>
+ * The {@link SceneBenchmark} class measures {@link Scene#update(float)} with a number of <b>entities</b> which all
+ * have a {@link RenderComponent}. If <b>moving</b> is set, an {@link EntitySystem} rotates every <b>entity</b>
+ * each <b>tick</b>, so all <b>world matrices</b> and <b>vertices</b> have to be recomputed. Otherwise nothing
+ * changes and the <b>tick</b> only pays for the iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneBenchmark
+{
+    @Param({"1000", "10000", "100000"})
+    public int entities;
+
+    @Param({"false", "true"})
+    public boolean moving;
+
+    private Scene scene;
+
+    @Setup(Level.Trial)
+    public void setup ()
+    {
+        scene = new Scene();
+        for (int i = 0; i < entities; i++)
+        {
+            final Entity entity = new Entity();
+            entity.addComponent(new RenderComponent(new Rectangle(0, 0, 0, 1, 1), null));
+            scene.addEntity(entity);
+        }
+        if (moving) scene.addSystem(new RotationSystem());
+        scene.update(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown ()
+    {
+        scene.dispose();
+    }
+
+    @Benchmark
+    public Scene update ()
+    {
+        scene.update(1f / 60f);
+        return scene;
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SceneBenchmark.RotationSystem}</h2>
+     * <br>
+     * The {@link SceneBenchmark.RotationSystem} class rotates every <b>entity</b> with a {@link RenderComponent}
+     * by one degree per <b>tick</b>.
+     */
+    public static final class RotationSystem extends EntitySystem
+    {
+        public RotationSystem ()
+        {
+            reads(RenderComponent.class);
+            writesTransform();
+        }
+
+        @Override
+        public void update (Chunk chunk, float deltaTime)
+        {
+            final float[] rotation = chunk.getRotation();
+            for (int row = 0; row < chunk.size(); row++)
+            {
+                rotation[row] += 1f;
+                chunk.markChanged(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.math.MathUtil;
+import engine.dengine.shapes.ConvexHull;
+import engine.dengine.shapes.Polygon;
+import engine.dengine.shapes.Rectangle;
+import engine.dengine.shapes.Shape;
+import engine.dengine.shapes.Triangle;
+import engine.dengine.shapes.Triangulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ShapeBenchmark}</h2>
+ * <br>
+ * The {@link ShapeBenchmark} class measures the {@link Shape} paths: recomputing
+ * {@link Shape#getTransformedVertices()} after the {@link engine.dengine.ecs.Transform} changed, the
+ * point-in-shape tests of {@link MathUtil} and {@link Shape#collidesWith(Shape)} of {@link Rectangle},
+ * {@link Triangle} and {@link Polygon} against a {@link Polygon} with <b>vertices</b> triangles. The tested
+ * points and the other {@link Polygon} lie outside of all shapes, so every point test has to check every point.
+ * {@link NarrowPhaseBenchmark} compares {@link Shape#collidesWith(Shape)} with the previous implementation.
+ * <br>
+ * It also measures triangulating the <b>outline</b> of a circle with three times <b>triangles</b> corners with
+ * {@link Triangulator}, against {@link Polygon#fromOutline(float[])}, which finds it in the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapeBenchmark
+{
+    @Param({"1", "16", "256"})
+    public int triangles;
+
+    private Rectangle rectangle;
+    private Triangle triangle;
+    private Polygon polygon;
+    private Polygon other;
+    private float[] points;
+    private float[] outline;
+    private float rotation;
+
+    @Setup
+    public void setup ()
+    {
+        final Random random = new Random(42);
+        rectangle = new Rectangle(0, 0, 0, 10, 10);
+        triangle = new Triangle(new float[] {0, 0, 0, 10, 0, 0, 0, 10, 0});
+        polygon = createPolygon(random, 0);
+        other = createPolygon(random, 100);
+
+        outline = new float[triangles * 9];
+        for (int i = 0; i < outline.length / 3; i++)
+        {
+            final double angle = 2 * Math.PI * i / (outline.length / 3);
+            outline[i * 3] = (float) Math.cos(angle) * 10;
+            outline[i * 3 + 1] = (float) Math.sin(angle) * 10;
+        }
+
+        points = new float[triangles * 9];
+        for (int i = 0; i < points.length; i += 3)
+        {
+            points[i] = 100 + random.nextFloat() * 10;
+            points[i + 1] = 100 + random.nextFloat() * 10;
+        }
+    }
+
+    private Polygon createPolygon (Random random, float offset)
+    {
+        final float[] vertices = new float[triangles * 9];
+        for (int i = 0; i < vertices.length; i += 3)
+        {
+            vertices[i] = offset + random.nextFloat() * 10;
+            vertices[i + 1] = offset + random.nextFloat() * 10;
+        }
+        return new Polygon(vertices);
+    }
+
+    @Benchmark
+    public float[] getTransformedVertices ()
+    {
+        polygon.getTransform().setRotation(rotation += 1f);
+        return polygon.getTransformedVertices();
+    }
+
+    @Benchmark
+    public int isPointInRectangle ()
+    {
+        int inside = 0;
+        for (int i = 0; i < points.length; i += 3)
+            if (MathUtil.isPointInRectangle(rectangle, points[i], points[i + 1], points[i + 2])) inside++;
+        return inside;
+    }
+
+    @Benchmark
+    public int isPointInTriangle ()
+    {
+        int inside = 0;
+        for (int i = 0; i < points.length; i += 3)
+            if (MathUtil.isPointInTriangle(triangle, points[i], points[i + 1], points[i + 2])) inside++;
+        return inside;
+    }
+
+    @Benchmark
+    public boolean rectangleCollidesWith ()
+    {
+        return rectangle.collidesWith(other);
+    }
+
+    @Benchmark
+    public boolean triangleCollidesWith ()
+    {
+        return triangle.collidesWith(other);
+    }
+
+    @Benchmark
+    public boolean polygonCollidesWith ()
+    {
+        return polygon.collidesWith(other);
+    }
+
+    @Benchmark
+    public ConvexHull[] triangulateOutline ()
+    {
+        final int[] indices = Triangulator.triangulate(outline);
+        return Triangulator.decompose(outline, indices);
+    }
+
+    @Benchmark
+    public Polygon cachedOutline ()
+    {
+        return Polygon.fromOutline(outline);
+    }
+}
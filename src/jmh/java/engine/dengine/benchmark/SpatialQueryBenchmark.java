@@ -0,0 +1,159 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.collision.Collider;
+import engine.dengine.collision.NarrowPhase;
+import engine.dengine.collision.RaycastHit;
+import engine.dengine.collision.SpatialQuery;
+import engine.dengine.ecs.Entity;
+import engine.dengine.scene.Scene;
+import engine.dengine.shapes.Rectangle;
+import org.joml.Matrix3x2f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SpatialQueryBenchmark}</h2>
+ * <br>
+ * The {@link SpatialQueryBenchmark} class measures the queries of the {@link SpatialQuery} of a {@link Scene}
+ * with <b>colliders</b> randomly placed {@link Collider} instances, against testing every {@link Collider} with
+ * the {@link NarrowPhase}, which is what a point query costs without the tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialQueryBenchmark
+{
+    private static final int POINTS = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int colliders;
+
+    private Scene scene;
+    private SpatialQuery query;
+    private List<Collider> colliderList;
+    private float[] points;
+    private int next;
+    private RaycastHit hit;
+    private Rectangle probe;
+    private Matrix3x2f probeMatrix;
+    private Matrix3x2f matrix;
+    private NarrowPhase narrowPhase;
+    private int found;
+    private SpatialQuery.ColliderCallback counter;
+
+    @Setup(Level.Trial)
+    public void setup ()
+    {
+        final Random random = new Random(42);
+        final float size = (float) Math.sqrt(colliders) * 3;
+        scene = new Scene();
+        colliderList = new ArrayList<>();
+        for (int i = 0; i < colliders; i++)
+        {
+            final Entity entity = new Entity();
+            entity.getTransform().setPosition(new Vector3f(random.nextFloat() * size, random.nextFloat() * size, 0));
+            entity.getTransform().setRotation(random.nextFloat() * 360);
+            final Collider collider = new Collider(new Rectangle(-0.5f, 0.5f, 0, 1, 1));
+            entity.addComponent(collider);
+            colliderList.add(collider);
+            scene.addEntity(entity);
+        }
+        scene.update(0);
+        query = scene.getCollisionWorld().getSpatialQuery();
+
+        points = new float[POINTS * 4];
+        for (int i = 0; i < points.length; i += 4)
+        {
+            points[i] = random.nextFloat() * size;
+            points[i + 1] = random.nextFloat() * size;
+            points[i + 2] = points[i] + (random.nextFloat() - 0.5f) * 40;
+            points[i + 3] = points[i + 1] + (random.nextFloat() - 0.5f) * 40;
+        }
+        hit = new RaycastHit();
+        probe = new Rectangle(0, 0, 0, 0.01f, 0.01f);
+        probeMatrix = new Matrix3x2f();
+        matrix = new Matrix3x2f();
+        narrowPhase = new NarrowPhase();
+        counter = collider -> {
+            found++;
+            return true;
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown ()
+    {
+        scene.dispose();
+    }
+
+    private int nextPoint ()
+    {
+        next = (next + 4) & (POINTS * 4 - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean raycastFirst ()
+    {
+        final int i = nextPoint();
+        return query.raycastFirst(points[i], points[i + 1], points[i + 2], points[i + 3], SpatialQuery.ALL_LAYERS,
+                hit);
+    }
+
+    @Benchmark
+    public int queryPoint ()
+    {
+        final int i = nextPoint();
+        found = 0;
+        query.queryPoint(points[i], points[i + 1], SpatialQuery.ALL_LAYERS, counter);
+        return found;
+    }
+
+    @Benchmark
+    public int queryAabb ()
+    {
+        final int i = nextPoint();
+        found = 0;
+        query.queryAabb(points[i], points[i + 1], points[i] + 10, points[i + 1] + 10, SpatialQuery.ALL_LAYERS,
+                counter);
+        return found;
+    }
+
+    @Benchmark
+    public int bruteForcePoint ()
+    {
+        final int i = nextPoint();
+        probeMatrix.translation(points[i], points[i + 1]);
+        int found = 0;
+        for (Collider collider : colliderList)
+        {
+            if (narrowPhase.overlaps(probe, probeMatrix, collider.getShape(),
+                    collider.getEntity().getTransform().getWorldMatrix(matrix))) found++;
+        }
+        return found;
+    }
+}
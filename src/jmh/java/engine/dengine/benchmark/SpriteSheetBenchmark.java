@@ -0,0 +1,75 @@
+package engine.dengine.benchmark;
+
+import engine.dengine.assets.Texture2D;
+import engine.dengine.graphics.SpriteSheet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SpriteSheetBenchmark}</h2>
+ * <br>
+ * The {@link SpriteSheetBenchmark} class measures the construction of a {@link SpriteSheet} with a number of
+ * 16x16 <b>sprites</b>. The {@link Texture2D} only provides its size and is created without an <b>OpenGL
+ * context</b> ({@link SpriteSheetBenchmark.HeadlessTexture}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpriteSheetBenchmark
+{
+    private static final int SPRITE_SIZE = 16;
+
+    @Param({"16", "256", "4096"})
+    public int sprites;
+
+    private Texture2D texture;
+
+    @Setup
+    public void setup ()
+    {
+        final int columns = (int) Math.ceil(Math.sqrt(sprites));
+        texture = new HeadlessTexture(columns * SPRITE_SIZE, columns * SPRITE_SIZE);
+    }
+
+    @Benchmark
+    public SpriteSheet construct ()
+    {
+        return new SpriteSheet(texture, SPRITE_SIZE, SPRITE_SIZE, sprites);
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SpriteSheetBenchmark.HeadlessTexture}</h2>
+     * <br>
+     * The {@link SpriteSheetBenchmark.HeadlessTexture} class is a {@link Texture2D} without an <b>OpenGL
+     * texture</b>, which only has a size.
+     */
+    public static class HeadlessTexture extends Texture2D
+    {
+        public HeadlessTexture (int width, int height)
+        {
+            super("headless", 0, width, height);
+        }
+    }
+}
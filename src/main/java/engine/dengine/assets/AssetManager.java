@@ -20,6 +20,7 @@ import java.util.HashMap;
  * <ul>
  *     <li>{@link Shader} instances</li>
  *     <li>{@link Texture2D} instances</li>
+ *     <li>{@link TextureArray} instances</li>
  * </ul>
  * The {@link AssetManager} also guarantees that there is always only one instance of an asset.
  * For example, using {@link AssetManager#getShader(String, String)}, you can never produce more
@@ -29,6 +30,7 @@ public final class AssetManager
 {
     private static final HashMap<String, Shader> shaders;
     private static final HashMap<String, Texture2D> texture2Ds;
+    private static final HashMap<String, TextureArray> textureArrays;
 
     // Private constructor to prevent instantiation
     private AssetManager () {}
@@ -38,6 +40,7 @@ public final class AssetManager
         // Instantiate caches
         shaders = new HashMap<>();
         texture2Ds = new HashMap<>();
+        textureArrays = new HashMap<>();
 
         // Ensure that all assets are disposed of in case of incompetence
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -49,6 +52,10 @@ public final class AssetManager
             {
                 tex.dispose();
             }
+            for (TextureArray array : textureArrays.values())
+            {
+                array.dispose();
+            }
         }));
     }
 
@@ -91,6 +98,26 @@ public final class AssetManager
         return newTexture;
     }
 
+    /**
+     * Adds a {@link TextureArray} instance to the {@link AssetManager} cache and returns it if no instance with
+     * the same name exists in the cache. If one exists, that instance is returned, no matter its size.
+     * @param name the name of the {@link TextureArray}
+     * @param width the width of every <b>layer</b> in <b>pixels</b>
+     * @param height the height of every <b>layer</b> in <b>pixels</b>
+     * @param layers the number of <b>layers</b>
+     * @param hasAlpha wether the <b>layers</b> have an alpha channel
+     * @return the {@link TextureArray} instance with the given name
+     * @throws IllegalArgumentException if it gets thrown in
+     * {@link TextureArray#TextureArray(String, int, int, int, boolean)}
+     */
+    public static TextureArray addTextureArray (String name, int width, int height, int layers, boolean hasAlpha)
+    {
+        if (textureArrays.containsKey(name)) return textureArrays.get(name);
+        TextureArray newArray = new TextureArray(name, width, height, layers, hasAlpha);
+        textureArrays.put(name, newArray);
+        return newArray;
+    }
+
     /**
      * Checks if a {@link Shader} instance with the same sources exists and returns that. Otherwise, <b>null</b> is returned.
      *
@@ -117,6 +144,27 @@ public final class AssetManager
         return null;
     }
 
+    /**
+     * Checks if a {@link TextureArray} instance with the name exists and returns that. Otherwise, it returns null.
+     * @param name the name of the {@link TextureArray}
+     * @return the {@link TextureArray} instance with the name or null
+     */
+    public static TextureArray getTextureArray (String name)
+    {
+        return textureArrays.get(name);
+    }
+
+    /**
+     * Calls {@link TextureArray#dispose()} on the {@link TextureArray} instance with the name and removes it from
+     * the {@link AssetManager} cache.
+     * @param name the name of the {@link TextureArray}
+     */
+    public static void disposeTextureArray (String name)
+    {
+        final TextureArray array = textureArrays.remove(name);
+        if (array != null) array.dispose();
+    }
+
     /**
      * Calls {@link Texture2D#dispose()} on the {@link Texture2D} instance which was instantiated from the file path and
      * removes it from the {@link AssetManager} cache.
@@ -173,5 +221,8 @@ public final class AssetManager
             disposeShader(shader);
         for (Texture2D tex : texture2Ds.values())
             disposeTexture2D(tex);
+        for (TextureArray array : textureArrays.values())
+            array.dispose();
+        textureArrays.clear();
     }
 }
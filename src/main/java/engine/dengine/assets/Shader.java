@@ -162,6 +162,18 @@ public class Shader
         glUniform1i(GL33C.glGetUniformLocation(id, uniform), slot);
     }
 
+    /**
+     * Uploads a {@link TextureArray} into a <b>uniform variable</b> of type <b>sampler2DArray</b> of this
+     * {@link Shader}.
+     *
+     * @param uniform the variable name of the <b>uniform</b>
+     * @param slot    the <b>texture slot</b> the {@link TextureArray} is bound to
+     */
+    public void uploadUniformTextureArray (String uniform, int slot)
+    {
+        glUniform1i(GL33C.glGetUniformLocation(id, uniform), slot);
+    }
+
     /**
      * Uploads a {@link Matrix4f} into a <b>uniform variable</b> of type <b>mat4</b> of this {@link Shader}.
      *
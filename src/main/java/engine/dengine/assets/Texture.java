@@ -0,0 +1,44 @@
+package engine.dengine.assets;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Texture}</h2>
+ * <br>
+ * The {@link Texture} interface is implemented by all <b>OpenGL textures</b> a {@link engine.dengine.graphics.Sprite}
+ * can be cut from, which are {@link Texture2D} and {@link TextureArray}.
+ */
+public interface Texture
+{
+    /**
+     * Binds this {@link Texture} to a <b>texture slot</b>.
+     * @param slot the <b>texture slot</b> this {@link Texture} should be bound to
+     */
+    void use (int slot);
+
+    /**
+     * Returns the width of this {@link Texture}, or of one <b>layer</b> of it, in <b>pixels</b>.
+     * @return the width in <b>pixels</b>
+     */
+    int getWidth ();
+
+    /**
+     * Returns the height of this {@link Texture}, or of one <b>layer</b> of it, in <b>pixels</b>.
+     * @return the height in <b>pixels</b>
+     */
+    int getHeight ();
+
+    /**
+     * Returns wether this {@link Texture} has an alpha channel, so it may be translucent.
+     * @return wether this {@link Texture} has an alpha channel
+     */
+    boolean hasAlpha ();
+
+    /**
+     * Returns the <b>OpenGL identifier</b> of this {@link Texture}.
+     * @return the <b>OpenGL identifier</b>
+     */
+    int getId ();
+}
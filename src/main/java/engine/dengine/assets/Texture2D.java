@@ -25,11 +25,12 @@ import static org.lwjgl.stb.STBImage.stbi_load;
  * from <b>OpenGL</b>, use {@link AssetManager#disposeTexture2D(Texture2D)} or
  * {@link AssetManager#disposeTexture2D(String)};
  */
-public class Texture2D
+public class Texture2D implements Texture
 {
     private final int id; // Texture id for OpenGL operations
-    private final IntBuffer width, height; // Width and height of texture
+    private final int width, height; // Width and height of texture
     private final String filePath; // file path of source file
+    private final boolean hasAlpha; // wether the texture has an alpha channel
 
     /**
      * Creates a new {@link Texture2D} instance from the given image, by reading
@@ -44,6 +45,7 @@ public class Texture2D
             throws FileNotFoundException
     {
         this.filePath = filepath;
+        this.hasAlpha = hasAlpha;
 
         id = glGenTextures();
         glBindTexture(GL_TEXTURE_2D, id);
@@ -55,35 +57,59 @@ public class Texture2D
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
 
         // load and generate the texture
-        width = BufferUtils.createIntBuffer(1);
-        height = BufferUtils.createIntBuffer(1);
+        IntBuffer widthBuffer = BufferUtils.createIntBuffer(1);
+        IntBuffer heightBuffer = BufferUtils.createIntBuffer(1);
         IntBuffer nrChannels = BufferUtils.createIntBuffer(1);
-        ByteBuffer data = stbi_load(filepath, width, height, nrChannels, hasAlpha ? 4 : 3);
+        ByteBuffer data = stbi_load(filepath, widthBuffer, heightBuffer, nrChannels, hasAlpha ? 4 : 3);
 
         if (data == null)
         {
             throw new FileNotFoundException("Could not load texture from path " + filepath);
         }
 
+        // Read with absolute gets, relative gets would leave the buffers empty for later calls
+        width = widthBuffer.get(0);
+        height = heightBuffer.get(0);
+
         final int colorMode = hasAlpha ? GL_RGBA : GL_RGB;
         data.flip();
         glTexImage2D(
-                GL_TEXTURE_2D, 0, colorMode, width.get(), height.get(),
+                GL_TEXTURE_2D, 0, colorMode, width, height,
                 0, colorMode, GL_UNSIGNED_BYTE, data);
         stbi_image_free(data);
     }
 
+    /**
+     * Creates a new {@link Texture2D} instance which wraps an existing <b>OpenGL texture</b> without loading or
+     * uploading anything, so it can be created without an <b>OpenGL context</b>, for example for
+     * <b>benchmarks</b> which only need the size of a <b>texture</b>. The <b>texture</b> has no alpha channel.
+     * @param filePath the path to the <b>source image</b>, which is used as the key of the <b>texture</b>
+     * @param id the <b>OpenGL identifier</b>, or 0 if there is no <b>OpenGL texture</b>
+     * @param width the width in <b>pixels</b>
+     * @param height the height in <b>pixels</b>
+     */
+    protected Texture2D (String filePath, int id, int width, int height)
+    {
+        this.filePath = filePath;
+        this.id = id;
+        this.width = width;
+        this.height = height;
+        this.hasAlpha = false;
+    }
+
     /**
      * Binds this {@link Texture2D} to the <b>OpenGL context</b> and binds it to
      * a <b>texture slot</b>.
      * @param slot the <b>texture slot</b> this {@link Texture2D} should be bound to
      */
+    @Override
     public void use (int slot)
     {
         if (slot >= 0 && slot <= 31)
         {
-            glBindTexture(GL_TEXTURE_2D, id);
+            // The slot has to be active before binding, otherwise the previously active slot is overwritten
             glActiveTexture(GL_TEXTURE0 + slot);
+            glBindTexture(GL_TEXTURE_2D, id);
             return;
         }
         throw new IllegalArgumentException(
@@ -94,18 +120,30 @@ public class Texture2D
      * Returns the {@link Texture2D} height in <b>pixels</b>.
      * @return the height in <b>pixels</b>
      */
+    @Override
     public int getHeight ()
     {
-        return height.get();
+        return height;
     }
 
     /**
      * Returns the {@link Texture2D} width in <b>pixels</b>.
      * @return the width in <b>pixels</b>
      */
+    @Override
     public int getWidth ()
     {
-        return width.get();
+        return width;
+    }
+
+    /**
+     * Returns wether this {@link Texture2D} has an alpha channel, so it may be translucent.
+     * @return wether this {@link Texture2D} has an alpha channel
+     */
+    @Override
+    public boolean hasAlpha ()
+    {
+        return hasAlpha;
     }
 
     /**
@@ -138,7 +176,7 @@ public class Texture2D
         if (obj == null) return false;
         if (obj instanceof Texture2D tex)
             return tex.id == this.id
-                    && this.width.get() == tex.width.get() && this.height.get() == tex.height.get()
+                    && this.width == tex.width && this.height == tex.height
                     && this.filePath.equals(tex.filePath);
         return false;
     }
@@ -151,7 +189,7 @@ public class Texture2D
     public String toString ()
     {
         return getClass().getName()
-                + "[" + id + ", " + width.get() + ", " + height.get() + ", " + filePath +"]";
+                + "[" + id + ", " + width + ", " + height + ", " + filePath +"]";
     }
 
     /**
@@ -161,7 +199,7 @@ public class Texture2D
     @Override
     public int hashCode ()
     {
-        return height.get() + width.get() + id + filePath.hashCode();
+        return height + width + id + filePath.hashCode();
     }
 
     /**
@@ -170,6 +208,7 @@ public class Texture2D
      * or deleting the <b>texture</b>.
      * @return the <b>OpenGL identifier</b>
      */
+    @Override
     public int getId()
     {
         return id;
@@ -0,0 +1,342 @@
+package engine.dengine.assets;
+
+import org.lwjgl.BufferUtils;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+
+import static org.lwjgl.opengl.GL33C.*;
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link TextureArray}</h2>
+ * <br>
+ * The {@link TextureArray} class serves as an abstraction of <b>OpenGL 2D array textures</b>, which hold
+ * <b>layers</b> of the same size that are sampled through a single <b>texture slot</b>. A
+ * {@link engine.dengine.graphics.Sprite} of a <b>layer</b> only differs from the other <b>layers</b> in the
+ * <b>layer</b> index of its <b>vertices</b>, so <b>sprites</b> of hundreds of different images can be drawn with
+ * one <b>draw call</b>.
+ * <br>
+ * To obtain an instance of {@link TextureArray}, use
+ * {@link AssetManager#addTextureArray(String, int, int, int, boolean)} or {@link AssetManager#getTextureArray(String)}. The storage of all <b>layers</b> is allocated up front, the
+ * <b>layers</b> are filled by {@link TextureArray#addLayer(String)} and {@link TextureArray#addLayer(ByteBuffer)},
+ * or added empty by {@link TextureArray#addLayer()} and filled in parts by
+ * {@link TextureArray#setRegion(int, int, int, int, int, ByteBuffer)}.
+ * An image file is only added once, adding it again returns its <b>layer</b>.
+ */
+public class TextureArray implements Texture
+{
+    private final int id;
+    private final String name;
+    private final int width, height;
+    private final int capacity;
+    private final boolean hasAlpha;
+
+    /** The <b>layers</b> of the image files added so far */
+    private final HashMap<String, Integer> layersByPath;
+    private int layerCount;
+
+    /**
+     * Creates a new {@link TextureArray} instance and allocates the storage of all its <b>layers</b> in
+     * <b>OpenGL</b>.
+     * @param name the name of the {@link TextureArray}, which is used as its key
+     * @param width the width of every <b>layer</b> in <b>pixels</b>
+     * @param height the height of every <b>layer</b> in <b>pixels</b>
+     * @param capacity the number of <b>layers</b>
+     * @param hasAlpha wether the <b>layers</b> have an alpha channel
+     * @throws IllegalArgumentException if the size or the number of <b>layers</b> is smaller than 1, or there are
+     * more <b>layers</b> than <b>OpenGL</b> supports
+     */
+    protected TextureArray (String name, int width, int height, int capacity, boolean hasAlpha)
+    {
+        if (width < 1 || height < 1 || capacity < 1) throw new IllegalArgumentException("Tried to create " +
+                "TextureArray " + name + " with a size or a number of layers smaller than 1");
+        final int maxLayers = glGetInteger(GL_MAX_ARRAY_TEXTURE_LAYERS);
+        if (capacity > maxLayers) throw new IllegalArgumentException("Tried to create TextureArray " + name +
+                " with " + capacity + " layers, but OpenGL supports at most " + maxLayers);
+
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.capacity = capacity;
+        this.hasAlpha = hasAlpha;
+        this.layersByPath = new HashMap<>();
+
+        id = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D_ARRAY, id);
+
+        // Set texture parameters, like the ones of Texture2D
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+
+        glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, hasAlpha ? GL_RGBA8 : GL_RGB8, width, height, capacity,
+                0, getFormat(), GL_UNSIGNED_BYTE, 0L);
+    }
+
+    private int getFormat ()
+    {
+        return hasAlpha ? GL_RGBA : GL_RGB;
+    }
+
+    /**
+     * Adds an image file as the next <b>layer</b>, by reading its <b>bytes</b> with
+     * {@link org.lwjgl.stb.STBImage#stbi_load(CharSequence, IntBuffer, IntBuffer, IntBuffer, int)}. If the image
+     * file was added before, its <b>layer</b> is returned without reading it again.
+     * @param filePath the path to the image file, which has to have the size of the <b>layers</b>
+     * @return the <b>layer</b> of the image
+     * @throws FileNotFoundException if the image file could not be found or the file is not an image
+     * @throws IllegalArgumentException if the image does not have the size of the <b>layers</b>
+     * @throws IllegalStateException if all <b>layers</b> are taken
+     */
+    public int addLayer (String filePath) throws FileNotFoundException
+    {
+        final Integer existing = layersByPath.get(filePath);
+        if (existing != null) return existing;
+        checkCapacity();
+
+        final IntBuffer widthBuffer = BufferUtils.createIntBuffer(1);
+        final IntBuffer heightBuffer = BufferUtils.createIntBuffer(1);
+        final IntBuffer channels = BufferUtils.createIntBuffer(1);
+        final ByteBuffer data = stbi_load(filePath, widthBuffer, heightBuffer, channels, hasAlpha ? 4 : 3);
+        if (data == null) throw new FileNotFoundException("Could not load texture layer from path " + filePath);
+
+        try
+        {
+            if (widthBuffer.get(0) != width || heightBuffer.get(0) != height)
+                throw new IllegalArgumentException("Tried to add the " + widthBuffer.get(0) + "x" +
+                        heightBuffer.get(0) + " image " + filePath + " to TextureArray " + name + " with " + width +
+                        "x" + height + " layers");
+            upload(layerCount, data);
+        }
+        finally
+        {
+            stbi_image_free(data);
+        }
+        layersByPath.put(filePath, layerCount);
+        return layerCount++;
+    }
+
+    /**
+     * Adds <b>pixels</b> as the next <b>layer</b>, for example a page which was assembled on the CPU.
+     * @param pixels the rows of the <b>layer</b> from the first to the last, with 4 <b>bytes</b> per <b>pixel</b>
+     *               if the {@link TextureArray} has an alpha channel and 3 otherwise
+     * @return the <b>layer</b>
+     * @throws IllegalArgumentException if <b>pixels</b> does not hold a whole <b>layer</b>
+     * @throws IllegalStateException if all <b>layers</b> are taken
+     */
+    public int addLayer (ByteBuffer pixels)
+    {
+        checkCapacity();
+        checkSize(pixels);
+        upload(layerCount, pixels);
+        return layerCount++;
+    }
+
+    /**
+     * Adds an empty <b>layer</b>, whose <b>pixels</b> are undefined until they are set, for example by
+     * {@link TextureArray#setRegion(int, int, int, int, int, ByteBuffer)}.
+     * @return the <b>layer</b>
+     * @throws IllegalStateException if all <b>layers</b> are taken
+     */
+    public int addLayer ()
+    {
+        checkCapacity();
+        return layerCount++;
+    }
+
+    /**
+     * Replaces the <b>pixels</b> of a <b>layer</b> which was added before.
+     * @param layer the <b>layer</b>
+     * @param pixels the rows of the <b>layer</b> from the first to the last, with 4 <b>bytes</b> per <b>pixel</b>
+     *               if the {@link TextureArray} has an alpha channel and 3 otherwise
+     * @throws IllegalArgumentException if the <b>layer</b> was not added or <b>pixels</b> does not hold a whole
+     * <b>layer</b>
+     */
+    public void setLayer (int layer, ByteBuffer pixels)
+    {
+        if (layer < 0 || layer >= layerCount) throw new IllegalArgumentException("Tried to set layer " + layer +
+                " of TextureArray " + name + ", which has " + layerCount + " layers");
+        checkSize(pixels);
+        upload(layer, pixels);
+    }
+
+    /**
+     * Replaces the <b>pixels</b> of a rectangle of a <b>layer</b> which was added before.
+     * @param layer the <b>layer</b>
+     * @param x the first column of the rectangle
+     * @param y the first row of the rectangle
+     * @param width the width of the rectangle in <b>pixels</b>
+     * @param height the height of the rectangle in <b>pixels</b>
+     * @param pixels the rows of the rectangle from the first to the last, with 4 <b>bytes</b> per <b>pixel</b>
+     *               if the {@link TextureArray} has an alpha channel and 3 otherwise
+     * @throws IllegalArgumentException if the <b>layer</b> was not added, the rectangle is not inside it or
+     * <b>pixels</b> does not hold the whole rectangle
+     */
+    public void setRegion (int layer, int x, int y, int width, int height, ByteBuffer pixels)
+    {
+        if (layer < 0 || layer >= layerCount) throw new IllegalArgumentException("Tried to set a region of layer " +
+                layer + " of TextureArray " + name + ", which has " + layerCount + " layers");
+        if (x < 0 || y < 0 || width < 0 || height < 0 || x + width > this.width || y + height > this.height)
+            throw new IllegalArgumentException("Tried to set the region " + x + ", " + y + ", " + width + ", " +
+                    height + " outside of the " + this.width + "x" + this.height + " layers of TextureArray " + name);
+        checkSize(pixels, width, height);
+
+        glBindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, x, y, layer, width, height, 1, getFormat(), GL_UNSIGNED_BYTE,
+                pixels);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
+    private void checkSize (ByteBuffer pixels)
+    {
+        checkSize(pixels, width, height);
+    }
+
+    private void checkSize (ByteBuffer pixels, int width, int height)
+    {
+        final int size = width * height * (hasAlpha ? 4 : 3);
+        if (pixels.remaining() < size) throw new IllegalArgumentException("Tried to set " + width + "x" + height +
+                " pixels of TextureArray " + name + " with " + pixels.remaining() + " bytes instead of " + size);
+    }
+
+    private void upload (int layer, ByteBuffer pixels)
+    {
+        glBindTexture(GL_TEXTURE_2D_ARRAY, id);
+        // Rows of 3 bytes per pixel are not aligned to 4 bytes
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, width, height, 1, getFormat(), GL_UNSIGNED_BYTE,
+                pixels);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
+    private void checkCapacity ()
+    {
+        if (layerCount == capacity) throw new IllegalStateException("Tried to add a layer to TextureArray " +
+                name + ", whose " + capacity + " layers are all taken");
+    }
+
+    /**
+     * Returns the <b>layer</b> of an image file which was added by {@link TextureArray#addLayer(String)}.
+     * @param filePath the path to the image file
+     * @return the <b>layer</b>, or -1 if the image file was not added
+     */
+    public int getLayer (String filePath)
+    {
+        final Integer layer = layersByPath.get(filePath);
+        return layer != null ? layer : -1;
+    }
+
+    /**
+     * Binds this {@link TextureArray} to the <b>OpenGL context</b> and binds it to a <b>texture slot</b>.
+     * @param slot the <b>texture slot</b> this {@link TextureArray} should be bound to
+     */
+    @Override
+    public void use (int slot)
+    {
+        if (slot >= 0 && slot <= 31)
+        {
+            glActiveTexture(GL_TEXTURE0 + slot);
+            glBindTexture(GL_TEXTURE_2D_ARRAY, id);
+            return;
+        }
+        throw new IllegalArgumentException(
+                "Tried to bind TextureArray to texture slot that is either smaller than 0 or larger than 31");
+    }
+
+    /**
+     * Returns the width of every <b>layer</b> in <b>pixels</b>.
+     * @return the width in <b>pixels</b>
+     */
+    @Override
+    public int getWidth ()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the height of every <b>layer</b> in <b>pixels</b>.
+     * @return the height in <b>pixels</b>
+     */
+    @Override
+    public int getHeight ()
+    {
+        return height;
+    }
+
+    /**
+     * Returns wether the <b>layers</b> of this {@link TextureArray} have an alpha channel.
+     * @return wether the <b>layers</b> have an alpha channel
+     */
+    @Override
+    public boolean hasAlpha ()
+    {
+        return hasAlpha;
+    }
+
+    /**
+     * Returns the number of <b>layers</b> which were added.
+     * @return the number of <b>layers</b>
+     */
+    public int getLayerCount ()
+    {
+        return layerCount;
+    }
+
+    /**
+     * Returns the number of <b>layers</b> the storage was allocated for.
+     * @return the maximum number of <b>layers</b>
+     */
+    public int getCapacity ()
+    {
+        return capacity;
+    }
+
+    /**
+     * Returns the name of this {@link TextureArray}, which is its key in the {@link AssetManager}.
+     * @return the name
+     */
+    public String getName ()
+    {
+        return name;
+    }
+
+    /**
+     * Deletes this {@link TextureArray} from <b>OpenGL</b>.
+     */
+    protected void dispose ()
+    {
+        glDeleteTextures(id);
+    }
+
+    /**
+     * Returns a {@link String} representation of this {@link TextureArray} instance.
+     * @return a {@link String} representation of this {@link TextureArray} instance
+     */
+    @Override
+    public String toString ()
+    {
+        return getClass().getName()
+                + "[" + id + ", " + width + ", " + height + ", " + layerCount + "/" + capacity + ", " + name + "]";
+    }
+
+    /**
+     * Returns the <b>OpenGL identifier</b> which is used to perform operations like binding to a
+     * <b>texture slot</b> or deleting the <b>texture</b>.
+     * @return the <b>OpenGL identifier</b>
+     */
+    @Override
+    public int getId ()
+    {
+        return id;
+    }
+}
@@ -0,0 +1,253 @@
+package engine.dengine.collision;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link BroadPhase}</h2>
+ * <br>
+ * The {@link BroadPhase} class finds <b>candidate pairs</b> of objects whose fat <b>AABBs</b> overlap, using a
+ * {@link DynamicAabbTree}. Only <b>proxies</b> which were created or reinserted since the last
+ * {@link BroadPhase#updatePairs(PairCallback)} are queried, so objects which stay inside their fat <b>AABBs</b>
+ * cost nothing. As a consequence, {@link BroadPhase#updatePairs(PairCallback)} only reports <b>pairs</b> which
+ * may have started to overlap, and callers keep the reported <b>pairs</b> until
+ * {@link BroadPhase#testOverlap(int, int)} fails.
+ * <br>
+ * Every <b>pair</b> is reported once per call, with the smaller <b>proxy</b> id first.
+ */
+public final class BroadPhase
+{
+    private final DynamicAabbTree tree;
+    /** The <b>proxies</b> which were created or reinserted, where destroyed ones are set to {@link DynamicAabbTree#NULL} */
+    private int[] moveBuffer;
+    private int moveCount;
+    /** Wether a <b>proxy</b> is in the move buffer, indexed by <b>proxy</b> id */
+    private boolean[] moved;
+    /** The <b>pairs</b> found by the current {@link BroadPhase#updatePairs(PairCallback)} */
+    private long[] pairBuffer;
+    private int pairCount;
+    /** The <b>proxy</b> which is currently queried */
+    private int queryProxy;
+    private final DynamicAabbTree.QueryCallback pairQuery;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link BroadPhase.PairCallback}</h2>
+     * <br>
+     * The {@link BroadPhase.PairCallback} interface receives the <b>candidate pairs</b> found by
+     * {@link BroadPhase#updatePairs(PairCallback)}.
+     */
+    @FunctionalInterface
+    public interface PairCallback
+    {
+        /**
+         * Receives a <b>pair</b> of <b>proxies</b> whose fat <b>AABBs</b> overlap.
+         * @param proxyA the smaller <b>proxy</b> id
+         * @param proxyB the larger <b>proxy</b> id
+         */
+        void addPair (int proxyA, int proxyB);
+    }
+
+    /**
+     * Creates a new, empty {@link BroadPhase} instance with a <b>margin</b> of
+     * {@link DynamicAabbTree#DEFAULT_MARGIN}.
+     */
+    public BroadPhase ()
+    {
+        this(DynamicAabbTree.DEFAULT_MARGIN);
+    }
+
+    /**
+     * Creates a new, empty {@link BroadPhase} instance.
+     * @param margin the distance fat <b>AABBs</b> extend beyond the tight <b>AABB</b> on every side
+     */
+    public BroadPhase (float margin)
+    {
+        this.tree = new DynamicAabbTree(margin);
+        this.moveBuffer = new int[16];
+        this.moveCount = 0;
+        this.moved = new boolean[16];
+        this.pairBuffer = new long[16];
+        this.pairCount = 0;
+        this.queryProxy = DynamicAabbTree.NULL;
+        this.pairQuery = this::addCandidate;
+    }
+
+    /**
+     * Packs a <b>pair</b> of <b>proxy</b> ids into a single long, with the smaller id in the upper half.
+     * @param proxyA the first <b>proxy</b> id
+     * @param proxyB the second <b>proxy</b> id
+     * @return the packed <b>pair</b>
+     */
+    public static long pack (int proxyA, int proxyB)
+    {
+        final int min = Math.min(proxyA, proxyB);
+        final int max = Math.max(proxyA, proxyB);
+        return ((long) min << 32) | (max & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the smaller <b>proxy</b> id of a packed <b>pair</b>.
+     * @param pair the packed <b>pair</b>
+     * @return the smaller <b>proxy</b> id
+     */
+    public static int unpackA (long pair)
+    {
+        return (int) (pair >>> 32);
+    }
+
+    /**
+     * Returns the larger <b>proxy</b> id of a packed <b>pair</b>.
+     * @param pair the packed <b>pair</b>
+     * @return the larger <b>proxy</b> id
+     */
+    public static int unpackB (long pair)
+    {
+        return (int) pair;
+    }
+
+    /**
+     * Creates a <b>proxy</b>, which is queried by the next {@link BroadPhase#updatePairs(PairCallback)}.
+     * @param minX the minimum x-coordinate of the tight <b>AABB</b>
+     * @param minY the minimum y-coordinate of the tight <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the tight <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the tight <b>AABB</b>
+     * @param userData the object of the <b>proxy</b>
+     * @return the <b>proxy</b> id
+     * @see DynamicAabbTree#createProxy(float, float, float, float, Object)
+     */
+    public int createProxy (float minX, float minY, float maxX, float maxY, Object userData)
+    {
+        final int proxy = tree.createProxy(minX, minY, maxX, maxY, userData);
+        bufferMove(proxy);
+        return proxy;
+    }
+
+    /**
+     * Destroys a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     */
+    public void destroyProxy (int proxy)
+    {
+        unbufferMove(proxy);
+        tree.destroyProxy(proxy);
+    }
+
+    /**
+     * Moves a <b>proxy</b>, which is queried by the next {@link BroadPhase#updatePairs(PairCallback)} if it had
+     * to be reinserted.
+     * @param proxy the <b>proxy</b> id
+     * @param minX the minimum x-coordinate of the new tight <b>AABB</b>
+     * @param minY the minimum y-coordinate of the new tight <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the new tight <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the new tight <b>AABB</b>
+     * @param displacementX the x-distance the object moved since the last call
+     * @param displacementY the y-distance the object moved since the last call
+     * @see DynamicAabbTree#moveProxy(int, float, float, float, float, float, float)
+     */
+    public void moveProxy (int proxy, float minX, float minY, float maxX, float maxY,
+                           float displacementX, float displacementY)
+    {
+        if (tree.moveProxy(proxy, minX, minY, maxX, maxY, displacementX, displacementY)) bufferMove(proxy);
+    }
+
+    /**
+     * Forces a <b>proxy</b> to be queried by the next {@link BroadPhase#updatePairs(PairCallback)}, for example
+     * after its filter changed.
+     * @param proxy the <b>proxy</b> id
+     */
+    public void touchProxy (int proxy)
+    {
+        bufferMove(proxy);
+    }
+
+    private void bufferMove (int proxy)
+    {
+        if (proxy >= moved.length) moved = Arrays.copyOf(moved, Math.max(proxy + 1, moved.length * 2));
+        if (moved[proxy]) return;
+        moved[proxy] = true;
+
+        if (moveCount == moveBuffer.length) moveBuffer = Arrays.copyOf(moveBuffer, moveCount * 2);
+        moveBuffer[moveCount++] = proxy;
+    }
+
+    private void unbufferMove (int proxy)
+    {
+        if (proxy >= moved.length || !moved[proxy]) return;
+        moved[proxy] = false;
+        for (int i = 0; i < moveCount; i++)
+            if (moveBuffer[i] == proxy) moveBuffer[i] = DynamicAabbTree.NULL;
+    }
+
+    /**
+     * Queries all moved <b>proxies</b> and reports every <b>pair</b> with a moved <b>proxy</b> whose fat
+     * <b>AABBs</b> overlap. Afterwards no <b>proxy</b> counts as moved anymore.
+     * @param callback the {@link BroadPhase.PairCallback} which receives the <b>pairs</b>
+     */
+    public void updatePairs (PairCallback callback)
+    {
+        pairCount = 0;
+        for (int i = 0; i < moveCount; i++)
+        {
+            queryProxy = moveBuffer[i];
+            if (queryProxy == DynamicAabbTree.NULL) continue;
+            tree.query(tree.getFatMinX(queryProxy), tree.getFatMinY(queryProxy),
+                    tree.getFatMaxX(queryProxy), tree.getFatMaxY(queryProxy), pairQuery);
+        }
+
+        for (int i = 0; i < moveCount; i++)
+            if (moveBuffer[i] != DynamicAabbTree.NULL) moved[moveBuffer[i]] = false;
+        moveCount = 0;
+        queryProxy = DynamicAabbTree.NULL;
+
+        for (int i = 0; i < pairCount; i++)
+            callback.addPair(unpackA(pairBuffer[i]), unpackB(pairBuffer[i]));
+    }
+
+    private boolean addCandidate (int proxy)
+    {
+        if (proxy == queryProxy) return true;
+        // If both proxies moved, the pair is reported by the query of the smaller one
+        if (proxy < queryProxy && proxy < moved.length && moved[proxy]) return true;
+
+        if (pairCount == pairBuffer.length) pairBuffer = Arrays.copyOf(pairBuffer, pairCount * 2);
+        pairBuffer[pairCount++] = pack(queryProxy, proxy);
+        return true;
+    }
+
+    /**
+     * Checks wether the fat <b>AABBs</b> of two <b>proxies</b> overlap.
+     * @param proxyA the first <b>proxy</b> id
+     * @param proxyB the second <b>proxy</b> id
+     * @return wether the fat <b>AABBs</b> overlap
+     */
+    public boolean testOverlap (int proxyA, int proxyB)
+    {
+        return tree.testOverlap(proxyA, proxyB);
+    }
+
+    /**
+     * Returns the number of <b>proxies</b> which will be queried by the next
+     * {@link BroadPhase#updatePairs(PairCallback)}.
+     * @return the number of moved <b>proxies</b>, including destroyed ones
+     */
+    public int getMoveCount ()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Returns the {@link DynamicAabbTree} of this {@link BroadPhase}.
+     * @return the {@link DynamicAabbTree}
+     */
+    public DynamicAabbTree getTree ()
+    {
+        return tree;
+    }
+}
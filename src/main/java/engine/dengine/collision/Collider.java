@@ -0,0 +1,171 @@
+package engine.dengine.collision;
+
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.Entity;
+import engine.dengine.shapes.Shape;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Collider}</h2>
+ * <br>
+ * The {@link Collider} class is the {@link Component} which makes its {@link Entity} take part
+ * in <b>collision detection</b>. The <b>vertices</b> of its {@link Shape} are relative to the
+ * {@link Entity}, and are placed in the world by the <b>local-to-world matrix</b> of the
+ * {@link Entity}s {@link engine.dengine.ecs.Transform}.
+ * <br>
+ * Once the {@link Entity} is stored in an {@link engine.dengine.ecs.ArchetypeStore}, the
+ * {@link CollisionWorld} over the store creates a <b>proxy</b> for the {@link Collider} and keeps its world
+ * <b>AABB</b> up to date whenever the <b>world version</b> of the {@link engine.dengine.ecs.Transform} changes.
+ * <br>
+ * A {@link Collider} belongs to the <b>layers</b> whose bits are set in its <b>layer mask</b>, which queries of
+ * the {@link SpatialQuery} filter by.
+ */
+public class Collider extends Component
+{
+    /** The {@link Shape}, whose <b>vertices</b> are relative to the {@link Entity} */
+    private final Shape shape;
+    /** The center and half extents of the local <b>AABB</b> of the {@link Shape} */
+    final float localCenterX, localCenterY, localExtentX, localExtentY;
+    /** The tight world <b>AABB</b>, computed by the {@link CollisionWorld} */
+    float minX, minY, maxX, maxY;
+    /** The <b>proxy</b> of this {@link Collider} in the {@link BroadPhase} */
+    int proxy;
+    /** The <b>world version</b> {@link Collider#minX} etc. were computed for */
+    int worldVersion;
+    /** The last {@link CollisionWorld#update()} which found this {@link Collider} in the store */
+    int stamp;
+    /** The index of this {@link Collider} in the list of the {@link CollisionWorld} */
+    int index;
+    /** The <b>layer mask</b>, where every set bit is a <b>layer</b> this {@link Collider} belongs to */
+    private int layers;
+
+    /**
+     * Creates a new {@link Collider} instance.
+     * @param shape the {@link Shape}, whose <b>vertices</b> are relative to the {@link Entity}
+     */
+    public Collider (Shape shape)
+    {
+        this.shape = shape;
+
+        final float[] vertices = shape.getVertices();
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertices.length; i += 3)
+        {
+            minX = Math.min(minX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            maxX = Math.max(maxX, vertices[i]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+        }
+        this.localCenterX = (minX + maxX) * 0.5f;
+        this.localCenterY = (minY + maxY) * 0.5f;
+        this.localExtentX = (maxX - minX) * 0.5f;
+        this.localExtentY = (maxY - minY) * 0.5f;
+
+        this.proxy = DynamicAabbTree.NULL;
+        this.index = -1;
+        this.layers = 1;
+    }
+
+    /**
+     * Computes the tight world <b>AABB</b> from the local <b>AABB</b> of the {@link Shape} and a
+     * <b>local-to-world matrix</b>, by transforming the center and projecting the rotated and scaled half
+     * extents onto the axes.
+     */
+    void updateBounds (float m00, float m01, float m10, float m11, float m20, float m21)
+    {
+        final float centerX = m00 * localCenterX + m10 * localCenterY + m20;
+        final float centerY = m01 * localCenterX + m11 * localCenterY + m21;
+        final float extentX = Math.abs(m00) * localExtentX + Math.abs(m10) * localExtentY;
+        final float extentY = Math.abs(m01) * localExtentX + Math.abs(m11) * localExtentY;
+        minX = centerX - extentX;
+        minY = centerY - extentY;
+        maxX = centerX + extentX;
+        maxY = centerY + extentY;
+    }
+
+    /**
+     * Returns the {@link Shape}.
+     * @return the {@link Shape}, whose <b>vertices</b> are relative to the {@link Entity}
+     */
+    public Shape getShape ()
+    {
+        return shape;
+    }
+
+    /**
+     * Returns the <b>layer mask</b>, where every set bit is a <b>layer</b> this {@link Collider} belongs to. New
+     * {@link Collider} instances belong to the first <b>layer</b>.
+     * @return the <b>layer mask</b>
+     */
+    public int getLayers ()
+    {
+        return layers;
+    }
+
+    /**
+     * Sets the <b>layer mask</b>, where every set bit is a <b>layer</b> this {@link Collider} belongs to.
+     * @param layers the new <b>layer mask</b>
+     */
+    public void setLayers (int layers)
+    {
+        this.layers = layers;
+    }
+
+    /**
+     * Returns the <b>proxy</b> id of this {@link Collider}.
+     * @return the <b>proxy</b> id, or {@link DynamicAabbTree#NULL} if it is not in a {@link CollisionWorld}
+     */
+    public int getProxy ()
+    {
+        return proxy;
+    }
+
+    /**
+     * Returns the minimum x-coordinate of the tight world <b>AABB</b>.
+     * @return the minimum x-coordinate
+     */
+    public float getMinX ()
+    {
+        return minX;
+    }
+
+    /**
+     * Returns the minimum y-coordinate of the tight world <b>AABB</b>.
+     * @return the minimum y-coordinate
+     */
+    public float getMinY ()
+    {
+        return minY;
+    }
+
+    /**
+     * Returns the maximum x-coordinate of the tight world <b>AABB</b>.
+     * @return the maximum x-coordinate
+     */
+    public float getMaxX ()
+    {
+        return maxX;
+    }
+
+    /**
+     * Returns the maximum y-coordinate of the tight world <b>AABB</b>.
+     * @return the maximum y-coordinate
+     */
+    public float getMaxY ()
+    {
+        return maxY;
+    }
+
+    /**
+     * Returns the {@link Entity} this {@link Collider} belongs to.
+     * @return the {@link Entity}
+     */
+    public Entity getEntity ()
+    {
+        return entity;
+    }
+}
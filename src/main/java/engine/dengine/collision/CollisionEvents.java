@@ -0,0 +1,447 @@
+package engine.dengine.collision;
+
+import engine.dengine.ecs.EntityHandle;
+import org.joml.Matrix3x2f;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link CollisionEvents}</h2>
+ * <br>
+ * The {@link CollisionEvents} class reports when two {@link Collider} instances start touching, keep touching
+ * and stop touching. It keeps the state of every <b>candidate pair</b> of its {@link CollisionWorld} across
+ * <b>ticks</b> in a {@link PairMap} keyed by the packed <b>entity ids</b> of both {@link Collider} instances,
+ * and only runs the {@link NarrowPhase} on a <b>pair</b> again once one of its {@link Collider} instances moved.
+ * <br>
+ * Every {@link CollisionWorld#update()} fills three {@link CollisionEvents.EventBuffer} instances:
+ * <ul>
+ *     <li><b>begin</b> events for <b>pairs</b> which touch now but did not touch in the previous <b>tick</b>,</li>
+ *     <li><b>stay</b> events for <b>pairs</b> which touched in both <b>ticks</b>,</li>
+ *     <li><b>end</b> events for <b>pairs</b> which touched in the previous <b>tick</b> but do not touch now, or
+ *     whose {@link Collider} was removed.</li>
+ * </ul>
+ * The buffers only grow, so reporting events does not allocate. Only <b>pairs</b> with a {@link Collider} in a
+ * <b>layer</b> of a subscribed {@link CollisionEvents.Listener} or of {@link CollisionEvents#setPolledLayers(int)}
+ * are tracked, all other <b>pairs</b> cost nothing. <b>Listeners</b> only receive the <b>begin</b> and
+ * <b>end</b> events, as only these change the state of a <b>pair</b>, while <b>stay</b> events are read from
+ * {@link CollisionEvents#getStayEvents()}. The <b>listeners</b> are called after all events of a <b>tick</b>
+ * were collected, so they may add and remove <b>entities</b>, which takes effect in the next <b>tick</b>.
+ */
+public final class CollisionEvents
+{
+    private final CollisionWorld world;
+    private final PairMap map;
+    /** The packed <b>entity id pairs</b> of the tracked <b>pairs</b>, in no particular order */
+    private long[] keys;
+    /** The <b>entity handles</b> of both sides, which notice when an <b>entity id</b> was reused */
+    private long[] handlesA, handlesB;
+    private Collider[] collidersA, collidersB;
+    /** The <b>world versions</b> of both sides the touching state was computed for */
+    private int[] versionsA, versionsB;
+    private boolean[] touching;
+    /** The last {@link CollisionEvents#update()} which found the <b>pair</b> */
+    private int[] stamps;
+    private int entryCount;
+    private int stamp;
+
+    private final EventBuffer beginEvents;
+    private final EventBuffer stayEvents;
+    private final EventBuffer endEvents;
+
+    /** The <b>layer masks</b> of the subscriptions, replaced on every change so dispatching never sees a change */
+    private int[] subscriptionLayers;
+    private Listener[] listeners;
+    private int polledLayers;
+    /** All <b>layers</b> which are subscribed or polled */
+    private int trackedLayers;
+
+    private final NarrowPhase narrowPhase;
+    private final Matrix3x2f matrixA;
+    private final Matrix3x2f matrixB;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link CollisionEvents.Listener}</h2>
+     * <br>
+     * The {@link CollisionEvents.Listener} interface receives the <b>begin</b> and <b>end</b> events of
+     * {@link Collider} instances in the <b>layers</b> it is subscribed to. A {@link engine.dengine.ecs.Component}
+     * implements it and subscribes itself using {@link CollisionEvents#subscribe(int, Listener)}.
+     */
+    public interface Listener
+    {
+        /**
+         * Receives a <b>pair</b> which started touching.
+         * @param self the {@link Collider} in a subscribed <b>layer</b>
+         * @param other the other {@link Collider}
+         */
+        default void onCollisionBegin (Collider self, Collider other) {}
+
+        /**
+         * Receives a <b>pair</b> which stopped touching, or of which a {@link Collider} was removed.
+         * @param self the {@link Collider} in a subscribed <b>layer</b>
+         * @param other the other {@link Collider}
+         */
+        default void onCollisionEnd (Collider self, Collider other) {}
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link CollisionEvents.EventBuffer}</h2>
+     * <br>
+     * The {@link CollisionEvents.EventBuffer} class stores the events of one kind of a <b>tick</b> as two
+     * arrays of {@link Collider} instances, where the first one belongs to the <b>entity</b> with the smaller
+     * <b>entity id</b>. It is cleared at the start of every {@link CollisionWorld#update()} and only grows.
+     */
+    public static final class EventBuffer
+    {
+        private Collider[] collidersA = new Collider[16];
+        private Collider[] collidersB = new Collider[16];
+        private int count;
+
+        private void add (Collider a, Collider b)
+        {
+            if (count == collidersA.length)
+            {
+                collidersA = Arrays.copyOf(collidersA, count * 2);
+                collidersB = Arrays.copyOf(collidersB, count * 2);
+            }
+            collidersA[count] = a;
+            collidersB[count++] = b;
+        }
+
+        private void clear ()
+        {
+            // Released, so removed colliders are not kept alive until the buffer is filled again
+            Arrays.fill(collidersA, 0, count, null);
+            Arrays.fill(collidersB, 0, count, null);
+            count = 0;
+        }
+
+        /**
+         * Returns the number of events.
+         * @return the number of events
+         */
+        public int getCount ()
+        {
+            return count;
+        }
+
+        /**
+         * Returns the first {@link Collider} of an event.
+         * @param index the index of the event
+         * @return the {@link Collider} of the <b>entity</b> with the smaller <b>entity id</b>
+         */
+        public Collider getColliderA (int index)
+        {
+            return collidersA[index];
+        }
+
+        /**
+         * Returns the second {@link Collider} of an event.
+         * @param index the index of the event
+         * @return the {@link Collider} of the <b>entity</b> with the larger <b>entity id</b>
+         */
+        public Collider getColliderB (int index)
+        {
+            return collidersB[index];
+        }
+    }
+
+    /**
+     * Creates a new {@link CollisionEvents} instance without subscriptions.
+     * @param world the {@link CollisionWorld} whose <b>candidate pairs</b> are tracked
+     */
+    CollisionEvents (CollisionWorld world)
+    {
+        this.world = world;
+        this.map = new PairMap();
+        this.keys = new long[16];
+        this.handlesA = new long[16];
+        this.handlesB = new long[16];
+        this.collidersA = new Collider[16];
+        this.collidersB = new Collider[16];
+        this.versionsA = new int[16];
+        this.versionsB = new int[16];
+        this.touching = new boolean[16];
+        this.stamps = new int[16];
+        this.beginEvents = new EventBuffer();
+        this.stayEvents = new EventBuffer();
+        this.endEvents = new EventBuffer();
+        this.subscriptionLayers = new int[0];
+        this.listeners = new Listener[0];
+        this.narrowPhase = new NarrowPhase();
+        this.matrixA = new Matrix3x2f();
+        this.matrixB = new Matrix3x2f();
+    }
+
+    /**
+     * Updates the state of every tracked <b>pair</b>, fills the {@link CollisionEvents.EventBuffer} instances and
+     * calls the <b>listeners</b>. Called by {@link CollisionWorld#update()} once the <b>candidate pairs</b> are up
+     * to date.
+     */
+    void update ()
+    {
+        beginEvents.clear();
+        stayEvents.clear();
+        endEvents.clear();
+        if (trackedLayers == 0 && entryCount == 0) return;
+        stamp++;
+
+        for (int i = 0; i < world.getPairCount(); i++)
+        {
+            final long pair = world.getPair(i);
+            Collider a = world.getCollider(BroadPhase.unpackA(pair));
+            Collider b = world.getCollider(BroadPhase.unpackB(pair));
+            if (((a.getLayers() | b.getLayers()) & trackedLayers) == 0) continue;
+
+            long handleA = a.getEntity().getHandle(), handleB = b.getEntity().getHandle();
+            if (EntityHandle.index(handleA) > EntityHandle.index(handleB))
+            {
+                final Collider swap = a;
+                a = b;
+                b = swap;
+                final long swapHandle = handleA;
+                handleA = handleB;
+                handleB = swapHandle;
+            }
+
+            final long key = BroadPhase.pack(EntityHandle.index(handleA), EntityHandle.index(handleB));
+            int entry = map.get(key);
+            if (entry == PairMap.MISSING) entry = addEntry(key);
+            else if (handlesA[entry] != handleA || handlesB[entry] != handleB || collidersA[entry] != a ||
+                    collidersB[entry] != b)
+            {
+                // An entity id was reused or a collider replaced, so the old pair ended
+                if (touching[entry]) endEvents.add(collidersA[entry], collidersB[entry]);
+                touching[entry] = false;
+                versionsA[entry] = Integer.MIN_VALUE;
+            }
+            handlesA[entry] = handleA;
+            handlesB[entry] = handleB;
+            collidersA[entry] = a;
+            collidersB[entry] = b;
+            stamps[entry] = stamp;
+
+            final boolean wasTouching = touching[entry];
+            if (versionsA[entry] != a.worldVersion || versionsB[entry] != b.worldVersion)
+            {
+                versionsA[entry] = a.worldVersion;
+                versionsB[entry] = b.worldVersion;
+                touching[entry] = narrowPhase.overlaps(
+                        a.getShape(), a.getEntity().getTransform().getWorldMatrix(matrixA),
+                        b.getShape(), b.getEntity().getTransform().getWorldMatrix(matrixB));
+            }
+
+            if (touching[entry]) (wasTouching ? stayEvents : beginEvents).add(a, b);
+            else if (wasTouching) endEvents.add(a, b);
+        }
+
+        // Pairs whose fat AABBs separated or whose collider was removed
+        for (int i = entryCount - 1; i >= 0; i--)
+        {
+            if (stamps[i] == stamp) continue;
+            if (touching[i]) endEvents.add(collidersA[i], collidersB[i]);
+            removeEntry(i);
+        }
+
+        dispatch();
+    }
+
+    private int addEntry (long key)
+    {
+        if (entryCount == keys.length) reserve(entryCount * 2);
+        final int entry = entryCount++;
+        keys[entry] = key;
+        touching[entry] = false;
+        // Never equal to a world version, so the pair is tested
+        versionsA[entry] = Integer.MIN_VALUE;
+        versionsB[entry] = Integer.MIN_VALUE;
+        map.put(key, entry);
+        return entry;
+    }
+
+    private void removeEntry (int entry)
+    {
+        map.remove(keys[entry]);
+        final int last = --entryCount;
+        if (entry != last)
+        {
+            keys[entry] = keys[last];
+            handlesA[entry] = handlesA[last];
+            handlesB[entry] = handlesB[last];
+            collidersA[entry] = collidersA[last];
+            collidersB[entry] = collidersB[last];
+            versionsA[entry] = versionsA[last];
+            versionsB[entry] = versionsB[last];
+            touching[entry] = touching[last];
+            stamps[entry] = stamps[last];
+            map.put(keys[entry], entry);
+        }
+        collidersA[last] = null;
+        collidersB[last] = null;
+    }
+
+    private void reserve (int capacity)
+    {
+        keys = Arrays.copyOf(keys, capacity);
+        handlesA = Arrays.copyOf(handlesA, capacity);
+        handlesB = Arrays.copyOf(handlesB, capacity);
+        collidersA = Arrays.copyOf(collidersA, capacity);
+        collidersB = Arrays.copyOf(collidersB, capacity);
+        versionsA = Arrays.copyOf(versionsA, capacity);
+        versionsB = Arrays.copyOf(versionsB, capacity);
+        touching = Arrays.copyOf(touching, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+    }
+
+    /**
+     * Calls every <b>listener</b> once for every side of a <b>begin</b> or <b>end</b> event whose {@link Collider}
+     * is in a subscribed <b>layer</b>.
+     */
+    private void dispatch ()
+    {
+        final int[] layers = subscriptionLayers;
+        final Listener[] listeners = this.listeners;
+        if (listeners.length == 0) return;
+
+        for (int i = 0; i < beginEvents.count; i++)
+        {
+            final Collider a = beginEvents.collidersA[i], b = beginEvents.collidersB[i];
+            for (int j = 0; j < listeners.length; j++)
+            {
+                if ((a.getLayers() & layers[j]) != 0) listeners[j].onCollisionBegin(a, b);
+                if ((b.getLayers() & layers[j]) != 0) listeners[j].onCollisionBegin(b, a);
+            }
+        }
+        for (int i = 0; i < endEvents.count; i++)
+        {
+            final Collider a = endEvents.collidersA[i], b = endEvents.collidersB[i];
+            for (int j = 0; j < listeners.length; j++)
+            {
+                if ((a.getLayers() & layers[j]) != 0) listeners[j].onCollisionEnd(a, b);
+                if ((b.getLayers() & layers[j]) != 0) listeners[j].onCollisionEnd(b, a);
+            }
+        }
+    }
+
+    /**
+     * Subscribes a {@link CollisionEvents.Listener} to the <b>begin</b> and <b>end</b> events of the
+     * {@link Collider} instances in a set of <b>layers</b>. Subscribing does allocate, so it should be done once,
+     * for example in {@link engine.dengine.ecs.Component#init()}, and not every <b>tick</b>.
+     * @param layers the <b>layer mask</b>
+     * @param listener the {@link CollisionEvents.Listener}
+     * @throws IllegalArgumentException if the <b>layer mask</b> is 0
+     */
+    public void subscribe (int layers, Listener listener)
+    {
+        if (layers == 0) throw new IllegalArgumentException("Tried to subscribe to no layers");
+
+        final int count = listeners.length;
+        final int[] newLayers = Arrays.copyOf(subscriptionLayers, count + 1);
+        final Listener[] newListeners = Arrays.copyOf(listeners, count + 1);
+        newLayers[count] = layers;
+        newListeners[count] = listener;
+        subscriptionLayers = newLayers;
+        listeners = newListeners;
+        updateTrackedLayers();
+    }
+
+    /**
+     * Removes all subscriptions of a {@link CollisionEvents.Listener}.
+     * @param listener the {@link CollisionEvents.Listener}
+     */
+    public void unsubscribe (Listener listener)
+    {
+        int count = 0;
+        for (Listener subscribed : listeners)
+            if (subscribed != listener) count++;
+        if (count == listeners.length) return;
+
+        final int[] newLayers = new int[count];
+        final Listener[] newListeners = new Listener[count];
+        count = 0;
+        for (int i = 0; i < listeners.length; i++)
+        {
+            if (listeners[i] == listener) continue;
+            newLayers[count] = subscriptionLayers[i];
+            newListeners[count++] = listeners[i];
+        }
+        subscriptionLayers = newLayers;
+        listeners = newListeners;
+        updateTrackedLayers();
+    }
+
+    /**
+     * Sets the <b>layers</b> whose events are collected in the {@link CollisionEvents.EventBuffer} instances
+     * without a subscribed {@link CollisionEvents.Listener}, so they can be read every <b>tick</b> instead.
+     * @param layers the <b>layer mask</b>, or 0 to only track subscribed <b>layers</b>
+     */
+    public void setPolledLayers (int layers)
+    {
+        this.polledLayers = layers;
+        updateTrackedLayers();
+    }
+
+    /**
+     * Returns the <b>layers</b> whose events are collected without a subscribed {@link CollisionEvents.Listener}.
+     * @return the <b>layer mask</b>
+     */
+    public int getPolledLayers ()
+    {
+        return polledLayers;
+    }
+
+    private void updateTrackedLayers ()
+    {
+        int layers = polledLayers;
+        for (int subscribed : subscriptionLayers)
+            layers |= subscribed;
+        trackedLayers = layers;
+    }
+
+    /**
+     * Returns the <b>begin</b> events of the last {@link CollisionWorld#update()}.
+     * @return the {@link CollisionEvents.EventBuffer}
+     */
+    public EventBuffer getBeginEvents ()
+    {
+        return beginEvents;
+    }
+
+    /**
+     * Returns the <b>stay</b> events of the last {@link CollisionWorld#update()}.
+     * @return the {@link CollisionEvents.EventBuffer}
+     */
+    public EventBuffer getStayEvents ()
+    {
+        return stayEvents;
+    }
+
+    /**
+     * Returns the <b>end</b> events of the last {@link CollisionWorld#update()}.
+     * @return the {@link CollisionEvents.EventBuffer}
+     */
+    public EventBuffer getEndEvents ()
+    {
+        return endEvents;
+    }
+
+    /**
+     * Returns the number of tracked <b>pairs</b>, touching or not.
+     * @return the number of tracked <b>pairs</b>
+     */
+    public int getPairCount ()
+    {
+        return entryCount;
+    }
+}
@@ -0,0 +1,328 @@
+package engine.dengine.collision;
+
+import engine.dengine.ecs.Archetype;
+import engine.dengine.ecs.ArchetypeStore;
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.ComponentMask;
+import engine.dengine.ecs.Query;
+import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link CollisionWorld}</h2>
+ * <br>
+ * The {@link CollisionWorld} class keeps the {@link BroadPhase} of all {@link Collider} instances of an
+ * {@link ArchetypeStore} up to date and maintains the set of <b>candidate pairs</b>, which are the <b>pairs</b> of
+ * {@link Collider} instances whose fat <b>AABBs</b> overlap. The <b>candidate pairs</b> are the input of the
+ * <b>narrow phase</b>.
+ * <br>
+ * {@link CollisionWorld#update()} is called once per <b>tick</b>, after the <b>world matrices</b> were updated.
+ * It only recomputes the <b>AABB</b> of a {@link Collider} whose <b>world version</b> changed, and only queries
+ * the {@link DynamicAabbTree} for {@link Collider} instances which left their fat <b>AABB</b>. <b>Pairs</b>
+ * persist across <b>ticks</b> in an <b>open addressing</b> hash set until their fat <b>AABBs</b> separate or one
+ * of the {@link Collider} instances is removed from the store. {@link CollisionWorld#collide(Collider, Collider,
+ * Manifold)} runs the {@link NarrowPhase} on a <b>candidate pair</b>, and the {@link SpatialQuery} of
+ * {@link CollisionWorld#getSpatialQuery()} answers raycasts and region queries. The {@link CollisionEvents} of
+ * {@link CollisionWorld#getEvents()} report when <b>pairs</b> start and stop touching.
+ */
+public final class CollisionWorld
+{
+    private final ArchetypeStore store;
+    private final Query query;
+    private final BroadPhase broadPhase;
+    private final SpatialQuery spatialQuery;
+    private final CollisionEvents events;
+    /** All {@link Collider} instances with a <b>proxy</b> */
+    private final List<Collider> colliders;
+    /** The {@link Collider} instances found by the current {@link CollisionWorld#update()} without a <b>proxy</b> */
+    private final List<Collider> created;
+    private final PairSet pairSet;
+    /** The packed <b>candidate pairs</b>, in no particular order */
+    private long[] pairs;
+    private int pairCount;
+    private int stamp;
+    private final BroadPhase.PairCallback pairCallback;
+    private final NarrowPhase narrowPhase;
+    private final Matrix3x2f matrixA;
+    private final Matrix3x2f matrixB;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link CollisionWorld.PairConsumer}</h2>
+     * <br>
+     * The {@link CollisionWorld.PairConsumer} interface receives the <b>candidate pairs</b> of
+     * {@link CollisionWorld#forEachPair(PairConsumer)}.
+     */
+    @FunctionalInterface
+    public interface PairConsumer
+    {
+        /**
+         * Receives a <b>candidate pair</b>.
+         * @param a the {@link Collider} with the smaller <b>proxy</b> id
+         * @param b the {@link Collider} with the larger <b>proxy</b> id
+         */
+        void accept (Collider a, Collider b);
+    }
+
+    /**
+     * Creates a new {@link CollisionWorld} instance with a <b>margin</b> of {@link DynamicAabbTree#DEFAULT_MARGIN}.
+     * @param store the {@link ArchetypeStore} whose {@link Collider} instances are tracked
+     */
+    public CollisionWorld (ArchetypeStore store)
+    {
+        this(store, DynamicAabbTree.DEFAULT_MARGIN);
+    }
+
+    /**
+     * Creates a new {@link CollisionWorld} instance.
+     * @param store the {@link ArchetypeStore} whose {@link Collider} instances are tracked
+     * @param margin the distance fat <b>AABBs</b> extend beyond the tight <b>AABB</b> on every side
+     */
+    public CollisionWorld (ArchetypeStore store, float margin)
+    {
+        this.store = store;
+        this.query = store.query(ComponentMask.of(Collider.class), ComponentMask.EMPTY);
+        this.broadPhase = new BroadPhase(margin);
+        this.spatialQuery = new SpatialQuery(broadPhase.getTree());
+        this.events = new CollisionEvents(this);
+        this.colliders = new ArrayList<>();
+        this.created = new ArrayList<>();
+        this.pairSet = new PairSet();
+        this.pairs = new long[64];
+        this.pairCount = 0;
+        this.stamp = 0;
+        this.pairCallback = this::addPair;
+        this.narrowPhase = new NarrowPhase();
+        this.matrixA = new Matrix3x2f();
+        this.matrixB = new Matrix3x2f();
+    }
+
+    /**
+     * Synchronizes the {@link BroadPhase} with the store and updates the <b>candidate pairs</b>. New
+     * {@link Collider} instances get a <b>proxy</b>, the <b>AABBs</b> of moved ones are recomputed and removed
+     * ones lose their <b>proxy</b> and all their <b>pairs</b>. Afterwards the {@link CollisionEvents} report the
+     * <b>pairs</b> which started or stopped touching.
+     */
+    public void update ()
+    {
+        stamp++;
+        syncColliders();
+        destroyStaleProxies();
+        prunePairs();
+
+        for (Collider collider : created)
+        {
+            collider.proxy = broadPhase.createProxy(collider.minX, collider.minY, collider.maxX, collider.maxY,
+                    collider);
+            collider.index = colliders.size();
+            colliders.add(collider);
+        }
+        created.clear();
+
+        broadPhase.updatePairs(pairCallback);
+        events.update();
+    }
+
+    private void syncColliders ()
+    {
+        for (int i = 0; i < query.getArchetypeCount(); i++)
+        {
+            final Archetype archetype = query.getArchetype(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                final Component[] column = chunk.getColumn(Collider.class);
+                final float[] m00 = chunk.getWorldM00(), m01 = chunk.getWorldM01();
+                final float[] m10 = chunk.getWorldM10(), m11 = chunk.getWorldM11();
+                final float[] m20 = chunk.getWorldM20(), m21 = chunk.getWorldM21();
+
+                for (int row = 0; row < chunk.size(); row++)
+                {
+                    final Collider collider = (Collider) column[row];
+                    collider.stamp = stamp;
+
+                    final int worldVersion = chunk.getWorldVersion(row);
+                    if (collider.proxy == DynamicAabbTree.NULL)
+                    {
+                        collider.updateBounds(m00[row], m01[row], m10[row], m11[row], m20[row], m21[row]);
+                        collider.worldVersion = worldVersion;
+                        created.add(collider);
+                        continue;
+                    }
+                    if (collider.worldVersion == worldVersion) continue;
+
+                    final float oldCenterX = collider.minX + collider.maxX;
+                    final float oldCenterY = collider.minY + collider.maxY;
+                    collider.updateBounds(m00[row], m01[row], m10[row], m11[row], m20[row], m21[row]);
+                    collider.worldVersion = worldVersion;
+                    broadPhase.moveProxy(collider.proxy, collider.minX, collider.minY, collider.maxX, collider.maxY,
+                            (collider.minX + collider.maxX - oldCenterX) * 0.5f,
+                            (collider.minY + collider.maxY - oldCenterY) * 0.5f);
+                }
+            }
+        }
+    }
+
+    private void destroyStaleProxies ()
+    {
+        for (int i = colliders.size() - 1; i >= 0; i--)
+        {
+            final Collider collider = colliders.get(i);
+            if (collider.stamp == stamp) continue;
+
+            broadPhase.destroyProxy(collider.proxy);
+            collider.proxy = DynamicAabbTree.NULL;
+            collider.index = -1;
+
+            // Swap remove
+            final Collider last = colliders.remove(colliders.size() - 1);
+            if (last != collider)
+            {
+                colliders.set(i, last);
+                last.index = i;
+            }
+        }
+    }
+
+    private void prunePairs ()
+    {
+        final DynamicAabbTree tree = broadPhase.getTree();
+        for (int i = 0; i < pairCount; i++)
+        {
+            final long pair = pairs[i];
+            final int a = BroadPhase.unpackA(pair);
+            final int b = BroadPhase.unpackB(pair);
+            if (tree.isProxy(a) && tree.isProxy(b) && tree.testOverlap(a, b)) continue;
+
+            pairSet.remove(pair);
+            pairs[i--] = pairs[--pairCount];
+        }
+    }
+
+    private void addPair (int proxyA, int proxyB)
+    {
+        final long pair = BroadPhase.pack(proxyA, proxyB);
+        if (!pairSet.add(pair)) return;
+
+        if (pairCount == pairs.length) pairs = Arrays.copyOf(pairs, pairCount * 2);
+        pairs[pairCount++] = pair;
+    }
+
+    /**
+     * Passes every <b>candidate pair</b> to a {@link CollisionWorld.PairConsumer}.
+     * @param consumer the {@link CollisionWorld.PairConsumer}
+     */
+    public void forEachPair (PairConsumer consumer)
+    {
+        final DynamicAabbTree tree = broadPhase.getTree();
+        for (int i = 0; i < pairCount; i++)
+        {
+            final long pair = pairs[i];
+            consumer.accept((Collider) tree.getUserData(BroadPhase.unpackA(pair)),
+                    (Collider) tree.getUserData(BroadPhase.unpackB(pair)));
+        }
+    }
+
+    /**
+     * Tests two {@link Collider} instances with the {@link NarrowPhase}, using the current
+     * <b>local-to-world matrices</b> of their {@link engine.dengine.ecs.Entity} instances.
+     * @param a the first {@link Collider}
+     * @param b the second {@link Collider}
+     * @param manifold the {@link Manifold} which is written to, whose <b>normal</b> points from <b>a</b> to <b>b</b>
+     * @return wether the {@link Shape} instances of the {@link Collider} instances overlap or touch
+     * @see NarrowPhase#collide(Shape, org.joml.Matrix3x2fc, Shape, org.joml.Matrix3x2fc, Manifold)
+     */
+    public boolean collide (Collider a, Collider b, Manifold manifold)
+    {
+        return narrowPhase.collide(a.getShape(), a.getEntity().getTransform().getWorldMatrix(matrixA),
+                b.getShape(), b.getEntity().getTransform().getWorldMatrix(matrixB), manifold);
+    }
+
+    /**
+     * Returns the packed <b>candidate pair</b> at an index. Together with {@link CollisionWorld#getPairCount()},
+     * this allows iterating the <b>candidate pairs</b> without a callback.
+     * @param index the index
+     * @return the packed <b>pair</b>, see {@link BroadPhase#unpackA(long)} and {@link BroadPhase#unpackB(long)}
+     */
+    public long getPair (int index)
+    {
+        return pairs[index];
+    }
+
+    /**
+     * Returns the number of <b>candidate pairs</b>.
+     * @return the number of <b>candidate pairs</b>
+     */
+    public int getPairCount ()
+    {
+        return pairCount;
+    }
+
+    /**
+     * Returns the {@link Collider} of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the {@link Collider}
+     */
+    public Collider getCollider (int proxy)
+    {
+        return (Collider) broadPhase.getTree().getUserData(proxy);
+    }
+
+    /**
+     * Returns the number of {@link Collider} instances with a <b>proxy</b>.
+     * @return the number of {@link Collider} instances
+     */
+    public int getColliderCount ()
+    {
+        return colliders.size();
+    }
+
+    /**
+     * Returns the {@link BroadPhase}.
+     * @return the {@link BroadPhase}
+     */
+    public BroadPhase getBroadPhase ()
+    {
+        return broadPhase;
+    }
+
+    /**
+     * Returns the {@link SpatialQuery} over the {@link Collider} instances of this {@link CollisionWorld}.
+     * @return the {@link SpatialQuery}
+     */
+    public SpatialQuery getSpatialQuery ()
+    {
+        return spatialQuery;
+    }
+
+    /**
+     * Returns the {@link CollisionEvents}, which report when <b>pairs</b> of this {@link CollisionWorld} start
+     * and stop touching.
+     * @return the {@link CollisionEvents}
+     */
+    public CollisionEvents getEvents ()
+    {
+        return events;
+    }
+
+    /**
+     * Returns the {@link ArchetypeStore} whose {@link Collider} instances are tracked.
+     * @return the {@link ArchetypeStore}
+     */
+    public ArchetypeStore getStore ()
+    {
+        return store;
+    }
+}
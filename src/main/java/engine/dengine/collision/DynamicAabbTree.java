@@ -0,0 +1,806 @@
+package engine.dengine.collision;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link DynamicAabbTree}</h2>
+ * <br>
+ * The {@link DynamicAabbTree} class is a <b>bounding volume hierarchy</b> of axis aligned bounding boxes
+ * (<b>AABBs</b>), which is used to find overlapping <b>proxies</b> without testing every pair. Every leaf is a
+ * <b>proxy</b>, whose <b>AABB</b> is the tight <b>AABB</b> of an object fattened by a <b>margin</b>, so objects
+ * can move a little without the tree having to be changed. If an object leaves its fat <b>AABB</b>, its
+ * <b>proxy</b> is reinserted with an <b>AABB</b> which is additionally extended in the direction of movement.
+ * <br>
+ * Leaves are inserted next to the sibling which increases the total perimeter the least, and the tree is kept
+ * balanced using <b>rotations</b>, so queries run in <b>O(log n)</b>. All nodes are stored in primitive arrays,
+ * indexed by their id, and freed nodes are reused, so <b>proxy</b> ids stay stable for the lifetime of a
+ * <b>proxy</b>.
+ * <br>
+ * The tree itself is not thread-safe. Queries without a {@link DynamicAabbTree.Stack} use a traversal stack owned
+ * by the tree, so they must not run concurrently with each other. Queries and raycasts with a caller-owned
+ * {@link DynamicAabbTree.Stack} only read the tree, so they may run concurrently with each other, but never
+ * concurrently with changes.
+ */
+public final class DynamicAabbTree
+{
+    /** The id which represents no node */
+    public static final int NULL = -1;
+    /** The default distance fat <b>AABBs</b> extend beyond the tight <b>AABB</b> on every side */
+    public static final float DEFAULT_MARGIN = 0.1f;
+    /** The factor the displacement of a moved object is multiplied with when extending its fat <b>AABB</b> */
+    public static final float DISPLACEMENT_MULTIPLIER = 4f;
+
+    private float[] minX, minY, maxX, maxY;
+    /** The parent of a node, or the next free node if the node is free */
+    private int[] parent;
+    private int[] child1, child2;
+    /** The height of a node, where leaves have a height of 0 and free nodes a height of -1 */
+    private int[] height;
+    private Object[] userData;
+
+    private int root;
+    private int capacity;
+    private int nodeCount;
+    private int freeList;
+    private int proxyCount;
+    private final float margin;
+    private final Stack stack;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link DynamicAabbTree.QueryCallback}</h2>
+     * <br>
+     * The {@link DynamicAabbTree.QueryCallback} interface receives the <b>proxies</b> found by
+     * {@link DynamicAabbTree#query(float, float, float, float, QueryCallback)}.
+     */
+    @FunctionalInterface
+    public interface QueryCallback
+    {
+        /**
+         * Receives a <b>proxy</b> whose fat <b>AABB</b> overlaps the queried <b>AABB</b>.
+         * @param proxy the <b>proxy</b> id
+         * @return wether the query should continue
+         */
+        boolean report (int proxy);
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link DynamicAabbTree.RaycastCallback}</h2>
+     * <br>
+     * The {@link DynamicAabbTree.RaycastCallback} interface receives the <b>proxies</b> found by
+     * {@link DynamicAabbTree#raycast(float, float, float, float, float, RaycastCallback, Stack)}.
+     */
+    @FunctionalInterface
+    public interface RaycastCallback
+    {
+        /**
+         * Receives a <b>proxy</b> whose fat <b>AABB</b> is hit by the ray before the current maximum fraction.
+         * @param proxy the <b>proxy</b> id
+         * @param maxFraction the current maximum fraction of the ray
+         * @return a negative value to ignore the <b>proxy</b>, 0 to end the raycast, or the new maximum fraction,
+         * where returning <b>maxFraction</b> continues the raycast unchanged
+         */
+        float report (int proxy, float maxFraction);
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link DynamicAabbTree.Stack}</h2>
+     * <br>
+     * The {@link DynamicAabbTree.Stack} class is the traversal stack of queries and raycasts. Every thread which
+     * queries a {@link DynamicAabbTree} concurrently needs its own {@link DynamicAabbTree.Stack}. It grows with
+     * the height of the tree, so it stops allocating after the first queries.
+     */
+    public static final class Stack
+    {
+        private int[] nodes;
+
+        /**
+         * Creates a new, empty {@link DynamicAabbTree.Stack} instance.
+         */
+        public Stack ()
+        {
+            this.nodes = new int[64];
+        }
+
+        private int[] grow ()
+        {
+            return nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+    }
+
+    /**
+     * Creates a new, empty {@link DynamicAabbTree} instance with a <b>margin</b> of {@link #DEFAULT_MARGIN}.
+     */
+    public DynamicAabbTree ()
+    {
+        this(DEFAULT_MARGIN);
+    }
+
+    /**
+     * Creates a new, empty {@link DynamicAabbTree} instance.
+     * @param margin the distance fat <b>AABBs</b> extend beyond the tight <b>AABB</b> on every side
+     */
+    public DynamicAabbTree (float margin)
+    {
+        this.margin = margin;
+        this.root = NULL;
+        this.capacity = 0;
+        this.nodeCount = 0;
+        this.proxyCount = 0;
+        this.freeList = NULL;
+        this.stack = new Stack();
+        this.minX = new float[0];
+        this.minY = new float[0];
+        this.maxX = new float[0];
+        this.maxY = new float[0];
+        this.parent = new int[0];
+        this.child1 = new int[0];
+        this.child2 = new int[0];
+        this.height = new int[0];
+        this.userData = new Object[0];
+        grow(16);
+    }
+
+    private void grow (int newCapacity)
+    {
+        minX = Arrays.copyOf(minX, newCapacity);
+        minY = Arrays.copyOf(minY, newCapacity);
+        maxX = Arrays.copyOf(maxX, newCapacity);
+        maxY = Arrays.copyOf(maxY, newCapacity);
+        parent = Arrays.copyOf(parent, newCapacity);
+        child1 = Arrays.copyOf(child1, newCapacity);
+        child2 = Arrays.copyOf(child2, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        userData = Arrays.copyOf(userData, newCapacity);
+
+        // Link the new nodes into the free list
+        for (int i = capacity; i < newCapacity; i++)
+        {
+            parent[i] = i + 1 < newCapacity ? i + 1 : freeList;
+            height[i] = -1;
+        }
+        freeList = capacity;
+        capacity = newCapacity;
+    }
+
+    private int allocateNode ()
+    {
+        if (freeList == NULL) grow(capacity * 2);
+
+        final int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        userData[node] = null;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode (int node)
+    {
+        parent[node] = freeList;
+        height[node] = -1;
+        userData[node] = null;
+        freeList = node;
+        nodeCount--;
+    }
+
+    /**
+     * Creates a <b>proxy</b> for an object.
+     * @param minX the minimum x-coordinate of the tight <b>AABB</b>
+     * @param minY the minimum y-coordinate of the tight <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the tight <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the tight <b>AABB</b>
+     * @param userData the object, which is returned by {@link DynamicAabbTree#getUserData(int)}
+     * @return the <b>proxy</b> id
+     */
+    public int createProxy (float minX, float minY, float maxX, float maxY, Object userData)
+    {
+        final int proxy = allocateNode();
+        this.minX[proxy] = minX - margin;
+        this.minY[proxy] = minY - margin;
+        this.maxX[proxy] = maxX + margin;
+        this.maxY[proxy] = maxY + margin;
+        this.userData[proxy] = userData;
+        insertLeaf(proxy);
+        proxyCount++;
+        return proxy;
+    }
+
+    /**
+     * Destroys a <b>proxy</b>. Its id may be reused by the next created <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     */
+    public void destroyProxy (int proxy)
+    {
+        checkProxy(proxy);
+        removeLeaf(proxy);
+        freeNode(proxy);
+        proxyCount--;
+    }
+
+    /**
+     * Moves a <b>proxy</b>. Nothing happens if the new tight <b>AABB</b> is still contained in the fat
+     * <b>AABB</b> and the fat <b>AABB</b> is not much larger than it would be if newly created. Otherwise the
+     * <b>proxy</b> is reinserted with a fat <b>AABB</b> extended by the displacement times
+     * {@link #DISPLACEMENT_MULTIPLIER}.
+     * @param proxy the <b>proxy</b> id
+     * @param minX the minimum x-coordinate of the new tight <b>AABB</b>
+     * @param minY the minimum y-coordinate of the new tight <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the new tight <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the new tight <b>AABB</b>
+     * @param displacementX the x-distance the object moved since the last call
+     * @param displacementY the y-distance the object moved since the last call
+     * @return wether the <b>proxy</b> was reinserted
+     */
+    public boolean moveProxy (int proxy, float minX, float minY, float maxX, float maxY,
+                              float displacementX, float displacementY)
+    {
+        checkProxy(proxy);
+
+        float fatMinX = minX - margin, fatMinY = minY - margin;
+        float fatMaxX = maxX + margin, fatMaxY = maxY + margin;
+        final float dx = displacementX * DISPLACEMENT_MULTIPLIER;
+        final float dy = displacementY * DISPLACEMENT_MULTIPLIER;
+        if (dx < 0) fatMinX += dx;
+        else fatMaxX += dx;
+        if (dy < 0) fatMinY += dy;
+        else fatMaxY += dy;
+
+        if (this.minX[proxy] <= minX && this.minY[proxy] <= minY
+                && this.maxX[proxy] >= maxX && this.maxY[proxy] >= maxY)
+        {
+            // Still contained, only reinsert if the fat AABB is far larger than needed, e.g. after a fast move
+            final float hugeMargin = 4 * margin;
+            if (this.minX[proxy] >= fatMinX - hugeMargin && this.minY[proxy] >= fatMinY - hugeMargin
+                    && this.maxX[proxy] <= fatMaxX + hugeMargin && this.maxY[proxy] <= fatMaxY + hugeMargin)
+                return false;
+        }
+
+        removeLeaf(proxy);
+        this.minX[proxy] = fatMinX;
+        this.minY[proxy] = fatMinY;
+        this.maxX[proxy] = fatMaxX;
+        this.maxY[proxy] = fatMaxY;
+        insertLeaf(proxy);
+        return true;
+    }
+
+    private void checkProxy (int proxy)
+    {
+        if (proxy < 0 || proxy >= capacity || height[proxy] != 0)
+            throw new IllegalArgumentException("Proxy " + proxy + " does not exist");
+    }
+
+    private void insertLeaf (int leaf)
+    {
+        if (root == NULL)
+        {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        // Find the best sibling by the surface area heuristic, using perimeters as 2D surface areas
+        final float leafMinX = minX[leaf], leafMinY = minY[leaf], leafMaxX = maxX[leaf], leafMaxY = maxY[leaf];
+        int index = root;
+        while (child1[index] != NULL)
+        {
+            final int c1 = child1[index];
+            final int c2 = child2[index];
+
+            final float area = perimeter(minX[index], minY[index], maxX[index], maxY[index]);
+            final float combinedArea = perimeter(Math.min(minX[index], leafMinX), Math.min(minY[index], leafMinY),
+                    Math.max(maxX[index], leafMaxX), Math.max(maxY[index], leafMaxY));
+
+            // Cost of creating a new parent for this node and the new leaf
+            final float cost = 2 * combinedArea;
+            // Minimum cost of pushing the leaf further down the tree
+            final float inheritanceCost = 2 * (combinedArea - area);
+
+            final float cost1 = descendCost(c1, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+            final float cost2 = descendCost(c2, leafMinX, leafMinY, leafMaxX, leafMaxY) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) break;
+            index = cost1 < cost2 ? c1 : c2;
+        }
+
+        final int sibling = index;
+        final int oldParent = parent[sibling];
+        final int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL)
+        {
+            if (child1[oldParent] == sibling) child1[oldParent] = newParent;
+            else child2[oldParent] = newParent;
+        }
+        else root = newParent;
+
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    private float descendCost (int child, float leafMinX, float leafMinY, float leafMaxX, float leafMaxY)
+    {
+        final float combined = perimeter(Math.min(minX[child], leafMinX), Math.min(minY[child], leafMinY),
+                Math.max(maxX[child], leafMaxX), Math.max(maxY[child], leafMaxY));
+        if (child1[child] == NULL) return combined;
+        return combined - perimeter(minX[child], minY[child], maxX[child], maxY[child]);
+    }
+
+    private void removeLeaf (int leaf)
+    {
+        if (leaf == root)
+        {
+            root = NULL;
+            return;
+        }
+
+        final int oldParent = parent[leaf];
+        final int grandParent = parent[oldParent];
+        final int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+
+        if (grandParent != NULL)
+        {
+            if (child1[grandParent] == oldParent) child1[grandParent] = sibling;
+            else child2[grandParent] = sibling;
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+            refit(grandParent);
+        }
+        else
+        {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(oldParent);
+        }
+    }
+
+    /**
+     * Balances and recomputes the <b>AABBs</b> and heights of a node and all its ancestors.
+     * @param index the node
+     */
+    private void refit (int index)
+    {
+        while (index != NULL)
+        {
+            index = balance(index);
+
+            final int c1 = child1[index];
+            final int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(index, c1, c2);
+
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right <b>rotation</b> if the node is imbalanced.
+     * @param a the node
+     * @return the new root of the subtree
+     */
+    private int balance (int a)
+    {
+        if (child1[a] == NULL || height[a] < 2) return a;
+
+        final int b = child1[a];
+        final int c = child2[a];
+        final int balance = height[c] - height[b];
+
+        // Rotate c up
+        if (balance > 1)
+        {
+            final int f = child1[c];
+            final int g = child2[c];
+
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+
+            if (height[f] > height[g])
+            {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                setUnion(a, b, g);
+                setUnion(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            }
+            else
+            {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                setUnion(a, b, f);
+                setUnion(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        // Rotate b up
+        if (balance < -1)
+        {
+            final int d = child1[b];
+            final int e = child2[b];
+
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+
+            if (height[d] > height[e])
+            {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                setUnion(a, c, e);
+                setUnion(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            }
+            else
+            {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                setUnion(a, c, d);
+                setUnion(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+
+        return a;
+    }
+
+    private void replaceChild (int node, int oldChild, int newChild)
+    {
+        if (node == NULL)
+        {
+            root = newChild;
+            return;
+        }
+        if (child1[node] == oldChild) child1[node] = newChild;
+        else child2[node] = newChild;
+    }
+
+    private void setUnion (int dest, int a, int b)
+    {
+        minX[dest] = Math.min(minX[a], minX[b]);
+        minY[dest] = Math.min(minY[a], minY[b]);
+        maxX[dest] = Math.max(maxX[a], maxX[b]);
+        maxY[dest] = Math.max(maxY[a], maxY[b]);
+    }
+
+    private static float perimeter (float minX, float minY, float maxX, float maxY)
+    {
+        return 2 * ((maxX - minX) + (maxY - minY));
+    }
+
+    /**
+     * Reports every <b>proxy</b> whose fat <b>AABB</b> overlaps an <b>AABB</b>, using the traversal stack of the
+     * tree.
+     * @param minX the minimum x-coordinate of the <b>AABB</b>
+     * @param minY the minimum y-coordinate of the <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the <b>AABB</b>
+     * @param callback the {@link DynamicAabbTree.QueryCallback} which receives the <b>proxies</b>
+     */
+    public void query (float minX, float minY, float maxX, float maxY, QueryCallback callback)
+    {
+        query(minX, minY, maxX, maxY, callback, stack);
+    }
+
+    /**
+     * Reports every <b>proxy</b> whose fat <b>AABB</b> overlaps an <b>AABB</b>.
+     * @param minX the minimum x-coordinate of the <b>AABB</b>
+     * @param minY the minimum y-coordinate of the <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the <b>AABB</b>
+     * @param callback the {@link DynamicAabbTree.QueryCallback} which receives the <b>proxies</b>
+     * @param stack the {@link DynamicAabbTree.Stack} of the calling thread
+     */
+    public void query (float minX, float minY, float maxX, float maxY, QueryCallback callback, Stack stack)
+    {
+        if (root == NULL) return;
+
+        int[] nodes = stack.nodes;
+        int count = 0;
+        nodes[count++] = root;
+
+        while (count > 0)
+        {
+            final int node = nodes[--count];
+            if (this.minX[node] > maxX || this.maxX[node] < minX || this.minY[node] > maxY || this.maxY[node] < minY)
+                continue;
+
+            if (child1[node] == NULL)
+            {
+                if (!callback.report(node)) return;
+                continue;
+            }
+
+            if (count + 2 > nodes.length) nodes = stack.grow();
+            nodes[count++] = child1[node];
+            nodes[count++] = child2[node];
+        }
+    }
+
+    /**
+     * Casts a ray through the tree and reports every <b>proxy</b> whose fat <b>AABB</b> the ray hits before the
+     * current maximum fraction, which the {@link DynamicAabbTree.RaycastCallback} can shrink to clip the ray.
+     * Points on the ray are <b>(x1, y1) + fraction * (x2 - x1, y2 - y1)</b>. Subtrees whose <b>AABB</b> the
+     * clipped ray misses are skipped, which makes finding the closest hit cheap.
+     * @param x1 the x-coordinate of the start of the ray
+     * @param y1 the y-coordinate of the start of the ray
+     * @param x2 the x-coordinate of the end of the ray
+     * @param y2 the y-coordinate of the end of the ray
+     * @param maxFraction the initial maximum fraction, usually 1
+     * @param callback the {@link DynamicAabbTree.RaycastCallback} which receives the <b>proxies</b>
+     * @param stack the {@link DynamicAabbTree.Stack} of the calling thread
+     */
+    public void raycast (float x1, float y1, float x2, float y2, float maxFraction, RaycastCallback callback,
+                         Stack stack)
+    {
+        if (root == NULL) return;
+
+        final float dx = x2 - x1;
+        final float dy = y2 - y1;
+        int[] nodes = stack.nodes;
+        int count = 0;
+        nodes[count++] = root;
+
+        while (count > 0)
+        {
+            final int node = nodes[--count];
+            if (!raycastAabb(node, x1, y1, dx, dy, maxFraction)) continue;
+
+            if (child1[node] == NULL)
+            {
+                final float value = callback.report(node, maxFraction);
+                if (value == 0) return;
+                if (value > 0) maxFraction = value;
+                continue;
+            }
+
+            if (count + 2 > nodes.length) nodes = stack.grow();
+            nodes[count++] = child1[node];
+            nodes[count++] = child2[node];
+        }
+    }
+
+    /**
+     * Checks wether a ray hits the <b>AABB</b> of a node between the fractions 0 and <b>maxFraction</b> by
+     * intersecting the intervals of the ray between the planes of both axes.
+     */
+    private boolean raycastAabb (int node, float x, float y, float dx, float dy, float maxFraction)
+    {
+        float near = 0;
+        float far = maxFraction;
+
+        if (dx == 0)
+        {
+            if (x < minX[node] || x > maxX[node]) return false;
+        }
+        else
+        {
+            final float inverse = 1f / dx;
+            float t1 = (minX[node] - x) * inverse;
+            float t2 = (maxX[node] - x) * inverse;
+            if (t1 > t2)
+            {
+                final float t = t1;
+                t1 = t2;
+                t2 = t;
+            }
+            near = Math.max(near, t1);
+            far = Math.min(far, t2);
+            if (near > far) return false;
+        }
+
+        if (dy == 0) return y >= minY[node] && y <= maxY[node];
+
+        final float inverse = 1f / dy;
+        float t1 = (minY[node] - y) * inverse;
+        float t2 = (maxY[node] - y) * inverse;
+        if (t1 > t2)
+        {
+            final float t = t1;
+            t1 = t2;
+            t2 = t;
+        }
+        return Math.max(near, t1) <= Math.min(far, t2);
+    }
+
+    /**
+     * Checks wether the fat <b>AABBs</b> of two <b>proxies</b> overlap.
+     * @param proxyA the first <b>proxy</b> id
+     * @param proxyB the second <b>proxy</b> id
+     * @return wether the fat <b>AABBs</b> overlap
+     */
+    public boolean testOverlap (int proxyA, int proxyB)
+    {
+        return minX[proxyA] <= maxX[proxyB] && maxX[proxyA] >= minX[proxyB]
+                && minY[proxyA] <= maxY[proxyB] && maxY[proxyA] >= minY[proxyB];
+    }
+
+    /**
+     * Checks wether an id belongs to an existing <b>proxy</b>.
+     * @param proxy the id
+     * @return wether the id belongs to an existing <b>proxy</b>
+     */
+    public boolean isProxy (int proxy)
+    {
+        return proxy >= 0 && proxy < capacity && height[proxy] == 0;
+    }
+
+    /**
+     * Returns the object of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the object passed to {@link DynamicAabbTree#createProxy(float, float, float, float, Object)}
+     */
+    public Object getUserData (int proxy)
+    {
+        return userData[proxy];
+    }
+
+    /**
+     * Returns the minimum x-coordinate of the fat <b>AABB</b> of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the minimum x-coordinate
+     */
+    public float getFatMinX (int proxy)
+    {
+        return minX[proxy];
+    }
+
+    /**
+     * Returns the minimum y-coordinate of the fat <b>AABB</b> of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the minimum y-coordinate
+     */
+    public float getFatMinY (int proxy)
+    {
+        return minY[proxy];
+    }
+
+    /**
+     * Returns the maximum x-coordinate of the fat <b>AABB</b> of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the maximum x-coordinate
+     */
+    public float getFatMaxX (int proxy)
+    {
+        return maxX[proxy];
+    }
+
+    /**
+     * Returns the maximum y-coordinate of the fat <b>AABB</b> of a <b>proxy</b>.
+     * @param proxy the <b>proxy</b> id
+     * @return the maximum y-coordinate
+     */
+    public float getFatMaxY (int proxy)
+    {
+        return maxY[proxy];
+    }
+
+    /**
+     * Checks the structure of the tree: the parent of every child, the heights and <b>AABBs</b> of all inner
+     * nodes, which have to be the unions of their children, and the number of nodes, <b>proxies</b> and free
+     * nodes. The balance is not checked, as the <b>rotations</b> only reduce imbalances by one level per node.
+     * This walks the whole tree and is meant for tests.
+     * @throws IllegalStateException if the tree is corrupted
+     */
+    void validate ()
+    {
+        if (root != NULL && parent[root] != NULL) throw new IllegalStateException("The root " + root +
+                " has the parent " + parent[root]);
+
+        int nodes = 0, leaves = 0;
+        final int[] pending = new int[Math.max(1, nodeCount)];
+        int count = 0;
+        if (root != NULL) pending[count++] = root;
+        while (count > 0)
+        {
+            final int node = pending[--count];
+            nodes++;
+            if (child1[node] == NULL)
+            {
+                if (child2[node] != NULL || height[node] != 0)
+                    throw new IllegalStateException("The leaf " + node + " has a child or a height");
+                leaves++;
+                continue;
+            }
+
+            final int c1 = child1[node], c2 = child2[node];
+            if (c2 == NULL || parent[c1] != node || parent[c2] != node)
+                throw new IllegalStateException("The children of node " + node + " are not linked to it");
+            if (height[node] != 1 + Math.max(height[c1], height[c2]))
+                throw new IllegalStateException("Node " + node + " has the wrong height " + height[node]);
+            if (minX[node] != Math.min(minX[c1], minX[c2]) || minY[node] != Math.min(minY[c1], minY[c2])
+                    || maxX[node] != Math.max(maxX[c1], maxX[c2]) || maxY[node] != Math.max(maxY[c1], maxY[c2]))
+                throw new IllegalStateException("The AABB of node " + node + " is not the union of its children");
+
+            if (count + 2 > pending.length) throw new IllegalStateException("The tree has a cycle");
+            pending[count++] = c1;
+            pending[count++] = c2;
+        }
+
+        int free = 0;
+        for (int node = freeList; node != NULL && free <= capacity; node = parent[node])
+        {
+            if (height[node] != -1) throw new IllegalStateException("The free node " + node + " is in use");
+            free++;
+        }
+
+        if (nodes != nodeCount || leaves != proxyCount || free != capacity - nodeCount)
+            throw new IllegalStateException("The tree reaches " + nodes + " nodes and " + leaves + " proxies and " +
+                    "has " + free + " free nodes, but counts " + nodeCount + " nodes and " + proxyCount + " proxies");
+    }
+
+    /**
+     * Returns the height of the tree, where a tree with a single leaf has a height of 0.
+     * @return the height, or -1 if the tree is empty
+     */
+    public int getHeight ()
+    {
+        return root == NULL ? -1 : height[root];
+    }
+
+    /**
+     * Returns the number of <b>proxies</b>.
+     * @return the number of <b>proxies</b>
+     */
+    public int getProxyCount ()
+    {
+        return proxyCount;
+    }
+
+    /**
+     * Returns the number of allocated nodes, including the inner nodes.
+     * @return the number of nodes
+     */
+    public int getNodeCount ()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the <b>margin</b> fat <b>AABBs</b> extend beyond the tight <b>AABB</b> on every side.
+     * @return the <b>margin</b>
+     */
+    public float getMargin ()
+    {
+        return margin;
+    }
+}
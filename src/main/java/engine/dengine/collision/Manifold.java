@@ -0,0 +1,150 @@
+package engine.dengine.collision;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Manifold}</h2>
+ * <br>
+ * The {@link Manifold} class is the result of {@link NarrowPhase#collide}. It stores the <b>contact normal</b>,
+ * which points from the first to the second shape, the <b>penetration depth</b> along it and up to
+ * {@link Manifold#MAX_POINTS} <b>contact points</b> in world space, each with its own <b>separation</b> and a
+ * <b>feature id</b>, which names the edges and <b>vertices</b> the point was created from. A point with the same
+ * <b>feature id</b> in the next <b>tick</b> is the same contact, so a solver can reuse its impulses.
+ * <br>
+ * Pushing the second shape by <b>depth</b> along the <b>normal</b> resolves the overlap. A {@link Manifold} is
+ * meant to be reused, so filling it does not allocate.
+ */
+public final class Manifold
+{
+    /** The maximum number of <b>contact points</b> of two convex shapes in 2D */
+    public static final int MAX_POINTS = 2;
+
+    float normalX;
+    float normalY;
+    float depth;
+    int pointCount;
+    final float[] pointX;
+    final float[] pointY;
+    final float[] separation;
+    final int[] id;
+
+    /**
+     * Creates a new, empty {@link Manifold} instance.
+     */
+    public Manifold ()
+    {
+        this.pointX = new float[MAX_POINTS];
+        this.pointY = new float[MAX_POINTS];
+        this.separation = new float[MAX_POINTS];
+        this.id = new int[MAX_POINTS];
+    }
+
+    /**
+     * Copies the data of another {@link Manifold} into this one.
+     * @param manifold the other {@link Manifold}
+     */
+    public void set (Manifold manifold)
+    {
+        normalX = manifold.normalX;
+        normalY = manifold.normalY;
+        depth = manifold.depth;
+        pointCount = manifold.pointCount;
+        for (int i = 0; i < pointCount; i++)
+        {
+            pointX[i] = manifold.pointX[i];
+            pointY[i] = manifold.pointY[i];
+            separation[i] = manifold.separation[i];
+            id[i] = manifold.id[i];
+        }
+    }
+
+    /**
+     * Resets this {@link Manifold} to no contact.
+     */
+    public void clear ()
+    {
+        normalX = 0;
+        normalY = 0;
+        depth = 0;
+        pointCount = 0;
+    }
+
+    /**
+     * Returns the x-coordinate of the <b>contact normal</b>.
+     * @return the x-coordinate of the unit <b>normal</b> from the first to the second shape
+     */
+    public float getNormalX ()
+    {
+        return normalX;
+    }
+
+    /**
+     * Returns the y-coordinate of the <b>contact normal</b>.
+     * @return the y-coordinate of the unit <b>normal</b> from the first to the second shape
+     */
+    public float getNormalY ()
+    {
+        return normalY;
+    }
+
+    /**
+     * Returns the <b>penetration depth</b>.
+     * @return the distance the shapes overlap along the <b>normal</b>, which is 0 if they only touch and negative
+     * if they are apart by less than the <b>margin</b> of {@link NarrowPhase}
+     */
+    public float getDepth ()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns the number of <b>contact points</b>.
+     * @return the number of <b>contact points</b>, at most {@link Manifold#MAX_POINTS}
+     */
+    public int getPointCount ()
+    {
+        return pointCount;
+    }
+
+    /**
+     * Returns the x-coordinate of a <b>contact point</b>, which lies halfway between the surfaces.
+     * @param index the index of the <b>contact point</b>
+     * @return the x-coordinate in world space
+     */
+    public float getPointX (int index)
+    {
+        return pointX[index];
+    }
+
+    /**
+     * Returns the y-coordinate of a <b>contact point</b>, which lies halfway between the surfaces.
+     * @param index the index of the <b>contact point</b>
+     * @return the y-coordinate in world space
+     */
+    public float getPointY (int index)
+    {
+        return pointY[index];
+    }
+
+    /**
+     * Returns the <b>separation</b> of a <b>contact point</b>.
+     * @param index the index of the <b>contact point</b>
+     * @return the signed distance of the surfaces at the <b>contact point</b>, which is negative while they overlap
+     */
+    public float getSeparation (int index)
+    {
+        return separation[index];
+    }
+
+    /**
+     * Returns the <b>feature id</b> of a <b>contact point</b>.
+     * @param index the index of the <b>contact point</b>
+     * @return the <b>feature id</b>, which is equal for the same contact in consecutive <b>ticks</b>
+     */
+    public int getId (int index)
+    {
+        return id[index];
+    }
+}
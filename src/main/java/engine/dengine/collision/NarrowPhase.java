@@ -0,0 +1,496 @@
+package engine.dengine.collision;
+
+import engine.dengine.shapes.ConvexHull;
+import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2fc;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link NarrowPhase}</h2>
+ * <br>
+ * The {@link NarrowPhase} class tests two shapes for overlap with the <b>separating axis theorem</b>. Both
+ * shapes are given as {@link ConvexHull} instances in local space and placed in the world by a
+ * <b>local-to-world matrix</b>. Only the edge <b>normals</b> of a convex shape can be <b>separating axes</b> in
+ * 2D, so the cached <b>normals</b> of the {@link ConvexHull} are transformed by the <b>inverse transpose</b> of the
+ * <b>matrix</b>, which keeps them perpendicular to the edges under non-uniform scaling.
+ * <br>
+ * {@link NarrowPhase#collide} also fills a {@link Manifold}: the edge with the largest <b>separation</b> becomes
+ * the <b>reference face</b>, and the edge of the other shape which faces it the most, the <b>incident face</b>,
+ * is clipped against the sides of the <b>reference face</b> to get up to two <b>contact points</b>.
+ * <br>
+ * A {@link NarrowPhase} keeps the transformed <b>vertices</b> in arrays which only grow, so tests do not
+ * allocate once the arrays are large enough. It is not thread-safe, {@link NarrowPhase#local()} returns an
+ * instance per thread.
+ */
+public final class NarrowPhase
+{
+    /** How much larger the <b>separation</b> of the second shape has to be to make it the <b>reference</b> */
+    private static final float REFERENCE_TOLERANCE = 0.0005f;
+    private static final ThreadLocal<NarrowPhase> LOCAL = ThreadLocal.withInitial(NarrowPhase::new);
+
+    private final TransformedParts partsA;
+    private final TransformedParts partsB;
+    /** The edge found by the last {@link NarrowPhase#findMaxSeparation} */
+    private int edge;
+    private final float[] clipX;
+    private final float[] clipY;
+    private final float[] clippedX;
+    private final float[] clippedY;
+    private final int[] clipId;
+    private final int[] clippedId;
+    private final Manifold candidate;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link NarrowPhase.TransformedParts}</h2>
+     * <br>
+     * The {@link NarrowPhase.TransformedParts} class stores the <b>convex parts</b> of one shape in world space,
+     * with the points and <b>normals</b> of all parts packed one after another, and the world <b>AABB</b> of
+     * every part.
+     */
+    private static final class TransformedParts
+    {
+        float[] x = new float[16], y = new float[16];
+        float[] normalX = new float[16], normalY = new float[16];
+        int[] offset = new int[4], count = new int[4];
+        float[] minX = new float[4], minY = new float[4], maxX = new float[4], maxY = new float[4];
+        float boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+        int partCount;
+
+        void set (ConvexHull part, Matrix3x2fc matrix)
+        {
+            reserveParts(1);
+            reservePoints(part.getCount());
+            add(part, 0, 0, matrix.m00(), matrix.m01(), matrix.m10(), matrix.m11(), matrix.m20(), matrix.m21());
+            partCount = 1;
+            updateBounds();
+        }
+
+        void set (ConvexHull[] parts, Matrix3x2fc matrix)
+        {
+            int points = 0;
+            for (ConvexHull part : parts) points += part.getCount();
+            reserveParts(parts.length);
+            reservePoints(points);
+
+            final float m00 = matrix.m00(), m01 = matrix.m01(), m10 = matrix.m10(), m11 = matrix.m11();
+            final float m20 = matrix.m20(), m21 = matrix.m21();
+            int offset = 0;
+            for (int i = 0; i < parts.length; i++)
+            {
+                add(parts[i], i, offset, m00, m01, m10, m11, m20, m21);
+                offset += parts[i].getCount();
+            }
+            partCount = parts.length;
+            updateBounds();
+        }
+
+        private void add (ConvexHull part, int index, int offset, float m00, float m01, float m10, float m11,
+                          float m20, float m21)
+        {
+            final int count = part.getCount();
+            this.offset[index] = offset;
+            this.count[index] = count;
+
+            // Inverse transpose without the division by the determinant, which the normalization removes except
+            // for its sign, which keeps the normals pointing outward under mirroring
+            final float sign = m00 * m11 - m01 * m10 < 0 ? -1f : 1f;
+            // Rotation and uniform scaling scale all normals by the same length, so one square root is enough
+            final boolean similarity = m00 == m11 && m01 == -m10;
+            final float similarityLength = similarity ? (float) Math.sqrt(m00 * m00 + m01 * m01) : 0f;
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++)
+            {
+                final float localX = part.getX(i), localY = part.getY(i);
+                final float worldX = m00 * localX + m10 * localY + m20;
+                final float worldY = m01 * localX + m11 * localY + m21;
+                x[offset + i] = worldX;
+                y[offset + i] = worldY;
+                minX = Math.min(minX, worldX);
+                minY = Math.min(minY, worldY);
+                maxX = Math.max(maxX, worldX);
+                maxY = Math.max(maxY, worldY);
+
+                final float localNormalX = part.getNormalX(i), localNormalY = part.getNormalY(i);
+                final float normalX = m11 * localNormalX - m01 * localNormalY;
+                final float normalY = m00 * localNormalY - m10 * localNormalX;
+                final float length = similarity ? similarityLength :
+                        (float) Math.sqrt(normalX * normalX + normalY * normalY);
+                final float inverseLength = length > 0 ? sign / length : 0f;
+                this.normalX[offset + i] = normalX * inverseLength;
+                this.normalY[offset + i] = normalY * inverseLength;
+            }
+            this.minX[index] = minX;
+            this.minY[index] = minY;
+            this.maxX[index] = maxX;
+            this.maxY[index] = maxY;
+        }
+
+        private void updateBounds ()
+        {
+            boundsMinX = Float.POSITIVE_INFINITY;
+            boundsMinY = Float.POSITIVE_INFINITY;
+            boundsMaxX = Float.NEGATIVE_INFINITY;
+            boundsMaxY = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < partCount; i++)
+            {
+                boundsMinX = Math.min(boundsMinX, minX[i]);
+                boundsMinY = Math.min(boundsMinY, minY[i]);
+                boundsMaxX = Math.max(boundsMaxX, maxX[i]);
+                boundsMaxY = Math.max(boundsMaxY, maxY[i]);
+            }
+        }
+
+        private void reservePoints (int points)
+        {
+            if (points <= x.length) return;
+            final int capacity = Math.max(points, x.length * 2);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            normalX = Arrays.copyOf(normalX, capacity);
+            normalY = Arrays.copyOf(normalY, capacity);
+        }
+
+        private void reserveParts (int parts)
+        {
+            if (parts <= offset.length) return;
+            final int capacity = Math.max(parts, offset.length * 2);
+            offset = Arrays.copyOf(offset, capacity);
+            count = Arrays.copyOf(count, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+
+        boolean overlaps (int part, TransformedParts other, int otherPart, float margin)
+        {
+            return minX[part] <= other.maxX[otherPart] + margin && other.minX[otherPart] <= maxX[part] + margin &&
+                    minY[part] <= other.maxY[otherPart] + margin && other.minY[otherPart] <= maxY[part] + margin;
+        }
+
+        boolean boundsOverlap (TransformedParts other, float margin)
+        {
+            return boundsMinX <= other.boundsMaxX + margin && other.boundsMinX <= boundsMaxX + margin &&
+                    boundsMinY <= other.boundsMaxY + margin && other.boundsMinY <= boundsMaxY + margin;
+        }
+    }
+
+    /**
+     * Creates a new {@link NarrowPhase} instance.
+     */
+    public NarrowPhase ()
+    {
+        this.partsA = new TransformedParts();
+        this.partsB = new TransformedParts();
+        this.clipX = new float[2];
+        this.clipY = new float[2];
+        this.clippedX = new float[2];
+        this.clippedY = new float[2];
+        this.clipId = new int[2];
+        this.clippedId = new int[2];
+        this.candidate = new Manifold();
+    }
+
+    /**
+     * Returns the {@link NarrowPhase} instance of the current thread.
+     * @return the {@link NarrowPhase} of the current thread
+     */
+    public static NarrowPhase local ()
+    {
+        return LOCAL.get();
+    }
+
+    /**
+     * Checks wether two {@link ConvexHull} instances overlap or touch.
+     * @param a the first {@link ConvexHull}
+     * @param matrixA the <b>local-to-world matrix</b> of the first {@link ConvexHull}
+     * @param b the second {@link ConvexHull}
+     * @param matrixB the <b>local-to-world matrix</b> of the second {@link ConvexHull}
+     * @return wether they overlap or touch
+     */
+    public boolean overlaps (ConvexHull a, Matrix3x2fc matrixA, ConvexHull b, Matrix3x2fc matrixB)
+    {
+        partsA.set(a, matrixA);
+        partsB.set(b, matrixB);
+        return collideParts(0, 0, 0f, null);
+    }
+
+    /**
+     * Checks wether two {@link ConvexHull} instances overlap or touch, and computes their {@link Manifold}.
+     * @param a the first {@link ConvexHull}
+     * @param matrixA the <b>local-to-world matrix</b> of the first {@link ConvexHull}
+     * @param b the second {@link ConvexHull}
+     * @param matrixB the <b>local-to-world matrix</b> of the second {@link ConvexHull}
+     * @param manifold the {@link Manifold} which is written to, which is cleared if they do not overlap
+     * @return wether they overlap or touch
+     */
+    public boolean collide (ConvexHull a, Matrix3x2fc matrixA, ConvexHull b, Matrix3x2fc matrixB, Manifold manifold)
+    {
+        partsA.set(a, matrixA);
+        partsB.set(b, matrixB);
+        if (collideParts(0, 0, 0f, manifold)) return true;
+        manifold.clear();
+        return false;
+    }
+
+    /**
+     * Checks wether the <b>convex parts</b> of two {@link Shape} instances overlap or touch. The z-coordinates
+     * are ignored.
+     * @param a the first {@link Shape}
+     * @param matrixA the <b>local-to-world matrix</b> of the first {@link Shape}
+     * @param b the second {@link Shape}
+     * @param matrixB the <b>local-to-world matrix</b> of the second {@link Shape}
+     * @return wether they overlap or touch
+     * @see Shape#getConvexParts()
+     */
+    public boolean overlaps (Shape a, Matrix3x2fc matrixA, Shape b, Matrix3x2fc matrixB)
+    {
+        partsA.set(a.getConvexParts(), matrixA);
+        partsB.set(b.getConvexParts(), matrixB);
+        if (!partsA.boundsOverlap(partsB, 0f)) return false;
+
+        for (int i = 0; i < partsA.partCount; i++)
+            for (int j = 0; j < partsB.partCount; j++)
+                if (partsA.overlaps(i, partsB, j, 0f) && collideParts(i, j, 0f, null)) return true;
+        return false;
+    }
+
+    /**
+     * Checks wether the <b>convex parts</b> of two {@link Shape} instances overlap or touch, and computes the
+     * {@link Manifold} of the <b>pair</b> of parts which overlaps the most. The z-coordinates are ignored.
+     * @param a the first {@link Shape}
+     * @param matrixA the <b>local-to-world matrix</b> of the first {@link Shape}
+     * @param b the second {@link Shape}
+     * @param matrixB the <b>local-to-world matrix</b> of the second {@link Shape}
+     * @param manifold the {@link Manifold} which is written to, which is cleared if they do not overlap
+     * @return wether they overlap or touch
+     * @see Shape#getConvexParts()
+     */
+    public boolean collide (Shape a, Matrix3x2fc matrixA, Shape b, Matrix3x2fc matrixB, Manifold manifold)
+    {
+        return collide(a, matrixA, b, matrixB, 0f, manifold);
+    }
+
+    /**
+     * Checks wether the <b>convex parts</b> of two {@link Shape} instances are closer than a <b>margin</b>, and
+     * computes the {@link Manifold} of the <b>pair</b> of parts which overlaps the most. <b>Contact points</b>
+     * which are apart by less than the <b>margin</b> are kept with a positive <b>separation</b>, so a resting
+     * contact does not lose its points while the shapes part by tiny distances. The z-coordinates are ignored.
+     * @param a the first {@link Shape}
+     * @param matrixA the <b>local-to-world matrix</b> of the first {@link Shape}
+     * @param b the second {@link Shape}
+     * @param matrixB the <b>local-to-world matrix</b> of the second {@link Shape}
+     * @param margin the <b>margin</b>, which must not be negative
+     * @param manifold the {@link Manifold} which is written to, which is cleared if they are further apart
+     * @return wether they are closer than the <b>margin</b>
+     * @see Shape#getConvexParts()
+     */
+    public boolean collide (Shape a, Matrix3x2fc matrixA, Shape b, Matrix3x2fc matrixB, float margin,
+                            Manifold manifold)
+    {
+        if (margin < 0) throw new IllegalArgumentException("margin must not be negative");
+        manifold.clear();
+        partsA.set(a.getConvexParts(), matrixA);
+        partsB.set(b.getConvexParts(), matrixB);
+        if (!partsA.boundsOverlap(partsB, margin)) return false;
+
+        boolean colliding = false;
+        for (int i = 0; i < partsA.partCount; i++)
+        {
+            for (int j = 0; j < partsB.partCount; j++)
+            {
+                if (!partsA.overlaps(i, partsB, j, margin) || !collideParts(i, j, margin, candidate)) continue;
+                if (!colliding || candidate.depth > manifold.depth) manifold.set(candidate);
+                colliding = true;
+            }
+        }
+        return colliding;
+    }
+
+    /**
+     * Runs the <b>separating axis</b> test of a part of {@link NarrowPhase#partsA} and a part of
+     * {@link NarrowPhase#partsB}, and fills the {@link Manifold} if it is not null and they are closer than the
+     * <b>margin</b>.
+     */
+    private boolean collideParts (int partA, int partB, float margin, Manifold manifold)
+    {
+        final TransformedParts a = partsA, b = partsB;
+        final int offsetA = a.offset[partA], countA = a.count[partA];
+        final int offsetB = b.offset[partB], countB = b.count[partB];
+
+        final float separationA = findMaxSeparation(a, offsetA, countA, b, offsetB, countB, margin);
+        if (separationA > margin) return false;
+        final int edgeA = edge;
+        final float separationB = findMaxSeparation(b, offsetB, countB, a, offsetA, countA, margin);
+        if (separationB > margin) return false;
+        if (manifold == null) return true;
+
+        // Prefer the first shape as reference, so the choice does not flip between ticks
+        final TransformedParts reference, incident;
+        final int referenceOffset, referenceCount, incidentOffset, incidentCount, referenceEdge;
+        final boolean flip;
+        if (separationB > separationA + REFERENCE_TOLERANCE)
+        {
+            reference = b;
+            referenceOffset = offsetB;
+            referenceCount = countB;
+            referenceEdge = edge;
+            incident = a;
+            incidentOffset = offsetA;
+            incidentCount = countA;
+            flip = true;
+        }
+        else
+        {
+            reference = a;
+            referenceOffset = offsetA;
+            referenceCount = countA;
+            referenceEdge = edgeA;
+            incident = b;
+            incidentOffset = offsetB;
+            incidentCount = countB;
+            flip = false;
+        }
+
+        final float normalX = reference.normalX[referenceOffset + referenceEdge];
+        final float normalY = reference.normalY[referenceOffset + referenceEdge];
+        final int next = referenceEdge + 1 == referenceCount ? 0 : referenceEdge + 1;
+        final float x1 = reference.x[referenceOffset + referenceEdge];
+        final float y1 = reference.y[referenceOffset + referenceEdge];
+        final float x2 = reference.x[referenceOffset + next];
+        final float y2 = reference.y[referenceOffset + next];
+
+        // The incident edge is the one whose normal is the most anti-parallel to the reference normal
+        int incidentEdge = 0;
+        float minDot = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < incidentCount; i++)
+        {
+            final float dot = normalX * incident.normalX[incidentOffset + i] +
+                    normalY * incident.normalY[incidentOffset + i];
+            if (dot < minDot)
+            {
+                minDot = dot;
+                incidentEdge = i;
+            }
+        }
+        final int incidentNext = incidentEdge + 1 == incidentCount ? 0 : incidentEdge + 1;
+
+        manifold.normalX = flip ? -normalX : normalX;
+        manifold.normalY = flip ? -normalY : normalY;
+        manifold.depth = -Math.max(separationA, separationB);
+        manifold.pointCount = 0;
+
+        // Clip the incident edge against the side planes of the reference edge
+        float tangentX = x2 - x1, tangentY = y2 - y1;
+        final float length = (float) Math.sqrt(tangentX * tangentX + tangentY * tangentY);
+        if (length == 0) return true;
+        tangentX /= length;
+        tangentY /= length;
+
+        clipX[0] = incident.x[incidentOffset + incidentEdge];
+        clipY[0] = incident.y[incidentOffset + incidentEdge];
+        clipId[0] = incidentEdge;
+        clipX[1] = incident.x[incidentOffset + incidentNext];
+        clipY[1] = incident.y[incidentOffset + incidentNext];
+        clipId[1] = incidentNext;
+        if (clipSegment(clipX, clipY, clipId, clippedX, clippedY, clippedId, -tangentX, -tangentY,
+                -(tangentX * x1 + tangentY * y1), 0) < 2) return true;
+        if (clipSegment(clippedX, clippedY, clippedId, clipX, clipY, clipId, tangentX, tangentY,
+                tangentX * x2 + tangentY * y2, 1) < 2) return true;
+
+        final int featureBase = (partA & 0xFF) << 24 | (partB & 0x7F) << 17 | (flip ? 1 << 16 : 0) |
+                (referenceEdge & 0xFF) << 8;
+
+        final float frontOffset = normalX * x1 + normalY * y1;
+        for (int i = 0; i < 2; i++)
+        {
+            final float separation = normalX * clipX[i] + normalY * clipY[i] - frontOffset;
+            if (separation > margin) continue;
+
+            // Move the point from the incident surface halfway to the reference surface
+            final int point = manifold.pointCount++;
+            manifold.pointX[point] = clipX[i] - normalX * separation * 0.5f;
+            manifold.pointY[point] = clipY[i] - normalY * separation * 0.5f;
+            manifold.separation[point] = separation;
+            manifold.id[point] = featureBase | (clipId[i] & 0xFF);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the edge of the first part which separates the parts the most, which is stored in
+     * {@link NarrowPhase#edge}.
+     * @return the <b>separation</b> along that edge, which is positive if the parts do not overlap
+     */
+    private float findMaxSeparation (TransformedParts first, int firstOffset, int firstCount,
+                                     TransformedParts second, int secondOffset, int secondCount, float margin)
+    {
+        float maxSeparation = Float.NEGATIVE_INFINITY;
+        int maxEdge = 0;
+        for (int i = firstOffset; i < firstOffset + firstCount; i++)
+        {
+            final float normalX = first.normalX[i], normalY = first.normalY[i];
+            final float offset = normalX * first.x[i] + normalY * first.y[i];
+
+            // The support point of the second part in the opposite direction of the normal
+            float separation = Float.POSITIVE_INFINITY;
+            for (int j = secondOffset; j < secondOffset + secondCount; j++)
+                separation = Math.min(separation, normalX * second.x[j] + normalY * second.y[j]);
+            separation -= offset;
+
+            if (separation > maxSeparation)
+            {
+                maxSeparation = separation;
+                maxEdge = i - firstOffset;
+                // A separating axis was found
+                if (maxSeparation > margin) break;
+            }
+        }
+        edge = maxEdge;
+        return maxSeparation;
+    }
+
+    /**
+     * Clips a segment against the half plane of points whose dot product with the <b>normal</b> is at most the
+     * offset. Kept points keep their feature id, and a point created by clipping gets the id of the plane.
+     * @return the number of points written to the output arrays
+     */
+    private static int clipSegment (float[] inX, float[] inY, int[] inId, float[] outX, float[] outY, int[] outId,
+                                    float normalX, float normalY, float offset, int plane)
+    {
+        final float distance0 = normalX * inX[0] + normalY * inY[0] - offset;
+        final float distance1 = normalX * inX[1] + normalY * inY[1] - offset;
+
+        int count = 0;
+        if (distance0 <= 0)
+        {
+            outX[count] = inX[0];
+            outY[count] = inY[0];
+            outId[count++] = inId[0];
+        }
+        if (distance1 <= 0)
+        {
+            outX[count] = inX[1];
+            outY[count] = inY[1];
+            outId[count++] = inId[1];
+        }
+        if (distance0 * distance1 < 0)
+        {
+            final float t = distance0 / (distance0 - distance1);
+            outX[count] = inX[0] + t * (inX[1] - inX[0]);
+            outY[count] = inY[0] + t * (inY[1] - inY[0]);
+            outId[count++] = 0x80 | plane;
+        }
+        return count;
+    }
+}
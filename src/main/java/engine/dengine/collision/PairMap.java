@@ -0,0 +1,167 @@
+package engine.dengine.collision;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PairMap}</h2>
+ * <br>
+ * The {@link PairMap} class is a hash map from <b>pairs</b> packed by {@link BroadPhase#pack(int, int)} to int
+ * values, usually indices into an array of per <b>pair</b> data. Like the {@link PairSet}, it uses <b>open
+ * addressing</b> with linear probing in parallel primitive arrays and shifts entries back on removal instead of
+ * leaving tombstones, so putting, getting and removing does not allocate.
+ */
+public final class PairMap
+{
+    /** The value returned by {@link PairMap#get(long)} for <b>pairs</b> which are not in the {@link PairMap} */
+    public static final int MISSING = -1;
+    private static final long EMPTY = PairSet.EMPTY;
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a new, empty {@link PairMap} instance.
+     */
+    public PairMap ()
+    {
+        this.keys = new long[64];
+        this.values = new int[64];
+        Arrays.fill(keys, EMPTY);
+        this.mask = keys.length - 1;
+        this.size = 0;
+    }
+
+    private static int hash (long key)
+    {
+        // Finalizer of MurmurHash3, so both ids influence all bits of the slot
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int indexOf (long key)
+    {
+        int slot = hash(key) & mask;
+        while (true)
+        {
+            final long current = keys[slot];
+            if (current == key) return slot;
+            if (current == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the value of a <b>pair</b>.
+     * @param key the packed <b>pair</b>
+     * @return the value, or {@link PairMap#MISSING} if the <b>pair</b> is not in this {@link PairMap}
+     */
+    public int get (long key)
+    {
+        final int slot = indexOf(key);
+        return slot < 0 ? MISSING : values[slot];
+    }
+
+    /**
+     * Sets the value of a <b>pair</b>, adding the <b>pair</b> if it is not in this {@link PairMap}.
+     * @param key the packed <b>pair</b>, which must not be negative
+     * @param value the value
+     */
+    public void put (long key, int value)
+    {
+        if (size + 1 > keys.length * MAX_LOAD) rehash(keys.length * 2);
+
+        int slot = hash(key) & mask;
+        while (true)
+        {
+            final long current = keys[slot];
+            if (current == key)
+            {
+                values[slot] = value;
+                return;
+            }
+            if (current == EMPTY)
+            {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes a <b>pair</b>.
+     * @param key the packed <b>pair</b>
+     * @return the value the <b>pair</b> had, or {@link PairMap#MISSING} if it was not in this {@link PairMap}
+     */
+    public int remove (long key)
+    {
+        int slot = indexOf(key);
+        if (slot < 0) return MISSING;
+        final int value = values[slot];
+
+        // Shift the following entries of the probe sequence back into the gap
+        int next = slot;
+        while (true)
+        {
+            next = (next + 1) & mask;
+            final long current = keys[next];
+            if (current == EMPTY) break;
+
+            final int home = hash(current) & mask;
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask))
+            {
+                keys[slot] = current;
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = EMPTY;
+        size--;
+        return value;
+    }
+
+    private void rehash (int newCapacity)
+    {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        Arrays.fill(keys, EMPTY);
+        mask = newCapacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+    }
+
+    /**
+     * Removes all <b>pairs</b>.
+     */
+    public void clear ()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the number of <b>pairs</b>.
+     * @return the number of <b>pairs</b>
+     */
+    public int size ()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,159 @@
+package engine.dengine.collision;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PairSet}</h2>
+ * <br>
+ * The {@link PairSet} class is a hash set of <b>pairs</b> packed by {@link BroadPhase#pack(int, int)}. It uses
+ * <b>open addressing</b> with linear probing in a single long[], so adding, finding and removing <b>pairs</b>
+ * does not allocate. Removed entries are not marked with tombstones, instead the following entries of the probe
+ * sequence are shifted back, so lookups never slow down after many removals.
+ */
+final class PairSet
+{
+    /** The value of empty slots, which is never a packed <b>pair</b> as ids are never negative */
+    static final long EMPTY = -1L;
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a new, empty {@link PairSet} instance.
+     */
+    PairSet ()
+    {
+        this.keys = new long[64];
+        Arrays.fill(keys, EMPTY);
+        this.mask = keys.length - 1;
+        this.size = 0;
+    }
+
+    private static int hash (long key)
+    {
+        // Finalizer of MurmurHash3, so both ids influence all bits of the slot
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Finds the slot of a <b>pair</b>.
+     * @param key the packed <b>pair</b>
+     * @return the slot, or -1 if the <b>pair</b> is not in this {@link PairSet}
+     */
+    int indexOf (long key)
+    {
+        int slot = hash(key) & mask;
+        while (true)
+        {
+            final long current = keys[slot];
+            if (current == key) return slot;
+            if (current == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds a <b>pair</b>.
+     * @param key the packed <b>pair</b>
+     * @return wether the <b>pair</b> was not in this {@link PairSet} before
+     */
+    boolean add (long key)
+    {
+        if (size + 1 > keys.length * MAX_LOAD) rehash(keys.length * 2);
+
+        int slot = hash(key) & mask;
+        while (true)
+        {
+            final long current = keys[slot];
+            if (current == key) return false;
+            if (current == EMPTY)
+            {
+                keys[slot] = key;
+                size++;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes a <b>pair</b>.
+     * @param key the packed <b>pair</b>
+     * @return wether the <b>pair</b> was in this {@link PairSet}
+     */
+    boolean remove (long key)
+    {
+        int slot = indexOf(key);
+        if (slot < 0) return false;
+
+        // Shift the following entries of the probe sequence back into the gap
+        int next = slot;
+        while (true)
+        {
+            next = (next + 1) & mask;
+            final long current = keys[next];
+            if (current == EMPTY) break;
+
+            final int home = hash(current) & mask;
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((next - home) & mask) >= ((next - slot) & mask))
+            {
+                keys[slot] = current;
+                slot = next;
+            }
+        }
+        keys[slot] = EMPTY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks wether a <b>pair</b> is in this {@link PairSet}.
+     * @param key the packed <b>pair</b>
+     * @return wether the <b>pair</b> is in this {@link PairSet}
+     */
+    boolean contains (long key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    private void rehash (int newCapacity)
+    {
+        final long[] old = keys;
+        keys = new long[newCapacity];
+        Arrays.fill(keys, EMPTY);
+        mask = newCapacity - 1;
+        size = 0;
+        for (long key : old)
+            if (key != EMPTY) add(key);
+    }
+
+    /**
+     * Removes all <b>pairs</b>.
+     */
+    void clear ()
+    {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the number of <b>pairs</b>.
+     * @return the number of <b>pairs</b>
+     */
+    int size ()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,94 @@
+package engine.dengine.collision;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RaycastHit}</h2>
+ * <br>
+ * The {@link RaycastHit} class stores the closest hit found by
+ * {@link SpatialQuery#raycastFirst(float, float, float, float, int, RaycastHit)}: the {@link Collider}, the
+ * fraction along the ray, the point in world space and the <b>unit normal</b> of the hit edge. A
+ * {@link RaycastHit} is meant to be reused, so finding a hit does not allocate.
+ */
+public final class RaycastHit
+{
+    Collider collider;
+    float fraction;
+    float pointX;
+    float pointY;
+    float normalX;
+    float normalY;
+
+    /**
+     * Creates a new, empty {@link RaycastHit} instance.
+     */
+    public RaycastHit ()
+    {
+    }
+
+    void set (Collider collider, float fraction, float pointX, float pointY, float normalX, float normalY)
+    {
+        this.collider = collider;
+        this.fraction = fraction;
+        this.pointX = pointX;
+        this.pointY = pointY;
+        this.normalX = normalX;
+        this.normalY = normalY;
+    }
+
+    /**
+     * Returns the {@link Collider} which was hit.
+     * @return the {@link Collider}, or null if nothing was hit
+     */
+    public Collider getCollider ()
+    {
+        return collider;
+    }
+
+    /**
+     * Returns the fraction along the ray at which the {@link Collider} was hit.
+     * @return the fraction, where 0 is the start and 1 the end of the ray
+     */
+    public float getFraction ()
+    {
+        return fraction;
+    }
+
+    /**
+     * Returns the x-coordinate of the hit point.
+     * @return the x-coordinate in world space
+     */
+    public float getPointX ()
+    {
+        return pointX;
+    }
+
+    /**
+     * Returns the y-coordinate of the hit point.
+     * @return the y-coordinate in world space
+     */
+    public float getPointY ()
+    {
+        return pointY;
+    }
+
+    /**
+     * Returns the x-coordinate of the <b>normal</b> of the hit edge.
+     * @return the x-coordinate of the outward <b>unit normal</b> in world space
+     */
+    public float getNormalX ()
+    {
+        return normalX;
+    }
+
+    /**
+     * Returns the y-coordinate of the <b>normal</b> of the hit edge.
+     * @return the y-coordinate of the outward <b>unit normal</b> in world space
+     */
+    public float getNormalY ()
+    {
+        return normalY;
+    }
+}
@@ -0,0 +1,459 @@
+package engine.dengine.collision;
+
+import engine.dengine.shapes.ConvexHull;
+import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SpatialQuery}</h2>
+ * <br>
+ * The {@link SpatialQuery} class answers questions about the {@link Collider} instances of a
+ * {@link CollisionWorld}: which {@link Collider} a ray hits first or at all, which ones contain a point, and which
+ * ones overlap an <b>AABB</b> or a {@link Shape}. Every query walks the {@link DynamicAabbTree} of the
+ * {@link BroadPhase}, so it costs <b>O(log n)</b> plus the exact tests of the {@link Collider} instances whose
+ * fat <b>AABB</b> is hit. Results are passed to callbacks instead of being collected, so queries do not
+ * allocate, and every query only reports {@link Collider} instances whose <b>layer mask</b> shares a bit with
+ * the <b>layer mask</b> of the query.
+ * <br>
+ * Queries only read the tree and the <b>world matrices</b>, and keep their state in an object per thread, so
+ * they may run concurrently from any number of threads. They must not run concurrently with
+ * {@link CollisionWorld#update()} or changes of the <b>world matrices</b>, and they see the {@link Collider}
+ * instances as of the last {@link CollisionWorld#update()}.
+ */
+public final class SpatialQuery
+{
+    /** The <b>layer mask</b> which matches every {@link Collider} */
+    public static final int ALL_LAYERS = -1;
+
+    private final DynamicAabbTree tree;
+    private final ThreadLocal<Context> contexts;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SpatialQuery.ColliderCallback}</h2>
+     * <br>
+     * The {@link SpatialQuery.ColliderCallback} interface receives the {@link Collider} instances found by the
+     * point, <b>AABB</b> and {@link Shape} queries of a {@link SpatialQuery}.
+     */
+    @FunctionalInterface
+    public interface ColliderCallback
+    {
+        /**
+         * Receives a {@link Collider} which matches the query.
+         * @param collider the {@link Collider}
+         * @return wether the query should continue
+         */
+        boolean report (Collider collider);
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SpatialQuery.RaycastCallback}</h2>
+     * <br>
+     * The {@link SpatialQuery.RaycastCallback} interface receives the hits of
+     * {@link SpatialQuery#raycast(float, float, float, float, int, RaycastCallback)}. Its return value clips the
+     * ray, so returning the fraction finds the closest hit, returning 1 finds all hits and returning 0 stops at
+     * the first hit found.
+     */
+    @FunctionalInterface
+    public interface RaycastCallback
+    {
+        /**
+         * Receives a {@link Collider} hit by the ray.
+         * @param collider the {@link Collider}
+         * @param fraction the fraction along the ray, where 0 is the start and 1 the end of the ray
+         * @param pointX the x-coordinate of the hit point
+         * @param pointY the y-coordinate of the hit point
+         * @param normalX the x-coordinate of the outward <b>unit normal</b> of the hit edge
+         * @param normalY the y-coordinate of the outward <b>unit normal</b> of the hit edge
+         * @return a negative value to ignore the hit, 0 to end the raycast, or the new maximum fraction of the ray
+         */
+        float report (Collider collider, float fraction, float pointX, float pointY, float normalX, float normalY);
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SpatialQuery.Context}</h2>
+     * <br>
+     * The {@link SpatialQuery.Context} class holds the traversal stack, the scratch objects and the parameters of
+     * the running query of one thread, so the callbacks passed to the {@link DynamicAabbTree} can be created once.
+     */
+    private final class Context
+    {
+        final DynamicAabbTree.Stack stack = new DynamicAabbTree.Stack();
+        final Matrix3x2f matrix = new Matrix3x2f();
+        final NarrowPhase narrowPhase = new NarrowPhase();
+        /** Wether a query of this {@link SpatialQuery.Context} is running, which a nested query must not reuse */
+        boolean active;
+
+        int layers;
+        float x1, y1, x2, y2;
+        float minX, minY, maxX, maxY;
+        Shape shape;
+        Matrix3x2fc shapeMatrix;
+        ColliderCallback colliderCallback;
+        RaycastCallback raycastCallback;
+        RaycastHit hit;
+        /** The result of {@link SpatialQuery.Context#raycastCollider(Collider, float)} */
+        float hitFraction, hitNormalX, hitNormalY;
+
+        final DynamicAabbTree.QueryCallback pointQuery = this::reportPoint;
+        final DynamicAabbTree.QueryCallback aabbQuery = this::reportAabb;
+        final DynamicAabbTree.QueryCallback shapeQuery = this::reportShape;
+        final DynamicAabbTree.RaycastCallback raycastQuery = this::reportRaycast;
+        final RaycastCallback closestHit = this::reportClosestHit;
+
+        private boolean reportPoint (int proxy)
+        {
+            final Collider collider = (Collider) tree.getUserData(proxy);
+            if ((collider.getLayers() & layers) == 0) return true;
+            if (!containsPoint(collider, x1, y1)) return true;
+            return colliderCallback.report(collider);
+        }
+
+        private boolean reportAabb (int proxy)
+        {
+            final Collider collider = (Collider) tree.getUserData(proxy);
+            if ((collider.getLayers() & layers) == 0) return true;
+            if (collider.minX > maxX || collider.maxX < minX || collider.minY > maxY || collider.maxY < minY)
+                return true;
+            return colliderCallback.report(collider);
+        }
+
+        private boolean reportShape (int proxy)
+        {
+            final Collider collider = (Collider) tree.getUserData(proxy);
+            if ((collider.getLayers() & layers) == 0) return true;
+            if (collider.minX > maxX || collider.maxX < minX || collider.minY > maxY || collider.maxY < minY)
+                return true;
+            if (!narrowPhase.overlaps(shape, shapeMatrix, collider.getShape(),
+                    collider.getEntity().getTransform().getWorldMatrix(matrix))) return true;
+            return colliderCallback.report(collider);
+        }
+
+        private float reportRaycast (int proxy, float maxFraction)
+        {
+            final Collider collider = (Collider) tree.getUserData(proxy);
+            if ((collider.getLayers() & layers) == 0) return -1;
+            if (!raycastCollider(collider, maxFraction)) return -1;
+
+            final float fraction = hitFraction;
+            return raycastCallback.report(collider, fraction, x1 + fraction * (x2 - x1), y1 + fraction * (y2 - y1),
+                    hitNormalX, hitNormalY);
+        }
+
+        private float reportClosestHit (Collider collider, float fraction, float pointX, float pointY,
+                                        float normalX, float normalY)
+        {
+            hit.set(collider, fraction, pointX, pointY, normalX, normalY);
+            return fraction;
+        }
+
+        /**
+         * Checks wether a point lies inside one of the <b>convex parts</b> of a {@link Collider}, by moving the
+         * point into the local space of the {@link Collider} instead of transforming the parts.
+         */
+        private boolean containsPoint (Collider collider, float x, float y)
+        {
+            final Matrix3x2f m = collider.getEntity().getTransform().getWorldMatrix(matrix);
+            final float determinant = m.m00 * m.m11 - m.m01 * m.m10;
+            if (determinant == 0) return false;
+            final float inverse = 1f / determinant;
+            final float offsetX = x - m.m20, offsetY = y - m.m21;
+            final float localX = (m.m11 * offsetX - m.m10 * offsetY) * inverse;
+            final float localY = (m.m00 * offsetY - m.m01 * offsetX) * inverse;
+
+            for (ConvexHull part : collider.getShape().getConvexParts())
+            {
+                boolean inside = true;
+                for (int i = 0; i < part.getCount() && inside; i++)
+                    inside = part.getNormalX(i) * (localX - part.getX(i)) +
+                            part.getNormalY(i) * (localY - part.getY(i)) <= 0;
+                if (inside) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Casts the ray of the running query against the <b>convex parts</b> of a {@link Collider} in its local
+         * space, which keeps the fractions as affine transformations keep ratios along lines. Rays which start
+         * inside a part do not hit it. The closest hit is stored in {@link SpatialQuery.Context#hitFraction} etc.
+         */
+        private boolean raycastCollider (Collider collider, float maxFraction)
+        {
+            final Matrix3x2f m = collider.getEntity().getTransform().getWorldMatrix(matrix);
+            final float determinant = m.m00 * m.m11 - m.m01 * m.m10;
+            if (determinant == 0) return false;
+            final float inverse = 1f / determinant;
+            final float startX = x1 - m.m20, startY = y1 - m.m21;
+            final float endX = x2 - m.m20, endY = y2 - m.m21;
+            final float localX = (m.m11 * startX - m.m10 * startY) * inverse;
+            final float localY = (m.m00 * startY - m.m01 * startX) * inverse;
+            final float directionX = (m.m11 * endX - m.m10 * endY) * inverse - localX;
+            final float directionY = (m.m00 * endY - m.m01 * endX) * inverse - localY;
+
+            float best = maxFraction;
+            ConvexHull bestPart = null;
+            int bestEdge = -1;
+            for (ConvexHull part : collider.getShape().getConvexParts())
+            {
+                // Clip the ray against the half planes of all edges, where the last plane it enters is the hit edge
+                float lower = 0, upper = best;
+                int edge = -1;
+                boolean missed = false;
+                for (int i = 0; i < part.getCount(); i++)
+                {
+                    final float normalX = part.getNormalX(i), normalY = part.getNormalY(i);
+                    final float numerator = normalX * (part.getX(i) - localX) + normalY * (part.getY(i) - localY);
+                    final float denominator = normalX * directionX + normalY * directionY;
+                    if (denominator == 0)
+                    {
+                        if (numerator < 0)
+                        {
+                            missed = true;
+                            break;
+                        }
+                    }
+                    else if (denominator < 0 && numerator < lower * denominator)
+                    {
+                        lower = numerator / denominator;
+                        edge = i;
+                    }
+                    else if (denominator > 0 && numerator < upper * denominator)
+                    {
+                        upper = numerator / denominator;
+                    }
+
+                    if (upper < lower)
+                    {
+                        missed = true;
+                        break;
+                    }
+                }
+                if (missed || edge < 0) continue;
+
+                best = lower;
+                bestPart = part;
+                bestEdge = edge;
+            }
+            if (bestPart == null) return false;
+
+            // Inverse transpose, see NarrowPhase
+            final float localNormalX = bestPart.getNormalX(bestEdge), localNormalY = bestPart.getNormalY(bestEdge);
+            float normalX = m.m11 * localNormalX - m.m01 * localNormalY;
+            float normalY = m.m00 * localNormalY - m.m10 * localNormalX;
+            final float scale = (determinant < 0 ? -1f : 1f) / (float) Math.sqrt(normalX * normalX + normalY * normalY);
+            hitFraction = best;
+            hitNormalX = normalX * scale;
+            hitNormalY = normalY * scale;
+            return true;
+        }
+    }
+
+    /**
+     * Creates a new {@link SpatialQuery} instance.
+     * @param tree the {@link DynamicAabbTree} whose <b>proxies</b> are {@link Collider} instances
+     */
+    SpatialQuery (DynamicAabbTree tree)
+    {
+        this.tree = tree;
+        this.contexts = ThreadLocal.withInitial(Context::new);
+    }
+
+    private Context begin ()
+    {
+        final Context context = contexts.get();
+        // A query started from a callback of another query gets its own context
+        final Context result = context.active ? new Context() : context;
+        result.active = true;
+        return result;
+    }
+
+    private static void end (Context context)
+    {
+        context.active = false;
+        context.shape = null;
+        context.shapeMatrix = null;
+        context.colliderCallback = null;
+        context.raycastCallback = null;
+        context.hit = null;
+    }
+
+    /**
+     * Casts a ray and passes the {@link Collider} instances it hits to a {@link SpatialQuery.RaycastCallback},
+     * in no particular order. The callback clips the ray, see {@link SpatialQuery.RaycastCallback}.
+     * {@link Collider} instances which contain the start of the ray are not hit.
+     * @param x1 the x-coordinate of the start of the ray
+     * @param y1 the y-coordinate of the start of the ray
+     * @param x2 the x-coordinate of the end of the ray
+     * @param y2 the y-coordinate of the end of the ray
+     * @param layers the <b>layer mask</b> of the query
+     * @param callback the {@link SpatialQuery.RaycastCallback} which receives the hits
+     */
+    public void raycast (float x1, float y1, float x2, float y2, int layers, RaycastCallback callback)
+    {
+        final Context context = begin();
+        try
+        {
+            context.layers = layers;
+            context.x1 = x1;
+            context.y1 = y1;
+            context.x2 = x2;
+            context.y2 = y2;
+            context.raycastCallback = callback;
+            tree.raycast(x1, y1, x2, y2, 1f, context.raycastQuery, context.stack);
+        }
+        finally
+        {
+            end(context);
+        }
+    }
+
+    /**
+     * Casts a ray and finds the {@link Collider} it hits first. The ray is clipped at every hit, so only
+     * subtrees which could contain a closer hit are visited.
+     * @param x1 the x-coordinate of the start of the ray
+     * @param y1 the y-coordinate of the start of the ray
+     * @param x2 the x-coordinate of the end of the ray
+     * @param y2 the y-coordinate of the end of the ray
+     * @param layers the <b>layer mask</b> of the query
+     * @param hit the {@link RaycastHit} which is written to, whose {@link Collider} is null if nothing was hit
+     * @return wether a {@link Collider} was hit
+     */
+    public boolean raycastFirst (float x1, float y1, float x2, float y2, int layers, RaycastHit hit)
+    {
+        hit.set(null, 1f, x2, y2, 0, 0);
+        final Context context = begin();
+        try
+        {
+            context.hit = hit;
+            context.layers = layers;
+            context.x1 = x1;
+            context.y1 = y1;
+            context.x2 = x2;
+            context.y2 = y2;
+            context.raycastCallback = context.closestHit;
+            tree.raycast(x1, y1, x2, y2, 1f, context.raycastQuery, context.stack);
+        }
+        finally
+        {
+            end(context);
+        }
+        return hit.collider != null;
+    }
+
+    /**
+     * Passes every {@link Collider} whose {@link Shape} contains a point to a {@link SpatialQuery.ColliderCallback}.
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param layers the <b>layer mask</b> of the query
+     * @param callback the {@link SpatialQuery.ColliderCallback} which receives the {@link Collider} instances
+     */
+    public void queryPoint (float x, float y, int layers, ColliderCallback callback)
+    {
+        final Context context = begin();
+        try
+        {
+            context.layers = layers;
+            context.x1 = x;
+            context.y1 = y;
+            context.colliderCallback = callback;
+            tree.query(x, y, x, y, context.pointQuery, context.stack);
+        }
+        finally
+        {
+            end(context);
+        }
+    }
+
+    /**
+     * Passes every {@link Collider} whose tight world <b>AABB</b> overlaps an <b>AABB</b> to a
+     * {@link SpatialQuery.ColliderCallback}.
+     * @param minX the minimum x-coordinate of the <b>AABB</b>
+     * @param minY the minimum y-coordinate of the <b>AABB</b>
+     * @param maxX the maximum x-coordinate of the <b>AABB</b>
+     * @param maxY the maximum y-coordinate of the <b>AABB</b>
+     * @param layers the <b>layer mask</b> of the query
+     * @param callback the {@link SpatialQuery.ColliderCallback} which receives the {@link Collider} instances
+     */
+    public void queryAabb (float minX, float minY, float maxX, float maxY, int layers, ColliderCallback callback)
+    {
+        final Context context = begin();
+        try
+        {
+            context.layers = layers;
+            context.minX = minX;
+            context.minY = minY;
+            context.maxX = maxX;
+            context.maxY = maxY;
+            context.colliderCallback = callback;
+            tree.query(minX, minY, maxX, maxY, context.aabbQuery, context.stack);
+        }
+        finally
+        {
+            end(context);
+        }
+    }
+
+    /**
+     * Passes every {@link Collider} whose {@link Shape} overlaps or touches another {@link Shape} to a
+     * {@link SpatialQuery.ColliderCallback}, for example the area of an effect. The {@link Shape} does not have
+     * to belong to a {@link Collider}, and the z-coordinates are ignored.
+     * @param shape the {@link Shape}
+     * @param matrix the <b>local-to-world matrix</b> of the {@link Shape}
+     * @param layers the <b>layer mask</b> of the query
+     * @param callback the {@link SpatialQuery.ColliderCallback} which receives the {@link Collider} instances
+     * @see NarrowPhase#overlaps(Shape, Matrix3x2fc, Shape, Matrix3x2fc)
+     */
+    public void queryShape (Shape shape, Matrix3x2fc matrix, int layers, ColliderCallback callback)
+    {
+        final float m00 = matrix.m00(), m01 = matrix.m01(), m10 = matrix.m10(), m11 = matrix.m11();
+        final float m20 = matrix.m20(), m21 = matrix.m21();
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (ConvexHull part : shape.getConvexParts())
+        {
+            for (int i = 0; i < part.getCount(); i++)
+            {
+                final float x = m00 * part.getX(i) + m10 * part.getY(i) + m20;
+                final float y = m01 * part.getX(i) + m11 * part.getY(i) + m21;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+        }
+
+        final Context context = begin();
+        try
+        {
+            context.layers = layers;
+            context.minX = minX;
+            context.minY = minY;
+            context.maxX = maxX;
+            context.maxY = maxY;
+            context.shape = shape;
+            context.shapeMatrix = matrix;
+            context.colliderCallback = callback;
+            tree.query(minX, minY, maxX, maxY, context.shapeQuery, context.stack);
+        }
+        finally
+        {
+            end(context);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package engine.dengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Archetype}</h2>
+ * <br>
+ * The {@link Archetype} class groups all <b>entities</b> which have exactly the same set of <b>component types</b>.
+ * The <b>entities</b> of an {@link Archetype} are stored densely in a list of {@link Chunk} instances, where every
+ * {@link Chunk} but the last one is full.
+ * <br>
+ * Every {@link Archetype} caches the {@link Archetype} instances which are reached by adding or removing a single
+ * <b>component type</b>, so moving an {@link Entity} between {@link Archetype} instances is amortized constant time.
+ * The <b>columns</b> are ordered by <b>type id</b> and looked up through a table indexed by <b>type id</b>.
+ * @see ArchetypeStore
+ */
+public final class Archetype
+{
+    private final ComponentMask mask;
+    private final int[] typeIds;
+    /** Maps <b>type ids</b> to <b>column</b> indices, -1 marks absent <b>component types</b> */
+    private final int[] columnIndices;
+    private Archetype[] addEdges;
+    private Archetype[] removeEdges;
+    private final List<Chunk> chunks;
+    /** An empty {@link Chunk} which is kept around to avoid reallocating at a {@link Chunk} boundary */
+    private Chunk spareChunk;
+    private int entityCount;
+
+    /**
+     * Creates a new, empty {@link Archetype} instance.
+     * @param mask the <b>component types</b> of the new {@link Archetype} instance
+     */
+    Archetype (ComponentMask mask)
+    {
+        this.mask = mask;
+        this.typeIds = new int[mask.cardinality()];
+        this.columnIndices = new int[mask.highestSetBit() + 1];
+        Arrays.fill(columnIndices, -1);
+
+        int column = 0;
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+        {
+            typeIds[column] = id;
+            columnIndices[id] = column++;
+        }
+
+        this.addEdges = new Archetype[0];
+        this.removeEdges = new Archetype[0];
+        this.chunks = new ArrayList<>();
+        this.entityCount = 0;
+    }
+
+    /**
+     * Returns the cached {@link Archetype} which is reached by adding a <b>component type</b>.
+     * @param id the <b>type id</b>
+     * @return the {@link Archetype}, or null if the transition is not cached yet
+     */
+    Archetype getAddEdge (int id)
+    {
+        return id < addEdges.length ? addEdges[id] : null;
+    }
+
+    /**
+     * Returns the cached {@link Archetype} which is reached by removing a <b>component type</b>.
+     * @param id the <b>type id</b>
+     * @return the {@link Archetype}, or null if the transition is not cached yet
+     */
+    Archetype getRemoveEdge (int id)
+    {
+        return id < removeEdges.length ? removeEdges[id] : null;
+    }
+
+    /**
+     * Caches the {@link Archetype} which is reached by adding a <b>component type</b>.
+     * @param id the <b>type id</b>
+     * @param target the {@link Archetype}
+     */
+    void setAddEdge (int id, Archetype target)
+    {
+        if (id >= addEdges.length) addEdges = Arrays.copyOf(addEdges, id + 1);
+        addEdges[id] = target;
+    }
+
+    /**
+     * Caches the {@link Archetype} which is reached by removing a <b>component type</b>.
+     * @param id the <b>type id</b>
+     * @param target the {@link Archetype}
+     */
+    void setRemoveEdge (int id, Archetype target)
+    {
+        if (id >= removeEdges.length) removeEdges = Arrays.copyOf(removeEdges, id + 1);
+        removeEdges[id] = target;
+    }
+
+    /**
+     * Reserves a new <b>row</b> at the end of this {@link Archetype}. The reserved <b>row</b> is the last
+     * <b>row</b> of the returned {@link Chunk} and has to be filled and placed by the caller.
+     * @return the {@link Chunk} containing the reserved <b>row</b>
+     */
+    Chunk allocate ()
+    {
+        return allocate(1);
+    }
+
+    /**
+     * Reserves new <b>rows</b> at the end of this {@link Archetype}. The reserved <b>rows</b> are the last
+     * <b>rows</b> of the returned {@link Chunk} and have to be filled and placed by the caller.
+     * @param count the number of <b>rows</b>, which must not be greater than {@link Archetype#getFreeRows()}
+     * @return the {@link Chunk} containing the reserved <b>rows</b>
+     */
+    Chunk allocate (int count)
+    {
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (last == null || last.size == Chunk.CAPACITY)
+        {
+            last = spareChunk != null ? spareChunk : new Chunk(this);
+            spareChunk = null;
+            chunks.add(last);
+        }
+
+        last.size += count;
+        entityCount += count;
+        return last;
+    }
+
+    /**
+     * Returns the number of <b>rows</b> which can be reserved at once by {@link Archetype#allocate(int)}, which
+     * are the free <b>rows</b> of the last {@link Chunk}, or a whole {@link Chunk} if the last one is full.
+     * @return the number of <b>rows</b>
+     */
+    int getFreeRows ()
+    {
+        final Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        return last == null || last.size == Chunk.CAPACITY ? Chunk.CAPACITY : Chunk.CAPACITY - last.size;
+    }
+
+    /**
+     * Frees a <b>row</b> by moving the last <b>entity</b> of this {@link Archetype} into it. The data of the
+     * freed <b>row</b> has to be read by the caller beforehand.
+     * @param chunk the {@link Chunk} containing the <b>row</b>
+     * @param row the <b>row</b>
+     */
+    void free (Chunk chunk, int row)
+    {
+        final Chunk last = chunks.get(chunks.size() - 1);
+        final int lastRow = last.size - 1;
+
+        if (last != chunk || lastRow != row)
+        {
+            for (int column = 0; column < typeIds.length; column++)
+                chunk.columns[column][row] = last.columns[column][lastRow];
+            chunk.copyTransform(row, last, lastRow);
+            chunk.place(row, last.entities[lastRow]);
+        }
+
+        last.clear(lastRow);
+        last.size--;
+        entityCount--;
+
+        if (last.size == 0)
+        {
+            chunks.remove(chunks.size() - 1);
+            if (spareChunk == null) spareChunk = last;
+        }
+    }
+
+    /**
+     * Returns the <b>column</b> index of a <b>type id</b>.
+     * @param id the <b>type id</b>
+     * @return the <b>column</b> index, or -1 if this {@link Archetype} does not contain the <b>component type</b>
+     */
+    public int indexOf (int id)
+    {
+        return id < columnIndices.length ? columnIndices[id] : -1;
+    }
+
+    /**
+     * Returns the <b>column</b> index of a <b>component type</b>.
+     * @param clazz the <b>component type</b>
+     * @return the <b>column</b> index, or -1 if this {@link Archetype} does not contain the <b>component type</b>
+     */
+    public int indexOf (Class<? extends Component> clazz)
+    {
+        return indexOf(ComponentType.getId(clazz));
+    }
+
+    /**
+     * Checks wether this {@link Archetype} contains a <b>component type</b>.
+     * @param clazz the <b>component type</b>
+     * @return wether this {@link Archetype} contains the <b>component type</b>
+     */
+    public boolean contains (Class<? extends Component> clazz)
+    {
+        return indexOf(clazz) >= 0;
+    }
+
+    /**
+     * Returns the <b>type id</b> of the <b>component type</b> stored in a <b>column</b>.
+     * @param column the <b>column</b> index
+     * @return the <b>type id</b>
+     */
+    public int getTypeId (int column)
+    {
+        return typeIds[column];
+    }
+
+    /**
+     * Returns the number of <b>component types</b> of this {@link Archetype}.
+     * @return the number of <b>component types</b>
+     */
+    public int getComponentTypeCount ()
+    {
+        return typeIds.length;
+    }
+
+    /**
+     * Returns the {@link ComponentMask} of the <b>component types</b> of this {@link Archetype}.
+     * @return the {@link ComponentMask}
+     */
+    public ComponentMask getMask ()
+    {
+        return mask;
+    }
+
+    /**
+     * Returns the {@link Chunk} instances of this {@link Archetype}.
+     * @return the unmodifiable list of {@link Chunk} instances
+     */
+    public List<Chunk> getChunks ()
+    {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Returns the {@link Chunk} at an index. Together with {@link Archetype#getChunkCount()}, this allows
+     * iterating the {@link Chunk} instances without allocating.
+     * @param index the index
+     * @return the {@link Chunk}
+     */
+    public Chunk getChunk (int index)
+    {
+        return chunks.get(index);
+    }
+
+    /**
+     * Returns the number of {@link Chunk} instances of this {@link Archetype}.
+     * @return the number of {@link Chunk} instances
+     */
+    public int getChunkCount ()
+    {
+        return chunks.size();
+    }
+
+    /**
+     * Returns the number of <b>entities</b> stored in this {@link Archetype}.
+     * @return the number of <b>entities</b>
+     */
+    public int getEntityCount ()
+    {
+        return entityCount;
+    }
+}
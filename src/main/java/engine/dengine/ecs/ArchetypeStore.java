@@ -0,0 +1,830 @@
+package engine.dengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ArchetypeStore}</h2>
+ * <br>
+ * The {@link ArchetypeStore} class stores the <b>components</b> and {@link Transform} data of <b>entities</b>
+ * grouped by their {@link Archetype}. An {@link Entity} which is added to an {@link ArchetypeStore} hands its
+ * <b>components</b> over to the store, and gets them back once it is removed. While it is stored, the
+ * {@link Entity} instance only serves as a facade over its {@link Chunk} <b>row</b>.
+ * <br>
+ * Adding or removing a <b>component</b> of a stored {@link Entity} moves it into another {@link Archetype}.
+ * The transitions between {@link Archetype} instances are cached, so this is amortized constant time.
+ * <br>
+ * Every stored {@link Entity} occupies a <b>slot</b> and is identified by an <b>entity handle</b>
+ * ({@link EntityHandle}). Freed <b>slots</b> are recycled through a free list, and <b>entities</b> removed using
+ * {@link ArchetypeStore#despawn(Entity)} are pooled and handed out again by {@link ArchetypeStore#spawn()},
+ * together with their {@link Transform} and <b>component slots</b>.
+ * <br>
+ * <b>Structural changes</b> must not be made while the {@link Chunk} instances are being iterated, for example
+ * by <b>components</b> or <b>systems</b> during an update. Instead, they are recorded into the per-thread
+ * {@link CommandBuffer} returned by {@link ArchetypeStore#getCommandBuffer()} and applied in one batch by
+ * {@link ArchetypeStore#playback()}.
+ * <br>
+ * The <b>local-to-world matrices</b> of the <b>entity hierarchies</b> are recomputed by
+ * {@link ArchetypeStore#updateWorldMatrices()}, which only visits the subtrees of changed <b>entities</b>.
+ */
+public final class ArchetypeStore
+{
+    private final Map<ComponentMask, Archetype> archetypes;
+    private final List<Archetype> archetypeList;
+    private final Map<QueryKey, Query> queries;
+    private final List<Query> queryList;
+    private int entityCount;
+
+    /** The stored <b>entities</b> indexed by <b>slot index</b> */
+    private Entity[] slots;
+    /** The current <b>generation</b> of every <b>slot</b> */
+    private int[] generations;
+    /** The stack of free <b>slot indices</b> */
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int slotCount;
+
+    /** The stack of pooled <b>entities</b>, guarded by itself */
+    private Entity[] pool;
+    private int poolSize;
+    private final Object poolLock;
+
+    private final ThreadLocal<CommandBuffer> commandBuffers;
+    private final List<CommandBuffer> commandBufferList;
+    private final List<Entity> pendingEntities;
+    private final List<Entity> pendingSpawns;
+    private final List<Entity> pendingDespawns;
+
+    /** The <b>entities</b> whose <b>world matrix</b> has to be recomputed, indexed by depth */
+    private final List<List<Entity>> depthBatches;
+    private int hierarchyPass;
+    /** Wether the {@link Chunk} instances are being updated, during which <b>structural changes</b> are rejected */
+    private boolean updating;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link ArchetypeStore.BlockInitializer}</h2>
+     * <br>
+     * The {@link ArchetypeStore.BlockInitializer} interface is used to fill the {@link Transform} arrays and
+     * <b>component columns</b> of a range of newly spawned <b>rows</b> in bulk.
+     * @see ArchetypeStore#spawnBlock(ComponentMask, int, BlockInitializer)
+     */
+    @FunctionalInterface
+    public interface BlockInitializer
+    {
+        /**
+         * Fills a range of <b>rows</b>. Every <b>component column</b> of the {@link Archetype} has to be filled
+         * for every <b>row</b> of the range.
+         * @param chunk the {@link Chunk}
+         * @param from the first <b>row</b> (inclusive)
+         * @param to the last <b>row</b> (exclusive)
+         * @param offset the index of the first <b>row</b> within the whole block
+         */
+        void initialize (Chunk chunk, int from, int to, int offset);
+    }
+
+    /**
+     * Creates a new, empty {@link ArchetypeStore} instance.
+     */
+    public ArchetypeStore ()
+    {
+        archetypes = new HashMap<>();
+        archetypeList = new ArrayList<>();
+        queries = new HashMap<>();
+        queryList = new ArrayList<>();
+        entityCount = 0;
+
+        slots = new Entity[64];
+        generations = new int[64];
+        freeSlots = new int[64];
+        freeSlotCount = 0;
+        slotCount = 0;
+
+        pool = new Entity[64];
+        poolSize = 0;
+        poolLock = new Object();
+
+        commandBufferList = new ArrayList<>();
+        commandBuffers = ThreadLocal.withInitial(() -> {
+            final CommandBuffer buffer = new CommandBuffer(this);
+            synchronized (commandBufferList)
+            {
+                commandBufferList.add(buffer);
+            }
+            return buffer;
+        });
+        pendingEntities = new ArrayList<>();
+        pendingSpawns = new ArrayList<>();
+        pendingDespawns = new ArrayList<>();
+        depthBatches = new ArrayList<>();
+        hierarchyPass = 0;
+        updating = false;
+    }
+
+    /**
+     * Adds an {@link Entity} and its <b>components</b> to this {@link ArchetypeStore}.
+     * @param entity the {@link Entity}
+     * @throws IllegalArgumentException if the {@link Entity} is already stored in another {@link ArchetypeStore}
+     * @throws IllegalStateException if the {@link Chunk} instances are being updated
+     */
+    public void add (Entity entity)
+    {
+        checkNotUpdating();
+        if (entity.store == this) return;
+        if (entity.store != null) throw new IllegalArgumentException("Tried to add " + Entity.class.getName() +
+                " which is already stored in another " + getClass().getName());
+
+        final Archetype archetype = getOrCreate(entity.mask);
+        final Chunk chunk = archetype.allocate();
+        final int row = chunk.size - 1;
+
+        for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+        {
+            final int id = archetype.getTypeId(column);
+            chunk.columns[column][row] = entity.slots[id];
+            entity.slots[id] = null;
+        }
+        entity.mask = ComponentMask.EMPTY;
+        entity.getTransform().writeTo(chunk, row);
+
+        chunk.place(row, entity);
+        entity.archetype = archetype;
+        entity.store = this;
+        entity.handle = allocateSlot(entity);
+        entityCount++;
+    }
+
+    /**
+     * Removes an {@link Entity} from this {@link ArchetypeStore} and hands its <b>components</b> back to it.
+     * @param entity the {@link Entity}
+     * @throws IllegalStateException if the {@link Chunk} instances are being updated
+     */
+    public void remove (Entity entity)
+    {
+        checkNotUpdating();
+        if (entity.store != this) return;
+
+        entity.detachHierarchy();
+
+        final Archetype archetype = entity.archetype;
+        final Chunk chunk = entity.chunk;
+        final int row = entity.row;
+
+        for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+            entity.setSlot(archetype.getTypeId(column), chunk.columns[column][row]);
+        entity.mask = archetype.getMask();
+        entity.getTransform().unbind();
+
+        archetype.free(chunk, row);
+
+        freeSlot(entity.handle);
+
+        entity.store = null;
+        entity.archetype = null;
+        entity.chunk = null;
+        entity.row = -1;
+        entity.handle = EntityHandle.NULL;
+        entityCount--;
+    }
+
+    /**
+     * Spawns a block of <b>entities</b> which all have the same <b>component types</b>, filling whole
+     * {@link Chunk} ranges at once instead of moving <b>components</b> and {@link Transform} data one
+     * {@link Entity} at a time. The <b>entities</b> are taken from the pool and placed before the
+     * {@link BlockInitializer} is called, which then writes the {@link Transform} arrays and <b>component
+     * columns</b> of the <b>rows</b> directly. Afterwards, the <b>components</b> are bound to their
+     * <b>entities</b> and the <b>rows</b> are marked as changed.
+     * @param mask the <b>component types</b>
+     * @param count the number of <b>entities</b>
+     * @param initializer the {@link BlockInitializer}
+     * @throws IllegalStateException if the {@link BlockInitializer} did not fill a <b>component column</b> or
+     * the {@link Chunk} instances are being updated
+     */
+    public void spawnBlock (ComponentMask mask, int count, BlockInitializer initializer)
+    {
+        checkNotUpdating();
+        final Archetype archetype = getOrCreate(mask);
+
+        int offset = 0;
+        while (offset < count)
+        {
+            final int rows = Math.min(count - offset, archetype.getFreeRows());
+            final Chunk chunk = archetype.allocate(rows);
+            final int from = chunk.size - rows;
+
+            for (int row = from; row < chunk.size; row++)
+            {
+                final Entity entity = obtain();
+                chunk.place(row, entity);
+                entity.archetype = archetype;
+                entity.store = this;
+                entity.handle = allocateSlot(entity);
+            }
+
+            initializer.initialize(chunk, from, chunk.size, offset);
+
+            for (int row = from; row < chunk.size; row++)
+            {
+                final Entity entity = chunk.entities[row];
+                for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+                {
+                    final Component component = chunk.columns[column][row];
+                    if (component == null) throw new IllegalStateException("Tried to spawn a block without " +
+                            ComponentType.getType(archetype.getTypeId(column)).getName() + " components");
+                    component.entity = entity;
+                }
+
+                chunk.markChanged(row);
+                chunk.updateWorld(row, null, 0);
+                chunk.resetPreviousWorld(row);
+            }
+
+            entityCount += rows;
+            offset += rows;
+        }
+    }
+
+    /**
+     * Adds a pooled {@link Entity} without any <b>components</b> and with a reset {@link Transform} to this
+     * {@link ArchetypeStore}. If the pool is empty, a new {@link Entity} is created.
+     * @return the {@link Entity}
+     */
+    public Entity spawn ()
+    {
+        final Entity entity = obtain();
+        add(entity);
+        return entity;
+    }
+
+    /**
+     * Takes an {@link Entity} from the pool without storing it. If the pool is empty, a new {@link Entity} is
+     * created. This method is thread safe.
+     * @return the {@link Entity}
+     */
+    Entity obtain ()
+    {
+        synchronized (poolLock)
+        {
+            if (poolSize == 0) return new Entity();
+            final Entity entity = pool[--poolSize];
+            pool[poolSize] = null;
+            return entity;
+        }
+    }
+
+    private void recycle (Entity entity)
+    {
+        synchronized (poolLock)
+        {
+            if (poolSize == pool.length) pool = Arrays.copyOf(pool, poolSize * 2);
+            pool[poolSize++] = entity;
+        }
+    }
+
+    /**
+     * Removes an {@link Entity}, disposes of its <b>components</b> and returns it to the pool, so it can be
+     * handed out again by {@link ArchetypeStore#spawn()}. The {@link Entity} instance must not be used by the
+     * caller afterwards. Handles to it become <b>stale</b>.
+     * @param entity the {@link Entity}
+     */
+    public void despawn (Entity entity)
+    {
+        if (entity.store != this) return;
+
+        remove(entity);
+        entity.dispose();
+        entity.reset();
+        recycle(entity);
+    }
+
+    /**
+     * Returns the {@link CommandBuffer} of the calling thread.
+     * @return the {@link CommandBuffer}
+     */
+    public CommandBuffer getCommandBuffer ()
+    {
+        return commandBuffers.get();
+    }
+
+    /**
+     * Applies the <b>structural changes</b> recorded in the {@link CommandBuffer} instances of all threads.
+     * All changes to the same {@link Entity} are merged, so it is moved between {@link Archetype} instances at
+     * most once. Despawning an {@link Entity} overrides all other changes to it. This method must not be called
+     * while the {@link Chunk} instances are being iterated or while other threads are recording changes.
+     */
+    public void playback ()
+    {
+        synchronized (commandBufferList)
+        {
+            for (CommandBuffer buffer : commandBufferList)
+                buffer.replay();
+        }
+
+        for (Entity entity : pendingEntities)
+        {
+            entity.pending = false;
+            if (entity.despawnPending) entity.discardPending();
+            else applyPending(entity);
+        }
+        pendingEntities.clear();
+
+        for (Entity entity : pendingSpawns)
+        {
+            if (entity.store != null) continue;
+            if (entity.despawnPending)
+            {
+                entity.despawnPending = false;
+                entity.dispose();
+                entity.reset();
+                recycle(entity);
+                continue;
+            }
+            add(entity);
+        }
+        pendingSpawns.clear();
+
+        for (Entity entity : pendingDespawns)
+        {
+            entity.despawnPending = false;
+            despawn(entity);
+        }
+        pendingDespawns.clear();
+    }
+
+    void deferSpawn (Entity entity)
+    {
+        pendingSpawns.add(entity);
+    }
+
+    void deferDespawn (Entity entity)
+    {
+        if (entity.despawnPending) return;
+        entity.despawnPending = true;
+        if (entity.store == this) pendingDespawns.add(entity);
+    }
+
+    void deferAddComponent (Entity entity, int id, Component component)
+    {
+        if (entity.store != this)
+        {
+            entity.addComponent(component);
+            return;
+        }
+
+        beginPending(entity);
+        if (entity.mask.has(id)) return;
+        component.entity = entity;
+        entity.setSlot(id, component);
+        entity.mask = entity.mask.with(id);
+    }
+
+    void deferRemoveComponent (Entity entity, int id)
+    {
+        if (entity.store != this)
+        {
+            entity.removeComponent(id);
+            return;
+        }
+
+        beginPending(entity);
+        if (!entity.mask.has(id)) return;
+        if (id < entity.slots.length) entity.slots[id] = null;
+        entity.mask = entity.mask.without(id);
+    }
+
+    /**
+     * Starts collecting the pending <b>component types</b> and added <b>components</b> of a stored
+     * {@link Entity} in its otherwise unused <b>component slots</b> and {@link ComponentMask}.
+     * @param entity the {@link Entity}
+     */
+    private void beginPending (Entity entity)
+    {
+        if (entity.pending) return;
+        entity.pending = true;
+        entity.mask = entity.archetype.getMask();
+        pendingEntities.add(entity);
+    }
+
+    /**
+     * Moves a stored {@link Entity} into the {@link Archetype} of its pending {@link ComponentMask}, taking the
+     * added <b>components</b> from its <b>component slots</b> and all others from its current {@link Chunk}
+     * <b>row</b>.
+     * @param entity the {@link Entity}
+     */
+    private void applyPending (Entity entity)
+    {
+        final Archetype source = entity.archetype;
+        final Archetype target = getOrCreate(entity.mask);
+        final Component[] slots = entity.slots;
+        final Chunk sourceChunk = entity.chunk;
+        final int sourceRow = entity.row;
+
+        if (target == source)
+        {
+            // Only components which were removed and added again within the same batch have to be replaced
+            for (int column = 0; column < source.getComponentTypeCount(); column++)
+            {
+                final int id = source.getTypeId(column);
+                if (id >= slots.length || slots[id] == null) continue;
+                sourceChunk.columns[column][sourceRow] = slots[id];
+                slots[id] = null;
+            }
+            entity.mask = ComponentMask.EMPTY;
+            return;
+        }
+
+        final Chunk targetChunk = target.allocate();
+        final int targetRow = targetChunk.size - 1;
+
+        for (int column = 0; column < target.getComponentTypeCount(); column++)
+        {
+            final int id = target.getTypeId(column);
+            Component component = id < slots.length ? slots[id] : null;
+            if (component == null) component = sourceChunk.columns[source.indexOf(id)][sourceRow];
+            else slots[id] = null;
+            targetChunk.columns[column][targetRow] = component;
+        }
+        targetChunk.copyTransform(targetRow, sourceChunk, sourceRow);
+
+        source.free(sourceChunk, sourceRow);
+        targetChunk.place(targetRow, entity);
+        entity.archetype = target;
+        entity.mask = ComponentMask.EMPTY;
+    }
+
+    /**
+     * Returns the {@link Entity} an <b>entity handle</b> refers to.
+     * @param handle the <b>entity handle</b>
+     * @return the {@link Entity}, or null if the handle is <b>stale</b> or invalid
+     */
+    public Entity getEntity (long handle)
+    {
+        return isAlive(handle) ? slots[EntityHandle.index(handle)] : null;
+    }
+
+    /**
+     * Checks wether an <b>entity handle</b> refers to an {@link Entity} which is stored in this
+     * {@link ArchetypeStore}.
+     * @param handle the <b>entity handle</b>
+     * @return wether the handle is neither <b>stale</b> nor invalid
+     */
+    public boolean isAlive (long handle)
+    {
+        final int index = EntityHandle.index(handle);
+        return index >= 0 && index < slotCount && generations[index] == EntityHandle.generation(handle)
+                && slots[index] != null;
+    }
+
+    private long allocateSlot (Entity entity)
+    {
+        final int index;
+        if (freeSlotCount > 0) index = freeSlots[--freeSlotCount];
+        else
+        {
+            if (slotCount == slots.length)
+            {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+                generations = Arrays.copyOf(generations, slotCount * 2);
+            }
+            index = slotCount++;
+            generations[index] = 1;
+        }
+
+        slots[index] = entity;
+        return EntityHandle.of(index, generations[index]);
+    }
+
+    private void freeSlot (long handle)
+    {
+        final int index = EntityHandle.index(handle);
+        slots[index] = null;
+        // Skip generation 0, so handles never become EntityHandle.NULL
+        if (++generations[index] == 0) generations[index] = 1;
+
+        if (freeSlotCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        freeSlots[freeSlotCount++] = index;
+    }
+
+    /**
+     * Adds a {@link Component} to a stored {@link Entity} by moving the {@link Entity} into the {@link Archetype}
+     * which additionally contains the <b>component type</b>.
+     * @param entity the {@link Entity}
+     * @param id the <b>type id</b> of the {@link Component}
+     * @param component the {@link Component}
+     * @throws IllegalStateException if the {@link Chunk} instances are being updated
+     */
+    void addComponent (Entity entity, int id, Component component)
+    {
+        checkNotUpdating();
+        final Archetype source = entity.archetype;
+        if (source.indexOf(id) >= 0) return;
+
+        Archetype target = source.getAddEdge(id);
+        if (target == null)
+        {
+            target = getOrCreate(source.getMask().with(id));
+            source.setAddEdge(id, target);
+            target.setRemoveEdge(id, source);
+        }
+
+        move(entity, target, component);
+    }
+
+    /**
+     * Removes a <b>component type</b> from a stored {@link Entity} by moving the {@link Entity} into the
+     * {@link Archetype} which does not contain the <b>component type</b>.
+     * @param entity the {@link Entity}
+     * @param id the <b>type id</b> of the <b>component type</b>
+     * @throws IllegalStateException if the {@link Chunk} instances are being updated
+     */
+    void removeComponent (Entity entity, int id)
+    {
+        checkNotUpdating();
+        final Archetype source = entity.archetype;
+        if (source.indexOf(id) < 0) return;
+
+        Archetype target = source.getRemoveEdge(id);
+        if (target == null)
+        {
+            target = getOrCreate(source.getMask().without(id));
+            source.setRemoveEdge(id, target);
+            target.setAddEdge(id, source);
+        }
+
+        move(entity, target, null);
+    }
+
+    private void checkNotUpdating ()
+    {
+        if (updating) throw new IllegalStateException("Tried to change the structure of " + getClass().getName() +
+                " while its chunks are being updated, the " + CommandBuffer.class.getName() + " has to be used");
+    }
+
+    private void move (Entity entity, Archetype target, Component added)
+    {
+        final Archetype source = entity.archetype;
+        final Chunk sourceChunk = entity.chunk;
+        final int sourceRow = entity.row;
+
+        final Chunk targetChunk = target.allocate();
+        final int targetRow = targetChunk.size - 1;
+
+        for (int column = 0; column < target.getComponentTypeCount(); column++)
+        {
+            final int sourceColumn = source.indexOf(target.getTypeId(column));
+            targetChunk.columns[column][targetRow] = sourceColumn < 0 ? added : sourceChunk.columns[sourceColumn][sourceRow];
+        }
+        targetChunk.copyTransform(targetRow, sourceChunk, sourceRow);
+
+        source.free(sourceChunk, sourceRow);
+        targetChunk.place(targetRow, entity);
+        entity.archetype = target;
+    }
+
+    private Archetype getOrCreate (ComponentMask mask)
+    {
+        Archetype archetype = archetypes.get(mask);
+        if (archetype == null)
+        {
+            archetype = new Archetype(mask);
+            archetypes.put(mask, archetype);
+            archetypeList.add(archetype);
+            for (Query query : queryList)
+                query.onArchetypeCreated(archetype);
+        }
+        return archetype;
+    }
+
+    /**
+     * Returns the cached {@link Query} for a set of required and excluded <b>component types</b>, creating it if
+     * it does not exist yet.
+     * @param required the required <b>component types</b>
+     * @param excluded the excluded <b>component types</b>
+     * @return the {@link Query}
+     */
+    public Query query (ComponentMask required, ComponentMask excluded)
+    {
+        final QueryKey key = new QueryKey(required, excluded);
+        Query query = queries.get(key);
+        if (query == null)
+        {
+            query = new Query(this, required, excluded);
+            for (Archetype archetype : archetypeList)
+                query.onArchetypeCreated(archetype);
+            queries.put(key, query);
+            queryList.add(query);
+        }
+        return query;
+    }
+
+    /**
+     * Returns all {@link Archetype} instances of this {@link ArchetypeStore}, including empty ones.
+     * @return the unmodifiable list of {@link Archetype} instances
+     */
+    public List<Archetype> getArchetypes ()
+    {
+        return Collections.unmodifiableList(archetypeList);
+    }
+
+    /**
+     * Returns the {@link Archetype} at an index. Together with {@link ArchetypeStore#getArchetypeCount()}, this
+     * allows iterating the {@link Archetype} instances without allocating.
+     * @param index the index
+     * @return the {@link Archetype}
+     */
+    public Archetype getArchetype (int index)
+    {
+        return archetypeList.get(index);
+    }
+
+    /**
+     * Returns the number of {@link Archetype} instances of this {@link ArchetypeStore}.
+     * @return the number of {@link Archetype} instances
+     */
+    public int getArchetypeCount ()
+    {
+        return archetypeList.size();
+    }
+
+    /**
+     * Returns the <b>entities</b> whose {@link Transform} changed since the last call to
+     * {@link ArchetypeStore#clearChanges()}. The returned {@link Iterable} reads the change sets of the
+     * {@link Chunk} instances lazily, so it must not be used across structural changes.
+     * @return the changed <b>entities</b>
+     */
+    public Iterable<Entity> getChangedEntities ()
+    {
+        return ChangedEntityIterator::new;
+    }
+
+    /**
+     * Recomputes the <b>local-to-world matrices</b> of all <b>entities</b> whose {@link Transform} or parent
+     * changed since the last call to {@link ArchetypeStore#clearChanges()}, together with all their descendants.
+     * The <b>entities</b> are processed breadth-first in batches of the same depth, so the <b>world matrix</b> of
+     * a parent is always recomputed before those of its children, and every <b>entity</b> is recomputed at most
+     * once. Untouched subtrees are not visited at all.
+     */
+    public void updateWorldMatrices ()
+    {
+        hierarchyPass++;
+
+        for (int i = 0; i < archetypeList.size(); i++)
+        {
+            final Archetype archetype = archetypeList.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                for (int row = chunk.nextChangedRow(0); row >= 0; row = chunk.nextChangedRow(row + 1))
+                    getDepthBatch(chunk.entities[row].depth).add(chunk.entities[row]);
+            }
+        }
+
+        for (int depth = 0; depth < depthBatches.size(); depth++)
+        {
+            final List<Entity> batch = depthBatches.get(depth);
+            for (int i = 0; i < batch.size(); i++)
+            {
+                final Entity entity = batch.get(i);
+                if (entity.hierarchyPass == hierarchyPass) continue;
+                entity.hierarchyPass = hierarchyPass;
+
+                final Entity parent = entity.parent;
+                if (parent == null) entity.chunk.updateWorld(entity.row, null, 0);
+                else entity.chunk.updateWorld(entity.row, parent.chunk, parent.row);
+
+                if (entity.children != null && !entity.children.isEmpty())
+                    getDepthBatch(depth + 1).addAll(entity.children);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Saves the current <b>local-to-world matrices</b> of all <b>entities</b> as their previous ones, which
+     * rendering <b>interpolates</b> from. This has to be called at the start of every <b>tick</b>.
+     * @see Transform#getInterpolatedWorldMatrix(float, org.joml.Matrix3x2f)
+     */
+    public void savePreviousWorldMatrices ()
+    {
+        for (int i = 0; i < archetypeList.size(); i++)
+        {
+            final Archetype archetype = archetypeList.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+                archetype.getChunk(j).savePreviousWorld();
+        }
+    }
+
+    /**
+     * Updates the <b>components</b> of all stored <b>entities</b> using {@link Chunk#update(float)}. Adding or
+     * removing <b>entities</b> or <b>components</b> would swap <b>rows</b> of the {@link Chunk} being updated,
+     * so such <b>structural changes</b> throw an {@link IllegalStateException} until this method returns.
+     * They have to be recorded in the {@link CommandBuffer} returned by {@link ArchetypeStore#getCommandBuffer()}
+     * instead.
+     * @param deltaTime the delta time since the last update
+     */
+    public void update (float deltaTime)
+    {
+        updating = true;
+        try
+        {
+            for (int i = 0; i < archetypeList.size(); i++)
+            {
+                final Archetype archetype = archetypeList.get(i);
+                for (int j = 0; j < archetype.getChunkCount(); j++)
+                    archetype.getChunk(j).update(deltaTime);
+            }
+        }
+        finally
+        {
+            updating = false;
+        }
+    }
+
+    private List<Entity> getDepthBatch (int depth)
+    {
+        while (depthBatches.size() <= depth)
+            depthBatches.add(new ArrayList<>());
+        return depthBatches.get(depth);
+    }
+
+    /**
+     * Clears the change sets of all {@link Chunk} instances.
+     */
+    public void clearChanges ()
+    {
+        for (Archetype archetype : archetypeList)
+            for (int i = 0; i < archetype.getChunkCount(); i++)
+                archetype.getChunk(i).clearChanges();
+    }
+
+    /**
+     * Returns the number of <b>entities</b> stored in this {@link ArchetypeStore}.
+     * @return the number of <b>entities</b>
+     */
+    public int getEntityCount ()
+    {
+        return entityCount;
+    }
+
+    /**
+     * Iterates the changed <b>rows</b> of all {@link Chunk} instances.
+     */
+    private final class ChangedEntityIterator implements Iterator<Entity>
+    {
+        private int archetypeIndex = 0;
+        private int chunkIndex = 0;
+        private int row = -1;
+
+        private ChangedEntityIterator ()
+        {
+            advance();
+        }
+
+        private void advance ()
+        {
+            while (archetypeIndex < archetypeList.size())
+            {
+                final Archetype archetype = archetypeList.get(archetypeIndex);
+                while (chunkIndex < archetype.getChunkCount())
+                {
+                    row = archetype.getChunk(chunkIndex).nextChangedRow(row + 1);
+                    if (row >= 0) return;
+                    chunkIndex++;
+                }
+                archetypeIndex++;
+                chunkIndex = 0;
+            }
+            row = -1;
+        }
+
+        @Override
+        public boolean hasNext ()
+        {
+            return row >= 0;
+        }
+
+        @Override
+        public Entity next ()
+        {
+            if (row < 0) throw new NoSuchElementException();
+            final Entity entity = archetypeList.get(archetypeIndex).getChunk(chunkIndex).getEntity(row);
+            advance();
+            return entity;
+        }
+    }
+
+    private record QueryKey(ComponentMask required, ComponentMask excluded) {}
+}
@@ -0,0 +1,526 @@
+package engine.dengine.ecs;
+
+import engine.dengine.math.MathUtil;
+import org.joml.Matrix3x2f;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Chunk}</h2>
+ * <br>
+ * The {@link Chunk} class is a fixed size block of <b>entities</b> which all belong to the same {@link Archetype}.
+ * Every <b>component type</b> of the {@link Archetype} is stored in its own contiguous <b>column</b>, and the
+ * {@link Transform} data of the <b>entities</b> is stored in primitive float arrays, one array per attribute.
+ * The <b>rows</b> of a {@link Chunk} are always densely packed, so the first {@link Chunk#size()} rows are valid.
+ * <br>
+ * The arrays returned by this class are the backing storage of the {@link Chunk} and are meant to be read and
+ * written by <b>systems</b> directly. They must not be cached across structural changes.
+ * <br>
+ * Every <b>row</b> has a {@link Transform} <b>version</b> which is incremented on every change, and a
+ * {@link Chunk} keeps a bitset of the <b>rows</b> whose {@link Transform} changed since the last call to
+ * {@link Chunk#clearChanges()}. <b>Systems</b> which write the {@link Transform} arrays directly have to call
+ * {@link Chunk#markChanged(int)} for every changed <b>row</b>.
+ * <br>
+ * Next to the local {@link Transform} data, every <b>row</b> caches the <b>local-to-world matrix</b> of its
+ * {@link Entity} as the six elements of a {@link Matrix3x2f}, together with a <b>world version</b> which is
+ * incremented every time the <b>matrix</b> is recomputed by {@link ArchetypeStore#updateWorldMatrices()}.
+ * The <b>matrix</b> of the previous <b>tick</b> is kept as well ({@link Chunk#savePreviousWorld()}), so rendering
+ * can <b>interpolate</b> between both states. The sine and cosine of the <b>rotation</b> of every <b>row</b> are
+ * cached as well and only recomputed once the <b>rotation</b> changed.
+ */
+public final class Chunk
+{
+    /** The number of <b>entities</b> a {@link Chunk} can hold */
+    public static final int CAPACITY = 128;
+
+    private final Archetype archetype;
+    final Entity[] entities;
+    final Component[][] columns;
+    final float[] positionX, positionY, positionZ;
+    final float[] scaleX, scaleY;
+    final float[] rotation;
+    final float[] rotationSin, rotationCos;
+    /** The <b>rotations</b> {@link Chunk#rotationSin} and {@link Chunk#rotationCos} were computed for */
+    final float[] trigRotation;
+    final int[] versions;
+    final float[] worldM00, worldM01, worldM10, worldM11, worldM20, worldM21;
+    final int[] worldVersions;
+    final float[] previousM00, previousM01, previousM10, previousM11, previousM20, previousM21;
+    private final long[] changed;
+    int size;
+
+    /**
+     * Creates a new, empty {@link Chunk} instance.
+     * @param archetype the {@link Archetype} this {@link Chunk} belongs to
+     */
+    Chunk (Archetype archetype)
+    {
+        this.archetype = archetype;
+        this.entities = new Entity[CAPACITY];
+        this.columns = new Component[archetype.getComponentTypeCount()][CAPACITY];
+        this.positionX = new float[CAPACITY];
+        this.positionY = new float[CAPACITY];
+        this.positionZ = new float[CAPACITY];
+        this.scaleX = new float[CAPACITY];
+        this.scaleY = new float[CAPACITY];
+        this.rotation = new float[CAPACITY];
+        this.rotationSin = new float[CAPACITY];
+        this.rotationCos = new float[CAPACITY];
+        this.trigRotation = new float[CAPACITY];
+        Arrays.fill(trigRotation, Float.NaN);
+        this.versions = new int[CAPACITY];
+        this.worldM00 = new float[CAPACITY];
+        this.worldM01 = new float[CAPACITY];
+        this.worldM10 = new float[CAPACITY];
+        this.worldM11 = new float[CAPACITY];
+        this.worldM20 = new float[CAPACITY];
+        this.worldM21 = new float[CAPACITY];
+        this.worldVersions = new int[CAPACITY];
+        this.previousM00 = new float[CAPACITY];
+        this.previousM01 = new float[CAPACITY];
+        this.previousM10 = new float[CAPACITY];
+        this.previousM11 = new float[CAPACITY];
+        this.previousM20 = new float[CAPACITY];
+        this.previousM21 = new float[CAPACITY];
+        this.changed = new long[(CAPACITY + 63) >>> 6];
+        this.size = 0;
+    }
+
+    /**
+     * Places an {@link Entity} into a <b>row</b> and binds its {@link Transform} to that <b>row</b>.
+     * @param row the <b>row</b>
+     * @param entity the {@link Entity}
+     */
+    void place (int row, Entity entity)
+    {
+        entities[row] = entity;
+        entity.chunk = this;
+        entity.row = row;
+        entity.getTransform().bind(this, row);
+    }
+
+    /**
+     * Copies the {@link Transform} data of a <b>row</b> of another {@link Chunk} into a <b>row</b> of this one.
+     * @param dstRow the destination <b>row</b>
+     * @param src the source {@link Chunk}
+     * @param srcRow the source <b>row</b>
+     */
+    void copyTransform (int dstRow, Chunk src, int srcRow)
+    {
+        positionX[dstRow] = src.positionX[srcRow];
+        positionY[dstRow] = src.positionY[srcRow];
+        positionZ[dstRow] = src.positionZ[srcRow];
+        scaleX[dstRow] = src.scaleX[srcRow];
+        scaleY[dstRow] = src.scaleY[srcRow];
+        rotation[dstRow] = src.rotation[srcRow];
+        rotationSin[dstRow] = src.rotationSin[srcRow];
+        rotationCos[dstRow] = src.rotationCos[srcRow];
+        trigRotation[dstRow] = src.trigRotation[srcRow];
+        versions[dstRow] = src.versions[srcRow];
+        worldM00[dstRow] = src.worldM00[srcRow];
+        worldM01[dstRow] = src.worldM01[srcRow];
+        worldM10[dstRow] = src.worldM10[srcRow];
+        worldM11[dstRow] = src.worldM11[srcRow];
+        worldM20[dstRow] = src.worldM20[srcRow];
+        worldM21[dstRow] = src.worldM21[srcRow];
+        worldVersions[dstRow] = src.worldVersions[srcRow];
+        previousM00[dstRow] = src.previousM00[srcRow];
+        previousM01[dstRow] = src.previousM01[srcRow];
+        previousM10[dstRow] = src.previousM10[srcRow];
+        previousM11[dstRow] = src.previousM11[srcRow];
+        previousM20[dstRow] = src.previousM20[srcRow];
+        previousM21[dstRow] = src.previousM21[srcRow];
+        if (src.isChanged(srcRow)) setChangedBit(dstRow);
+        else changed[dstRow >>> 6] &= ~(1L << dstRow);
+    }
+
+    /**
+     * Recomputes the <b>local-to-world matrix</b> of a <b>row</b> by multiplying the <b>world matrix</b> of its
+     * parent with its local <b>matrix</b>, which translates, rotates and scales in this order, and increments
+     * its <b>world version</b>. The <b>world matrix</b> of the parent has to be up to date.
+     * @param row the <b>row</b>
+     * @param parent the {@link Chunk} of the parent, or null if the <b>row</b> has no parent
+     * @param parentRow the <b>row</b> of the parent
+     */
+    void updateWorld (int row, Chunk parent, int parentRow)
+    {
+        updateTrig(row);
+        final float cos = rotationCos[row];
+        final float sin = rotationSin[row];
+
+        final float l00 = cos * scaleX[row], l01 = sin * scaleX[row];
+        final float l10 = -sin * scaleY[row], l11 = cos * scaleY[row];
+        final float l20 = positionX[row], l21 = positionY[row];
+
+        if (parent == null)
+        {
+            worldM00[row] = l00;
+            worldM01[row] = l01;
+            worldM10[row] = l10;
+            worldM11[row] = l11;
+            worldM20[row] = l20;
+            worldM21[row] = l21;
+        }
+        else
+        {
+            final float p00 = parent.worldM00[parentRow], p01 = parent.worldM01[parentRow];
+            final float p10 = parent.worldM10[parentRow], p11 = parent.worldM11[parentRow];
+
+            worldM00[row] = p00 * l00 + p10 * l01;
+            worldM01[row] = p01 * l00 + p11 * l01;
+            worldM10[row] = p00 * l10 + p10 * l11;
+            worldM11[row] = p01 * l10 + p11 * l11;
+            worldM20[row] = p00 * l20 + p10 * l21 + parent.worldM20[parentRow];
+            worldM21[row] = p01 * l20 + p11 * l21 + parent.worldM21[parentRow];
+        }
+        worldVersions[row]++;
+    }
+
+    /**
+     * Recomputes the cached sine and cosine of the <b>rotation</b> of a <b>row</b> using {@link MathUtil#sin(float)}
+     * and {@link MathUtil#cos(float)}, if the <b>rotation</b> changed since they were last computed.
+     * @param row the <b>row</b>
+     */
+    void updateTrig (int row)
+    {
+        final float degrees = rotation[row];
+        if (Float.floatToRawIntBits(degrees) == Float.floatToRawIntBits(trigRotation[row])) return;
+        rotationSin[row] = MathUtil.sin(degrees);
+        rotationCos[row] = MathUtil.cos(degrees);
+        trigRotation[row] = degrees;
+    }
+
+    /**
+     * Copies the <b>local-to-world matrix</b> of a <b>row</b> into its previous <b>matrix</b>, so the <b>row</b>
+     * is not <b>interpolated</b> until it changes again.
+     * @param row the <b>row</b>
+     */
+    void resetPreviousWorld (int row)
+    {
+        previousM00[row] = worldM00[row];
+        previousM01[row] = worldM01[row];
+        previousM10[row] = worldM10[row];
+        previousM11[row] = worldM11[row];
+        previousM20[row] = worldM20[row];
+        previousM21[row] = worldM21[row];
+    }
+
+    /**
+     * Copies the <b>local-to-world matrices</b> of all <b>rows</b> into the previous <b>matrices</b>. This is done
+     * at the start of every <b>tick</b>.
+     */
+    public void savePreviousWorld ()
+    {
+        System.arraycopy(worldM00, 0, previousM00, 0, size);
+        System.arraycopy(worldM01, 0, previousM01, 0, size);
+        System.arraycopy(worldM10, 0, previousM10, 0, size);
+        System.arraycopy(worldM11, 0, previousM11, 0, size);
+        System.arraycopy(worldM20, 0, previousM20, 0, size);
+        System.arraycopy(worldM21, 0, previousM21, 0, size);
+    }
+
+    /**
+     * Marks the {@link Transform} of a <b>row</b> as changed without incrementing its <b>version</b>.
+     * @param row the <b>row</b>
+     */
+    void setChangedBit (int row)
+    {
+        changed[row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * Marks the {@link Transform} of a <b>row</b> as changed by incrementing its <b>version</b> and setting its
+     * bit in the change set.
+     * @param row the <b>row</b>
+     */
+    public void markChanged (int row)
+    {
+        versions[row]++;
+        setChangedBit(row);
+    }
+
+    /**
+     * Checks wether the {@link Transform} of a <b>row</b> changed since the last call to
+     * {@link Chunk#clearChanges()}.
+     * @param row the <b>row</b>
+     * @return wether the {@link Transform} changed
+     */
+    public boolean isChanged (int row)
+    {
+        return (changed[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns the first <b>row</b> greater than or equal to <b>from</b> whose {@link Transform} changed since the
+     * last call to {@link Chunk#clearChanges()}.
+     * @param from the <b>row</b> to start searching from
+     * @return the <b>row</b>, or -1 if there is none
+     */
+    public int nextChangedRow (int from)
+    {
+        int word = from >>> 6;
+        if (from >= size) return -1;
+
+        long bits = changed[word] & (-1L << from);
+        while (true)
+        {
+            if (bits != 0)
+            {
+                final int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return row < size ? row : -1;
+            }
+            if (++word == changed.length) return -1;
+            bits = changed[word];
+        }
+    }
+
+    /**
+     * Clears the change set of this {@link Chunk}.
+     */
+    public void clearChanges ()
+    {
+        for (int i = 0; i < changed.length; i++)
+            changed[i] = 0;
+    }
+
+    /**
+     * Returns the {@link Transform} <b>version</b> of a <b>row</b>.
+     * @param row the <b>row</b>
+     * @return the <b>version</b>
+     */
+    public int getVersion (int row)
+    {
+        return versions[row];
+    }
+
+    /**
+     * Returns the <b>world version</b> of a <b>row</b>, which is incremented every time its
+     * <b>local-to-world matrix</b> is recomputed.
+     * @param row the <b>row</b>
+     * @return the <b>world version</b>
+     */
+    public int getWorldVersion (int row)
+    {
+        return worldVersions[row];
+    }
+
+    /**
+     * Copies the cached <b>local-to-world matrix</b> of a <b>row</b> into a {@link Matrix3x2f}.
+     * @param row the <b>row</b>
+     * @param dest the {@link Matrix3x2f} which is written to
+     * @return <b>dest</b>
+     */
+    public Matrix3x2f getWorldMatrix (int row, Matrix3x2f dest)
+    {
+        return dest.set(worldM00[row], worldM01[row], worldM10[row], worldM11[row], worldM20[row], worldM21[row]);
+    }
+
+    /**
+     * Checks wether the <b>local-to-world matrix</b> of a <b>row</b> differs from the one of the previous
+     * <b>tick</b>, so <b>interpolating</b> between them gives a different result for every factor.
+     * @param row the <b>row</b>
+     * @return wether the <b>row</b> moved during the last <b>tick</b>
+     */
+    public boolean hasMoved (int row)
+    {
+        return previousM00[row] != worldM00[row] || previousM01[row] != worldM01[row] ||
+                previousM10[row] != worldM10[row] || previousM11[row] != worldM11[row] ||
+                previousM20[row] != worldM20[row] || previousM21[row] != worldM21[row];
+    }
+
+    /**
+     * <b>Interpolates</b> linearly between the previous and the current <b>local-to-world matrix</b> of a
+     * <b>row</b>. The translation is <b>interpolated</b> exactly, while fast rotations are slightly shrunk
+     * halfway through a <b>tick</b>, which is not noticeable at common <b>tick rates</b>.
+     * @param row the <b>row</b>
+     * @param alpha the <b>interpolation</b> factor, where 0 is the previous and 1 the current <b>matrix</b>
+     * @param dest the {@link Matrix3x2f} which is written to
+     * @return <b>dest</b>
+     */
+    public Matrix3x2f getInterpolatedWorldMatrix (int row, float alpha, Matrix3x2f dest)
+    {
+        return dest.set(
+                previousM00[row] + (worldM00[row] - previousM00[row]) * alpha,
+                previousM01[row] + (worldM01[row] - previousM01[row]) * alpha,
+                previousM10[row] + (worldM10[row] - previousM10[row]) * alpha,
+                previousM11[row] + (worldM11[row] - previousM11[row]) * alpha,
+                previousM20[row] + (worldM20[row] - previousM20[row]) * alpha,
+                previousM21[row] + (worldM21[row] - previousM21[row]) * alpha);
+    }
+
+    /**
+     * Clears all references held by a <b>row</b>, so removed <b>entities</b> and <b>components</b> can be
+     * garbage collected.
+     * @param row the <b>row</b>
+     */
+    void clear (int row)
+    {
+        entities[row] = null;
+        changed[row >>> 6] &= ~(1L << row);
+        for (Component[] column : columns)
+            column[row] = null;
+    }
+
+    /**
+     * Updates all <b>components</b> in this {@link Chunk}, one <b>column</b> after another.
+     * @param deltaTime the delta time since the last update
+     */
+    public void update (float deltaTime)
+    {
+        for (Component[] column : columns)
+            for (int row = 0; row < size; row++)
+                column[row].update(deltaTime);
+    }
+
+    /**
+     * Returns the {@link Archetype} this {@link Chunk} belongs to.
+     * @return the {@link Archetype}
+     */
+    public Archetype getArchetype ()
+    {
+        return archetype;
+    }
+
+    /**
+     * Returns the number of <b>entities</b> stored in this {@link Chunk}.
+     * @return the number of <b>entities</b>
+     */
+    public int size ()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the {@link Entity} stored in a <b>row</b>.
+     * @param row the <b>row</b>
+     * @return the {@link Entity}
+     */
+    public Entity getEntity (int row)
+    {
+        return entities[row];
+    }
+
+    /**
+     * Returns the <b>column</b> of a <b>component type</b>.
+     * @param clazz the {@link Class} instance of {@link T}
+     * @return the <b>column</b>, or null if the {@link Archetype} does not contain {@link T}
+     * @param <T> the <b>component type</b>
+     */
+    public <T extends Component> Component[] getColumn (Class<T> clazz)
+    {
+        final int index = archetype.indexOf(clazz);
+        return index < 0 ? null : columns[index];
+    }
+
+    /**
+     * Returns the x <b>positions</b> of all <b>rows</b>.
+     * @return the x <b>positions</b>
+     */
+    public float[] getPositionX ()
+    {
+        return positionX;
+    }
+
+    /**
+     * Returns the y <b>positions</b> of all <b>rows</b>.
+     * @return the y <b>positions</b>
+     */
+    public float[] getPositionY ()
+    {
+        return positionY;
+    }
+
+    /**
+     * Returns the z <b>positions</b> of all <b>rows</b>.
+     * @return the z <b>positions</b>
+     */
+    public float[] getPositionZ ()
+    {
+        return positionZ;
+    }
+
+    /**
+     * Returns the x <b>scales</b> of all <b>rows</b>.
+     * @return the x <b>scales</b>
+     */
+    public float[] getScaleX ()
+    {
+        return scaleX;
+    }
+
+    /**
+     * Returns the y <b>scales</b> of all <b>rows</b>.
+     * @return the y <b>scales</b>
+     */
+    public float[] getScaleY ()
+    {
+        return scaleY;
+    }
+
+    /**
+     * Returns the <b>rotations</b> in degrees of all <b>rows</b>.
+     * @return the <b>rotations</b>
+     */
+    public float[] getRotation ()
+    {
+        return rotation;
+    }
+
+    /**
+     * Returns the <b>first column x</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>first column x</b> elements
+     */
+    public float[] getWorldM00 ()
+    {
+        return worldM00;
+    }
+
+    /**
+     * Returns the <b>first column y</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>first column y</b> elements
+     */
+    public float[] getWorldM01 ()
+    {
+        return worldM01;
+    }
+
+    /**
+     * Returns the <b>second column x</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>second column x</b> elements
+     */
+    public float[] getWorldM10 ()
+    {
+        return worldM10;
+    }
+
+    /**
+     * Returns the <b>second column y</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>second column y</b> elements
+     */
+    public float[] getWorldM11 ()
+    {
+        return worldM11;
+    }
+
+    /**
+     * Returns the <b>translation x</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>translation x</b> elements
+     */
+    public float[] getWorldM20 ()
+    {
+        return worldM20;
+    }
+
+    /**
+     * Returns the <b>translation y</b> elements of the <b>local-to-world matrices</b> of all <b>rows</b>.
+     * @return the <b>translation y</b> elements
+     */
+    public float[] getWorldM21 ()
+    {
+        return worldM21;
+    }
+}
@@ -0,0 +1,140 @@
+package engine.dengine.ecs;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link CommandBuffer}</h2>
+ * <br>
+ * The {@link CommandBuffer} class is used to record <b>structural changes</b>, meaning spawning and despawning
+ * <b>entities</b> as well as adding and removing <b>components</b>, while the {@link Chunk} instances of an
+ * {@link ArchetypeStore} are being iterated. The recorded changes are applied in one batch by
+ * {@link ArchetypeStore#playback()}, where all changes to the same {@link Entity} are merged into a single move
+ * between {@link Archetype} instances.
+ * <br>
+ * A {@link CommandBuffer} is not thread safe. Every thread obtains its own one using
+ * {@link ArchetypeStore#getCommandBuffer()}.
+ */
+public final class CommandBuffer
+{
+    private static final byte SPAWN = 0;
+    private static final byte DESPAWN = 1;
+    private static final byte ADD_COMPONENT = 2;
+    private static final byte REMOVE_COMPONENT = 3;
+
+    private final ArchetypeStore store;
+    private byte[] commands;
+    private Entity[] entities;
+    private Component[] components;
+    private int[] typeIds;
+    private int size;
+
+    /**
+     * Creates a new, empty {@link CommandBuffer} instance.
+     * @param store the {@link ArchetypeStore} the changes will be applied to
+     */
+    CommandBuffer (ArchetypeStore store)
+    {
+        this.store = store;
+        this.commands = new byte[64];
+        this.entities = new Entity[64];
+        this.components = new Component[64];
+        this.typeIds = new int[64];
+        this.size = 0;
+    }
+
+    private void record (byte command, Entity entity, Component component, int typeId)
+    {
+        if (size == commands.length)
+        {
+            commands = Arrays.copyOf(commands, size * 2);
+            entities = Arrays.copyOf(entities, size * 2);
+            components = Arrays.copyOf(components, size * 2);
+            typeIds = Arrays.copyOf(typeIds, size * 2);
+        }
+
+        commands[size] = command;
+        entities[size] = entity;
+        components[size] = component;
+        typeIds[size] = typeId;
+        size++;
+    }
+
+    /**
+     * Records spawning an {@link Entity}. The returned {@link Entity} is taken from the pool of the
+     * {@link ArchetypeStore} and is not stored until the playback, so <b>components</b> can be added to it
+     * directly in the meantime.
+     * @return the {@link Entity} which will be spawned
+     */
+    public Entity spawn ()
+    {
+        final Entity entity = store.obtain();
+        record(SPAWN, entity, null, -1);
+        return entity;
+    }
+
+    /**
+     * Records despawning an {@link Entity} using {@link ArchetypeStore#despawn(Entity)}.
+     * @param entity the {@link Entity}
+     */
+    public void despawn (Entity entity)
+    {
+        record(DESPAWN, entity, null, -1);
+    }
+
+    /**
+     * Records adding a {@link Component} to an {@link Entity}.
+     * @param entity the {@link Entity}
+     * @param component the {@link Component}
+     */
+    public void addComponent (Entity entity, Component component)
+    {
+        record(ADD_COMPONENT, entity, component, ComponentType.getId(component.getClass()));
+    }
+
+    /**
+     * Records removing a <b>component type</b> from an {@link Entity}.
+     * @param entity the {@link Entity}
+     * @param clazz the {@link Class} instance of {@link T}
+     * @param <T> the <b>component type</b>
+     */
+    public <T extends Component> void removeComponent (Entity entity, Class<T> clazz)
+    {
+        record(REMOVE_COMPONENT, entity, null, ComponentType.getId(clazz));
+    }
+
+    /**
+     * Returns the number of recorded changes.
+     * @return the number of recorded changes
+     */
+    public int size ()
+    {
+        return size;
+    }
+
+    /**
+     * Hands all recorded changes over to the {@link ArchetypeStore} in the order they were recorded in and
+     * clears this {@link CommandBuffer}.
+     */
+    void replay ()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            switch (commands[i])
+            {
+                case SPAWN -> store.deferSpawn(entities[i]);
+                case DESPAWN -> store.deferDespawn(entities[i]);
+                case ADD_COMPONENT -> store.deferAddComponent(entities[i], typeIds[i], components[i]);
+                case REMOVE_COMPONENT -> store.deferRemoveComponent(entities[i], typeIds[i]);
+                default -> throw new IllegalStateException("Unknown command " + commands[i]);
+            }
+        }
+
+        Arrays.fill(entities, 0, size, null);
+        Arrays.fill(components, 0, size, null);
+        size = 0;
+    }
+}
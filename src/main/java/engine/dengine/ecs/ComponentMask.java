@@ -0,0 +1,196 @@
+package engine.dengine.ecs;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ComponentMask}</h2>
+ * <br>
+ * The {@link ComponentMask} class is an immutable bitmask of <b>component types</b>, where bit <b>n</b> is set if
+ * the <b>component type</b> with the <b>type id</b> <b>n</b> is present.
+ * @see ComponentType
+ */
+public final class ComponentMask
+{
+    /** The {@link ComponentMask} without any <b>component types</b> */
+    public static final ComponentMask EMPTY = new ComponentMask(new long[0]);
+
+    private final long[] words;
+    private final int hash;
+
+    private ComponentMask (long[] words)
+    {
+        // Trailing zero words are trimmed, so equal masks always have equal word arrays
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) length--;
+
+        this.words = length == words.length ? words : Arrays.copyOf(words, length);
+        this.hash = Arrays.hashCode(this.words);
+    }
+
+    /**
+     * Creates a {@link ComponentMask} instance containing the given <b>component types</b>.
+     * @param types the <b>component types</b>
+     * @return the {@link ComponentMask} instance
+     */
+    @SafeVarargs
+    public static ComponentMask of (Class<? extends Component>... types)
+    {
+        ComponentMask mask = EMPTY;
+        for (Class<? extends Component> type : types)
+            mask = mask.with(ComponentType.getId(type));
+        return mask;
+    }
+
+    /**
+     * Returns a {@link ComponentMask} which additionally contains a <b>type id</b>.
+     * @param id the <b>type id</b>
+     * @return the new {@link ComponentMask}, or this instance if it already contains the <b>type id</b>
+     */
+    public ComponentMask with (int id)
+    {
+        if (has(id)) return this;
+        final long[] result = Arrays.copyOf(words, Math.max(words.length, (id >>> 6) + 1));
+        result[id >>> 6] |= 1L << id;
+        return new ComponentMask(result);
+    }
+
+    /**
+     * Returns a {@link ComponentMask} which does not contain a <b>type id</b>.
+     * @param id the <b>type id</b>
+     * @return the new {@link ComponentMask}, or this instance if it does not contain the <b>type id</b>
+     */
+    public ComponentMask without (int id)
+    {
+        if (!has(id)) return this;
+        final long[] result = words.clone();
+        result[id >>> 6] &= ~(1L << id);
+        return new ComponentMask(result);
+    }
+
+    /**
+     * Checks wether this {@link ComponentMask} contains a <b>type id</b>.
+     * @param id the <b>type id</b>
+     * @return wether the <b>type id</b> is contained
+     */
+    public boolean has (int id)
+    {
+        final int word = id >>> 6;
+        return word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Checks wether this {@link ComponentMask} contains all <b>type ids</b> of another {@link ComponentMask}.
+     * @param other the other {@link ComponentMask}
+     * @return wether all <b>type ids</b> are contained
+     */
+    public boolean containsAll (ComponentMask other)
+    {
+        if (other.words.length > words.length) return false;
+        for (int i = 0; i < other.words.length; i++)
+            if ((words[i] & other.words[i]) != other.words[i]) return false;
+        return true;
+    }
+
+    /**
+     * Checks wether this {@link ComponentMask} shares at least one <b>type id</b> with another
+     * {@link ComponentMask}.
+     * @param other the other {@link ComponentMask}
+     * @return wether at least one <b>type id</b> is shared
+     */
+    public boolean intersects (ComponentMask other)
+    {
+        final int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++)
+            if ((words[i] & other.words[i]) != 0) return true;
+        return false;
+    }
+
+    /**
+     * Returns the first <b>type id</b> contained in this {@link ComponentMask} which is greater than or equal to
+     * <b>from</b>.
+     * @param from the <b>type id</b> to start searching from
+     * @return the <b>type id</b>, or -1 if there is none
+     */
+    public int nextSetBit (int from)
+    {
+        int word = from >>> 6;
+        if (word >= words.length) return -1;
+
+        long bits = words[word] & (-1L << from);
+        while (true)
+        {
+            if (bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word == words.length) return -1;
+            bits = words[word];
+        }
+    }
+
+    /**
+     * Returns the number of <b>type ids</b> contained in this {@link ComponentMask}.
+     * @return the number of <b>type ids</b>
+     */
+    public int cardinality ()
+    {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Returns the highest <b>type id</b> contained in this {@link ComponentMask}.
+     * @return the highest <b>type id</b>, or -1 if this {@link ComponentMask} is empty
+     */
+    public int highestSetBit ()
+    {
+        if (words.length == 0) return -1;
+        final int last = words.length - 1;
+        return (last << 6) + 63 - Long.numberOfLeadingZeros(words[last]);
+    }
+
+    /**
+     * Indicates wether this {@link ComponentMask} instance is "equal" to another {@link Object} instance.
+     * The reference object is "equal" to this instance if it is of type {@link ComponentMask} and contains the
+     * same <b>type ids</b>.
+     * @param obj the reference object
+     * @return wether this instance and the reference object are "equal"
+     */
+    @Override
+    public boolean equals (Object obj)
+    {
+        if (obj == this) return true;
+        if (obj instanceof ComponentMask mask)
+            return mask.hash == hash && Arrays.equals(mask.words, words);
+        return false;
+    }
+
+    /**
+     * Returns a hash code value which represents this {@link ComponentMask} instance.
+     * @return a hash code value which represents this {@link ComponentMask} instance
+     */
+    @Override
+    public int hashCode ()
+    {
+        return hash;
+    }
+
+    /**
+     * Returns a {@link String} representation of this {@link ComponentMask} instance.
+     * @return a {@link String} representation of this {@link ComponentMask} instance
+     */
+    @Override
+    public String toString ()
+    {
+        final StringBuilder builder = new StringBuilder(getClass().getName()).append('[');
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1))
+        {
+            builder.append(ComponentType.getType(id).getSimpleName());
+            if (nextSetBit(id + 1) >= 0) builder.append(", ");
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,82 @@
+package engine.dengine.ecs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ComponentType}</h2>
+ * <br>
+ * The {@link ComponentType} class is the global registry of <b>component types</b>. Every {@link Component}
+ * subclass is assigned a dense <b>type id</b> the first time it is looked up, starting at 0. The ids are
+ * cached in a {@link ClassValue}, so looking up the id of a <b>component type</b> is constant time and does not
+ * use reflection. The ids are used to index {@link ComponentMask} bits and the <b>component slots</b> of
+ * <b>entities</b> and {@link Archetype} instances.
+ */
+public final class ComponentType
+{
+    private static final List<Class<? extends Component>> types = new ArrayList<>();
+    private static final Map<Class<?>, Integer> registered = new HashMap<>();
+    private static final ClassValue<Integer> ids = new ClassValue<>()
+    {
+        @Override
+        protected Integer computeValue (Class<?> type)
+        {
+            return register(type);
+        }
+    };
+
+    // Private constructor to prevent instantiation
+    private ComponentType () {}
+
+    @SuppressWarnings("unchecked")
+    private static synchronized int register (Class<?> type)
+    {
+        if (!Component.class.isAssignableFrom(type)) throw new IllegalArgumentException("Tried to register " +
+                type.getName() + " which is not a subclass of " + Component.class.getName());
+
+        // ClassValue may compute a value more than once when threads race, so ids are deduplicated here
+        final Integer existing = registered.get(type);
+        if (existing != null) return existing;
+
+        final int id = types.size();
+        types.add((Class<? extends Component>) type);
+        registered.put(type, id);
+        return id;
+    }
+
+    /**
+     * Returns the <b>type id</b> of a <b>component type</b> and registers the <b>component type</b> if this is
+     * the first lookup.
+     * @param type the <b>component type</b>
+     * @return the <b>type id</b>
+     */
+    public static int getId (Class<? extends Component> type)
+    {
+        return ids.get(type);
+    }
+
+    /**
+     * Returns the <b>component type</b> which was assigned a <b>type id</b>.
+     * @param id the <b>type id</b>
+     * @return the <b>component type</b>
+     */
+    public static synchronized Class<? extends Component> getType (int id)
+    {
+        return types.get(id);
+    }
+
+    /**
+     * Returns the number of registered <b>component types</b>.
+     * @return the number of registered <b>component types</b>
+     */
+    public static synchronized int getCount ()
+    {
+        return types.size();
+    }
+}
@@ -1,6 +1,8 @@
 package engine.dengine.ecs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,33 +15,123 @@ import java.util.List;
  * The {@link Entity} class is used to represent <b>entites</b> in a <b>entity component system</b>.
  * Its behaviour is completely defined by its <b>components</b>, which are contained in the <b>entity</b>.
  * All in all, an <b>entity</b> is basically only a collection of <b>components</b>.
+ * <br>
+ * While an {@link Entity} is not stored in an {@link ArchetypeStore}, it holds its <b>components</b> itself.
+ * Once it is added to an {@link ArchetypeStore} (for example by adding it to a <b>scene</b>), its <b>components</b>
+ * and {@link Transform} data are moved into the {@link Chunk} of its {@link Archetype} and the {@link Entity}
+ * instance only serves as a facade over its {@link Chunk} <b>row</b>.
+ * <br>
+ * <b>Components</b> are looked up by their <b>type id</b> ({@link ComponentType}), which indexes either the
+ * <b>component slots</b> of this {@link Entity} or the <b>column</b> table of its {@link Archetype}, so adding,
+ * removing and getting <b>components</b> is constant time.
+ * <br>
+ * A stored {@link Entity} is identified by its <b>entity handle</b> ({@link Entity#getHandle()}). Since
+ * <b>entities</b> may be pooled and reused ({@link ArchetypeStore#despawn(Entity)}), code which keeps referring to
+ * an {@link Entity} over several frames should keep its handle and resolve it using
+ * {@link ArchetypeStore#getEntity(long)}, which detects <b>stale</b> handles.
+ * <br>
+ * While the {@link Chunk} instances are being iterated, for example in {@link Component#update(float)}, the
+ * <b>components</b> of a stored {@link Entity} must be changed through a {@link CommandBuffer} instead of
+ * {@link Entity#addComponent(Component)} and {@link Entity#removeComponent(Class)}.
+ * <br>
+ * Stored <b>entities</b> can be arranged in a <b>hierarchy</b> using {@link Entity#setParent(Entity)}, where the
+ * {@link Transform} of a child is relative to the <b>local-to-world matrix</b> of its parent. Removing an
+ * {@link Entity} from its {@link ArchetypeStore} detaches it from its parent and turns its children into roots.
  * @see <a href="https://en.wikipedia.org/wiki/Entity_component_system">Entity Component System</a>
  */
 public class Entity
 {
-    private List<Component> components;
-    private Transform transform;
+    /** The <b>components</b> indexed by <b>type id</b>, while not stored in an {@link ArchetypeStore} */
+    Component[] slots;
+    /** The <b>component types</b>, while not stored in an {@link ArchetypeStore} */
+    ComponentMask mask;
+    private final Transform transform;
+
+    ArchetypeStore store;
+    Archetype archetype;
+    Chunk chunk;
+    int row;
+    long handle;
+    /** Wether this stored <b>entity</b> has pending changes from a {@link CommandBuffer} */
+    boolean pending;
+    /** Wether this <b>entity</b> is going to be despawned by a {@link CommandBuffer} */
+    boolean despawnPending;
+
+    Entity parent;
+    /** The children, or null if this <b>entity</b> never had any */
+    List<Entity> children;
+    /** The number of ancestors */
+    int depth;
+    /** The last pass of {@link ArchetypeStore#updateWorldMatrices()} which recomputed this <b>entity</b> */
+    int hierarchyPass;
 
     /**
-     * Creates a new {@link Entity} instance.
+     * Creates a new {@link Entity} instance with a default {@link Transform} created with
+     * {@link Transform#Transform()}.
      */
     public Entity ()
     {
-        components = new ArrayList<>();
+        slots = new Component[0];
+        mask = ComponentMask.EMPTY;
+        transform = new Transform();
+        row = -1;
+        handle = EntityHandle.NULL;
+    }
+
+    /**
+     * Drops the pending changes of this stored <b>entity</b>, which were collected in its <b>component slots</b>.
+     */
+    void discardPending ()
+    {
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+            if (id < slots.length) slots[id] = null;
+        mask = ComponentMask.EMPTY;
+    }
+
+    /**
+     * Resets this unstored <b>entity</b> for reuse by removing all <b>components</b> and resetting its
+     * {@link Transform}.
+     */
+    void reset ()
+    {
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+            slots[id] = null;
+        mask = ComponentMask.EMPTY;
+        transform.reset();
     }
 
     /**
-     * Adds a {@link Component} instance to this <b>entity</b> if it is not already added.
+     * Stores a {@link Component} in the <b>component slot</b> of a <b>type id</b>, growing the slots if necessary.
+     * @param id the <b>type id</b>
+     * @param component the {@link Component}
+     */
+    void setSlot (int id, Component component)
+    {
+        if (id >= slots.length) slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+        slots[id] = component;
+    }
+
+    /**
+     * Adds a {@link Component} instance to this <b>entity</b> if no {@link Component} of the same type is
+     * already added.
      * @param component the {@link Component} instance
      */
     public void addComponent (Component component)
     {
-        for (Component comp : components)
+        final int id = ComponentType.getId(component.getClass());
+
+        if (store != null)
         {
-            if (comp.getClass().equals(component.getClass()))
-                return;
+            if (archetype.indexOf(id) >= 0) return;
+            component.entity = this;
+            store.addComponent(this, id, component);
+            return;
         }
-        components.add(component);
+
+        if (mask.has(id)) return;
+        component.entity = this;
+        setSlot(id, component);
+        mask = mask.with(id);
     }
 
     /**
@@ -49,9 +141,24 @@ public class Entity
      */
     public <T extends Component> void removeComponent (Class<T> clazz)
     {
-        for (Component component : components)
-            if (component.getClass().equals(clazz))
-                components.remove(component);
+        removeComponent(ComponentType.getId(clazz));
+    }
+
+    /**
+     * Removes the {@link Component} with a <b>type id</b> from this <b>entity</b>.
+     * @param id the <b>type id</b>
+     */
+    void removeComponent (int id)
+    {
+        if (store != null)
+        {
+            store.removeComponent(this, id);
+            return;
+        }
+
+        if (!mask.has(id)) return;
+        slots[id] = null;
+        mask = mask.without(id);
     }
 
     /**
@@ -62,9 +169,35 @@ public class Entity
      */
     public <T extends Component> T getComponent (Class<T> clazz)
     {
-        for (Component component : components)
-            if (component.getClass().isAssignableFrom(clazz)) return clazz.cast(component);
-        return null;
+        final int id = ComponentType.getId(clazz);
+
+        if (store != null)
+        {
+            final int column = archetype.indexOf(id);
+            return column < 0 ? null : clazz.cast(chunk.columns[column][row]);
+        }
+
+        return id < slots.length ? clazz.cast(slots[id]) : null;
+    }
+
+    /**
+     * Checks wether a {@link T} instance was added to this <b>entity</b>.
+     * @param clazz the {@link Class} instance of {@link T}
+     * @return wether a {@link T} instance was added
+     * @param <T> the type of the {@link T} instance
+     */
+    public <T extends Component> boolean hasComponent (Class<T> clazz)
+    {
+        return getMask().has(ComponentType.getId(clazz));
+    }
+
+    /**
+     * Returns the {@link ComponentMask} of the <b>component types</b> added to this <b>entity</b>.
+     * @return the {@link ComponentMask}
+     */
+    public ComponentMask getMask ()
+    {
+        return store != null ? archetype.getMask() : mask;
     }
 
     /**
@@ -77,12 +210,124 @@ public class Entity
     }
 
     /**
-     * Sets the <b>entities</b> {@link Transform}
+     * Sets the <b>entities</b> {@link Transform} by copying the data of another {@link Transform} using
+     * {@link Transform#set(Transform)}.
      * @param transform the {@link Transform}
      */
     public void setTransform (Transform transform)
     {
-        this.transform = transform;
+        this.transform.set(transform);
+    }
+
+    /**
+     * Sets the parent of this <b>entity</b>, so its {@link Transform} becomes relative to the parent. The
+     * <b>local-to-world matrices</b> of this <b>entity</b> and its descendants are recomputed by the next
+     * {@link ArchetypeStore#updateWorldMatrices()}.
+     * @param parent the parent, or null to make this <b>entity</b> a root
+     * @throws IllegalArgumentException if the <b>entities</b> are not stored in the same {@link ArchetypeStore}
+     * or the parent is a descendant of this <b>entity</b>
+     */
+    public void setParent (Entity parent)
+    {
+        if (parent == this.parent) return;
+        if (store == null || (parent != null && parent.store != store))
+            throw new IllegalArgumentException("Tried to set the parent of " + getClass().getName() +
+                    " which is not stored in the same " + ArchetypeStore.class.getName());
+        for (Entity ancestor = parent; ancestor != null; ancestor = ancestor.parent)
+            if (ancestor == this) throw new IllegalArgumentException("Tried to set a descendant of " +
+                    getClass().getName() + " as its parent");
+
+        if (this.parent != null) this.parent.children.remove(this);
+        this.parent = parent;
+        if (parent != null)
+        {
+            if (parent.children == null) parent.children = new ArrayList<>();
+            parent.children.add(this);
+        }
+
+        setDepth(parent == null ? 0 : parent.depth + 1);
+        chunk.setChangedBit(row);
+    }
+
+    private void setDepth (int depth)
+    {
+        this.depth = depth;
+        if (children == null) return;
+        for (int i = 0; i < children.size(); i++)
+            children.get(i).setDepth(depth + 1);
+    }
+
+    /**
+     * Detaches this stored <b>entity</b> from its parent and turns its children into roots.
+     */
+    void detachHierarchy ()
+    {
+        if (parent != null) setParent(null);
+        if (children == null) return;
+
+        for (int i = 0; i < children.size(); i++)
+        {
+            final Entity child = children.get(i);
+            child.parent = null;
+            child.setDepth(0);
+            child.chunk.setChangedBit(child.row);
+        }
+        children.clear();
+    }
+
+    /**
+     * Returns the parent of this <b>entity</b>.
+     * @return the parent, or null if this <b>entity</b> is a root
+     */
+    public Entity getParent ()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns the children of this <b>entity</b>.
+     * @return the unmodifiable list of children
+     */
+    public List<Entity> getChildren ()
+    {
+        return children == null ? List.of() : Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Returns the depth of this <b>entity</b> in its <b>hierarchy</b>, which is 0 for roots.
+     * @return the number of ancestors
+     */
+    public int getDepth ()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns the <b>entity handle</b> of this <b>entity</b>.
+     * @return the <b>entity handle</b>, or {@link EntityHandle#NULL} if this <b>entity</b> is not stored in an
+     * {@link ArchetypeStore}
+     */
+    public long getHandle ()
+    {
+        return handle;
+    }
+
+    /**
+     * Returns the {@link ArchetypeStore} this <b>entity</b> is stored in.
+     * @return the {@link ArchetypeStore}, or null if this <b>entity</b> is not stored in one
+     */
+    public ArchetypeStore getStore ()
+    {
+        return store;
+    }
+
+    /**
+     * Returns the {@link Archetype} of this <b>entity</b>.
+     * @return the {@link Archetype}, or null if this <b>entity</b> is not stored in an {@link ArchetypeStore}
+     */
+    public Archetype getArchetype ()
+    {
+        return archetype;
     }
 
     /**
@@ -92,8 +337,14 @@ public class Entity
      */
     public void update (float deltaTime)
     {
-        for (Component component : components)
-            component.update(deltaTime);
+        if (store != null)
+        {
+            for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+                chunk.columns[column][row].update(deltaTime);
+            return;
+        }
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+            slots[id].update(deltaTime);
     }
 
     /**
@@ -102,8 +353,14 @@ public class Entity
      */
     public void init ()
     {
-        for (Component component : components)
-            component.init();
+        if (store != null)
+        {
+            for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+                chunk.columns[column][row].init();
+            return;
+        }
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+            slots[id].init();
     }
 
     /**
@@ -112,7 +369,13 @@ public class Entity
      */
     public void dispose ()
     {
-        for (Component component : components)
-            component.dispose();
+        if (store != null)
+        {
+            for (int column = 0; column < archetype.getComponentTypeCount(); column++)
+                chunk.columns[column][row].dispose();
+            return;
+        }
+        for (int id = mask.nextSetBit(0); id >= 0; id = mask.nextSetBit(id + 1))
+            slots[id].dispose();
     }
 }
@@ -0,0 +1,55 @@
+package engine.dengine.ecs;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link EntityHandle}</h2>
+ * <br>
+ * The {@link EntityHandle} class is used to pack and unpack <b>entity handles</b>. An <b>entity handle</b> is a
+ * long made up of a 32-bit <b>slot index</b> in the lower half and a 32-bit <b>generation</b> in the upper half.
+ * The <b>generation</b> of a <b>slot</b> is incremented every time its {@link Entity} is removed, so a handle
+ * to a removed {@link Entity} is detected as <b>stale</b> even after its <b>slot</b> was recycled.
+ * <b>Generations</b> start at 1, so the handle 0 ({@link EntityHandle#NULL}) never refers to an {@link Entity}.
+ * @see ArchetypeStore#getEntity(long)
+ */
+public final class EntityHandle
+{
+    /** The handle which never refers to an {@link Entity} */
+    public static final long NULL = 0L;
+
+    // Private constructor to prevent instantiation
+    private EntityHandle () {}
+
+    /**
+     * Packs a <b>slot index</b> and a <b>generation</b> into an <b>entity handle</b>.
+     * @param index the <b>slot index</b>
+     * @param generation the <b>generation</b>
+     * @return the <b>entity handle</b>
+     */
+    public static long of (int index, int generation)
+    {
+        return ((long) generation << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the <b>slot index</b> of an <b>entity handle</b>.
+     * @param handle the <b>entity handle</b>
+     * @return the <b>slot index</b>
+     */
+    public static int index (long handle)
+    {
+        return (int) handle;
+    }
+
+    /**
+     * Returns the <b>generation</b> of an <b>entity handle</b>.
+     * @param handle the <b>entity handle</b>
+     * @return the <b>generation</b>
+     */
+    public static int generation (long handle)
+    {
+        return (int) (handle >>> 32);
+    }
+}
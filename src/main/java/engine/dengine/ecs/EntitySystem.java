@@ -0,0 +1,160 @@
+package engine.dengine.ecs;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link EntitySystem}</h2>
+ * <br>
+ * The {@link EntitySystem} class is used to represent <b>systems</b> in a <b>entity component system</b>.
+ * A <b>system</b> processes all <b>entities</b> which have a certain set of <b>component types</b>, one
+ * {@link Chunk} at a time. Every <b>system</b> declares which <b>component types</b> it reads and writes, and
+ * wether it reads or writes {@link Transform} data, by calling the corresponding methods in its constructor.
+ * <br>
+ * The {@link SystemScheduler} uses these declarations to run <b>systems</b> which do not conflict at the same
+ * time, and calls {@link EntitySystem#update(Chunk, float)} for different {@link Chunk} instances concurrently.
+ * An implementation must therefore only access the {@link Chunk} it was given and the declared data.
+ * @see SystemScheduler
+ */
+public abstract class EntitySystem
+{
+    private ComponentMask reads;
+    private ComponentMask writes;
+    private ComponentMask excluded;
+    private boolean readsTransform;
+    private boolean writesTransform;
+
+    /**
+     * Creates a new {@link EntitySystem} instance which neither reads nor writes any data.
+     */
+    public EntitySystem ()
+    {
+        reads = ComponentMask.EMPTY;
+        writes = ComponentMask.EMPTY;
+        excluded = ComponentMask.EMPTY;
+        readsTransform = false;
+        writesTransform = false;
+    }
+
+    /**
+     * Declares that this <b>system</b> reads <b>component types</b>. Only <b>entities</b> which have all read
+     * and written <b>component types</b> are processed by this <b>system</b>.
+     * @param types the <b>component types</b>
+     */
+    @SafeVarargs
+    protected final void reads (Class<? extends Component>... types)
+    {
+        for (Class<? extends Component> type : types)
+            reads = reads.with(ComponentType.getId(type));
+    }
+
+    /**
+     * Declares that this <b>system</b> writes <b>component types</b>. Only <b>entities</b> which have all read
+     * and written <b>component types</b> are processed by this <b>system</b>.
+     * @param types the <b>component types</b>
+     */
+    @SafeVarargs
+    protected final void writes (Class<? extends Component>... types)
+    {
+        for (Class<? extends Component> type : types)
+            writes = writes.with(ComponentType.getId(type));
+    }
+
+    /**
+     * Declares that this <b>system</b> skips <b>entities</b> which have any of the given <b>component types</b>.
+     * @param types the <b>component types</b>
+     */
+    @SafeVarargs
+    protected final void excludes (Class<? extends Component>... types)
+    {
+        for (Class<? extends Component> type : types)
+            excluded = excluded.with(ComponentType.getId(type));
+    }
+
+    /**
+     * Declares that this <b>system</b> reads {@link Transform} data.
+     */
+    protected final void readsTransform ()
+    {
+        readsTransform = true;
+    }
+
+    /**
+     * Declares that this <b>system</b> writes {@link Transform} data.
+     */
+    protected final void writesTransform ()
+    {
+        writesTransform = true;
+    }
+
+    /**
+     * Initializes the <b>system</b>.
+     */
+    public void init ()
+    {
+
+    }
+
+    /**
+     * Processes all <b>entities</b> of a {@link Chunk}. This method may be called concurrently for different
+     * {@link Chunk} instances.
+     * @param chunk the {@link Chunk}
+     * @param deltaTime the delta time since the last update
+     */
+    public abstract void update (Chunk chunk, float deltaTime);
+
+    /**
+     * Disposes of the {@link EntitySystem} instance and cleans up any allocated resources.
+     */
+    public void dispose ()
+    {
+
+    }
+
+    /**
+     * Checks wether this <b>system</b> conflicts with another one, meaning that at least one of them writes
+     * data which the other one reads or writes. Conflicting <b>systems</b> are never run at the same time.
+     * @param other the other <b>system</b>
+     * @return wether the <b>systems</b> conflict
+     */
+    public boolean conflictsWith (EntitySystem other)
+    {
+        if (writesTransform && (other.readsTransform || other.writesTransform)) return true;
+        if (other.writesTransform && readsTransform) return true;
+
+        return writes.intersects(other.reads) || writes.intersects(other.writes) || other.writes.intersects(reads);
+    }
+
+    /**
+     * Returns the {@link Query} of the <b>entities</b> this <b>system</b> processes, which are all
+     * <b>entities</b> having every read and written and none of the excluded <b>component types</b>.
+     * @param store the {@link ArchetypeStore}
+     * @return the {@link Query}
+     */
+    public Query query (ArchetypeStore store)
+    {
+        ComponentMask required = reads;
+        for (int id = writes.nextSetBit(0); id >= 0; id = writes.nextSetBit(id + 1))
+            required = required.with(id);
+        return store.query(required, excluded);
+    }
+
+    /**
+     * Returns the {@link ComponentMask} of the read <b>component types</b>.
+     * @return the {@link ComponentMask}
+     */
+    public ComponentMask getReads ()
+    {
+        return reads;
+    }
+
+    /**
+     * Returns the {@link ComponentMask} of the written <b>component types</b>.
+     * @return the {@link ComponentMask}
+     */
+    public ComponentMask getWrites ()
+    {
+        return writes;
+    }
+}
@@ -0,0 +1,304 @@
+package engine.dengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Query}</h2>
+ * <br>
+ * The {@link Query} class is used to iterate all <b>entities</b> of an {@link ArchetypeStore} which have a set
+ * of required <b>component types</b> and none of a set of excluded <b>component types</b>. A {@link Query}
+ * caches the matching {@link Archetype} instances and is kept up to date by its {@link ArchetypeStore} whenever
+ * a new {@link Archetype} is created, so iterating it only touches relevant {@link Chunk} instances.
+ * <br>
+ * {@link Query} instances are obtained using {@link ArchetypeStore#query(ComponentMask, ComponentMask)}, which
+ * returns the same instance for the same <b>component types</b>. Iterating a {@link Query} does not allocate,
+ * except for {@link Query#parallelForEachChunk(Consumer)}. <b>Structural changes</b> during an iteration have
+ * to be recorded in a {@link CommandBuffer}.
+ */
+public final class Query
+{
+    /** The number of {@link Chunk} instances below which a parallel iteration is not split any further */
+    private static final int CHUNKS_PER_TASK = 4;
+
+    private final ArchetypeStore store;
+    private final ComponentMask required;
+    private final ComponentMask excluded;
+    private final List<Archetype> archetypes;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link Query.RowConsumer}</h2>
+     * <br>
+     * The {@link Query.RowConsumer} interface is used to process single <b>rows</b> of a {@link Chunk}, so
+     * <b>components</b> and {@link Transform} data can be read from the {@link Chunk} columns directly.
+     */
+    @FunctionalInterface
+    public interface RowConsumer
+    {
+        /**
+         * Processes a <b>row</b>.
+         * @param chunk the {@link Chunk}
+         * @param row the <b>row</b>
+         */
+        void accept (Chunk chunk, int row);
+    }
+
+    /**
+     * Creates a new {@link Query} instance.
+     * @param store the {@link ArchetypeStore}
+     * @param required the required <b>component types</b>
+     * @param excluded the excluded <b>component types</b>
+     */
+    Query (ArchetypeStore store, ComponentMask required, ComponentMask excluded)
+    {
+        this.store = store;
+        this.required = required;
+        this.excluded = excluded;
+        this.archetypes = new ArrayList<>();
+    }
+
+    /**
+     * Checks wether the <b>entities</b> of an {@link Archetype} are matched by this {@link Query}.
+     * @param archetype the {@link Archetype}
+     * @return wether the {@link Archetype} has all required and none of the excluded <b>component types</b>
+     */
+    public boolean matches (Archetype archetype)
+    {
+        final ComponentMask mask = archetype.getMask();
+        return mask.containsAll(required) && !mask.intersects(excluded);
+    }
+
+    /**
+     * Adds a newly created {@link Archetype} to the cached matches if it is matched.
+     * @param archetype the {@link Archetype}
+     */
+    void onArchetypeCreated (Archetype archetype)
+    {
+        if (matches(archetype)) archetypes.add(archetype);
+    }
+
+    /**
+     * Returns a {@link Query} which additionally excludes <b>component types</b>.
+     * @param types the <b>component types</b>
+     * @return the {@link Query}
+     */
+    @SafeVarargs
+    public final Query without (Class<? extends Component>... types)
+    {
+        ComponentMask mask = excluded;
+        for (Class<? extends Component> type : types)
+            mask = mask.with(ComponentType.getId(type));
+        return store.query(required, mask);
+    }
+
+    /**
+     * Returns a {@link Query} which additionally requires <b>component types</b>.
+     * @param types the <b>component types</b>
+     * @return the {@link Query}
+     */
+    @SafeVarargs
+    public final Query with (Class<? extends Component>... types)
+    {
+        ComponentMask mask = required;
+        for (Class<? extends Component> type : types)
+            mask = mask.with(ComponentType.getId(type));
+        return store.query(mask, excluded);
+    }
+
+    /**
+     * Calls an action for every matched {@link Entity}.
+     * @param action the action
+     */
+    public void forEach (Consumer<Entity> action)
+    {
+        for (int i = 0; i < archetypes.size(); i++)
+        {
+            final Archetype archetype = archetypes.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                for (int row = 0; row < chunk.size(); row++)
+                    action.accept(chunk.entities[row]);
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every matched <b>row</b>.
+     * @param action the action
+     */
+    public void forEach (RowConsumer action)
+    {
+        for (int i = 0; i < archetypes.size(); i++)
+        {
+            final Archetype archetype = archetypes.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                for (int row = 0; row < chunk.size(); row++)
+                    action.accept(chunk, row);
+            }
+        }
+    }
+
+    /**
+     * Calls an action for every {@link Chunk} containing matched <b>entities</b>.
+     * @param action the action
+     */
+    public void forEachChunk (Consumer<Chunk> action)
+    {
+        for (int i = 0; i < archetypes.size(); i++)
+        {
+            final Archetype archetype = archetypes.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+                action.accept(archetype.getChunk(j));
+        }
+    }
+
+    /**
+     * Calls an action for every {@link Chunk} containing matched <b>entities</b> on the
+     * {@link ForkJoinPool#commonPool()}, where different {@link Chunk} instances are processed concurrently.
+     * @param action the action, which must be thread safe
+     */
+    public void parallelForEachChunk (Consumer<Chunk> action)
+    {
+        parallelForEachChunk(ForkJoinPool.commonPool(), action);
+    }
+
+    /**
+     * Calls an action for every {@link Chunk} containing matched <b>entities</b> on a {@link ForkJoinPool},
+     * where different {@link Chunk} instances are processed concurrently.
+     * @param pool the {@link ForkJoinPool}
+     * @param action the action, which must be thread safe
+     */
+    public void parallelForEachChunk (ForkJoinPool pool, Consumer<Chunk> action)
+    {
+        final Chunk[] chunks = new Chunk[getChunkCount()];
+        int count = 0;
+        for (int i = 0; i < archetypes.size(); i++)
+        {
+            final Archetype archetype = archetypes.get(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+                chunks[count++] = archetype.getChunk(j);
+        }
+
+        if (count == 0) return;
+        pool.invoke(new ChunkTask(chunks, 0, count, action));
+    }
+
+    /**
+     * Returns the number of matched <b>entities</b>.
+     * @return the number of matched <b>entities</b>
+     */
+    public int getEntityCount ()
+    {
+        int count = 0;
+        for (int i = 0; i < archetypes.size(); i++)
+            count += archetypes.get(i).getEntityCount();
+        return count;
+    }
+
+    /**
+     * Returns the number of {@link Chunk} instances containing matched <b>entities</b>.
+     * @return the number of {@link Chunk} instances
+     */
+    public int getChunkCount ()
+    {
+        int count = 0;
+        for (int i = 0; i < archetypes.size(); i++)
+            count += archetypes.get(i).getChunkCount();
+        return count;
+    }
+
+    /**
+     * Returns the matched {@link Archetype} at an index. Together with {@link Query#getArchetypeCount()}, this
+     * allows iterating the matched {@link Archetype} instances without allocating.
+     * @param index the index
+     * @return the {@link Archetype}
+     */
+    public Archetype getArchetype (int index)
+    {
+        return archetypes.get(index);
+    }
+
+    /**
+     * Returns the number of matched {@link Archetype} instances, including empty ones.
+     * @return the number of matched {@link Archetype} instances
+     */
+    public int getArchetypeCount ()
+    {
+        return archetypes.size();
+    }
+
+    /**
+     * Returns the matched {@link Archetype} instances, including empty ones.
+     * @return the unmodifiable list of matched {@link Archetype} instances
+     */
+    public List<Archetype> getArchetypes ()
+    {
+        return Collections.unmodifiableList(archetypes);
+    }
+
+    /**
+     * Returns the required <b>component types</b>.
+     * @return the {@link ComponentMask} of the required <b>component types</b>
+     */
+    public ComponentMask getRequired ()
+    {
+        return required;
+    }
+
+    /**
+     * Returns the excluded <b>component types</b>.
+     * @return the {@link ComponentMask} of the excluded <b>component types</b>
+     */
+    public ComponentMask getExcluded ()
+    {
+        return excluded;
+    }
+
+    /**
+     * Calls an action for a range of {@link Chunk} instances, splitting the range in halves until it is small
+     * enough.
+     */
+    private static final class ChunkTask extends RecursiveAction
+    {
+        private final Chunk[] chunks;
+        private final int from, to;
+        private final Consumer<Chunk> action;
+
+        private ChunkTask (Chunk[] chunks, int from, int to, Consumer<Chunk> action)
+        {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if (to - from <= CHUNKS_PER_TASK)
+            {
+                for (int i = from; i < to; i++)
+                    action.accept(chunks[i]);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(chunks, from, mid, action), new ChunkTask(chunks, mid, to, action));
+        }
+    }
+}
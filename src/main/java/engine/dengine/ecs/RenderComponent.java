@@ -1,10 +1,16 @@
 package engine.dengine.ecs;
 
 import engine.dengine.Constants;
+import engine.dengine.assets.Shader;
+import engine.dengine.graphics.RenderQueue;
 import engine.dengine.graphics.Sprite;
 import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2f;
 import org.joml.Vector4f;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 /**
  * @author Anton Schoenfeld
  * @version 1.0
@@ -17,6 +23,11 @@ import org.joml.Vector4f;
  * A {@link RenderComponent} will automatically <b>render</b> its {@link Entity}, once it is added to a <b>scene</b>.
  * If relevant <b>rendering</b> data of a {@link RenderComponent} instance is changed, it will become <b>dirty</b> to
  * signal that its <b>vertices</b> have changed and need to be re-uploaded to <b>OpenGL</b>.
+ * <br>
+ * The {@link Shape} shares the {@link Transform} of the {@link Entity} ({@link Shape#shareTransform(Transform)}),
+ * so its <b>vertices</b> are transformed by the cached <b>local-to-world matrix</b> of the {@link Entity} and
+ * children of other <b>entities</b> are rendered and collide relative to their parents. A {@link Shape} must
+ * therefore not be used by the {@link RenderComponent} instances of several <b>entities</b>.
  */
 public class RenderComponent extends Component
 {
@@ -26,10 +37,20 @@ public class RenderComponent extends Component
     private Sprite sprite;
     /** The vertices */
     private Shape shape;
-    /** The {@link engine.dengine.ecs.RenderComponent#entity}s {@link engine.dengine.ecs.Transform} */
-    private Transform lastTransform;
+    /** The last applied <b>version</b> of the {@link engine.dengine.ecs.RenderComponent#entity}s {@link Transform} */
+    private int lastVersion;
+    /** The last applied <b>world version</b> of the {@link engine.dengine.ecs.RenderComponent#entity}s {@link Transform} */
+    private int lastWorldVersion;
+    /** The <b>interpolated</b> <b>local-to-world matrix</b> of the {@link Entity} */
+    private final Matrix3x2f worldMatrix;
+    /** The last applied <b>version</b> of the {@link RenderComponent#sprite} */
+    private int lastSpriteVersion;
     /** Wether this {@link engine.dengine.ecs.RenderComponent} is dirty */
     private boolean dirty;
+    /** The <b>layer</b>, lower <b>layers</b> are drawn first */
+    private int layer;
+    /** The {@link Shader} ( can be null ) */
+    private Shader shader;
 
     /**
      * Creates a new {@link RenderComponent} instance with a color of 1, 1, 1, 1.
@@ -51,36 +72,59 @@ public class RenderComponent extends Component
     {
         this.shape = shape;
         this.sprite = sprite;
+        this.lastSpriteVersion = sprite != null ? sprite.getVersion() : 0;
         this.color = color;
+        this.worldMatrix = new Matrix3x2f();
         dirty = false;
     }
 
     /**
-     * Initializes the {@link RenderComponent} by assgning its {@link Transform} to its {@link Entity}s
+     * Initializes the {@link RenderComponent} by letting its {@link Shape} share its {@link Entity}s
      * {@link Transform}.
      */
     @Override
     public void init ()
     {
         super.init();
-        this.lastTransform = entity.getTransform();
+        final Transform entityTransform = entity.getTransform();
+        shape.shareTransform(entityTransform);
+        lastVersion = entityTransform.getVersion();
+        lastWorldVersion = entityTransform.getWorldVersion();
         dirty = true;
     }
 
     /**
-     * Updates the {@link RenderComponent} by updating its {@link Transform} to its {@link Entity}s {@link Transform}
-     * if it is different from its own.
+     * Updates the {@link RenderComponent} by making it <b>dirty</b> if the <b>version</b> or the
+     * <b>world version</b> of its {@link Entity}s {@link Transform} changed since it was last checked. The
+     * <b>vertices</b> are only transformed once they are written. A {@link Sprite} which was moved by a
+     * {@link engine.dengine.graphics.TextureAtlas} makes it <b>dirty</b> as well. Untouched <b>entities</b> only
+     * cost three int comparisons.
      */
     @Override
     public void update (float deltaTime)
     {
         super.update(deltaTime);
+        sync();
+    }
 
-        Transform entityTransform = entity.getTransform();
-        if (!entityTransform.equals(lastTransform))
+    private void sync ()
+    {
+        final Transform entityTransform = entity.getTransform();
+        final int version = entityTransform.getVersion();
+        if (version != lastVersion)
         {
-            lastTransform.set(entityTransform);
-            shape.setTransform(lastTransform);
+            lastVersion = version;
+            dirty = true;
+        }
+        final int worldVersion = entityTransform.getWorldVersion();
+        if (worldVersion != lastWorldVersion)
+        {
+            lastWorldVersion = worldVersion;
+            dirty = true;
+        }
+        if (sprite != null && sprite.getVersion() != lastSpriteVersion)
+        {
+            lastSpriteVersion = sprite.getVersion();
             dirty = true;
         }
     }
@@ -91,33 +135,217 @@ public class RenderComponent extends Component
      */
     public float[] getRawOpenGLVertices ()
     {
-        // Create float[] of vertices
-        final float[] result = new float[shape.getVertexCount() * Constants.VERTEX_SIZE];
+        return getRawOpenGLVertices(1);
+    }
+
+    /**
+     * Returns a float[] of valid <b>OpenGL vertices</b> which can be used for <b>rendering</b>, where the
+     * <b>positions</b> are <b>interpolated</b> between the previous and the current <b>tick</b>.
+     * @param alpha the <b>interpolation</b> factor, for example {@link engine.dengine.window.FixedTimestep#getAlpha()}
+     * @return the float[] of <b>vertices</b>
+     * @see Transform#getInterpolatedWorldMatrix(float, Matrix3x2f)
+     */
+    public float[] getRawOpenGLVertices (float alpha)
+    {
+        final float[] result = new float[getRawOpenGLVertexLength()];
+        writeRawOpenGLVertices(alpha, result, 0);
+        return result;
+    }
+
+    /**
+     * Returns the number of floats written by {@link RenderComponent#writeRawOpenGLVertices(float, float[], int)}.
+     * @return the number of floats
+     */
+    public int getRawOpenGLVertexLength ()
+    {
+        return shape.getVertexCount() * Constants.VERTEX_SIZE;
+    }
+
+    /**
+     * Writes valid <b>OpenGL vertices</b> into a caller-supplied float[] without allocating, where the
+     * <b>positions</b> are <b>interpolated</b> between the previous and the current <b>tick</b>. The
+     * <b>texture index</b> of every <b>vertex</b> is the one a {@link engine.dengine.graphics.RenderBatch} draws
+     * it with, {@link Sprite#getTextureIndex()} or {@link Sprite#NO_TEXTURE}, stored as the bits of an integer.
+     * @param alpha the <b>interpolation</b> factor, for example {@link engine.dengine.window.FixedTimestep#getAlpha()}
+     * @param dest the float[] which is written to
+     * @param offset the index in <b>dest</b> of the first float
+     * @see RenderComponent#getRawOpenGLVertexLength()
+     */
+    public void writeRawOpenGLVertices (float alpha, float[] dest, int offset)
+    {
+        // The world matrix may have been recomputed after the last update
+        sync();
+
+        // Position
+        if (alpha < 1)
+            shape.transformVertices(entity.getTransform().getInterpolatedWorldMatrix(alpha, worldMatrix),
+                    dest, offset, Constants.VERTEX_SIZE);
+        else
+            shape.getTransformedVertices(dest, offset, Constants.VERTEX_SIZE);
+
+        final float[] uvs = sprite != null ? sprite.getUvs() : null;
+        // The bits of the integer, as read by glVertexAttribIPointer once dest is uploaded
+        final float textureIndex = Float.intBitsToFloat(sprite != null ? sprite.getTextureIndex() : Sprite.NO_TEXTURE);
 
         for (int i = 0; i < shape.getVertexCount(); i++)
         {
-            final int index = i * Constants.VERTEX_SIZE;
-
-            // Position
-            result[index] = shape.getTransformedVertices()[i * Constants.POSITION_SIZE];         // x
-            result[index + 1] = shape.getTransformedVertices()[i * Constants.POSITION_SIZE + 1]; // y
-            result[index + 2] = shape.getTransformedVertices()[i * Constants.POSITION_SIZE + 2]; // z
+            final int index = offset + i * Constants.VERTEX_SIZE;
 
             // Color
-            result[index + 3] = color.x;        // r
-            result[index + 4] = color.y;        // g
-            result[index + 5] = color.y;        // b
-            result[index + 6] = color.z;        // a
+            dest[index + 3] = color.x;        // r
+            dest[index + 4] = color.y;        // g
+            dest[index + 5] = color.z;        // b
+            dest[index + 6] = color.w;        // a
 
             // UVs
-            result[index + 7] = sprite.getUvs()[i + Constants.UV_SIZE];       // U
-            result[index + 8] = sprite.getUvs()[i + Constants.UV_SIZE + 1];   // V
+            dest[index + 7] = uvs != null ? uvs[i * Constants.UV_SIZE] : 0;       // U
+            dest[index + 8] = uvs != null ? uvs[i * Constants.UV_SIZE + 1] : 0;   // V
 
-            // Texture Id
-            result[index + 9] = sprite.getTextureId();      // Id
+            // Texture index
+            dest[index + 9] = textureIndex;
         }
+    }
 
-        return result;
+    /**
+     * Writes the <b>positions</b>, <b>colors</b> and <b>UVs</b> of valid <b>OpenGL vertices</b> into a direct
+     * {@link FloatBuffer} with absolute puts, where the <b>positions</b> are <b>interpolated</b> between the
+     * previous and the current <b>tick</b>. Unlike {@link RenderComponent#writeRawOpenGLVertices(float, float[], int)}
+     * the <b>texture index</b> of every <b>vertex</b> is skipped, because it is an integer which depends on where
+     * the <b>texture</b> is bound while drawing, and is written by the caller. The position of <b>dest</b> is not
+     * changed.
+     * @param alpha the <b>interpolation</b> factor, for example {@link engine.dengine.window.FixedTimestep#getAlpha()}
+     * @param dest the {@link FloatBuffer} which is written to
+     * @param offset the index in <b>dest</b> of the first float
+     * @see engine.dengine.graphics.RenderBatch
+     */
+    public void writeRawOpenGLVertices (float alpha, FloatBuffer dest, int offset)
+    {
+        // The world matrix may have been recomputed after the last update
+        sync();
+
+        // Position
+        if (alpha < 1)
+            shape.transformVertices(entity.getTransform().getInterpolatedWorldMatrix(alpha, worldMatrix),
+                    dest, offset, Constants.VERTEX_SIZE);
+        else
+        {
+            final float[] worldVertices = shape.getTransformedVertices();
+            for (int i = 0, index = offset; i < worldVertices.length;
+                 i += Constants.POSITION_SIZE, index += Constants.VERTEX_SIZE)
+            {
+                dest.put(index, worldVertices[i]);          // x
+                dest.put(index + 1, worldVertices[i + 1]);  // y
+                dest.put(index + 2, worldVertices[i + 2]);  // z
+            }
+        }
+        writeAttributes(dest, offset);
+    }
+
+    /**
+     * Writes the <b>colors</b> and <b>UVs</b> of valid <b>OpenGL vertices</b> into a direct {@link FloatBuffer}
+     * with absolute puts, and leaves the <b>positions</b> and <b>texture indices</b> to the caller, for example
+     * to a {@link engine.dengine.graphics.RenderBatch} which transforms the <b>positions</b> of many
+     * <b>sprites</b> at once. The position of <b>dest</b> is not changed.
+     * @param dest the {@link FloatBuffer} which is written to
+     * @param offset the index in <b>dest</b> of the first float
+     * @see RenderComponent#writeRawOpenGLVertices(float, FloatBuffer, int)
+     */
+    public void writeRawOpenGLAttributes (FloatBuffer dest, int offset)
+    {
+        // Picks up the versions, so the component stays clean after it was written
+        sync();
+        writeAttributes(dest, offset);
+    }
+
+    private void writeAttributes (FloatBuffer dest, int offset)
+    {
+        final float[] uvs = sprite != null ? sprite.getUvs() : null;
+        final float r = color.x, g = color.y, b = color.z, a = color.w;
+
+        for (int i = 0; i < shape.getVertexCount(); i++)
+        {
+            final int index = offset + i * Constants.VERTEX_SIZE;
+
+            // Color
+            dest.put(index + 3, r);
+            dest.put(index + 4, g);
+            dest.put(index + 5, b);
+            dest.put(index + 6, a);
+
+            // UVs
+            dest.put(index + 7, uvs != null ? uvs[i * Constants.UV_SIZE] : 0);
+            dest.put(index + 8, uvs != null ? uvs[i * Constants.UV_SIZE + 1] : 0);
+        }
+    }
+
+    /**
+     * Returns the number of <b>indices</b> written by {@link RenderComponent#writeIndices(int[], int, int)}.
+     * @return the number of <b>indices</b>
+     */
+    public int getIndexCount ()
+    {
+        return shape.getIndexCount();
+    }
+
+    /**
+     * Writes the triangle <b>indices</b> of the {@link Shape} into a caller-supplied int[] without allocating,
+     * shifted by the position of the first <b>vertex</b> in the <b>vertex buffer</b>, so every corner is
+     * uploaded once and shared by its triangles through an <b>index buffer</b>.
+     * @param dest the int[] which is written to
+     * @param offset the index in <b>dest</b> of the first <b>index</b>
+     * @param baseVertex the number of <b>vertices</b> in the <b>vertex buffer</b> before the ones of this
+     * {@link RenderComponent}
+     * @see Shape#getIndices()
+     */
+    public void writeIndices (int[] dest, int offset, int baseVertex)
+    {
+        final int[] indices = shape.getIndices();
+        for (int i = 0; i < indices.length; i++)
+            dest[offset + i] = baseVertex + indices[i];
+    }
+
+    /**
+     * Writes the triangle <b>indices</b> of the {@link Shape} into a direct {@link IntBuffer} with absolute puts,
+     * shifted by the position of the first <b>vertex</b> in the <b>vertex buffer</b>. The position of <b>dest</b>
+     * is not changed.
+     * @param dest the {@link IntBuffer} which is written to
+     * @param offset the index in <b>dest</b> of the first <b>index</b>
+     * @param baseVertex the number of <b>vertices</b> in the <b>vertex buffer</b> before the ones of this
+     * {@link RenderComponent}
+     * @see RenderComponent#writeIndices(int[], int, int)
+     */
+    public void writeIndices (IntBuffer dest, int offset, int baseVertex)
+    {
+        final int[] indices = shape.getIndices();
+        for (int i = 0; i < indices.length; i++)
+            dest.put(offset + i, baseVertex + indices[i]);
+    }
+
+    /**
+     * Returns the {@link Shape}.
+     * @return the {@link Shape}
+     */
+    public Shape getShape ()
+    {
+        return shape;
+    }
+
+    /**
+     * Returns the {@link Sprite}.
+     * @return the {@link Sprite}, or null if there is none
+     */
+    public Sprite getSprite ()
+    {
+        return sprite;
+    }
+
+    /**
+     * Returns the <b>color</b>.
+     * @return the <b>color</b>
+     */
+    public Vector4f getColor ()
+    {
+        return color;
     }
 
     /**
@@ -127,6 +355,7 @@ public class RenderComponent extends Component
     public void setSprite (Sprite sprite)
     {
         this.sprite = sprite;
+        this.lastSpriteVersion = sprite != null ? sprite.getVersion() : 0;
         dirty = true;
     }
 
@@ -141,14 +370,77 @@ public class RenderComponent extends Component
     }
 
     /**
-     * Wether this {@link RenderComponent} instance is <b>dirty</b>.
+     * Returns the <b>layer</b>. Lower <b>layers</b> are drawn before higher ones, no matter their <b>depth</b>.
+     * @return the <b>layer</b>
+     */
+    public int getLayer ()
+    {
+        return layer;
+    }
+
+    /**
+     * Sets the <b>layer</b>. Lower <b>layers</b> are drawn before higher ones, no matter their <b>depth</b>.
+     * @param layer the new <b>layer</b>, from {@link RenderQueue#MIN_LAYER} to {@link RenderQueue#MAX_LAYER}
+     * @throws IllegalArgumentException if the <b>layer</b> is out of range
+     */
+    public void setLayer (int layer)
+    {
+        if (layer < RenderQueue.MIN_LAYER || layer > RenderQueue.MAX_LAYER) throw new IllegalArgumentException(
+                "Tried to set the layer of a RenderComponent to " + layer + ", which is not between " +
+                        RenderQueue.MIN_LAYER + " and " + RenderQueue.MAX_LAYER);
+        this.layer = layer;
+    }
+
+    /**
+     * Returns the {@link Shader} this {@link RenderComponent} is drawn with.
+     * @return the {@link Shader}, or null if it is drawn with the default {@link Shader} of the renderer
+     */
+    public Shader getShader ()
+    {
+        return shader;
+    }
+
+    /**
+     * Sets the {@link Shader} this {@link RenderComponent} is drawn with, which has to take the same
+     * <b>vertices</b> and <b>texture slots</b> as <b>default.vert</b> and <b>default.frag</b>.
+     * @param shader the {@link Shader}, or null to draw with the default {@link Shader} of the renderer
+     */
+    public void setShader (Shader shader)
+    {
+        this.shader = shader;
+    }
+
+    /**
+     * Checks wether this {@link RenderComponent} is <b>blended</b> with what is behind it, which is the case if
+     * its <b>color</b> is not fully opaque or its {@link Sprite} has a <b>texture</b> with an alpha channel.
+     * @return wether this {@link RenderComponent} is translucent
+     */
+    public boolean isTranslucent ()
+    {
+        return color.w < 1 || sprite != null && sprite.getTexture().hasAlpha();
+    }
+
+    /**
+     * Wether this {@link RenderComponent} instance is <b>dirty</b>. Changes of the {@link Transform} which
+     * happened since the last {@link RenderComponent#update(float)}, like a new <b>local-to-world matrix</b>, are
+     * picked up first.
      * @return if this {@link RenderComponent} instance is <b>dirty</b>
      */
     public boolean isDirty ()
     {
+        if (entity != null) sync();
         return dirty;
     }
 
+    /**
+     * Returns the {@link Entity} this {@link RenderComponent} belongs to.
+     * @return the {@link Entity}, or null if it was not added to one
+     */
+    public Entity getEntity ()
+    {
+        return entity;
+    }
+
     /**
      * <b>Cleans</b> this {@link RenderComponent} instance.
      */
@@ -0,0 +1,229 @@
+package engine.dengine.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SystemScheduler}</h2>
+ * <br>
+ * The {@link SystemScheduler} class runs {@link EntitySystem} instances on a {@link ForkJoinPool}.
+ * It builds a dependency graph from the declared reads and writes of the <b>systems</b>: a <b>system</b> depends
+ * on every <b>system</b> which was added before it and conflicts with it. The <b>systems</b> are then grouped into
+ * <b>stages</b>, where every <b>system</b> is placed one <b>stage</b> after its latest dependency. All
+ * <b>systems</b> of a <b>stage</b> run at the same time, and every <b>system</b> splits its {@link Chunk}
+ * instances across the worker threads of the {@link ForkJoinPool}.
+ * <br>
+ * <b>Systems</b> must not add or remove <b>entities</b> or <b>components</b> while they are being run, but record
+ * these changes in the {@link CommandBuffer} of their thread instead.
+ */
+public class SystemScheduler
+{
+    /** The number of {@link Chunk} instances below which the work of a <b>system</b> is not split any further */
+    private static final int CHUNKS_PER_TASK = 4;
+
+    private final ForkJoinPool pool;
+    private final List<EntitySystem> systems;
+    private final List<StageTask> stages;
+    private boolean dirty;
+
+    /**
+     * Creates a new {@link SystemScheduler} instance which uses the {@link ForkJoinPool#commonPool()}.
+     */
+    public SystemScheduler ()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new {@link SystemScheduler} instance.
+     * @param pool the {@link ForkJoinPool} the <b>systems</b> are run on
+     */
+    public SystemScheduler (ForkJoinPool pool)
+    {
+        this.pool = pool;
+        this.systems = new ArrayList<>();
+        this.stages = new ArrayList<>();
+        this.dirty = false;
+    }
+
+    /**
+     * Adds an {@link EntitySystem} instance if it is not already added. <b>Systems</b> which conflict are run in
+     * the order they were added in.
+     * @param system the {@link EntitySystem} instance
+     */
+    public void addSystem (EntitySystem system)
+    {
+        if (systems.contains(system)) return;
+        systems.add(system);
+        dirty = true;
+    }
+
+    /**
+     * Removes an {@link EntitySystem} instance.
+     * @param system the {@link EntitySystem} instance
+     */
+    public void removeSystem (EntitySystem system)
+    {
+        if (systems.remove(system)) dirty = true;
+    }
+
+    /**
+     * Returns the added {@link EntitySystem} instances in the order they were added in.
+     * @return the unmodifiable list of {@link EntitySystem} instances
+     */
+    public List<EntitySystem> getSystems ()
+    {
+        return List.copyOf(systems);
+    }
+
+    /**
+     * Runs all <b>systems</b> on the <b>entities</b> of an {@link ArchetypeStore}, one <b>stage</b> after
+     * another.
+     * @param store the {@link ArchetypeStore}
+     * @param deltaTime the delta time since the last update
+     */
+    public void run (ArchetypeStore store, float deltaTime)
+    {
+        if (dirty) buildStages();
+
+        for (StageTask stage : stages)
+        {
+            for (SystemTask task : stage.tasks)
+                task.prepare(store, deltaTime);
+
+            stage.reinitialize();
+            pool.invoke(stage);
+        }
+    }
+
+    private void buildStages ()
+    {
+        stages.clear();
+
+        final int[] levels = new int[systems.size()];
+        for (int i = 0; i < systems.size(); i++)
+        {
+            for (int j = 0; j < i; j++)
+                if (systems.get(i).conflictsWith(systems.get(j)))
+                    levels[i] = Math.max(levels[i], levels[j] + 1);
+
+            while (stages.size() <= levels[i])
+                stages.add(new StageTask());
+            stages.get(levels[i]).tasks.add(new SystemTask(systems.get(i)));
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Runs all {@link SystemTask} instances of a <b>stage</b> at the same time.
+     */
+    private static final class StageTask extends RecursiveAction
+    {
+        private final List<SystemTask> tasks = new ArrayList<>();
+
+        @Override
+        protected void compute ()
+        {
+            if (tasks.size() == 1)
+            {
+                tasks.get(0).compute();
+                return;
+            }
+            for (SystemTask task : tasks)
+                task.reinitialize();
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Runs an {@link EntitySystem} on all matching {@link Chunk} instances and is reused every frame.
+     */
+    private static final class SystemTask extends RecursiveAction
+    {
+        private final EntitySystem system;
+        private ArchetypeStore store;
+        private Query query;
+        private Chunk[] chunks = new Chunk[16];
+        private int chunkCount;
+        private float deltaTime;
+
+        private SystemTask (EntitySystem system)
+        {
+            this.system = system;
+        }
+
+        private void prepare (ArchetypeStore store, float deltaTime)
+        {
+            this.deltaTime = deltaTime;
+            chunkCount = 0;
+
+            if (this.store != store)
+            {
+                this.store = store;
+                this.query = system.query(store);
+            }
+
+            for (int i = 0; i < query.getArchetypeCount(); i++)
+            {
+                final Archetype archetype = query.getArchetype(i);
+
+                for (int j = 0; j < archetype.getChunkCount(); j++)
+                {
+                    if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                    chunks[chunkCount++] = archetype.getChunk(j);
+                }
+            }
+        }
+
+        @Override
+        protected void compute ()
+        {
+            new RangeTask(system, chunks, 0, chunkCount, deltaTime).compute();
+            Arrays.fill(chunks, 0, chunkCount, null);
+        }
+    }
+
+    /**
+     * Runs an {@link EntitySystem} on a range of {@link Chunk} instances, splitting the range in halves until it
+     * is small enough.
+     */
+    private static final class RangeTask extends RecursiveAction
+    {
+        private final EntitySystem system;
+        private final Chunk[] chunks;
+        private final int from, to;
+        private final float deltaTime;
+
+        private RangeTask (EntitySystem system, Chunk[] chunks, int from, int to, float deltaTime)
+        {
+            this.system = system;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.deltaTime = deltaTime;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if (to - from <= CHUNKS_PER_TASK)
+            {
+                for (int i = from; i < to; i++)
+                    system.update(chunks[i], deltaTime);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(system, chunks, from, mid, deltaTime),
+                    new RangeTask(system, chunks, mid, to, deltaTime));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package engine.dengine.ecs;
 
+import engine.dengine.math.MathUtil;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 
@@ -18,6 +21,20 @@ import org.joml.Vector3f;
  * coordinates</b>, respectively. <b>Scaling</b> is applied by multiplying the <b>x</b> and <b>y coordinate</b>
  * with the <b>x</b> and <b>y scaling factors</b>. <b>Rotation</b> is applied by <b>rotating</b> each point around
  * the <b>z-axis</b> using a <b>rotation matrix</b>.
+ * <br>
+ * Once the {@link Entity} owning a {@link Transform} instance is added to an {@link ArchetypeStore}, the
+ * {@link Transform} instance becomes a view of its {@link Chunk} <b>row</b> and all its data is read from and
+ * written to the primitive float arrays of the {@link Chunk}. The vectors returned by
+ * {@link Transform#getPosition()} and {@link Transform#getScale()} are therefore only snapshots and changes to
+ * them have to be applied using {@link Transform#setPosition(Vector3f)} and {@link Transform#setScale(Vector2f)}.
+ * <br>
+ * The data of a {@link Transform} is relative to the parent of its {@link Entity} ({@link Entity#setParent(Entity)}).
+ * {@link Transform#getWorldMatrix(Matrix3x2f)} returns the cached <b>local-to-world matrix</b>, which combines the
+ * <b>transformations</b> of all ancestors and is kept up to date by {@link ArchetypeStore#updateWorldMatrices()}.
+ * <br>
+ * The sine and cosine of the <b>rotation</b> are cached ({@link Transform#getSin()}, {@link Transform#getCos()})
+ * and only recomputed using {@link MathUtil#sin(float)} and {@link MathUtil#cos(float)} once the <b>rotation</b>
+ * changed.
  * @see engine.dengine.math.MathUtil#rotatePointOnZAxis(float, float, float, float)
  */
 public class Transform
@@ -28,6 +45,24 @@ public class Transform
     private Vector2f scale;
     /** Transformations on rotation */
     private float rotation;
+    /** The {@link Chunk} this {@link Transform} is stored in, or null if it is not stored in one */
+    private Chunk chunk;
+    /** The <b>row</b> of the {@link Chunk} this {@link Transform} is stored in */
+    private int row;
+    /** The <b>version</b>, which is incremented on every change while not stored in a {@link Chunk} */
+    private int version;
+    /** The lazily recomputed <b>local matrix</b> */
+    private final Matrix3x2f matrix;
+    /** The <b>version</b> {@link Transform#matrix} was computed for */
+    private int matrixVersion;
+    /** Wether {@link Transform#matrix} was computed since this {@link Transform} was last bound or unbound */
+    private boolean matrixValid;
+    /** The cached sine of the <b>rotation</b> while not stored in a {@link Chunk} */
+    private float sin;
+    /** The cached cosine of the <b>rotation</b> while not stored in a {@link Chunk} */
+    private float cos;
+    /** The <b>rotation</b> {@link Transform#sin} and {@link Transform#cos} were computed for */
+    private float trigRotation;
 
     /**
      * Creates a new {@link Transform} instance with a <b>position</b> of 1, 1, 1, a <b>scale</b> of 1, 1
@@ -44,7 +79,7 @@ public class Transform
      */
     public Transform (Transform transform)
     {
-        this(new Vector3f(transform.position), new Vector2f(transform.scale), transform.rotation);
+        this(new Vector3f(transform.getPosition()), new Vector2f(transform.getScale()), transform.getRotation());
     }
 
     /**
@@ -68,6 +103,73 @@ public class Transform
         this.position = position;
         this.scale = scale;
         this.rotation = rotation;
+        this.chunk = null;
+        this.row = -1;
+        this.version = 0;
+        this.matrix = new Matrix3x2f();
+        this.matrixValid = false;
+        this.trigRotation = Float.NaN;
+    }
+
+    /**
+     * Resets this unbound {@link Transform} to the values of {@link Transform#Transform()} without allocating.
+     */
+    void reset ()
+    {
+        position.set(1, 1, 1);
+        scale.set(1, 1);
+        rotation = 0;
+        version++;
+        matrixValid = false;
+    }
+
+    /**
+     * Writes the data of this unbound {@link Transform} into a {@link Chunk} <b>row</b>.
+     * @param chunk the {@link Chunk}
+     * @param row the <b>row</b>
+     */
+    void writeTo (Chunk chunk, int row)
+    {
+        chunk.positionX[row] = position.x;
+        chunk.positionY[row] = position.y;
+        chunk.positionZ[row] = position.z;
+        chunk.scaleX[row] = scale.x;
+        chunk.scaleY[row] = scale.y;
+        chunk.rotation[row] = rotation;
+        chunk.versions[row] = version;
+        // Incremented by updateWorld, so it is above every world version seen while this Transform was unbound
+        chunk.worldVersions[row] = version;
+        chunk.updateWorld(row, null, 0);
+        chunk.resetPreviousWorld(row);
+        chunk.setChangedBit(row);
+    }
+
+    /**
+     * Binds this {@link Transform} to a {@link Chunk} <b>row</b>, which from then on stores its data.
+     * @param chunk the {@link Chunk}
+     * @param row the <b>row</b>
+     */
+    void bind (Chunk chunk, int row)
+    {
+        this.chunk = chunk;
+        this.row = row;
+        matrixValid = false;
+    }
+
+    /**
+     * Copies the data of the bound {@link Chunk} <b>row</b> back into this {@link Transform} and unbinds it.
+     */
+    void unbind ()
+    {
+        if (chunk == null) return;
+        position.set(chunk.positionX[row], chunk.positionY[row], chunk.positionZ[row]);
+        scale.set(chunk.scaleX[row], chunk.scaleY[row]);
+        rotation = chunk.rotation[row];
+        // The world version becomes the version, so it has to be new to caches keyed on either of them
+        version = Math.max(chunk.versions[row], chunk.worldVersions[row]) + 1;
+        chunk = null;
+        row = -1;
+        matrixValid = false;
     }
 
     /**
@@ -76,7 +178,16 @@ public class Transform
      */
     public void setPosition (Vector3f position)
     {
+        if (chunk != null)
+        {
+            chunk.positionX[row] = position.x;
+            chunk.positionY[row] = position.y;
+            chunk.positionZ[row] = position.z;
+            chunk.markChanged(row);
+            return;
+        }
         this.position.set(position);
+        version++;
     }
 
     /**
@@ -85,7 +196,15 @@ public class Transform
      */
     public void setScale (Vector2f scale)
     {
+        if (chunk != null)
+        {
+            chunk.scaleX[row] = scale.x;
+            chunk.scaleY[row] = scale.y;
+            chunk.markChanged(row);
+            return;
+        }
         this.scale.set(scale);
+        version++;
     }
 
     /**
@@ -94,7 +213,14 @@ public class Transform
      */
     public void setRotation (float rotation)
     {
+        if (chunk != null)
+        {
+            chunk.rotation[row] = rotation;
+            chunk.markChanged(row);
+            return;
+        }
         this.rotation = rotation;
+        version++;
     }
 
     /**
@@ -103,6 +229,7 @@ public class Transform
      */
     public Vector3f getPosition ()
     {
+        if (chunk != null) position.set(chunk.positionX[row], chunk.positionY[row], chunk.positionZ[row]);
         return position;
     }
 
@@ -112,6 +239,7 @@ public class Transform
      */
     public Vector2f getScale ()
     {
+        if (chunk != null) scale.set(chunk.scaleX[row], chunk.scaleY[row]);
         return scale;
     }
 
@@ -121,7 +249,134 @@ public class Transform
      */
     public float getRotation ()
     {
-        return rotation;
+        return chunk != null ? chunk.rotation[row] : rotation;
+    }
+
+    /**
+     * Returns the sine of the <b>rotation</b>, which is cached until the <b>rotation</b> changes.
+     * @return the sine of the <b>rotation</b>
+     * @see MathUtil#sin(float)
+     */
+    public float getSin ()
+    {
+        if (chunk != null)
+        {
+            chunk.updateTrig(row);
+            return chunk.rotationSin[row];
+        }
+        updateTrig();
+        return sin;
+    }
+
+    /**
+     * Returns the cosine of the <b>rotation</b>, which is cached until the <b>rotation</b> changes.
+     * @return the cosine of the <b>rotation</b>
+     * @see MathUtil#cos(float)
+     */
+    public float getCos ()
+    {
+        if (chunk != null)
+        {
+            chunk.updateTrig(row);
+            return chunk.rotationCos[row];
+        }
+        updateTrig();
+        return cos;
+    }
+
+    private void updateTrig ()
+    {
+        if (Float.floatToRawIntBits(rotation) == Float.floatToRawIntBits(trigRotation)) return;
+        sin = MathUtil.sin(rotation);
+        cos = MathUtil.cos(rotation);
+        trigRotation = rotation;
+    }
+
+    /**
+     * Returns the <b>version</b>, which is incremented every time this {@link Transform} is changed.
+     * @return the <b>version</b>
+     */
+    public int getVersion ()
+    {
+        return chunk != null ? chunk.versions[row] : version;
+    }
+
+    /**
+     * Returns the <b>local matrix</b>, which translates, rotates and scales in this order. The <b>matrix</b> is
+     * only recomputed once the <b>version</b> of this {@link Transform} changed, so repeated calls are free.
+     * @return the read-only view of the cached <b>local matrix</b>, which is changed by the next call after a
+     * change of this {@link Transform}
+     */
+    public Matrix3x2fc getMatrix ()
+    {
+        final int currentVersion = getVersion();
+        if (matrixValid && matrixVersion == currentVersion) return matrix;
+
+        final Vector2f scale = getScale();
+        final Vector3f position = getPosition();
+        final float sin = getSin();
+        final float cos = getCos();
+        matrix.set(cos * scale.x, sin * scale.x, -sin * scale.y, cos * scale.y, position.x, position.y);
+        matrixVersion = currentVersion;
+        matrixValid = true;
+        return matrix;
+    }
+
+    /**
+     * Copies the <b>local matrix</b>, which translates, rotates and scales in this order.
+     * @param dest the {@link Matrix3x2f} which is written to
+     * @return <b>dest</b>
+     * @see Transform#getMatrix()
+     */
+    public Matrix3x2f getLocalMatrix (Matrix3x2f dest)
+    {
+        return dest.set(getMatrix());
+    }
+
+    /**
+     * Returns the <b>local-to-world matrix</b>. While this {@link Transform} is stored in a {@link Chunk}, this is
+     * the <b>matrix</b> cached by the last {@link ArchetypeStore#updateWorldMatrices()}, otherwise it is the
+     * <b>local matrix</b>.
+     * @param dest the {@link Matrix3x2f} which is written to
+     * @return <b>dest</b>
+     */
+    public Matrix3x2f getWorldMatrix (Matrix3x2f dest)
+    {
+        return chunk != null ? chunk.getWorldMatrix(row, dest) : getLocalMatrix(dest);
+    }
+
+    /**
+     * Returns the <b>local-to-world matrix</b> <b>interpolated</b> between the previous and the current
+     * <b>tick</b>. While this {@link Transform} is not stored in a {@link Chunk}, this is the <b>local matrix</b>.
+     * @param alpha the <b>interpolation</b> factor, where 0 is the previous and 1 the current <b>tick</b>
+     * @param dest the {@link Matrix3x2f} which is written to
+     * @return <b>dest</b>
+     * @see Chunk#getInterpolatedWorldMatrix(int, float, Matrix3x2f)
+     */
+    public Matrix3x2f getInterpolatedWorldMatrix (float alpha, Matrix3x2f dest)
+    {
+        return chunk != null ? chunk.getInterpolatedWorldMatrix(row, alpha, dest) : getLocalMatrix(dest);
+    }
+
+    /**
+     * Checks wether the <b>local-to-world matrix</b> differs from the one of the previous <b>tick</b>. While this
+     * {@link Transform} is not stored in a {@link Chunk}, there is no previous <b>tick</b> and it never moved.
+     * @return wether this {@link Transform} moved during the last <b>tick</b>
+     * @see Chunk#hasMoved(int)
+     */
+    public boolean hasMoved ()
+    {
+        return chunk != null && chunk.hasMoved(row);
+    }
+
+    /**
+     * Returns the <b>world version</b>, which is incremented every time the <b>local-to-world matrix</b> is
+     * recomputed. While this {@link Transform} is not stored in a {@link Chunk}, this is its <b>version</b>.
+     * @return the <b>world version</b>
+     */
+    public int getWorldVersion ()
+    {
+        return chunk != null ? chunk.worldVersions[row] : version;
     }
 
     /**
@@ -131,9 +386,9 @@ public class Transform
      */
     public void set (Transform transform)
     {
-        this.position.set(transform.position);
-        this.scale.set(transform.scale);
-        this.rotation = transform.rotation;
+        setPosition(transform.getPosition());
+        setScale(transform.getScale());
+        setRotation(transform.getRotation());
     }
 
     /**
@@ -148,8 +403,8 @@ public class Transform
     {
         if (obj == null) return false;
         if (obj instanceof Transform transform)
-            return transform.position.equals(position) && transform.scale.equals(scale)
-                    && transform.rotation == rotation;
+            return transform.getPosition().equals(getPosition()) && transform.getScale().equals(getScale())
+                    && transform.getRotation() == getRotation();
         return false;
     }
 }
@@ -0,0 +1,398 @@
+package engine.dengine.graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link AtlasPacker}</h2>
+ * <br>
+ * The {@link AtlasPacker} class decides where the images of a {@link TextureAtlas} go on its <b>pages</b>. It only
+ * knows the rectangles the images take ({@link Rect}), not their <b>pixels</b>, so it does not need an
+ * <b>OpenGL context</b>. The {@link TextureAtlas} uploads an image and remaps its {@link Sprite} after the
+ * {@link AtlasPacker} moved its {@link Rect}.
+ * <br>
+ * Every <b>page</b> keeps its maximal free rectangles by the <b>MaxRects</b> algorithm, and a rectangle goes into
+ * the free rectangle it fits best by its shorter leftover side. The <b>layer</b> of a new <b>page</b> is taken
+ * from a supplier, which is {@link engine.dengine.assets.TextureArray#addLayer()} for a {@link TextureAtlas}.
+ */
+final class AtlasPacker
+{
+    private final String name;
+    private final int pageSize, maxPages;
+    private final IntSupplier layers;
+    /** The <b>pages</b> in the order of their <b>layers</b>, including empty ones */
+    private final List<Page> pageList;
+
+    /**
+     * Creates a new {@link AtlasPacker} instance without <b>pages</b>.
+     * @param name the name of the {@link TextureAtlas}, which is used in exception messages
+     * @param pageSize the width and height of a <b>page</b> in <b>pixels</b>
+     * @param maxPages the number of <b>pages</b>
+     * @param layers the supplier of the <b>layer</b> of every new <b>page</b>
+     */
+    AtlasPacker (String name, int pageSize, int maxPages, IntSupplier layers)
+    {
+        this.name = name;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.layers = layers;
+        this.pageList = new ArrayList<>();
+    }
+
+    /**
+     * Puts a rectangle into the first <b>page</b> it fits on.
+     * @param rect the rectangle
+     * @return wether a <b>page</b> had room for the rectangle
+     */
+    boolean insert (Rect rect)
+    {
+        for (Page page : pageList)
+        {
+            if (!page.find(rect.reservedWidth, rect.reservedHeight)) continue;
+            page.place(page.foundX, page.foundY, rect.reservedWidth, rect.reservedHeight);
+            rect.page = page;
+            rect.x = page.foundX;
+            rect.y = page.foundY;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks wether another <b>page</b> can be opened.
+     * @return wether less than the maximum number of <b>pages</b> are open
+     */
+    boolean canOpenPage ()
+    {
+        return pageList.size() < maxPages;
+    }
+
+    /**
+     * Opens an empty <b>page</b> after the last one.
+     * @throws IllegalStateException if all <b>pages</b> are open
+     */
+    void openPage ()
+    {
+        if (!canOpenPage()) throw new IllegalStateException("Tried to open a page of TextureAtlas " + name +
+                ", whose " + maxPages + " pages are all open");
+        final Page page = new Page(pageSize);
+        page.layer = layers.getAsInt();
+        pageList.add(page);
+    }
+
+    /**
+     * Gives the area of a rectangle back to its <b>page</b>.
+     * @param rect the rectangle, which has to be placed
+     */
+    void remove (Rect rect)
+    {
+        rect.page.free(rect.x, rect.y, rect.reservedWidth, rect.reservedHeight);
+        rect.page = null;
+    }
+
+    /**
+     * Packs rectangles again from scratch, largest first, onto the <b>pages</b>. Every rectangle which is not in
+     * the list has to be removed before. The packed <b>pages</b> take over the <b>layers</b> in order, and
+     * <b>pages</b> which end up empty are kept for later rectangles.
+     * @param all the rectangles, which are sorted
+     * @throws IllegalStateException if the rectangles do not fit on all <b>pages</b>, in which case nothing
+     * changes
+     */
+    void repack (List<? extends Rect> all)
+    {
+        all.sort(Comparator.comparingInt((Rect rect) -> Math.max(rect.reservedWidth, rect.reservedHeight))
+                .thenComparingInt(rect -> rect.reservedWidth * rect.reservedHeight).reversed());
+
+        // Pack onto new pages first, so nothing changes if the rectangles do not fit
+        final List<Page> packed = new ArrayList<>();
+        final Page[] targets = new Page[all.size()];
+        final int[] positions = new int[all.size() * 2];
+        for (int i = 0; i < all.size(); i++)
+        {
+            final Rect rect = all.get(i);
+            Page target = null;
+            for (Page page : packed)
+                if (page.find(rect.reservedWidth, rect.reservedHeight))
+                {
+                    target = page;
+                    break;
+                }
+            if (target == null)
+            {
+                if (packed.size() == maxPages) throw new IllegalStateException("Tried to pack " + all.size() +
+                        " images into the " + maxPages + " pages of TextureAtlas " + name);
+                target = new Page(pageSize);
+                target.find(rect.reservedWidth, rect.reservedHeight);
+                packed.add(target);
+            }
+            target.place(target.foundX, target.foundY, rect.reservedWidth, rect.reservedHeight);
+            targets[i] = target;
+            positions[i * 2] = target.foundX;
+            positions[i * 2 + 1] = target.foundY;
+        }
+
+        for (int i = 0; i < packed.size(); i++)
+            packed.get(i).layer = i < pageList.size() ? pageList.get(i).layer : layers.getAsInt();
+        for (int i = packed.size(); i < pageList.size(); i++)
+        {
+            final Page page = new Page(pageSize);
+            page.layer = pageList.get(i).layer;
+            packed.add(page);
+        }
+        pageList.clear();
+        pageList.addAll(packed);
+
+        for (int i = 0; i < all.size(); i++)
+        {
+            final Rect rect = all.get(i);
+            rect.page = targets[i];
+            rect.x = positions[i * 2];
+            rect.y = positions[i * 2 + 1];
+        }
+    }
+
+    /**
+     * Returns the share of the area of all <b>pages</b> in use which is not covered by rectangles.
+     * @return the fragmentation from 0 to 1
+     */
+    float getFragmentation ()
+    {
+        long used = 0;
+        int usedPages = 0;
+        for (Page page : pageList)
+        {
+            used += page.usedArea;
+            if (page.usedArea > 0) usedPages++;
+        }
+        if (usedPages == 0) return 0;
+        return 1 - used / ((float) usedPages * pageSize * pageSize);
+    }
+
+    /**
+     * Returns the number of <b>pages</b> which hold at least one rectangle.
+     * @return the number of used <b>pages</b>
+     */
+    int getPageCount ()
+    {
+        int count = 0;
+        for (Page page : pageList)
+            if (page.usedArea > 0) count++;
+        return count;
+    }
+
+    /**
+     * Returns the open <b>pages</b> in the order of their <b>layers</b>, including empty ones.
+     * @return the <b>pages</b>, which must not be changed
+     */
+    List<Page> getPages ()
+    {
+        return pageList;
+    }
+
+    /**
+     * The rectangle an image takes, including its <b>padding</b> and <b>bleed</b>, and where it was packed.
+     */
+    static class Rect
+    {
+        final int reservedWidth, reservedHeight;
+        Page page;
+        int x, y;
+
+        Rect (int reservedWidth, int reservedHeight)
+        {
+            this.reservedWidth = reservedWidth;
+            this.reservedHeight = reservedHeight;
+        }
+    }
+
+    /**
+     * A <b>page</b> with its maximal free rectangles, which may overlap each other.
+     */
+    static final class Page
+    {
+        private final int size;
+        private int layer;
+        // The free rectangles as x, y, width and height
+        private int[] free, splits;
+        private int freeCount;
+        private long usedArea;
+        /** The position of the last rectangle found by {@link Page#find(int, int)} */
+        private int foundX, foundY;
+
+        Page (int size)
+        {
+            this.size = size;
+            this.free = new int[64];
+            this.splits = new int[64];
+            reset();
+        }
+
+        private void reset ()
+        {
+            freeCount = 0;
+            addFree(0, 0, size, size);
+            usedArea = 0;
+        }
+
+        /**
+         * Finds the free rectangle whose shorter leftover side is the smallest once the rectangle is put into it,
+         * whose position is returned by {@link Page#getFoundX()} and {@link Page#getFoundY()}.
+         * @return wether the rectangle fits
+         */
+        boolean find (int width, int height)
+        {
+            int bestShort = Integer.MAX_VALUE, bestLong = Integer.MAX_VALUE;
+            for (int i = 0; i < freeCount * 4; i += 4)
+            {
+                final int leftoverWidth = free[i + 2] - width, leftoverHeight = free[i + 3] - height;
+                if (leftoverWidth < 0 || leftoverHeight < 0) continue;
+
+                final int shortSide = Math.min(leftoverWidth, leftoverHeight);
+                final int longSide = Math.max(leftoverWidth, leftoverHeight);
+                if (shortSide < bestShort || shortSide == bestShort && longSide < bestLong)
+                {
+                    bestShort = shortSide;
+                    bestLong = longSide;
+                    foundX = free[i];
+                    foundY = free[i + 1];
+                }
+            }
+            return bestShort != Integer.MAX_VALUE;
+        }
+
+        /**
+         * Takes a rectangle, splitting every free rectangle it overlaps into the up to four maximal rectangles
+         * around it.
+         */
+        void place (int x, int y, int width, int height)
+        {
+            int count = 0;
+            for (int i = 0; i < freeCount * 4; i += 4)
+            {
+                final int freeX = free[i], freeY = free[i + 1], freeWidth = free[i + 2], freeHeight = free[i + 3];
+                if (x >= freeX + freeWidth || x + width <= freeX || y >= freeY + freeHeight || y + height <= freeY)
+                {
+                    count = addSplit(count, freeX, freeY, freeWidth, freeHeight);
+                    continue;
+                }
+
+                if (x > freeX) count = addSplit(count, freeX, freeY, x - freeX, freeHeight);
+                if (x + width < freeX + freeWidth)
+                    count = addSplit(count, x + width, freeY, freeX + freeWidth - x - width, freeHeight);
+                if (y > freeY) count = addSplit(count, freeX, freeY, freeWidth, y - freeY);
+                if (y + height < freeY + freeHeight)
+                    count = addSplit(count, freeX, y + height, freeWidth, freeY + freeHeight - y - height);
+            }
+
+            final int[] swap = free;
+            free = splits;
+            splits = swap;
+            freeCount = count;
+            prune();
+            usedArea += (long) width * height;
+        }
+
+        private int addSplit (int count, int x, int y, int width, int height)
+        {
+            if (count * 4 == splits.length) splits = Arrays.copyOf(splits, splits.length * 2);
+            splits[count * 4] = x;
+            splits[count * 4 + 1] = y;
+            splits[count * 4 + 2] = width;
+            splits[count * 4 + 3] = height;
+            return count + 1;
+        }
+
+        /**
+         * Gives a rectangle back. It only becomes one free rectangle of its own, so the holes of removed
+         * rectangles stay until the <b>page</b> is empty or packed again.
+         */
+        void free (int x, int y, int width, int height)
+        {
+            usedArea -= (long) width * height;
+            if (usedArea == 0)
+            {
+                reset();
+                return;
+            }
+            addFree(x, y, width, height);
+            prune();
+        }
+
+        private void addFree (int x, int y, int width, int height)
+        {
+            if (freeCount * 4 == free.length) free = Arrays.copyOf(free, free.length * 2);
+            free[freeCount * 4] = x;
+            free[freeCount * 4 + 1] = y;
+            free[freeCount * 4 + 2] = width;
+            free[freeCount * 4 + 3] = height;
+            freeCount++;
+        }
+
+        /**
+         * Removes every free rectangle which lies inside another one.
+         */
+        private void prune ()
+        {
+            for (int i = 0; i < freeCount; i++)
+                for (int j = i + 1; j < freeCount; j++)
+                {
+                    if (contains(j, i))
+                    {
+                        removeFree(i--);
+                        break;
+                    }
+                    if (contains(i, j)) removeFree(j--);
+                }
+        }
+
+        private boolean contains (int outer, int inner)
+        {
+            final int o = outer * 4, n = inner * 4;
+            return free[n] >= free[o] && free[n + 1] >= free[o + 1]
+                    && free[n] + free[n + 2] <= free[o] + free[o + 2]
+                    && free[n + 1] + free[n + 3] <= free[o + 1] + free[o + 3];
+        }
+
+        private void removeFree (int index)
+        {
+            freeCount--;
+            System.arraycopy(free, freeCount * 4, free, index * 4, 4);
+        }
+
+        int getLayer ()
+        {
+            return layer;
+        }
+
+        int getFoundX ()
+        {
+            return foundX;
+        }
+
+        int getFoundY ()
+        {
+            return foundY;
+        }
+
+        long getUsedArea ()
+        {
+            return usedArea;
+        }
+
+        /**
+         * Returns a copy of the free rectangles.
+         * @return the free rectangles as x, y, width and height
+         */
+        int[] getFree ()
+        {
+            return Arrays.copyOf(free, freeCount * 4);
+        }
+    }
+}
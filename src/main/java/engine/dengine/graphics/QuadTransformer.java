@@ -0,0 +1,146 @@
+package engine.dengine.graphics;
+
+import engine.dengine.math.AffineKernel;
+import org.joml.Matrix3x2fc;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link QuadTransformer}</h2>
+ * <br>
+ * The {@link QuadTransformer} class is used by a {@link RenderBatch} to transform the <b>positions</b> of all
+ * <b>quads</b> it writes in a frame together. Every added <b>quad</b> is gathered into <b>SoA</b> arrays, one
+ * per element of its <b>local-to-world matrix</b> and one per coordinate of each of its four local corners. Each
+ * corner of all <b>quads</b> is then transformed by one {@link AffineKernel} call across the gathered
+ * <b>matrices</b>, which is wide enough for the <b>SIMD</b> loop of the {@link AffineKernel} once a frame writes
+ * more <b>quads</b> than it has lanes. <b>Quads</b> which all have the same local corners, like
+ * <b>sprites</b> of the same size placed by their {@link engine.dengine.ecs.Transform}, transform each corner as
+ * a single point by every <b>matrix</b>.
+ */
+final class QuadTransformer
+{
+    private static final int CORNERS = 4;
+
+    // The local-to-world matrices of the added quads
+    private float[] m00, m01, m10, m11, m20, m21;
+    // The local corners of the added quads by corner
+    private final float[][] cornersX, cornersY;
+    private float[] depths;
+    /** The index of the x-coordinate of the first <b>vertex</b> of every <b>quad</b> in the <b>vertex buffer</b> */
+    private int[] offsets;
+    private float[] outX, outY;
+    private int count;
+    /** Wether all added <b>quads</b> have the local corners of the first one */
+    private boolean sharedCorners;
+
+    QuadTransformer ()
+    {
+        this.m00 = new float[64];
+        this.m01 = new float[64];
+        this.m10 = new float[64];
+        this.m11 = new float[64];
+        this.m20 = new float[64];
+        this.m21 = new float[64];
+        this.cornersX = new float[CORNERS][64];
+        this.cornersY = new float[CORNERS][64];
+        this.depths = new float[64];
+        this.offsets = new int[64];
+        this.outX = new float[64];
+        this.outY = new float[64];
+    }
+
+    /**
+     * Adds a <b>quad</b>, whose <b>positions</b> are written by the next
+     * {@link QuadTransformer#flush(FloatBuffer, int)}.
+     * @param matrix the <b>local-to-world matrix</b> of the <b>quad</b>
+     * @param vertices the local <b>vertices</b> of the <b>quad</b>, three floats per corner
+     * @param offset the index of the x-coordinate of the first <b>vertex</b> in the <b>vertex buffer</b>
+     */
+    void add (Matrix3x2fc matrix, float[] vertices, int offset)
+    {
+        if (count == offsets.length) grow();
+
+        final int i = count++;
+        m00[i] = matrix.m00();
+        m01[i] = matrix.m01();
+        m10[i] = matrix.m10();
+        m11[i] = matrix.m11();
+        m20[i] = matrix.m20();
+        m21[i] = matrix.m21();
+        for (int corner = 0; corner < CORNERS; corner++)
+        {
+            final float x = vertices[corner * 3], y = vertices[corner * 3 + 1];
+            cornersX[corner][i] = x;
+            cornersY[corner][i] = y;
+            if (i == 0) sharedCorners = true;
+            else if (x != cornersX[corner][0] || y != cornersY[corner][0]) sharedCorners = false;
+        }
+        depths[i] = vertices[2];
+        offsets[i] = offset;
+    }
+
+    private void grow ()
+    {
+        final int length = count * 2;
+        m00 = Arrays.copyOf(m00, length);
+        m01 = Arrays.copyOf(m01, length);
+        m10 = Arrays.copyOf(m10, length);
+        m11 = Arrays.copyOf(m11, length);
+        m20 = Arrays.copyOf(m20, length);
+        m21 = Arrays.copyOf(m21, length);
+        for (int corner = 0; corner < CORNERS; corner++)
+        {
+            cornersX[corner] = Arrays.copyOf(cornersX[corner], length);
+            cornersY[corner] = Arrays.copyOf(cornersY[corner], length);
+        }
+        depths = Arrays.copyOf(depths, length);
+        offsets = Arrays.copyOf(offsets, length);
+        outX = new float[length];
+        outY = new float[length];
+    }
+
+    /**
+     * Transforms all added <b>quads</b>, writes their <b>positions</b> into the <b>vertex buffer</b> with absolute
+     * puts and removes them.
+     * @param dest the <b>vertex buffer</b>
+     * @param stride the distance between the x-coordinates of two consecutive <b>vertices</b> in <b>dest</b>
+     */
+    void flush (FloatBuffer dest, int stride)
+    {
+        if (count == 0) return;
+
+        final AffineKernel kernel = AffineKernel.getInstance();
+        for (int corner = 0; corner < CORNERS; corner++)
+        {
+            if (sharedCorners)
+                kernel.transform(m00, m01, m10, m11, m20, m21, cornersX[corner][0], cornersY[corner][0],
+                        outX, outY, 0, count);
+            else
+                kernel.transform(m00, m01, m10, m11, m20, m21, cornersX[corner], cornersY[corner],
+                        outX, outY, 0, count);
+
+            for (int i = 0; i < count; i++)
+            {
+                final int index = offsets[i] + corner * stride;
+                dest.put(index, outX[i]);
+                dest.put(index + 1, outY[i]);
+                dest.put(index + 2, depths[i]);
+            }
+        }
+        count = 0;
+    }
+
+    /**
+     * Returns the number of <b>quads</b> added since the last {@link QuadTransformer#flush(FloatBuffer, int)}.
+     * @return the number of <b>quads</b>
+     */
+    int getCount ()
+    {
+        return count;
+    }
+}
@@ -1,5 +1,27 @@
 package engine.dengine.graphics;
 
+import engine.dengine.assets.Shader;
+import engine.dengine.assets.Texture;
+import engine.dengine.assets.Texture2D;
+import engine.dengine.assets.TextureArray;
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.EntityHandle;
+import engine.dengine.ecs.Query;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.ecs.Transform;
+import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL33C.*;
+
 /**
  * @author Anton Schoenfeld
  * @version 1.0
@@ -9,12 +31,46 @@ package engine.dengine.graphics;
  * <br>
  * The {@link RenderBatch} class is used to <b>batch vertices</b> together, so they can be rendered in
  * a single <b>OpenGL</b> call.
+ * <br>
+ * A {@link RenderBatch} holds {@link RenderComponent} instances ({@link RenderBatch#add(RenderComponent)},
+ * {@link RenderBatch#sync(Query)}) and draws them in the order of their <b>sort keys</b>
+ * ({@link RenderBatch#render(Shader, float)}), which are made of their <b>layer</b>, <b>translucency</b>,
+ * {@link Shader}, <b>texture</b> and <b>depth</b> ({@link RenderQueue}). The <b>slots</b> are laid out in that
+ * order, so every frame only checks wether they still are, and sorts and lays them out again when they are not.
+ * Every instance gets a stable <b>slot</b>, a range of a persistent
+ * <b>vertex buffer</b>, which is only written again once the instance is <b>dirty</b>, moved during the last
+ * <b>tick</b>, or changed its <b>texture index</b>. Rewritten <b>slots</b> which are close to each other are
+ * merged into one range, and only those ranges are uploaded with <b>glBufferSubData</b>, so <b>sprites</b> which
+ * do not move cost no bandwidth. The <b>vertices</b> are written into a direct {@link FloatBuffer} which mirrors
+ * the <b>vertex buffer</b>, so rendering does not allocate.
+ * <br>
+ * Removed instances leave a <b>slot</b> of degenerate <b>vertices</b> behind, which draws nothing. Once these
+ * <b>slots</b> hold a quarter of all <b>vertices</b>, the remaining <b>slots</b> are compacted in their order
+ * and uploaded again. <b>Slots</b> which move when they are laid out again are written and uploaded again too.
+ * <br>
+ * <b>default.frag</b> samples one {@link Texture2D} and one {@link TextureArray} per <b>draw call</b>. Every
+ * <b>vertex</b> carries an integer <b>texture index</b>, which is the <b>layer</b> of the {@link TextureArray},
+ * or tells that the {@link Texture2D} or no <b>texture</b> is sampled. Consecutive <b>slots</b> share a
+ * <b>draw call</b> until their {@link Shader} or <b>layer</b> changes or one needs another {@link Texture2D} or
+ * {@link TextureArray}, so <b>sprites</b> of all <b>layers</b> of a {@link TextureArray} are drawn together. A
+ * {@link Shader} is only used again when it changes and a <b>texture</b> is only bound when its
+ * <b>texture slot</b> holds another one, so the sorted order saves most <b>state changes</b>. Every
+ * <b>layer</b> after the first starts with an empty <b>depth buffer</b>, so it is drawn above all lower ones.
+ * <br>
+ * <b>Sprites</b> are <b>quads</b> with the <b>indices</b> of a {@link engine.dengine.shapes.Rectangle}, which
+ * are the same for every <b>quad</b> except for the offset of their first <b>vertex</b>. As long as a
+ * {@link RenderBatch} only holds <b>quads</b>, they are drawn with one <b>index buffer</b> which is generated
+ * once and shared by all {@link RenderBatch} instances. Otherwise the <b>indices</b> of the <b>slots</b> are
+ * kept in an <b>index buffer</b> of the {@link RenderBatch}, which is only written when a <b>slot</b> is placed.
+ * The <b>positions</b> of all <b>quads</b> written in a frame are transformed together by a
+ * {@link QuadTransformer}, one {@link engine.dengine.math.AffineKernel} call per corner across their
+ * <b>local-to-world matrices</b>, before the written ranges are uploaded.
  */
 public class RenderBatch
 {
     // Vertex is made up like this:
-    // Position             Color                   Texture Mapping     Texture Identifier
-    // float: x, y, z   |   float: r, g, b, a   |   float: u, v     |   float: texture_id
+    // Position             Color                   Texture Mapping     Texture Index
+    // float: x, y, z   |   float: r, g, b, a   |   float: u, v     |   int: texture_index
 
     private static final int POSITION_POS = 0;
     private static final int COLOR_POS = 1;
@@ -30,15 +86,908 @@ public class RenderBatch
     private static final int POSITION_STRIDE = POSITION_SIZE * Float.BYTES;
     private static final int COLOR_STRIDE = COLOR_SIZE * Float.BYTES;
     private static final int UV_STRIDE = UV_SIZE * Float.BYTES;
-    private static final int TEXTURE_ID_STRIDE = TEXTURE_ID_SIZE * Float.BYTES;
+    private static final int TEXTURE_ID_STRIDE = TEXTURE_ID_SIZE * Integer.BYTES;
     private static final int VERTEX_STRIDE = POSITION_STRIDE + COLOR_STRIDE + UV_STRIDE + TEXTURE_ID_STRIDE;
 
+    // Byte offsets of the attributes inside a vertex
     private static final int POSITION_POINTER = 0;
-    private static final int COLOR_POINTER = POSITION_POINTER + POSITION_SIZE;
+    private static final int COLOR_POINTER = POSITION_POINTER + POSITION_STRIDE;
     private static final int UV_POINTER = COLOR_POINTER + COLOR_STRIDE;
     private static final int TEXTURE_ID_POINTER = UV_POINTER + UV_STRIDE;
+    /** The index of the <b>texture index</b> inside a <b>vertex</b> in floats */
+    private static final int TEXTURE_ID_OFFSET = POSITION_SIZE + COLOR_SIZE + UV_SIZE;
 
+    /** The default number of <b>quads</b> the buffers are allocated for, they grow when more are added */
     private static final int MAX_BATCH_SIZE = 1000;
 
+    /** The <b>texture slot</b> of the {@link Texture2D} of a <b>draw call</b>, <b>uTex</b> in <b>default.frag</b> */
+    private static final int TEXTURE_SLOT = 0;
+    /** The <b>texture slot</b> of the {@link TextureArray} of a <b>draw call</b>, <b>uTexArray</b> */
+    private static final int TEXTURE_ARRAY_SLOT = 1;
+    /** The number of <b>texture slots</b> <b>default.frag</b> samples from */
+    public static final int TEXTURE_SLOTS = 2;
+
+    /** The <b>texture index</b> of a {@link Sprite} whose <b>texture slot</b> is taken in this <b>draw call</b> */
+    private static final int SLOT_TAKEN = Integer.MIN_VALUE;
+
+    /** The number of clean <b>vertices</b> between two rewritten ranges up to which both are uploaded as one */
+    private static final int MERGE_GAP = 16;
+    /** The share of <b>vertices</b> in freed <b>slots</b> above which the <b>slots</b> are compacted */
+    private static final float COMPACTION_RATIO = 0.25f;
+    /** The number of <b>vertices</b> in freed <b>slots</b> below which the <b>slots</b> are never compacted */
+    private static final int COMPACTION_MIN_VERTICES = 1024;
+
+    private static final int QUAD_VERTICES = 4;
+    /** The <b>indices</b> of a {@link engine.dengine.shapes.Rectangle}, which every <b>quad</b> has */
+    private static final int[] QUAD_INDICES = {0, 2, 1, 1, 2, 3};
+
+    /** The <b>index buffer</b> of <b>quads</b> shared by all {@link RenderBatch} instances */
+    private static int quadEBO;
+    /** The number of <b>quads</b> {@link RenderBatch#quadEBO} has <b>indices</b> for */
+    private static int quadCapacity;
+    /** The number of initialized {@link RenderBatch} instances which use {@link RenderBatch#quadEBO} */
+    private static int quadUsers;
+
+    // The slots, in the order they are drawn. Freed slots have no component until they are compacted
+    private RenderComponent[] components;
+    private int[] firstVertices, vertexCounts;
+    private int[] firstIndices, indexCounts;
+    /** The <b>texture index</b> the <b>vertices</b> of a <b>slot</b> were last written with */
+    private int[] writtenTextureIndices;
+    /** The {@link RenderBatch#stamp} of the last {@link RenderBatch#sync(Query)} which saw a <b>slot</b> */
+    private int[] stamps;
+    /** Wether a <b>slot</b> was placed or freed and has to be written although its component is clean */
+    private boolean[] placed;
+    /** Wether a <b>slot</b> was last written with <b>interpolated</b> positions */
+    private boolean[] interpolated;
+    private boolean[] quads;
+    private int slotCount;
+    private int liveCount;
+    /** The number of <b>slots</b>, freed or not, whose {@link Shape} is no <b>quad</b> */
+    private int meshSlotCount;
+    private int vertexTotal, indexTotal;
+    private int freedVertices;
+    private int stamp;
+
+    /** The <b>slot</b> of the {@link RenderComponent} of an {@link Entity} by its <b>entity handle</b> index */
+    private int[] slotsByEntity;
+
+    /** Sorts the <b>slots</b> by their <b>sort keys</b> */
+    private final RenderQueue queue;
+    /** The old <b>slots</b> in the order they are laid out again */
+    private int[] order;
+    // Copies of the slot arrays while they are laid out again
+    private RenderComponent[] scratchComponents;
+    private int[] scratchInts;
+    private boolean[] scratchBooleans;
+
+    /** The <b>vertices</b> of all <b>slots</b>, as they are in the <b>vertex buffer</b> */
+    private FloatBuffer vertices;
+    /** A view of {@link RenderBatch#vertices} the integer <b>texture indices</b> are written through */
+    private IntBuffer vertexInts;
+    private int vertexCapacity;
+    /** The <b>indices</b> of all <b>slots</b>, as they are in {@link RenderBatch#EBO} */
+    private IntBuffer indices;
+    private int indexCapacity;
+    /** The range of <b>indices</b> written since they were last uploaded */
+    private int indexDirtyFrom, indexDirtyTo;
+    /** Transforms the <b>positions</b> of the <b>quads</b> written by a render */
+    private final QuadTransformer quadTransformer;
+    /** The <b>local-to-world matrix</b> of the <b>quad</b> which is added to {@link RenderBatch#quadTransformer} */
+    private final Matrix3x2f quadMatrix;
+    /** The ranges of <b>vertices</b> written by a render, as pairs of first and last <b>vertex</b> */
+    private int[] uploadRanges;
+    private int uploadRangeCount;
+
+    /** The <b>textures</b> of the current <b>draw call</b> by <b>texture slot</b> */
+    private final Texture[] textures;
+    /** The <b>textures</b> bound to the <b>texture slots</b> once the recorded <b>draw calls</b> are issued */
+    private final Texture[] boundTextures;
+    private Shader drawShader;
+    private int drawLayer;
+    // The draw calls of the current frame, with the textures each has to bind by texture slot
+    private Texture[] drawTextures;
+    private Shader[] drawShaders;
+    private int[] drawLayers, drawFirstIndices, drawIndexCounts;
+    private int drawCount;
+
+    /** The {@link Shader} instances whose <b>sampler uniforms</b> were set */
+    private Shader[] samplerShaders;
+    private int samplerShaderCount;
+    private int drawCallCount, uploadCount, uploadedVertexCount;
+    private int shaderSwitchCount, textureBindCount, texturedCount;
+
     private int VBO, EBO, VAO;
+    /** The number of <b>vertices</b> and <b>indices</b> the <b>OpenGL</b> buffers are allocated for */
+    private int vboCapacity, eboCapacity;
+    /** Wether {@link RenderBatch#EBO} holds all <b>indices</b> apart from {@link RenderBatch#indexDirtyFrom} */
+    private boolean eboSynced;
+
+    /**
+     * Creates a new {@link RenderBatch} instance with buffers for 1000 <b>quads</b>.
+     */
+    public RenderBatch ()
+    {
+        this(MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new {@link RenderBatch} instance. The buffers are allocated here and grow when more
+     * <b>vertices</b> are added, the <b>OpenGL</b> objects are created by {@link RenderBatch#init()}.
+     * @param maxQuads the number of <b>quads</b> the buffers are allocated for
+     * @throws IllegalArgumentException if <b>maxQuads</b> is smaller than 1
+     */
+    public RenderBatch (int maxQuads)
+    {
+        if (maxQuads < 1) throw new IllegalArgumentException("Tried to create a RenderBatch for less than one quad");
+
+        this.components = new RenderComponent[64];
+        this.firstVertices = new int[64];
+        this.vertexCounts = new int[64];
+        this.firstIndices = new int[64];
+        this.indexCounts = new int[64];
+        this.writtenTextureIndices = new int[64];
+        this.stamps = new int[64];
+        this.placed = new boolean[64];
+        this.interpolated = new boolean[64];
+        this.quads = new boolean[64];
+        this.slotsByEntity = new int[64];
+        Arrays.fill(slotsByEntity, -1);
+
+        this.queue = new RenderQueue();
+        this.order = new int[64];
+        this.scratchComponents = new RenderComponent[64];
+        this.scratchInts = new int[64];
+        this.scratchBooleans = new boolean[64];
+
+        this.vertexCapacity = maxQuads * QUAD_VERTICES;
+        this.indexCapacity = maxQuads * QUAD_INDICES.length;
+        final ByteBuffer bytes = BufferUtils.createByteBuffer(vertexCapacity * VERTEX_STRIDE);
+        this.vertices = bytes.asFloatBuffer();
+        this.vertexInts = bytes.asIntBuffer();
+        this.indices = BufferUtils.createIntBuffer(indexCapacity);
+        this.indexDirtyFrom = Integer.MAX_VALUE;
+        this.quadTransformer = new QuadTransformer();
+        this.quadMatrix = new Matrix3x2f();
+        this.uploadRanges = new int[16];
+
+        this.textures = new Texture[TEXTURE_SLOTS];
+        this.boundTextures = new Texture[TEXTURE_SLOTS];
+        this.drawTextures = new Texture[TEXTURE_SLOTS * 4];
+        this.drawShaders = new Shader[4];
+        this.drawLayers = new int[4];
+        this.drawFirstIndices = new int[4];
+        this.drawIndexCounts = new int[4];
+        this.samplerShaders = new Shader[4];
+    }
+
+    /**
+     * Creates the <b>vertex array</b> and the <b>vertex buffer</b> of this {@link RenderBatch} instance. Has to
+     * be called with a current <b>OpenGL context</b> before {@link RenderBatch#render(Shader, float)}.
+     */
+    public void init ()
+    {
+        VAO = glGenVertexArrays();
+        glBindVertexArray(VAO);
+
+        VBO = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, VBO);
+
+        glVertexAttribPointer(POSITION_POS, POSITION_SIZE, GL_FLOAT, false, VERTEX_STRIDE, POSITION_POINTER);
+        glEnableVertexAttribArray(POSITION_POS);
+        glVertexAttribPointer(COLOR_POS, COLOR_SIZE, GL_FLOAT, false, VERTEX_STRIDE, COLOR_POINTER);
+        glEnableVertexAttribArray(COLOR_POS);
+        glVertexAttribPointer(UV_POS, UV_SIZE, GL_FLOAT, false, VERTEX_STRIDE, UV_POINTER);
+        glEnableVertexAttribArray(UV_POS);
+        // The texture index stays an integer, so it picks a layer without being rounded
+        glVertexAttribIPointer(TEXTURE_ID_POS, TEXTURE_ID_SIZE, GL_INT, VERTEX_STRIDE, TEXTURE_ID_POINTER);
+        glEnableVertexAttribArray(TEXTURE_ID_POS);
+
+        // The buffers are allocated by the first render, once their size is known
+        vboCapacity = eboCapacity = 0;
+        quadUsers++;
+
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Generates the shared <b>quad index buffer</b>. A buffer which is replaced stays alive in <b>OpenGL</b> until
+     * no <b>vertex array</b> references it anymore, and every render binds the current one.
+     */
+    private static void createQuadIndices (int quads)
+    {
+        final IntBuffer data = BufferUtils.createIntBuffer(quads * QUAD_INDICES.length);
+        for (int quad = 0, offset = 0; quad < quads; quad++, offset += QUAD_INDICES.length)
+            for (int i = 0; i < QUAD_INDICES.length; i++)
+                data.put(offset + i, quad * QUAD_VERTICES + QUAD_INDICES[i]);
+
+        if (quadEBO != 0) glDeleteBuffers(quadEBO);
+        quadEBO = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, quadEBO);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, data, GL_STATIC_DRAW);
+        quadCapacity = quads;
+    }
+
+    /**
+     * Adds a {@link RenderComponent} instance, which gets a new <b>slot</b> after the ones of all instances added
+     * before it. The <b>slot</b> is moved to the place of its <b>sort key</b> by the next render.
+     * @param component the {@link RenderComponent}, whose {@link Entity} has to be stored in a <b>scene</b>
+     * @return wether the {@link RenderComponent} was not added before
+     * @throws IllegalArgumentException if the {@link Entity} of the {@link RenderComponent} is not stored
+     */
+    public boolean add (RenderComponent component)
+    {
+        final Entity entity = component.getEntity();
+        final long handle = entity != null ? entity.getHandle() : EntityHandle.NULL;
+        if (handle == EntityHandle.NULL) throw new IllegalArgumentException("Tried to add a RenderComponent " +
+                "whose entity is not stored in a scene to a RenderBatch");
+        if (slotOf(component) >= 0) return false;
+
+        final Shape shape = component.getShape();
+        final int vertexCount = shape.getVertexCount(), indexCount = shape.getIndexCount();
+        if (slotCount == components.length) growSlots();
+        reserve(vertexTotal + vertexCount, indexTotal + indexCount);
+
+        final int slot = slotCount++;
+        components[slot] = component;
+        firstVertices[slot] = vertexTotal;
+        vertexCounts[slot] = vertexCount;
+        firstIndices[slot] = indexTotal;
+        indexCounts[slot] = indexCount;
+        writtenTextureIndices[slot] = -1;
+        stamps[slot] = stamp;
+        placed[slot] = true;
+        interpolated[slot] = false;
+        quads[slot] = isQuad(shape);
+        if (!quads[slot]) meshSlotCount++;
+        vertexTotal += vertexCount;
+        indexTotal += indexCount;
+        liveCount++;
+
+        final int index = EntityHandle.index(handle);
+        if (index >= slotsByEntity.length)
+        {
+            final int length = slotsByEntity.length;
+            slotsByEntity = Arrays.copyOf(slotsByEntity, Math.max(index + 1, length * 2));
+            Arrays.fill(slotsByEntity, length, slotsByEntity.length, -1);
+        }
+        slotsByEntity[index] = slot;
+        return true;
+    }
+
+    private void growSlots ()
+    {
+        final int length = components.length * 2;
+        components = Arrays.copyOf(components, length);
+        firstVertices = Arrays.copyOf(firstVertices, length);
+        vertexCounts = Arrays.copyOf(vertexCounts, length);
+        firstIndices = Arrays.copyOf(firstIndices, length);
+        indexCounts = Arrays.copyOf(indexCounts, length);
+        writtenTextureIndices = Arrays.copyOf(writtenTextureIndices, length);
+        stamps = Arrays.copyOf(stamps, length);
+        placed = Arrays.copyOf(placed, length);
+        interpolated = Arrays.copyOf(interpolated, length);
+        quads = Arrays.copyOf(quads, length);
+        order = new int[length];
+        scratchComponents = new RenderComponent[length];
+        scratchInts = new int[length];
+        scratchBooleans = new boolean[length];
+    }
+
+    /**
+     * Grows the mirrors of the buffers, keeping their content. The <b>OpenGL</b> buffers are allocated again
+     * and uploaded as a whole by the next render.
+     */
+    private void reserve (int vertexCount, int indexCount)
+    {
+        if (vertexCount > vertexCapacity)
+        {
+            vertexCapacity = Math.max(vertexCount, vertexCapacity * 2);
+            final ByteBuffer bytes = BufferUtils.createByteBuffer(vertexCapacity * VERTEX_STRIDE);
+            final FloatBuffer grown = bytes.asFloatBuffer();
+            grown.put(0, vertices, 0, vertexTotal * VERTEX_SIZE);
+            vertices = grown;
+            vertexInts = bytes.asIntBuffer();
+        }
+        if (indexCount > indexCapacity)
+        {
+            indexCapacity = Math.max(indexCount, indexCapacity * 2);
+            final IntBuffer grown = BufferUtils.createIntBuffer(indexCapacity);
+            grown.put(0, indices, 0, indexTotal);
+            indices = grown;
+        }
+    }
+
+    /**
+     * Adds the {@link RenderComponent} instances of all <b>entities</b> matched by a {@link Query} which were
+     * not added yet, and removes all instances which were not matched. Instances which stay keep their
+     * <b>slot</b>, so this can be called every frame.
+     * @param query the {@link Query}, which has to require {@link RenderComponent}
+     */
+    public void sync (Query query)
+    {
+        stamp++;
+        query.forEachChunk(this::sync);
+
+        for (int slot = 0; slot < slotCount; slot++)
+            if (components[slot] != null && stamps[slot] != stamp) free(slot);
+    }
+
+    private void sync (Chunk chunk)
+    {
+        final Component[] column = chunk.getColumn(RenderComponent.class);
+        for (int row = 0; row < chunk.size(); row++)
+        {
+            final RenderComponent component = (RenderComponent) column[row];
+            final int slot = slotOf(component);
+            if (slot >= 0) stamps[slot] = stamp;
+            else add(component);
+        }
+    }
+
+    /**
+     * Removes a {@link RenderComponent} instance. Its <b>slot</b> is freed and the <b>slots</b> of the remaining
+     * instances are kept until they are compacted.
+     * @param component the {@link RenderComponent}
+     * @return wether the {@link RenderComponent} was added before
+     */
+    public boolean remove (RenderComponent component)
+    {
+        final int slot = slotOf(component);
+        if (slot < 0) return false;
+        free(slot);
+        return true;
+    }
+
+    private void free (int slot)
+    {
+        final long handle = components[slot].getEntity().getHandle();
+        final int index = EntityHandle.index(handle);
+        // The handle is gone if the entity was removed from its scene, the slot is then found by the stamps
+        if (handle != EntityHandle.NULL && index < slotsByEntity.length && slotsByEntity[index] == slot)
+            slotsByEntity[index] = -1;
+
+        components[slot] = null;
+        placed[slot] = true;
+        freedVertices += vertexCounts[slot];
+        liveCount--;
+    }
+
+    /**
+     * Returns the <b>slot</b> of a {@link RenderComponent}, or -1 if it was not added.
+     */
+    private int slotOf (RenderComponent component)
+    {
+        final Entity entity = component.getEntity();
+        if (entity == null) return -1;
+        final long handle = entity.getHandle();
+        if (handle == EntityHandle.NULL) return -1;
+        final int index = EntityHandle.index(handle);
+        if (index >= slotsByEntity.length) return -1;
+
+        // The index may have been reused by another entity
+        final int slot = slotsByEntity[index];
+        return slot >= 0 && components[slot] == component ? slot : -1;
+    }
+
+    /**
+     * Checks wether a {@link RenderComponent} instance was added.
+     * @param component the {@link RenderComponent}
+     * @return wether the {@link RenderComponent} was added
+     */
+    public boolean contains (RenderComponent component)
+    {
+        return slotOf(component) >= 0;
+    }
+
+    /**
+     * Removes all {@link RenderComponent} instances and frees all <b>slots</b> at once.
+     */
+    public void clear ()
+    {
+        Arrays.fill(components, 0, slotCount, null);
+        Arrays.fill(slotsByEntity, -1);
+        slotCount = liveCount = meshSlotCount = 0;
+        vertexTotal = indexTotal = freedVertices = 0;
+        indexDirtyFrom = Integer.MAX_VALUE;
+        indexDirtyTo = 0;
+        eboSynced = false;
+    }
+
+    /**
+     * Moves all <b>slots</b> behind freed ones to the front, keeping their order. Moved <b>slots</b> are written
+     * and uploaded again by the render which follows.
+     */
+    private void compact ()
+    {
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++)
+            if (components[slot] != null) order[count++] = slot;
+        relayout(count);
+    }
+
+    /**
+     * Submits the <b>sort keys</b> of all <b>slots</b> which are not freed, and sorts and lays out the
+     * <b>slots</b> again if they are not in order anymore. Otherwise they are compacted if enough of them are
+     * freed.
+     */
+    private void sortSlots (Shader defaultShader)
+    {
+        queue.clear();
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final RenderComponent component = components[slot];
+            if (component == null) continue;
+            final Sprite sprite = component.getSprite();
+            queue.submit(RenderQueue.key(component.getLayer(), component.isTranslucent(),
+                    shaderOf(component, defaultShader).getId(), sprite != null ? sprite.getTexture().getId() : 0,
+                    component.getShape().getVertices()[2]), slot);
+        }
+
+        if (!queue.isSorted())
+        {
+            queue.sort();
+            for (int i = 0; i < queue.getCount(); i++)
+                order[i] = queue.getItem(i);
+            relayout(queue.getCount());
+        }
+        else if (freedVertices >= COMPACTION_MIN_VERTICES && freedVertices > vertexTotal * COMPACTION_RATIO)
+            compact();
+    }
+
+    /**
+     * Lays out the <b>slots</b> again in the order of {@link RenderBatch#order}, dropping all <b>slots</b> which
+     * are not in it. <b>Slots</b> whose ranges change are written and uploaded again by the render which follows.
+     */
+    private void relayout (int count)
+    {
+        System.arraycopy(components, 0, scratchComponents, 0, slotCount);
+        for (int i = 0; i < count; i++)
+            components[i] = scratchComponents[order[i]];
+        Arrays.fill(scratchComponents, 0, slotCount, null);
+        gather(firstVertices, count);
+        gather(vertexCounts, count);
+        gather(firstIndices, count);
+        gather(indexCounts, count);
+        gather(writtenTextureIndices, count);
+        gather(stamps, count);
+        gather(placed, count);
+        gather(interpolated, count);
+        gather(quads, count);
+
+        int vertex = 0, index = 0;
+        meshSlotCount = 0;
+        for (int slot = 0; slot < count; slot++)
+        {
+            if (firstVertices[slot] != vertex || firstIndices[slot] != index)
+            {
+                firstVertices[slot] = vertex;
+                firstIndices[slot] = index;
+                placed[slot] = true;
+            }
+            final long handle = components[slot].getEntity().getHandle();
+            if (handle != EntityHandle.NULL) slotsByEntity[EntityHandle.index(handle)] = slot;
+
+            if (!quads[slot]) meshSlotCount++;
+            vertex += vertexCounts[slot];
+            index += indexCounts[slot];
+        }
+
+        Arrays.fill(components, count, slotCount, null);
+        slotCount = count;
+        vertexTotal = vertex;
+        indexTotal = index;
+        freedVertices = 0;
+    }
+
+    private void gather (int[] array, int count)
+    {
+        System.arraycopy(array, 0, scratchInts, 0, slotCount);
+        for (int i = 0; i < count; i++)
+            array[i] = scratchInts[order[i]];
+    }
+
+    private void gather (boolean[] array, int count)
+    {
+        System.arraycopy(array, 0, scratchBooleans, 0, slotCount);
+        for (int i = 0; i < count; i++)
+            array[i] = scratchBooleans[order[i]];
+    }
+
+    private static Shader shaderOf (RenderComponent component, Shader defaultShader)
+    {
+        final Shader shader = component.getShader();
+        return shader != null ? shader : defaultShader;
+    }
+
+    /**
+     * Draws all {@link RenderComponent} instances, each with its own {@link Shader} or the default one, which
+     * samples the {@link Texture2D} from <b>uTex</b> and the {@link TextureArray} from <b>uTexArray</b> by the
+     * <b>texture index</b> of the <b>vertices</b>, like <b>default.frag</b>. The instances are
+     * drawn in the order of their <b>sort keys</b> ({@link RenderQueue}), and only the <b>slots</b> of instances
+     * which changed or moved in that order are written and uploaded. The number of <b>draw calls</b> only depends
+     * on the number of {@link Shader}, <b>layer</b> and <b>texture</b> changes in that order.
+     * @param shader the default {@link Shader}, for instances which have none
+     * @param alpha the <b>interpolation</b> factor, for example {@link engine.dengine.window.FixedTimestep#getAlpha()}
+     */
+    public void render (Shader shader, float alpha)
+    {
+        drawCallCount = uploadCount = uploadedVertexCount = 0;
+        shaderSwitchCount = textureBindCount = texturedCount = 0;
+        if (liveCount == 0)
+        {
+            clear();
+            return;
+        }
+        sortSlots(shader);
+
+        glBindVertexArray(VAO);
+        glBindBuffer(GL_ARRAY_BUFFER, VBO);
+        // A grown buffer is allocated again and uploaded as a whole
+        final boolean reallocated = vboCapacity < vertexCapacity;
+        if (reallocated)
+        {
+            glBufferData(GL_ARRAY_BUFFER, (long) vertexCapacity * VERTEX_STRIDE, GL_DYNAMIC_DRAW);
+            vboCapacity = vertexCapacity;
+        }
+
+        writeSlots(shader, alpha, reallocated);
+        if (reallocated) upload(0, vertexTotal);
+
+        bindIndices();
+        Shader current = null;
+        for (int draw = 0; draw < drawCount; draw++)
+        {
+            if (drawShaders[draw] != current)
+            {
+                current = drawShaders[draw];
+                use(current);
+            }
+            // Every layer is drawn above the ones before it, no matter their depth
+            if (draw > 0 && drawLayers[draw] != drawLayers[draw - 1]) glClear(GL_DEPTH_BUFFER_BIT);
+
+            for (int slot = 0; slot < TEXTURE_SLOTS; slot++)
+            {
+                final Texture texture = drawTextures[draw * TEXTURE_SLOTS + slot];
+                if (texture == null) continue;
+                texture.use(slot);
+                textureBindCount++;
+            }
+            glDrawElements(GL_TRIANGLES, drawIndexCounts[draw], GL_UNSIGNED_INT,
+                    (long) drawFirstIndices[draw] * Integer.BYTES);
+            drawCallCount++;
+        }
+        Arrays.fill(drawTextures, 0, drawCount * TEXTURE_SLOTS, null);
+        Arrays.fill(drawShaders, 0, drawCount, null);
+
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glUseProgram(0);
+    }
+
+    /**
+     * Uses a {@link Shader} and sets its <b>sampler uniforms</b> the first time it is used.
+     */
+    private void use (Shader shader)
+    {
+        shader.use();
+        shaderSwitchCount++;
+        for (int i = 0; i < samplerShaderCount; i++)
+            if (samplerShaders[i] == shader) return;
+
+        shader.uploadUniformTexture2D("uTex", TEXTURE_SLOT);
+        shader.uploadUniformTextureArray("uTexArray", TEXTURE_ARRAY_SLOT);
+        if (samplerShaderCount == samplerShaders.length)
+            samplerShaders = Arrays.copyOf(samplerShaders, samplerShaderCount * 2);
+        samplerShaders[samplerShaderCount++] = shader;
+    }
+
+    /**
+     * Splits the <b>slots</b> into <b>draw calls</b>, writes the <b>slots</b> which changed and uploads them in
+     * merged ranges, unless the whole buffer is uploaded afterwards. The <b>positions</b> of written <b>quads</b>
+     * are transformed together once all <b>slots</b> are visited, so the uploads wait for them.
+     */
+    private void writeSlots (Shader defaultShader, float alpha, boolean uploadAll)
+    {
+        drawCount = 0;
+        drawShader = null;
+        // Nothing is known about the textures bound before this render
+        Arrays.fill(boundTextures, null);
+        int drawStart = 0;
+        int rangeFrom = -1, rangeTo = -1;
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final RenderComponent component = components[slot];
+            int textureIndex = Sprite.NO_TEXTURE;
+            boolean write = placed[slot] || interpolated[slot], moving = false;
+            if (component != null)
+            {
+                final Shader shader = shaderOf(component, defaultShader);
+                if (shader != drawShader || component.getLayer() != drawLayer)
+                {
+                    if (drawShader != null)
+                    {
+                        addDraw(drawStart, firstIndices[slot]);
+                        drawStart = firstIndices[slot];
+                    }
+                    drawShader = shader;
+                    drawLayer = component.getLayer();
+                }
+
+                final Sprite sprite = component.getSprite();
+                textureIndex = textureIndexOf(sprite);
+                if (textureIndex == SLOT_TAKEN)
+                {
+                    addDraw(drawStart, firstIndices[slot]);
+                    drawStart = firstIndices[slot];
+                    textureIndex = textureIndexOf(sprite);
+                }
+                if (sprite != null) texturedCount++;
+                moving = alpha < 1 && component.getEntity().getTransform().hasMoved();
+                write |= moving || writtenTextureIndices[slot] != textureIndex || component.isDirty();
+            }
+            if (!write) continue;
+
+            final int firstVertex = firstVertices[slot];
+            if (component != null)
+            {
+                if (quads[slot])
+                {
+                    final Transform transform = component.getEntity().getTransform();
+                    quadTransformer.add(moving ? transform.getInterpolatedWorldMatrix(alpha, quadMatrix)
+                            : transform.getWorldMatrix(quadMatrix), component.getShape().getVertices(),
+                            firstVertex * VERTEX_SIZE);
+                    component.writeRawOpenGLAttributes(vertices, firstVertex * VERTEX_SIZE);
+                }
+                else component.writeRawOpenGLVertices(moving ? alpha : 1, vertices, firstVertex * VERTEX_SIZE);
+                for (int i = 0, index = firstVertex * VERTEX_SIZE + TEXTURE_ID_OFFSET; i < vertexCounts[slot];
+                     i++, index += VERTEX_SIZE)
+                    vertexInts.put(index, textureIndex);
+                component.clean();
+                if (placed[slot])
+                {
+                    component.writeIndices(indices, firstIndices[slot], firstVertex);
+                    indexDirtyFrom = Math.min(indexDirtyFrom, firstIndices[slot]);
+                    indexDirtyTo = Math.max(indexDirtyTo, firstIndices[slot] + indexCounts[slot]);
+                }
+            }
+            else
+            {
+                // A freed slot collapses into a single point, which draws nothing
+                final int from = firstVertex * VERTEX_SIZE, to = from + vertexCounts[slot] * VERTEX_SIZE;
+                for (int i = from; i < to; i++)
+                    vertices.put(i, 0);
+            }
+            placed[slot] = false;
+            interpolated[slot] = moving;
+            writtenTextureIndices[slot] = textureIndex;
+
+            if (uploadAll) continue;
+            final int lastVertex = firstVertex + vertexCounts[slot];
+            if (rangeTo >= 0 && firstVertex - rangeTo <= MERGE_GAP) rangeTo = lastVertex;
+            else
+            {
+                if (rangeTo >= 0) addUploadRange(rangeFrom, rangeTo);
+                rangeFrom = firstVertex;
+                rangeTo = lastVertex;
+            }
+        }
+        if (rangeTo >= 0) addUploadRange(rangeFrom, rangeTo);
+        addDraw(drawStart, indexTotal);
+
+        quadTransformer.flush(vertices, VERTEX_SIZE);
+        for (int i = 0; i < uploadRangeCount; i += 2)
+            upload(uploadRanges[i], uploadRanges[i + 1]);
+        uploadRangeCount = 0;
+    }
+
+    private void addUploadRange (int from, int to)
+    {
+        if (uploadRangeCount == uploadRanges.length) uploadRanges = Arrays.copyOf(uploadRanges, uploadRangeCount * 2);
+        uploadRanges[uploadRangeCount++] = from;
+        uploadRanges[uploadRangeCount++] = to;
+    }
+
+    /**
+     * Returns the <b>texture index</b> of a {@link Sprite} in the current <b>draw call</b> and takes the
+     * <b>texture slot</b> of its {@link Texture2D} or {@link TextureArray} if it is free.
+     * @return the <b>texture index</b> of the {@link Sprite}, {@link Sprite#NO_TEXTURE} without one, or
+     * {@link RenderBatch#SLOT_TAKEN} if the <b>texture slot</b> is taken by another <b>texture</b>
+     */
+    private int textureIndexOf (Sprite sprite)
+    {
+        if (sprite == null) return Sprite.NO_TEXTURE;
+        final Texture texture = sprite.getTexture();
+        final int layer = sprite.getLayer();
+        final int slot = layer >= 0 ? TEXTURE_ARRAY_SLOT : TEXTURE_SLOT;
+        if (textures[slot] == null) textures[slot] = texture;
+        else if (textures[slot] != texture) return SLOT_TAKEN;
+        return sprite.getTextureIndex();
+    }
+
+    /**
+     * Records a <b>draw call</b> of the <b>indices</b> from <b>from</b> to <b>to</b> with the current
+     * {@link Shader} and <b>textures</b>, which are released for the next one. Only <b>textures</b> which are not
+     * bound to their <b>texture slot</b> yet are recorded to be bound.
+     */
+    private void addDraw (int from, int to)
+    {
+        if (to > from)
+        {
+            if (drawCount == drawFirstIndices.length)
+            {
+                final int length = drawCount * 2;
+                drawTextures = Arrays.copyOf(drawTextures, length * TEXTURE_SLOTS);
+                drawShaders = Arrays.copyOf(drawShaders, length);
+                drawLayers = Arrays.copyOf(drawLayers, length);
+                drawFirstIndices = Arrays.copyOf(drawFirstIndices, length);
+                drawIndexCounts = Arrays.copyOf(drawIndexCounts, length);
+            }
+            for (int slot = 0; slot < TEXTURE_SLOTS; slot++)
+            {
+                if (textures[slot] == null || boundTextures[slot] == textures[slot]) continue;
+                drawTextures[drawCount * TEXTURE_SLOTS + slot] = textures[slot];
+                boundTextures[slot] = textures[slot];
+            }
+            drawShaders[drawCount] = drawShader;
+            drawLayers[drawCount] = drawLayer;
+            drawFirstIndices[drawCount] = from;
+            drawIndexCounts[drawCount] = to - from;
+            drawCount++;
+        }
+        Arrays.fill(textures, null);
+    }
+
+    /**
+     * Uploads the <b>vertices</b> from <b>from</b> to <b>to</b> into the <b>vertex buffer</b>.
+     */
+    private void upload (int from, int to)
+    {
+        vertices.limit(to * VERTEX_SIZE).position(from * VERTEX_SIZE);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) from * VERTEX_STRIDE, vertices);
+        vertices.clear();
+        uploadCount++;
+        uploadedVertexCount += to - from;
+    }
+
+    /**
+     * Binds the shared <b>quad index buffer</b> if there are only <b>quads</b>, and otherwise the own
+     * <b>index buffer</b> after uploading the <b>indices</b> written since the last upload.
+     */
+    private void bindIndices ()
+    {
+        if (meshSlotCount == 0)
+        {
+            if (quadCapacity < vertexCapacity / QUAD_VERTICES) createQuadIndices(vertexCapacity / QUAD_VERTICES);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, quadEBO);
+            // The own index buffer is not kept up to date while it is not used
+            if (indexDirtyTo > indexDirtyFrom) eboSynced = false;
+        }
+        else
+        {
+            if (EBO == 0) EBO = glGenBuffers();
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBO);
+            if (eboCapacity < indexCapacity)
+            {
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, (long) indexCapacity * Integer.BYTES, GL_DYNAMIC_DRAW);
+                eboCapacity = indexCapacity;
+                eboSynced = false;
+            }
+
+            final int from = eboSynced ? indexDirtyFrom : 0, to = eboSynced ? indexDirtyTo : indexTotal;
+            if (to > from)
+            {
+                indices.limit(to).position(from);
+                glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, (long) from * Integer.BYTES, indices);
+                indices.clear();
+            }
+            eboSynced = true;
+        }
+        indexDirtyFrom = Integer.MAX_VALUE;
+        indexDirtyTo = 0;
+    }
+
+    private static boolean isQuad (Shape shape)
+    {
+        // Rectangles share the same index array, which makes the comparison a reference check
+        return shape.getVertexCount() == QUAD_VERTICES && Arrays.equals(shape.getIndices(), QUAD_INDICES);
+    }
+
+    /**
+     * Deletes the <b>OpenGL</b> objects of this {@link RenderBatch} instance, and the shared
+     * <b>quad index buffer</b> if no other {@link RenderBatch} uses it anymore.
+     */
+    public void dispose ()
+    {
+        glDeleteVertexArrays(VAO);
+        glDeleteBuffers(VBO);
+        if (EBO != 0) glDeleteBuffers(EBO);
+        VAO = VBO = EBO = 0;
+        vboCapacity = eboCapacity = 0;
+
+        if (--quadUsers == 0)
+        {
+            glDeleteBuffers(quadEBO);
+            quadEBO = 0;
+            quadCapacity = 0;
+        }
+    }
+
+    /**
+     * Returns the number of {@link RenderComponent} instances.
+     * @return the number of {@link RenderComponent} instances
+     */
+    public int getSize ()
+    {
+        return liveCount;
+    }
+
+    /**
+     * Returns the number of <b>vertices</b> in all <b>slots</b>, including freed ones which were not compacted.
+     * @return the number of <b>vertices</b>
+     */
+    public int getVertexCount ()
+    {
+        return vertexTotal;
+    }
+
+    /**
+     * Returns the number of <b>draw calls</b> of the last {@link RenderBatch#render(Shader, float)}.
+     * @return the number of <b>draw calls</b>
+     */
+    public int getDrawCallCount ()
+    {
+        return drawCallCount;
+    }
+
+    /**
+     * Returns the number of ranges uploaded with <b>glBufferSubData</b> by the last
+     * {@link RenderBatch#render(Shader, float)}.
+     * @return the number of uploaded ranges
+     */
+    public int getUploadCount ()
+    {
+        return uploadCount;
+    }
+
+    /**
+     * Returns the number of <b>vertices</b> uploaded by the last {@link RenderBatch#render(Shader, float)}.
+     * @return the number of uploaded <b>vertices</b>
+     */
+    public int getUploadedVertexCount ()
+    {
+        return uploadedVertexCount;
+    }
+
+    /**
+     * Returns the number of {@link Shader} instances used by the last {@link RenderBatch#render(Shader, float)}.
+     * A {@link Shader} is only used again when the one before it was another.
+     * @return the number of {@link Shader} switches
+     */
+    public int getShaderSwitchCount ()
+    {
+        return shaderSwitchCount;
+    }
+
+    /**
+     * Returns the number of <b>textures</b> bound by the last {@link RenderBatch#render(Shader, float)}.
+     * A <b>texture</b> is only bound when its <b>texture slot</b> holds another one.
+     * @return the number of <b>texture</b> binds
+     */
+    public int getTextureBindCount ()
+    {
+        return textureBindCount;
+    }
+
+    /**
+     * Returns the number of <b>state changes</b> the last {@link RenderBatch#render(Shader, float)} saved, compared
+     * to using the {@link Shader} and binding the <b>texture</b> of every {@link RenderComponent} for itself.
+     * @return the number of saved {@link Shader} switches and <b>texture</b> binds
+     */
+    public int getSavedStateChangeCount ()
+    {
+        if (drawCallCount == 0) return 0;
+        return liveCount + texturedCount - shaderSwitchCount - textureBindCount;
+    }
 }
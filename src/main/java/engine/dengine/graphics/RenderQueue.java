@@ -0,0 +1,347 @@
+package engine.dengine.graphics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RenderQueue}</h2>
+ * <br>
+ * The {@link RenderQueue} class is used to order <b>submissions</b> for <b>rendering</b>. Every <b>submission</b>
+ * is an <b>item</b>, for example the <b>slot</b> of a {@link RenderBatch}, with a 64-bit <b>sort key</b>
+ * ({@link RenderQueue#key(int, boolean, int, int, float)}), and {@link RenderQueue#sort()} orders them by their
+ * unsigned <b>sort keys</b>. The <b>sort key</b> packs, from the most to the least significant bits:
+ * <ul>
+ *     <li>the <b>layer</b>, so lower <b>layers</b> are drawn first,</li>
+ *     <li>the <b>translucency</b>, so opaque <b>items</b> are drawn before translucent ones,</li>
+ *     <li>for opaque <b>items</b> the <b>shader</b>, the <b>texture</b> and the <b>depth</b> front to back, so
+ *     <b>items</b> which share <b>state</b> are next to each other and the <b>depth test</b> decides what is
+ *     visible,</li>
+ *     <li>for translucent <b>items</b> the <b>depth</b> back to front, the <b>shader</b> and the <b>texture</b>,
+ *     because <b>blending</b> needs them in order.</li>
+ * </ul>
+ * The <b>submissions</b> are sorted by a stable <b>LSD radix sort</b> over bytes. Bytes which are equal for all
+ * <b>sort keys</b>, like the <b>layer</b> and the <b>shader</b> of most scenes, are skipped. Large queues are
+ * split into ranges whose byte counts and scatters run on a {@link ForkJoinPool}. Sorting does not allocate once
+ * the buffers are large enough.
+ */
+public final class RenderQueue
+{
+    private static final int LAYER_BITS = 8;
+    private static final int SHADER_BITS = 12;
+    private static final int TEXTURE_BITS = 16;
+    private static final int DEPTH_BITS = 27;
+
+    private static final int TRANSLUCENT_SHIFT = SHADER_BITS + TEXTURE_BITS + DEPTH_BITS;
+    private static final int LAYER_SHIFT = TRANSLUCENT_SHIFT + 1;
+
+    /** The smallest <b>layer</b> */
+    public static final int MIN_LAYER = -(1 << LAYER_BITS - 1);
+    /** The largest <b>layer</b> */
+    public static final int MAX_LAYER = (1 << LAYER_BITS - 1) - 1;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = Long.SIZE / RADIX_BITS;
+    /** The number of <b>submissions</b> one range of the parallel sort holds at most */
+    private static final int KEYS_PER_TASK = 16384;
+
+    private final ForkJoinPool pool;
+
+    private long[] keys, swapKeys;
+    private int[] items, swapItems;
+    private int count;
+
+    /** The byte counts of the current pass for every range, followed by the offsets they are scattered to */
+    private int[][] histograms;
+    private int passCount;
+
+    /**
+     * Creates a new {@link RenderQueue} instance which sorts on the {@link ForkJoinPool#commonPool()}.
+     */
+    public RenderQueue ()
+    {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new {@link RenderQueue} instance.
+     * @param pool the {@link ForkJoinPool} large queues are sorted on
+     */
+    public RenderQueue (ForkJoinPool pool)
+    {
+        this.pool = pool;
+        this.keys = new long[256];
+        this.swapKeys = new long[256];
+        this.items = new int[256];
+        this.swapItems = new int[256];
+        this.histograms = new int[1][RADIX];
+    }
+
+    /**
+     * Packs a <b>sort key</b>. <b>Shader</b> and <b>texture</b> identifiers are only used to put equal ones next
+     * to each other, so identifiers which do not fit into their 12 and 16 bits only cost additional
+     * <b>state changes</b>.
+     * @param layer the <b>layer</b>, from {@link RenderQueue#MIN_LAYER} to {@link RenderQueue#MAX_LAYER}
+     * @param translucent wether the <b>item</b> is <b>blended</b> with what is behind it
+     * @param shaderId the <b>OpenGL identifier</b> of the <b>shader</b>
+     * @param textureId the <b>OpenGL identifier</b> of the <b>texture</b>, or 0 for no <b>texture</b>
+     * @param depth the z-coordinate, where smaller ones are in front
+     * @return the <b>sort key</b>
+     * @throws IllegalArgumentException if the <b>layer</b> is out of range
+     */
+    public static long key (int layer, boolean translucent, int shaderId, int textureId, float depth)
+    {
+        if (layer < MIN_LAYER || layer > MAX_LAYER) throw new IllegalArgumentException("Tried to create a sort " +
+                "key for layer " + layer + ", which is not between " + MIN_LAYER + " and " + MAX_LAYER);
+
+        final long shader = shaderId & (1L << SHADER_BITS) - 1;
+        final long texture = textureId & (1L << TEXTURE_BITS) - 1;
+        long key = (long) (layer - MIN_LAYER) << LAYER_SHIFT;
+        if (!translucent)
+            return key | shader << TEXTURE_BITS + DEPTH_BITS | texture << DEPTH_BITS | depthBits(depth);
+
+        // Back to front, so the largest depth comes first
+        final long depthBits = depthBits(depth) ^ (1L << DEPTH_BITS) - 1;
+        return key | 1L << TRANSLUCENT_SHIFT | depthBits << SHADER_BITS + TEXTURE_BITS |
+                shader << TEXTURE_BITS | texture;
+    }
+
+    /**
+     * Maps a depth to the upper {@link RenderQueue#DEPTH_BITS} bits of an unsigned integer which sorts like the
+     * float, by flipping all bits of negative floats and only the sign bit of positive ones.
+     */
+    private static long depthBits (float depth)
+    {
+        final int bits = Float.floatToIntBits(depth + 0f);
+        final int sortable = bits < 0 ? ~bits : bits | Integer.MIN_VALUE;
+        return (sortable & 0xFFFFFFFFL) >>> Integer.SIZE - DEPTH_BITS;
+    }
+
+    /**
+     * Checks wether the <b>item</b> of a <b>sort key</b> is translucent.
+     * @param key the <b>sort key</b>
+     * @return wether the <b>item</b> is translucent
+     */
+    public static boolean isTranslucent (long key)
+    {
+        return (key >>> TRANSLUCENT_SHIFT & 1) != 0;
+    }
+
+    /**
+     * Returns the <b>layer</b> of a <b>sort key</b>.
+     * @param key the <b>sort key</b>
+     * @return the <b>layer</b>
+     */
+    public static int getLayer (long key)
+    {
+        return (int) (key >>> LAYER_SHIFT) + MIN_LAYER;
+    }
+
+    /**
+     * Adds a <b>submission</b>.
+     * @param key the <b>sort key</b>
+     * @param item the <b>item</b>
+     */
+    public void submit (long key, int item)
+    {
+        if (count == keys.length)
+        {
+            final int length = count * 2;
+            keys = Arrays.copyOf(keys, length);
+            items = Arrays.copyOf(items, length);
+            swapKeys = new long[length];
+            swapItems = new int[length];
+        }
+        keys[count] = key;
+        items[count] = item;
+        count++;
+    }
+
+    /**
+     * Removes all <b>submissions</b>.
+     */
+    public void clear ()
+    {
+        count = 0;
+    }
+
+    /**
+     * Checks wether the <b>submissions</b> are in the order of their <b>sort keys</b> already.
+     * @return wether the <b>submissions</b> are sorted
+     */
+    public boolean isSorted ()
+    {
+        for (int i = 1; i < count; i++)
+            if (Long.compareUnsigned(keys[i - 1], keys[i]) > 0) return false;
+        return true;
+    }
+
+    /**
+     * Sorts the <b>submissions</b> by their unsigned <b>sort keys</b>. <b>Submissions</b> with equal
+     * <b>sort keys</b> keep their order.
+     */
+    public void sort ()
+    {
+        passCount = 0;
+        if (count < 2) return;
+
+        final int tasks = (count + KEYS_PER_TASK - 1) / KEYS_PER_TASK;
+        if (histograms.length < tasks * 2) histograms = new int[tasks * 2][RADIX];
+
+        // A byte which is the same for all keys would not move anything
+        long differing = 0;
+        final long first = keys[0];
+        for (int i = 1; i < count; i++)
+            differing |= keys[i] ^ first;
+
+        for (int pass = 0; pass < PASSES; pass++)
+        {
+            final int shift = pass * RADIX_BITS;
+            if ((differing >>> shift & RADIX - 1) == 0) continue;
+
+            run(tasks, shift, false);
+            computeOffsets(tasks);
+            run(tasks, shift, true);
+
+            long[] swapKeys = keys;
+            keys = this.swapKeys;
+            this.swapKeys = swapKeys;
+            final int[] swapItems = items;
+            items = this.swapItems;
+            this.swapItems = swapItems;
+            passCount++;
+        }
+    }
+
+    private void run (int tasks, int shift, boolean scatter)
+    {
+        if (tasks == 1)
+        {
+            if (scatter) scatter(0, shift);
+            else count(0, shift);
+            return;
+        }
+        pool.invoke(new RadixTask(0, tasks, shift, scatter));
+    }
+
+    /**
+     * Counts the bytes at <b>shift</b> of the <b>sort keys</b> of a range.
+     */
+    private void count (int task, int shift)
+    {
+        final int[] histogram = histograms[task];
+        Arrays.fill(histogram, 0);
+        final int to = Math.min(count, (task + 1) * KEYS_PER_TASK);
+        for (int i = task * KEYS_PER_TASK; i < to; i++)
+            histogram[(int) (keys[i] >>> shift) & RADIX - 1]++;
+    }
+
+    /**
+     * Turns the byte counts of all ranges into the offsets every range scatters a byte to. A range scatters
+     * behind all smaller bytes and behind the same byte of all ranges before it, which keeps the sort stable.
+     */
+    private void computeOffsets (int tasks)
+    {
+        int offset = 0;
+        for (int digit = 0; digit < RADIX; digit++)
+            for (int task = 0; task < tasks; task++)
+            {
+                histograms[tasks + task][digit] = offset;
+                offset += histograms[task][digit];
+            }
+    }
+
+    /**
+     * Moves the <b>submissions</b> of a range to their offsets for the byte at <b>shift</b>.
+     */
+    private void scatter (int task, int shift)
+    {
+        final int tasks = (count + KEYS_PER_TASK - 1) / KEYS_PER_TASK;
+        final int[] offsets = histograms[tasks + task];
+        final int to = Math.min(count, (task + 1) * KEYS_PER_TASK);
+        for (int i = task * KEYS_PER_TASK; i < to; i++)
+        {
+            final long key = keys[i];
+            final int target = offsets[(int) (key >>> shift) & RADIX - 1]++;
+            swapKeys[target] = key;
+            swapItems[target] = items[i];
+        }
+    }
+
+    /**
+     * Returns the number of <b>submissions</b>.
+     * @return the number of <b>submissions</b>
+     */
+    public int getCount ()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the <b>sort key</b> of a <b>submission</b>.
+     * @param index the position of the <b>submission</b>, which is its sorted position after
+     * {@link RenderQueue#sort()}
+     * @return the <b>sort key</b>
+     */
+    public long getKey (int index)
+    {
+        return keys[index];
+    }
+
+    /**
+     * Returns the <b>item</b> of a <b>submission</b>.
+     * @param index the position of the <b>submission</b>, which is its sorted position after
+     * {@link RenderQueue#sort()}
+     * @return the <b>item</b>
+     */
+    public int getItem (int index)
+    {
+        return items[index];
+    }
+
+    /**
+     * Returns the number of bytes the last {@link RenderQueue#sort()} sorted by, which is at most 8.
+     * @return the number of <b>radix sort</b> passes
+     */
+    public int getPassCount ()
+    {
+        return passCount;
+    }
+
+    /**
+     * Counts or scatters a range of ranges, splitting it in halves until a single range is left.
+     */
+    private final class RadixTask extends RecursiveAction
+    {
+        private final int from, to;
+        private final int shift;
+        private final boolean scatter;
+
+        private RadixTask (int from, int to, int shift, boolean scatter)
+        {
+            this.from = from;
+            this.to = to;
+            this.shift = shift;
+            this.scatter = scatter;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if (to - from == 1)
+            {
+                if (scatter) scatter(from, shift);
+                else count(from, shift);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new RadixTask(from, mid, shift, scatter), new RadixTask(mid, to, shift, scatter));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package engine.dengine.graphics;
 
+import engine.dengine.assets.Texture;
 import engine.dengine.assets.Texture2D;
+import engine.dengine.assets.TextureArray;
 import org.joml.Vector4f;
 
 
@@ -12,12 +14,24 @@ import org.joml.Vector4f;
  * <h2>{@link Sprite}</h2>
  * <br>
  * The {@link Sprite} class is used to store a part of a {@link Texture2D} instance, not the entire image.
- * It is a storage of <b>UVs</b> combined with <b>textures</b>.
+ * It is a storage of <b>UVs</b> combined with <b>textures</b>. A {@link Sprite} may also store a part of a
+ * <b>layer</b> of a {@link TextureArray}, whose <b>UVs</b> are relative to that <b>layer</b>. The <b>layer</b> and
+ * <b>UVs</b> of {@link Sprite} instances of a {@link TextureAtlas} change when the {@link TextureAtlas} is packed
+ * again.
  */
 public class Sprite
 {
-    private Texture2D texture;
+    /** The <b>texture index</b> of <b>vertices</b> without a {@link Sprite} */
+    public static final int NO_TEXTURE = -1;
+    /** The <b>texture index</b> of <b>vertices</b> of a {@link Sprite} of a {@link Texture2D} */
+    public static final int TEXTURE_2D = -2;
+
+    private Texture texture;
+    /** The <b>layer</b> of the {@link TextureArray}, or -1 for a {@link Texture2D} */
+    private int layer;
     private float[] uvs;
+    /** Changes whenever the <b>layer</b> or the <b>UVs</b> are moved by a {@link TextureAtlas} */
+    private int version;
     private final int width, height;
 
 
@@ -44,22 +58,83 @@ public class Sprite
      * @param height the height of the sprite in pixels
      */
     public Sprite (Texture2D texture, float[] uvs, int width, int height)
+    {
+        this(texture, -1, uvs, width, height);
+    }
+
+    /**
+     * Creates a new {@link Sprite} instance which contains a whole <b>layer</b> of a {@link TextureArray}.
+     * @param textureArray the {@link TextureArray} which should be used
+     * @param layer the <b>layer</b>, which has to be added to the {@link TextureArray}
+     * @throws IllegalArgumentException if the <b>layer</b> was not added to the {@link TextureArray}
+     */
+    public Sprite (TextureArray textureArray, int layer)
+    {
+        this(textureArray, layer, new float[]
+                {
+                        0, 1,
+                        1, 1,
+                        0, 0,
+                        1, 0
+                }, textureArray.getWidth(), textureArray.getHeight());
+    }
+
+    /**
+     * Creates a new {@link Sprite} instance with the specified <b>layer</b> of a {@link TextureArray} and
+     * <b>UVs</b>.
+     * @param textureArray the {@link TextureArray} which should be used
+     * @param layer the <b>layer</b>, which has to be added to the {@link TextureArray}
+     * @param uvs the <b>UVs</b> inside the <b>layer</b> which will be used
+     * @param width the width of the sprite in pixels
+     * @param height the height of the sprite in pixels
+     * @throws IllegalArgumentException if the <b>layer</b> was not added to the {@link TextureArray}
+     */
+    public Sprite (TextureArray textureArray, int layer, float[] uvs, int width, int height)
+    {
+        this((Texture) textureArray, layer, uvs, width, height);
+        if (layer < 0 || layer >= textureArray.getLayerCount()) throw new IllegalArgumentException("Tried to " +
+                "create a Sprite of layer " + layer + " of TextureArray " + textureArray.getName() + ", which has " +
+                textureArray.getLayerCount() + " layers");
+    }
+
+    private Sprite (Texture texture, int layer, float[] uvs, int width, int height)
     {
         this.texture = texture;
+        this.layer = layer;
         this.uvs = uvs;
         this.width = width;
         this.height = height;
     }
 
     /**
-     * Returns the stored {@link Texture2D} instance.
+     * Returns the stored {@link Texture2D} or {@link TextureArray} instance.
      * @return the stored <b>texture</b>
      */
-    public Texture2D getTexture ()
+    public Texture getTexture ()
     {
         return texture;
     }
 
+    /**
+     * Returns the <b>layer</b> of the stored {@link TextureArray} instance.
+     * @return the <b>layer</b>, or -1 if the <b>texture</b> is a {@link Texture2D}
+     */
+    public int getLayer ()
+    {
+        return layer;
+    }
+
+    /**
+     * Returns the <b>texture index</b> which the <b>vertices</b> of this {@link Sprite} are drawn with, read by
+     * <b>default.frag</b> to choose between the {@link Texture2D} and the <b>layers</b> of the
+     * {@link TextureArray} of a <b>draw call</b>.
+     * @return the <b>layer</b> of the {@link TextureArray}, or {@link Sprite#TEXTURE_2D}
+     */
+    public int getTextureIndex ()
+    {
+        return layer >= 0 ? layer : TEXTURE_2D;
+    }
+
     /**
      * Returns the stored <b>UVs</b>.
      * @return the <b>UVs</b>
@@ -70,12 +145,53 @@ public class Sprite
     }
 
     /**
-     * Returns the <b>OpenGL identifier</b> of the stored {@link Texture2D} instance.
+     * Moves this {@link Sprite} to another <b>layer</b> and <b>UVs</b> of its {@link TextureArray}, which is
+     * picked up by every {@link engine.dengine.ecs.RenderComponent} that uses it.
+     * @param layer the new <b>layer</b>
+     * @param uvs the new <b>UVs</b>
+     */
+    void remap (int layer, float[] uvs)
+    {
+        this.layer = layer;
+        this.uvs = uvs;
+        version++;
+    }
+
+    /**
+     * Returns the <b>version</b> of this {@link Sprite}, which changes whenever a {@link TextureAtlas} moves it to
+     * another <b>layer</b> or other <b>UVs</b>.
+     * @return the <b>version</b>
+     */
+    public int getVersion ()
+    {
+        return version;
+    }
+
+    /**
+     * Returns the <b>OpenGL identifier</b> of the stored <b>texture</b>.
      * @return the <b>texture identifier</b>
-     * @see Texture2D#getId()
+     * @see Texture#getId()
      */
     public int getTextureId ()
     {
         return texture.getId();
     }
+
+    /**
+     * Returns the width of the {@link Sprite} in pixels.
+     * @return the width in pixels
+     */
+    public int getWidth ()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the height of the {@link Sprite} in pixels.
+     * @return the height in pixels
+     */
+    public int getHeight ()
+    {
+        return height;
+    }
 }
@@ -0,0 +1,355 @@
+package engine.dengine.graphics;
+
+import engine.dengine.assets.AssetManager;
+import engine.dengine.assets.TextureArray;
+import org.lwjgl.BufferUtils;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.lwjgl.stb.STBImage.stbi_image_free;
+import static org.lwjgl.stb.STBImage.stbi_load;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link TextureAtlas}</h2>
+ * <br>
+ * The {@link TextureAtlas} class is used to pack many small images into a few large <b>pages</b> at runtime, so
+ * <b>sprites</b> of different images share a <b>texture</b> and are drawn together. The <b>pages</b> are the
+ * <b>layers</b> of a {@link TextureArray}, which is added to the {@link AssetManager} under the name of the
+ * {@link TextureAtlas}. Every image returns a {@link Sprite} of its <b>page</b> whose <b>UVs</b> are remapped to
+ * where it was packed ({@link TextureAtlas#add(String)}).
+ * <br>
+ * Images are packed by an {@link AtlasPacker} with the <b>MaxRects</b> algorithm, which keeps the maximal free
+ * rectangles of every <b>page</b> and puts an image into the one it fits best by its shorter leftover side. Every
+ * image is
+ * surrounded by <b>bleed</b>, copies of its border <b>pixels</b>, so filtering at its edges never samples a
+ * neighbour, and by <b>padding</b> between it and the next image. Images can be added and removed at any time,
+ * only the rectangle of an added image is uploaded.
+ * <br>
+ * Removed images leave holes which smaller images may fill. Once an image fits on no <b>page</b> while the
+ * share of <b>page</b> area not covered by images is above the <b>rebuild threshold</b>, all images are packed
+ * again from scratch instead of taking a new <b>page</b> ({@link TextureAtlas#rebuild()}). The {@link Sprite}
+ * instances of moved images are updated in place and keep working.
+ */
+public class TextureAtlas
+{
+    private static final int CHANNELS = 4;
+
+    /** The default width and height of a <b>page</b> in <b>pixels</b> */
+    private static final int PAGE_SIZE = 2048;
+    /** The default number of <b>pages</b> */
+    private static final int MAX_PAGES = 8;
+    /** The default share of <b>page</b> area not covered by images above which the images are packed again */
+    private static final float REBUILD_THRESHOLD = 0.5f;
+
+    private final String name;
+    private final TextureArray pages;
+    private final int pageSize;
+    private final int padding, bleed;
+    private final float rebuildThreshold;
+
+    private final AtlasPacker packer;
+    private final HashMap<String, Entry> entries;
+    private int rebuildCount;
+
+    /**
+     * Creates a new {@link TextureAtlas} instance with up to 8 <b>pages</b> of 2048x2048 <b>pixels</b>, a
+     * <b>padding</b> and <b>bleed</b> of 1 <b>pixel</b>, and a <b>rebuild threshold</b> of 0.5.
+     * @param name the name of the {@link TextureAtlas}, under which its {@link TextureArray} is added to the
+     *             {@link AssetManager}
+     */
+    public TextureAtlas (String name)
+    {
+        this(name, PAGE_SIZE, MAX_PAGES, 1, 1, REBUILD_THRESHOLD);
+    }
+
+    /**
+     * Creates a new {@link TextureAtlas} instance. The storage of all <b>pages</b> is allocated here, which needs
+     * a current <b>OpenGL context</b>.
+     * @param name the name of the {@link TextureAtlas}, under which its {@link TextureArray} is added to the
+     *             {@link AssetManager}
+     * @param pageSize the width and height of a <b>page</b> in <b>pixels</b>
+     * @param maxPages the number of <b>pages</b>
+     * @param padding the number of empty <b>pixels</b> between two images
+     * @param bleed the number of <b>pixels</b> the border of an image is repeated around it
+     * @param rebuildThreshold the share of <b>page</b> area not covered by images above which the images are
+     *                         packed again once one does not fit
+     * @throws IllegalArgumentException if the size or the number of <b>pages</b> is smaller than 1, the
+     * <b>padding</b> or <b>bleed</b> is negative, or a {@link TextureArray} of another size has the name already
+     */
+    public TextureAtlas (String name, int pageSize, int maxPages, int padding, int bleed, float rebuildThreshold)
+    {
+        if (padding < 0 || bleed < 0) throw new IllegalArgumentException("Tried to create TextureAtlas " + name +
+                " with a negative padding or bleed");
+
+        this.name = name;
+        this.pages = AssetManager.addTextureArray(name, pageSize, pageSize, maxPages, true);
+        if (pages.getWidth() != pageSize || pages.getHeight() != pageSize || pages.getCapacity() != maxPages)
+            throw new IllegalArgumentException("Tried to create TextureAtlas " + name + " over the existing " +
+                    "TextureArray " + pages);
+        this.pageSize = pageSize;
+        this.padding = padding;
+        this.bleed = bleed;
+        this.rebuildThreshold = rebuildThreshold;
+        this.packer = new AtlasPacker(name, pageSize, maxPages, pages::addLayer);
+        this.entries = new HashMap<>();
+    }
+
+    /**
+     * Adds an image file, by reading its <b>bytes</b> with
+     * {@link org.lwjgl.stb.STBImage#stbi_load(CharSequence, IntBuffer, IntBuffer, IntBuffer, int)}. If the image
+     * file was added before, its {@link Sprite} is returned without reading it again.
+     * @param filePath the path to the image file, which is used as its key
+     * @return the {@link Sprite} of the image
+     * @throws FileNotFoundException if the image file could not be found or the file is not an image
+     * @throws IllegalArgumentException if the image does not fit on a <b>page</b>
+     * @throws IllegalStateException if the images do not fit on all <b>pages</b>
+     */
+    public Sprite add (String filePath) throws FileNotFoundException
+    {
+        final Entry existing = entries.get(filePath);
+        if (existing != null) return existing.sprite;
+
+        final IntBuffer widthBuffer = BufferUtils.createIntBuffer(1);
+        final IntBuffer heightBuffer = BufferUtils.createIntBuffer(1);
+        final IntBuffer channels = BufferUtils.createIntBuffer(1);
+        final ByteBuffer data = stbi_load(filePath, widthBuffer, heightBuffer, channels, CHANNELS);
+        if (data == null) throw new FileNotFoundException("Could not load atlas image from path " + filePath);
+
+        try
+        {
+            return add(filePath, data, widthBuffer.get(0), heightBuffer.get(0));
+        }
+        finally
+        {
+            stbi_image_free(data);
+        }
+    }
+
+    /**
+     * Adds an image from <b>pixels</b>, for example one which was generated at runtime. If an image with the key
+     * was added before, its {@link Sprite} is returned and the <b>pixels</b> are ignored.
+     * @param key the key of the image
+     * @param pixels the rows of the image from the first to the last, with 4 <b>bytes</b> per <b>pixel</b>, which
+     *               are copied
+     * @param width the width of the image in <b>pixels</b>
+     * @param height the height of the image in <b>pixels</b>
+     * @return the {@link Sprite} of the image
+     * @throws IllegalArgumentException if the image is empty, <b>pixels</b> does not hold it, or it does not fit
+     * on a <b>page</b>
+     * @throws IllegalStateException if the images do not fit on all <b>pages</b>
+     */
+    public Sprite add (String key, ByteBuffer pixels, int width, int height)
+    {
+        final Entry existing = entries.get(key);
+        if (existing != null) return existing.sprite;
+
+        if (width < 1 || height < 1) throw new IllegalArgumentException("Tried to add the empty image " + key +
+                " to TextureAtlas " + name);
+        if (pixels.remaining() < width * height * CHANNELS) throw new IllegalArgumentException("Tried to add the " +
+                width + "x" + height + " image " + key + " to TextureAtlas " + name + " with " + pixels.remaining() +
+                " bytes");
+        final int reservedWidth = width + 2 * bleed + padding, reservedHeight = height + 2 * bleed + padding;
+        if (reservedWidth > pageSize || reservedHeight > pageSize) throw new IllegalArgumentException("Tried to " +
+                "add the " + width + "x" + height + " image " + key + " to TextureAtlas " + name + ", whose " +
+                pageSize + "x" + pageSize + " pages do not fit it with its padding and bleed");
+
+        final Entry entry = new Entry(bleed(pixels, width, height), width, height, reservedWidth, reservedHeight);
+        if (packer.insert(entry)) upload(entry);
+        else if (getFragmentation() > rebuildThreshold || !packer.canOpenPage())
+        {
+            final List<Entry> all = new ArrayList<>(entries.values());
+            all.add(entry);
+            repack(all);
+        }
+        else
+        {
+            packer.openPage();
+            packer.insert(entry);
+            upload(entry);
+        }
+        entries.put(key, entry);
+        return entry.sprite;
+    }
+
+    /**
+     * Copies an image into a buffer with <b>bleed</b> around it, whose <b>pixels</b> repeat the nearest border
+     * <b>pixel</b> of the image.
+     */
+    private ByteBuffer bleed (ByteBuffer pixels, int width, int height)
+    {
+        final int bledWidth = width + 2 * bleed, bledHeight = height + 2 * bleed;
+        final ByteBuffer bled = BufferUtils.createByteBuffer(bledWidth * bledHeight * CHANNELS);
+        final int start = pixels.position();
+        for (int y = 0; y < bledHeight; y++)
+        {
+            final int row = Math.min(Math.max(y - bleed, 0), height - 1);
+            for (int x = 0; x < bledWidth; x++)
+            {
+                final int column = Math.min(Math.max(x - bleed, 0), width - 1);
+                bled.putInt((y * bledWidth + x) * CHANNELS, pixels.getInt(start + (row * width + column) * CHANNELS));
+            }
+        }
+        return bled;
+    }
+
+    /**
+     * Uploads the image with its <b>bleed</b> and points its {@link Sprite} at it.
+     */
+    private void upload (Entry entry)
+    {
+        final int layer = entry.page.getLayer();
+        pages.setRegion(layer, entry.x, entry.y, entry.width + 2 * bleed, entry.height + 2 * bleed,
+                entry.pixels);
+
+        // The same orientation as a Sprite of a whole Texture2D, the first row of the image is at v = 0
+        final float left = (entry.x + bleed) / (float) pageSize, right = left + entry.width / (float) pageSize;
+        final float bottom = (entry.y + bleed) / (float) pageSize, top = bottom + entry.height / (float) pageSize;
+        final float[] uvs =
+                {
+                        left, top,      // Top left
+                        right, top,     // Top right
+                        left, bottom,   // Bottom left
+                        right, bottom   // Bottom right
+                };
+        if (entry.sprite == null) entry.sprite = new Sprite(pages, layer, uvs, entry.width, entry.height);
+        else entry.sprite.remap(layer, uvs);
+    }
+
+    /**
+     * Removes an image. Its {@link Sprite} must not be drawn anymore, because its area may be taken by another
+     * image.
+     * @param key the key of the image, which is the file path for image files
+     * @return wether the image was added before
+     */
+    public boolean remove (String key)
+    {
+        final Entry entry = entries.remove(key);
+        if (entry == null) return false;
+        packer.remove(entry);
+        return true;
+    }
+
+    /**
+     * Packs all images again from scratch, largest first, which fills the holes removed images left behind. The
+     * {@link Sprite} instances of moved images are updated, and <b>pages</b> which end up empty are kept for
+     * later images.
+     * @throws IllegalStateException if the images do not fit on all <b>pages</b>, in which case nothing changes
+     */
+    public void rebuild ()
+    {
+        repack(new ArrayList<>(entries.values()));
+    }
+
+    private void repack (List<Entry> all)
+    {
+        // The packer throws before it moves anything, so the Sprite instances are only remapped once all fit
+        packer.repack(all);
+        for (Entry entry : all)
+            upload(entry);
+        rebuildCount++;
+    }
+
+    /**
+     * Returns the share of the area of all <b>pages</b> in use which is not covered by images, including their
+     * <b>padding</b> and <b>bleed</b>.
+     * @return the fragmentation from 0 to 1
+     */
+    public float getFragmentation ()
+    {
+        return packer.getFragmentation();
+    }
+
+    /**
+     * Returns the {@link Sprite} of an image.
+     * @param key the key of the image, which is the file path for image files
+     * @return the {@link Sprite}, or null if the image was not added
+     */
+    public Sprite getSprite (String key)
+    {
+        final Entry entry = entries.get(key);
+        return entry != null ? entry.sprite : null;
+    }
+
+    /**
+     * Checks wether an image was added.
+     * @param key the key of the image, which is the file path for image files
+     * @return wether the image was added
+     */
+    public boolean contains (String key)
+    {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of images.
+     * @return the number of images
+     */
+    public int getSize ()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of <b>pages</b> which hold at least one image.
+     * @return the number of used <b>pages</b>
+     */
+    public int getPageCount ()
+    {
+        return packer.getPageCount();
+    }
+
+    /**
+     * Returns how often the images were packed again, by {@link TextureAtlas#rebuild()} or because the
+     * fragmentation passed the <b>rebuild threshold</b>.
+     * @return the number of rebuilds
+     */
+    public int getRebuildCount ()
+    {
+        return rebuildCount;
+    }
+
+    /**
+     * Returns the {@link TextureArray} whose <b>layers</b> are the <b>pages</b>.
+     * @return the {@link TextureArray}
+     */
+    public TextureArray getTextureArray ()
+    {
+        return pages;
+    }
+
+    /**
+     * Returns the name of this {@link TextureAtlas}, which is the name of its {@link TextureArray}.
+     * @return the name
+     */
+    public String getName ()
+    {
+        return name;
+    }
+
+    /**
+     * An image with its <b>bleed</b> and its {@link Sprite}.
+     */
+    private static final class Entry extends AtlasPacker.Rect
+    {
+        private final ByteBuffer pixels;
+        private final int width, height;
+        private Sprite sprite;
+
+        private Entry (ByteBuffer pixels, int width, int height, int reservedWidth, int reservedHeight)
+        {
+            super(reservedWidth, reservedHeight);
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package engine.dengine.io;
+
+import engine.dengine.ecs.Component;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ComponentCodec}</h2>
+ * <br>
+ * The {@link ComponentCodec} interface is used to write and read the <b>components</b> of one <b>component
+ * type</b> in a {@link SceneSnapshot}. A {@link ComponentCodec} always handles a whole <b>column</b> of
+ * <b>components</b> at once, so it should write every attribute of the <b>components</b> as its own contiguous
+ * block, which can then be read in bulk. References to <b>assets</b> are written as indices into the
+ * {@link SceneSnapshot.StringTable} of their {@link engine.dengine.assets.AssetManager} keys.
+ * @param <T> the <b>component type</b>
+ * @see SceneSnapshot#register(ComponentCodec)
+ */
+public interface ComponentCodec<T extends Component>
+{
+    /**
+     * Returns the <b>component type</b> this {@link ComponentCodec} writes and reads.
+     * @return the {@link Class} instance of {@link T}
+     */
+    Class<T> getType ();
+
+    /**
+     * Writes a <b>column</b> of <b>components</b>.
+     * @param components the <b>components</b>
+     * @param out the {@link DataOutput} which is written to
+     * @param strings the {@link SceneSnapshot.StringTable} of the {@link SceneSnapshot}
+     * @throws IOException if writing to the {@link DataOutput} fails
+     */
+    void write (List<T> components, DataOutput out, SceneSnapshot.StringTable strings) throws IOException;
+
+    /**
+     * Reads a <b>column</b> of <b>components</b> which was written by
+     * {@link ComponentCodec#write(List, DataOutput, SceneSnapshot.StringTable)}.
+     * @param in the {@link ByteBuffer}, positioned at the start of the <b>column</b>
+     * @param dest the array the <b>components</b> are stored in, starting at index 0
+     * @param count the number of <b>components</b>
+     * @param strings the {@link SceneSnapshot.StringTable} of the {@link SceneSnapshot}
+     * @throws IOException if the <b>column</b> is corrupt or a referenced <b>asset</b> can not be loaded
+     */
+    void read (ByteBuffer in, Component[] dest, int count, SceneSnapshot.StringTable strings) throws IOException;
+}
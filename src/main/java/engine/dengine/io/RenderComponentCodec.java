@@ -0,0 +1,219 @@
+package engine.dengine.io;
+
+import engine.dengine.assets.AssetManager;
+import engine.dengine.assets.Texture;
+import engine.dengine.assets.Texture2D;
+import engine.dengine.assets.TextureArray;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.graphics.Sprite;
+import engine.dengine.shapes.Polygon;
+import engine.dengine.shapes.Rectangle;
+import engine.dengine.shapes.Shape;
+import engine.dengine.shapes.Triangle;
+import org.joml.Vector4f;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RenderComponentCodec}</h2>
+ * <br>
+ * The {@link RenderComponentCodec} class is the {@link ComponentCodec} of {@link RenderComponent}. It writes the
+ * <b>shape kinds</b>, <b>vertex</b> counts, <b>vertices</b>, <b>index</b> counts, <b>indices</b>,
+ * <b>colors</b>, <b>layers</b>, <b>texture</b> keys, <b>texture layers</b>, <b>sprite</b> sizes and <b>UVs</b> of a <b>column</b> as separate blocks.
+ * <br>
+ * {@link Rectangle} and {@link Triangle} instances are restored as such, all other {@link Shape} instances are
+ * restored as {@link Polygon} instances of their <b>vertices</b> and <b>indices</b>. <b>Textures</b> are referenced by their {@link AssetManager} key, which
+ * is their file path, and are resolved using {@link AssetManager#getTexture2D(String)}. <b>Textures</b> which are
+ * not loaded yet are added using {@link AssetManager#addTexture2D(String, boolean)} with an alpha channel.
+ * {@link TextureArray} instances are referenced by their name and have to be loaded before reading, because
+ * their <b>layers</b> cannot be restored from a key.
+ * The {@link engine.dengine.assets.Shader} of a {@link RenderComponent} is not written, restored instances are
+ * drawn with the default one.
+ */
+public class RenderComponentCodec implements ComponentCodec<RenderComponent>
+{
+    private static final byte POLYGON = 0;
+    private static final byte RECTANGLE = 1;
+    private static final byte TRIANGLE = 2;
+
+    @Override
+    public Class<RenderComponent> getType ()
+    {
+        return RenderComponent.class;
+    }
+
+    @Override
+    public void write (List<RenderComponent> components, DataOutput out, SceneSnapshot.StringTable strings)
+            throws IOException
+    {
+        for (RenderComponent component : components)
+        {
+            final Shape shape = component.getShape();
+            out.writeByte(shape instanceof Rectangle ? RECTANGLE : shape instanceof Triangle ? TRIANGLE : POLYGON);
+        }
+        for (RenderComponent component : components)
+            out.writeInt(component.getShape().getVertices().length);
+        for (RenderComponent component : components)
+            for (float value : component.getShape().getVertices())
+                out.writeFloat(value);
+        for (RenderComponent component : components)
+            out.writeInt(component.getShape().getIndexCount());
+        for (RenderComponent component : components)
+            for (int value : component.getShape().getIndices())
+                out.writeInt(value);
+
+        for (RenderComponent component : components)
+        {
+            final Vector4f color = component.getColor();
+            out.writeFloat(color.x);
+            out.writeFloat(color.y);
+            out.writeFloat(color.z);
+            out.writeFloat(color.w);
+        }
+        for (RenderComponent component : components)
+            out.writeByte(component.getLayer());
+
+        for (RenderComponent component : components)
+        {
+            final Sprite sprite = component.getSprite();
+            out.writeInt(sprite == null ? -1 : strings.add(keyOf(sprite.getTexture())));
+        }
+        for (RenderComponent component : components)
+            out.writeInt(component.getSprite() == null ? -1 : component.getSprite().getLayer());
+        for (RenderComponent component : components)
+            out.writeInt(component.getSprite() == null ? 0 : component.getSprite().getWidth());
+        for (RenderComponent component : components)
+            out.writeInt(component.getSprite() == null ? 0 : component.getSprite().getHeight());
+        for (RenderComponent component : components)
+            out.writeInt(component.getSprite() == null ? 0 : component.getSprite().getUvs().length);
+        for (RenderComponent component : components)
+            if (component.getSprite() != null)
+                for (float value : component.getSprite().getUvs())
+                    out.writeFloat(value);
+    }
+
+    @Override
+    public void read (ByteBuffer in, Component[] dest, int count, SceneSnapshot.StringTable strings)
+            throws IOException
+    {
+        final byte[] kinds = new byte[count];
+        in.get(kinds);
+        final int[] vertexLengths = readInts(in, count);
+        final float[] vertices = readFloats(in, sum(vertexLengths));
+        final int[] indexCounts = readInts(in, count);
+        final int[] indices = readInts(in, sum(indexCounts));
+        final float[] colors = readFloats(in, count * 4);
+        final byte[] layers = new byte[count];
+        in.get(layers);
+        final int[] textureKeys = readInts(in, count);
+        final int[] textureLayers = readInts(in, count);
+        final int[] widths = readInts(in, count);
+        final int[] heights = readInts(in, count);
+        final int[] uvLengths = readInts(in, count);
+        final float[] uvs = readFloats(in, sum(uvLengths));
+
+        final Map<Integer, Texture> textures = new HashMap<>();
+        int vertexOffset = 0;
+        int indexOffset = 0;
+        int uvOffset = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final float[] shapeVertices = new float[vertexLengths[i]];
+            System.arraycopy(vertices, vertexOffset, shapeVertices, 0, shapeVertices.length);
+            vertexOffset += shapeVertices.length;
+            final int[] shapeIndices = new int[indexCounts[i]];
+            System.arraycopy(indices, indexOffset, shapeIndices, 0, shapeIndices.length);
+            indexOffset += shapeIndices.length;
+
+            Sprite sprite = null;
+            if (textureKeys[i] >= 0)
+            {
+                final boolean layered = textureLayers[i] >= 0;
+                Texture texture = textures.get(textureKeys[i]);
+                if (texture == null)
+                {
+                    final String key = strings.get(textureKeys[i]);
+                    texture = layered ? resolveTextureArray(key) : resolveTexture(key);
+                    textures.put(textureKeys[i], texture);
+                }
+
+                final float[] spriteUvs = new float[uvLengths[i]];
+                System.arraycopy(uvs, uvOffset, spriteUvs, 0, spriteUvs.length);
+                uvOffset += spriteUvs.length;
+                sprite = layered
+                        ? new Sprite((TextureArray) texture, textureLayers[i], spriteUvs, widths[i], heights[i])
+                        : new Sprite((Texture2D) texture, spriteUvs, widths[i], heights[i]);
+            }
+
+            final Vector4f color = new Vector4f(colors[i * 4], colors[i * 4 + 1], colors[i * 4 + 2], colors[i * 4 + 3]);
+            final RenderComponent component = new RenderComponent(createShape(kinds[i], shapeVertices, shapeIndices),
+                    sprite, color);
+            component.setLayer(layers[i]);
+            dest[i] = component;
+        }
+    }
+
+    private static String keyOf (Texture texture)
+    {
+        return texture instanceof TextureArray array ? array.getName() : ((Texture2D) texture).getFilePath();
+    }
+
+    private static TextureArray resolveTextureArray (String key) throws IOException
+    {
+        final TextureArray array = AssetManager.getTextureArray(key);
+        if (array == null) throw new IOException("Texture array " + key + " is not loaded");
+        return array;
+    }
+
+    private static Texture2D resolveTexture (String key) throws IOException
+    {
+        final Texture2D texture = AssetManager.getTexture2D(key);
+        return texture != null ? texture : AssetManager.addTexture2D(key, true);
+    }
+
+    private static Shape createShape (byte kind, float[] vertices, int[] indices) throws IOException
+    {
+        return switch (kind)
+        {
+            case RECTANGLE -> new Rectangle(vertices[0], vertices[1], vertices[2],
+                    vertices[3] - vertices[0], vertices[1] - vertices[7]);
+            case TRIANGLE -> new Triangle(vertices);
+            case POLYGON -> new Polygon(vertices, indices);
+            default -> throw new IOException("Unknown shape kind " + kind);
+        };
+    }
+
+    private static int sum (int[] values)
+    {
+        int sum = 0;
+        for (int value : values)
+            sum += value;
+        return sum;
+    }
+
+    private static int[] readInts (ByteBuffer in, int count)
+    {
+        final int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static float[] readFloats (ByteBuffer in, int count)
+    {
+        final float[] values = new float[count];
+        in.asFloatBuffer().get(values);
+        in.position(in.position() + count * Float.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,362 @@
+package engine.dengine.io;
+
+import engine.dengine.ecs.Archetype;
+import engine.dengine.ecs.ArchetypeStore;
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.ComponentMask;
+import engine.dengine.ecs.ComponentType;
+import engine.dengine.ecs.Entity;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SceneSnapshot}</h2>
+ * <br>
+ * The {@link SceneSnapshot} class is used to write the <b>entities</b> of an {@link ArchetypeStore} into a
+ * versioned binary file and to load them back. The file stores one <b>block</b> per {@link Archetype}, in which
+ * every {@link engine.dengine.ecs.Transform} attribute, the parent indices and every <b>component column</b> are
+ * stored as contiguous <b>columns</b>. Loading memory-maps the file using {@link FileChannel#map} and copies the
+ * <b>columns</b> in bulk into the {@link Chunk} instances using
+ * {@link ArchetypeStore#spawnBlock(ComponentMask, int, ArchetypeStore.BlockInitializer)}.
+ * <br>
+ * <b>Components</b> are written and read by the {@link ComponentCodec} registered for their type
+ * ({@link SceneSnapshot#register(ComponentCodec)}). A {@link ComponentCodec} for
+ * {@link engine.dengine.ecs.RenderComponent} is registered by default.
+ * <br>
+ * The file starts with {@link SceneSnapshot#MAGIC} and {@link SceneSnapshot#VERSION}, followed by the
+ * {@link StringTable}, the number of <b>blocks</b>, the number of <b>entities</b> and the <b>blocks</b>. All
+ * numbers are big-endian.
+ */
+public final class SceneSnapshot
+{
+    /** The first four bytes of every <b>scene snapshot</b>, "EDSC" */
+    public static final int MAGIC = 0x45445343;
+    /** The version of the <b>scene snapshot</b> format */
+    public static final int VERSION = 4;
+
+    private static final Map<String, ComponentCodec<?>> codecs;
+
+    static
+    {
+        codecs = new HashMap<>();
+        register(new RenderComponentCodec());
+    }
+
+    // Private constructor to prevent instantiation
+    private SceneSnapshot () {}
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link SceneSnapshot.StringTable}</h2>
+     * <br>
+     * The {@link SceneSnapshot.StringTable} class stores every {@link String} of a <b>scene snapshot</b>, like
+     * <b>component type</b> names and <b>asset</b> keys, exactly once, so they are referenced by their index.
+     */
+    public static final class StringTable
+    {
+        private final List<String> strings;
+        private final Map<String, Integer> indices;
+
+        StringTable ()
+        {
+            strings = new ArrayList<>();
+            indices = new HashMap<>();
+        }
+
+        /**
+         * Adds a {@link String} if it is not already contained.
+         * @param string the {@link String}
+         * @return the index of the {@link String}
+         */
+        public int add (String string)
+        {
+            final Integer index = indices.get(string);
+            if (index != null) return index;
+            strings.add(string);
+            indices.put(string, strings.size() - 1);
+            return strings.size() - 1;
+        }
+
+        /**
+         * Returns the {@link String} at an index.
+         * @param index the index
+         * @return the {@link String}
+         * @throws IOException if there is no {@link String} at the index
+         */
+        public String get (int index) throws IOException
+        {
+            if (index < 0 || index >= strings.size())
+                throw new IOException("Scene snapshot references missing string " + index);
+            return strings.get(index);
+        }
+
+        /**
+         * Returns the number of {@link String} instances.
+         * @return the number of {@link String} instances
+         */
+        public int size ()
+        {
+            return strings.size();
+        }
+    }
+
+    /**
+     * Registers the {@link ComponentCodec} of a <b>component type</b>, replacing any {@link ComponentCodec}
+     * which was registered for it before. <b>Component types</b> are identified by their class name in the file.
+     * @param codec the {@link ComponentCodec}
+     */
+    public static synchronized void register (ComponentCodec<?> codec)
+    {
+        codecs.put(codec.getType().getName(), codec);
+    }
+
+    private static synchronized ComponentCodec<?> getCodec (String typeName)
+    {
+        return codecs.get(typeName);
+    }
+
+    /**
+     * Writes all <b>entities</b> of an {@link ArchetypeStore} into a file.
+     * @param store the {@link ArchetypeStore}
+     * @param path the path of the file
+     * @throws IOException if writing the file fails
+     * @throws IllegalStateException if no {@link ComponentCodec} is registered for a stored <b>component type</b>
+     */
+    public static void write (ArchetypeStore store, Path path) throws IOException
+    {
+        final StringTable strings = new StringTable();
+        final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(blocks);
+
+        // Entities are numbered in the order they are written in, which parents are referenced by
+        final Map<Entity, Integer> indices = new IdentityHashMap<>(store.getEntityCount());
+        for (Archetype archetype : store.getArchetypes())
+            for (Chunk chunk : archetype.getChunks())
+                for (int row = 0; row < chunk.size(); row++)
+                    indices.put(chunk.getEntity(row), indices.size());
+
+        int blockCount = 0;
+        for (Archetype archetype : store.getArchetypes())
+        {
+            if (archetype.getEntityCount() == 0) continue;
+            blockCount++;
+            writeBlock(archetype, out, strings, indices);
+        }
+        out.flush();
+
+        try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+        {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+
+            file.writeInt(strings.size());
+            for (String string : strings.strings)
+            {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                file.writeInt(bytes.length);
+                file.write(bytes);
+            }
+
+            file.writeInt(blockCount);
+            file.writeInt(indices.size());
+            blocks.writeTo(file);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void writeBlock (Archetype archetype, DataOutputStream out, StringTable strings,
+                                    Map<Entity, Integer> indices) throws IOException
+    {
+        final int typeCount = archetype.getComponentTypeCount();
+        final ComponentCodec<Component>[] blockCodecs = new ComponentCodec[typeCount];
+
+        out.writeInt(archetype.getEntityCount());
+        out.writeInt(typeCount);
+        for (int column = 0; column < typeCount; column++)
+        {
+            final String typeName = ComponentType.getType(archetype.getTypeId(column)).getName();
+            blockCodecs[column] = (ComponentCodec<Component>) getCodec(typeName);
+            if (blockCodecs[column] == null)
+                throw new IllegalStateException("No " + ComponentCodec.class.getName() + " registered for " + typeName);
+            out.writeInt(strings.add(typeName));
+        }
+
+        writeFloats(archetype, Chunk::getPositionX, out);
+        writeFloats(archetype, Chunk::getPositionY, out);
+        writeFloats(archetype, Chunk::getPositionZ, out);
+        writeFloats(archetype, Chunk::getScaleX, out);
+        writeFloats(archetype, Chunk::getScaleY, out);
+        writeFloats(archetype, Chunk::getRotation, out);
+
+        for (Chunk chunk : archetype.getChunks())
+            for (int row = 0; row < chunk.size(); row++)
+            {
+                final Entity parent = chunk.getEntity(row).getParent();
+                out.writeInt(parent == null ? -1 : indices.get(parent));
+            }
+
+        final List<Component> components = new ArrayList<>(archetype.getEntityCount());
+        final ByteArrayOutputStream column = new ByteArrayOutputStream();
+        for (int i = 0; i < typeCount; i++)
+        {
+            final Class<? extends Component> type = ComponentType.getType(archetype.getTypeId(i));
+            components.clear();
+            for (Chunk chunk : archetype.getChunks())
+            {
+                final Component[] chunkColumn = chunk.getColumn(type);
+                for (int row = 0; row < chunk.size(); row++)
+                    components.add(chunkColumn[row]);
+            }
+
+            column.reset();
+            final DataOutputStream columnOut = new DataOutputStream(column);
+            blockCodecs[i].write(components, columnOut, strings);
+            columnOut.flush();
+
+            out.writeInt(column.size());
+            column.writeTo(out);
+        }
+    }
+
+    private static void writeFloats (Archetype archetype, Function<Chunk, float[]> attribute, DataOutputStream out)
+            throws IOException
+    {
+        for (Chunk chunk : archetype.getChunks())
+        {
+            final float[] values = attribute.apply(chunk);
+            for (int row = 0; row < chunk.size(); row++)
+                out.writeFloat(values[row]);
+        }
+    }
+
+    /**
+     * Loads all <b>entities</b> of a file into an {@link ArchetypeStore}. The {@link engine.dengine.ecs.Transform} data and the
+     * parents of the <b>entities</b> are restored and their <b>local-to-world matrices</b> are recomputed, but
+     * their <b>components</b> are not initialized.
+     * @param path the path of the file
+     * @param store the {@link ArchetypeStore}
+     * @return the loaded <b>entities</b> in the order they were written in
+     * @throws IOException if reading the file fails, the file is not a <b>scene snapshot</b> of
+     * {@link SceneSnapshot#VERSION} or no {@link ComponentCodec} is registered for a contained
+     * <b>component type</b>
+     */
+    public static Entity[] read (Path path, ArchetypeStore store) throws IOException
+    {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try
+        {
+            if (buffer.getInt() != MAGIC) throw new IOException(path + " is not a scene snapshot");
+            final int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported scene snapshot version " + version);
+
+            final StringTable strings = new StringTable();
+            final int stringCount = buffer.getInt();
+            for (int i = 0; i < stringCount; i++)
+            {
+                final byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            final int blockCount = buffer.getInt();
+            final Entity[] entities = new Entity[buffer.getInt()];
+            final int[] parents = new int[entities.length];
+
+            int first = 0;
+            for (int i = 0; i < blockCount; i++)
+                first += readBlock(buffer, store, strings, entities, parents, first);
+
+            for (int i = 0; i < entities.length; i++)
+                if (parents[i] >= 0) entities[i].setParent(entities[parents[i]]);
+
+            store.updateWorldMatrices();
+            store.savePreviousWorldMatrices();
+            return entities;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e)
+        {
+            throw new IOException(path + " is a corrupt scene snapshot", e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int readBlock (ByteBuffer buffer, ArchetypeStore store, StringTable strings, Entity[] entities,
+                                  int[] parents, int first) throws IOException
+    {
+        final int count = buffer.getInt();
+        final int typeCount = buffer.getInt();
+
+        final Class<? extends Component>[] types = new Class[typeCount];
+        ComponentMask mask = ComponentMask.EMPTY;
+        for (int i = 0; i < typeCount; i++)
+        {
+            final String typeName = strings.get(buffer.getInt());
+            final ComponentCodec<?> codec = getCodec(typeName);
+            if (codec == null) throw new IOException("No " + ComponentCodec.class.getName() + " registered for " +
+                    typeName);
+            types[i] = codec.getType();
+            mask = mask.with(ComponentType.getId(types[i]));
+        }
+
+        final FloatBuffer transforms = buffer.slice(buffer.position(), count * 6 * Float.BYTES).asFloatBuffer();
+        buffer.position(buffer.position() + count * 6 * Float.BYTES);
+
+        buffer.asIntBuffer().get(parents, first, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+
+        final Component[][] columns = new Component[typeCount][count];
+        for (int i = 0; i < typeCount; i++)
+        {
+            final int length = buffer.getInt();
+            getCodec(types[i].getName()).read(buffer.slice(buffer.position(), length), columns[i], count, strings);
+            buffer.position(buffer.position() + length);
+        }
+
+        store.spawnBlock(mask, count, (chunk, from, to, offset) -> {
+            final int rows = to - from;
+            transforms.get(offset, chunk.getPositionX(), from, rows);
+            transforms.get(count + offset, chunk.getPositionY(), from, rows);
+            transforms.get(2 * count + offset, chunk.getPositionZ(), from, rows);
+            transforms.get(3 * count + offset, chunk.getScaleX(), from, rows);
+            transforms.get(4 * count + offset, chunk.getScaleY(), from, rows);
+            transforms.get(5 * count + offset, chunk.getRotation(), from, rows);
+
+            for (int i = 0; i < typeCount; i++)
+                System.arraycopy(columns[i], offset, chunk.getColumn(types[i]), from, rows);
+            for (int row = from; row < to; row++)
+                entities[first + offset + row - from] = chunk.getEntity(row);
+        });
+
+        return count;
+    }
+}
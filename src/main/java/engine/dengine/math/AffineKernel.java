@@ -0,0 +1,129 @@
+package engine.dengine.math;
+
+import org.joml.Matrix3x2fc;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link AffineKernel}</h2>
+ * <br>
+ * The {@link AffineKernel} class is used to apply 2D <b>affine transformations</b> to many points at once. The
+ * points are passed as packed <b>SoA</b> arrays, meaning one array of x-coordinates and one of y-coordinates,
+ * and the <b>matrices</b> are either a single {@link Matrix3x2fc} or one <b>matrix</b> per point, passed as the
+ * six element arrays used by {@link engine.dengine.ecs.Chunk}. Every point is transformed as
+ * <br>
+ * <b>x' = m00 * x + m10 * y + m20</b> and <b>y' = m01 * x + m11 * y + m21</b>.
+ * <br>
+ * {@link AffineKernel#getInstance()} returns a <b>SIMD</b> implementation using the <b>Vector API</b> if the
+ * <b>jdk.incubator.vector</b> module is enabled (<b>--add-modules jdk.incubator.vector</b>), and a scalar loop
+ * otherwise. The <b>SIMD</b> implementation can be disabled by setting the system property
+ * <b>engine.dengine.simd</b> to <b>false</b>. Both implementations produce identical results.
+ */
+public abstract class AffineKernel
+{
+    /** The name of the module containing the <b>Vector API</b> */
+    public static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final AffineKernel SCALAR = new ScalarAffineKernel();
+    private static final AffineKernel INSTANCE = create();
+
+    /**
+     * Creates a new {@link AffineKernel} instance.
+     */
+    protected AffineKernel () {}
+
+    private static AffineKernel create ()
+    {
+        if (!Boolean.parseBoolean(System.getProperty("engine.dengine.simd", "true"))) return SCALAR;
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) return SCALAR;
+
+        try
+        {
+            // Loaded reflectively, so the Vector API classes are never linked while the module is disabled
+            return (AffineKernel) Class.forName("engine.dengine.math.VectorAffineKernel")
+                    .getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns the fastest available {@link AffineKernel}.
+     * @return the <b>SIMD</b> {@link AffineKernel} if the <b>Vector API</b> is enabled, otherwise the scalar one
+     */
+    public static AffineKernel getInstance ()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the scalar {@link AffineKernel}, which works without the <b>Vector API</b>.
+     * @return the scalar {@link AffineKernel}
+     */
+    public static AffineKernel getScalar ()
+    {
+        return SCALAR;
+    }
+
+    /**
+     * Returns wether this {@link AffineKernel} uses <b>SIMD</b> instructions.
+     * @return wether this {@link AffineKernel} is vectorized
+     */
+    public abstract boolean isVectorized ();
+
+    /**
+     * Transforms points by a single <b>matrix</b>. The input and output arrays may be the same.
+     * @param matrix the <b>matrix</b>
+     * @param x the x-coordinates
+     * @param y the y-coordinates
+     * @param outX the array the transformed x-coordinates are written to
+     * @param outY the array the transformed y-coordinates are written to
+     * @param offset the index of the first point in all arrays
+     * @param count the number of points
+     */
+    public abstract void transform (Matrix3x2fc matrix, float[] x, float[] y, float[] outX, float[] outY,
+                                    int offset, int count);
+
+    /**
+     * Transforms every point by its own <b>matrix</b>, so point <b>i</b> is transformed by the <b>matrix</b> at
+     * index <b>i</b> of the element arrays. The input and output arrays may be the same.
+     * @param m00 the first column x elements
+     * @param m01 the first column y elements
+     * @param m10 the second column x elements
+     * @param m11 the second column y elements
+     * @param m20 the translation x elements
+     * @param m21 the translation y elements
+     * @param x the x-coordinates
+     * @param y the y-coordinates
+     * @param outX the array the transformed x-coordinates are written to
+     * @param outY the array the transformed y-coordinates are written to
+     * @param offset the index of the first point and <b>matrix</b> in all arrays
+     * @param count the number of points
+     */
+    public abstract void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                                    float[] x, float[] y, float[] outX, float[] outY, int offset, int count);
+
+    /**
+     * Transforms a single point by every <b>matrix</b>, which is used to compute the same corner of many
+     * <b>sprites</b> at once, so point <b>i</b> of the output is the point transformed by the <b>matrix</b> at
+     * index <b>i</b> of the element arrays.
+     * @param m00 the first column x elements
+     * @param m01 the first column y elements
+     * @param m10 the second column x elements
+     * @param m11 the second column y elements
+     * @param m20 the translation x elements
+     * @param m21 the translation y elements
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param outX the array the transformed x-coordinates are written to
+     * @param outY the array the transformed y-coordinates are written to
+     * @param offset the index of the first <b>matrix</b> and output point
+     * @param count the number of <b>matrices</b>
+     */
+    public abstract void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                                    float x, float y, float[] outX, float[] outY, int offset, int count);
+}
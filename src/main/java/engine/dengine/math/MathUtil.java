@@ -14,12 +14,104 @@ import org.joml.Vector3f;
  * <h2>{@link MathUtil}</h2>
  * <br>
  * The {@link MathUtil} class is used to perform useful mathematical calculations and checks.
+ * <br>
+ * All methods which take raw coordinates or a destination parameter do not allocate, so they can be called every
+ * <b>frame</b>. {@link MathUtil#sin(float)} and {@link MathUtil#cos(float)} can be switched to a <b>fast trig
+ * mode</b> ({@link MathUtil#setFastTrig(boolean)}), which reads a precomputed <b>sine table</b> with
+ * {@link MathUtil#SIN_TABLE_SIZE} entries per turn and <b>interpolates</b> linearly between two entries. The error
+ * of the <b>fast trig mode</b> is below <b>5e-7</b> for angles within one turn, which is about the precision of a
+ * float. The <b>fast trig mode</b> can also be enabled by setting the system property <b>engine.dengine.fastTrig</b> to <b>true</b>.
  */
 public class MathUtil
 {
+    /** The number of entries of the <b>sine table</b> per full turn, which has to be a power of two */
+    public static final int SIN_TABLE_SIZE = 4096;
+
+    private static final int SIN_TABLE_MASK = SIN_TABLE_SIZE - 1;
+    private static final int QUARTER_TURN = SIN_TABLE_SIZE / 4;
+    private static final float DEGREES_TO_INDEX = SIN_TABLE_SIZE / 360f;
+    /** The <b>sine table</b>, with one extra entry so the <b>interpolation</b> never has to wrap */
+    private static final float[] SIN_TABLE = new float[SIN_TABLE_SIZE + 1];
+
+    /** Wether {@link MathUtil#sin(float)} and {@link MathUtil#cos(float)} use the <b>sine table</b> */
+    private static boolean fastTrig = Boolean.getBoolean("engine.dengine.fastTrig");
+
+    static
+    {
+        for (int i = 0; i <= SIN_TABLE_SIZE; i++)
+            SIN_TABLE[i] = (float) Math.sin(i * (Math.PI * 2 / SIN_TABLE_SIZE));
+    }
+
     // Prevent instantiation of utility class
     private MathUtil () {}
 
+    /**
+     * Enables or disables the <b>fast trig mode</b>. As {@link engine.dengine.ecs.Transform} instances cache their
+     * sine and cosine, the mode should be set before any {@link engine.dengine.ecs.Transform} is used.
+     * @param fastTrig wether {@link MathUtil#sin(float)} and {@link MathUtil#cos(float)} use the <b>sine table</b>
+     */
+    public static void setFastTrig (boolean fastTrig)
+    {
+        MathUtil.fastTrig = fastTrig;
+    }
+
+    /**
+     * Returns wether the <b>fast trig mode</b> is enabled.
+     * @return wether {@link MathUtil#sin(float)} and {@link MathUtil#cos(float)} use the <b>sine table</b>
+     */
+    public static boolean isFastTrig ()
+    {
+        return fastTrig;
+    }
+
+    /**
+     * Calculates the sine of an angle, using the <b>sine table</b> if the <b>fast trig mode</b> is enabled.
+     * @param degrees the angle in degrees
+     * @return the sine of the angle
+     */
+    public static float sin (float degrees)
+    {
+        return fastTrig ? fastSin(degrees) : (float) Math.sin(Math.toRadians(degrees));
+    }
+
+    /**
+     * Calculates the cosine of an angle, using the <b>sine table</b> if the <b>fast trig mode</b> is enabled.
+     * @param degrees the angle in degrees
+     * @return the cosine of the angle
+     */
+    public static float cos (float degrees)
+    {
+        return fastTrig ? fastCos(degrees) : (float) Math.cos(Math.toRadians(degrees));
+    }
+
+    /**
+     * Calculates the sine of an angle by <b>interpolating</b> between two entries of the <b>sine table</b>.
+     * @param degrees the angle in degrees
+     * @return the sine of the angle
+     */
+    public static float fastSin (float degrees)
+    {
+        return lookup(degrees * DEGREES_TO_INDEX, 0);
+    }
+
+    /**
+     * Calculates the cosine of an angle by <b>interpolating</b> between two entries of the <b>sine table</b>.
+     * @param degrees the angle in degrees
+     * @return the cosine of the angle
+     */
+    public static float fastCos (float degrees)
+    {
+        return lookup(degrees * DEGREES_TO_INDEX, QUARTER_TURN);
+    }
+
+    private static float lookup (float position, int offset)
+    {
+        final float floor = (float) Math.floor(position);
+        final int index = ((int) floor + offset) & SIN_TABLE_MASK;
+        final float a = SIN_TABLE[index];
+        return a + (SIN_TABLE[index + 1] - a) * (position - floor);
+    }
+
     /**
      * Checks wether a three-dimensional point is within the boundaries of a {@link Rectangle} instance.
      * Uses <b>barycentric</b> coordinates to check for <b>collision</b>, where the rectangle is divided
@@ -37,16 +129,30 @@ public class MathUtil
         // If they are on different z indexes, they can't be colliding
         if (z != rectangleVertices[2]) return false;
 
-        // Extract vertices of the rectangle
-        float x1 = rectangleVertices[0];
-        float y1 = rectangleVertices[1];
-        float x2 = rectangleVertices[3];
-        float y2 = rectangleVertices[4];
-        float x3 = rectangleVertices[6];
-        float y3 = rectangleVertices[7];
-        float x4 = rectangleVertices[9];
-        float y4 = rectangleVertices[10];
+        return isPointInRectangle(rectangleVertices[0], rectangleVertices[1], rectangleVertices[3],
+                rectangleVertices[4], rectangleVertices[6], rectangleVertices[7], rectangleVertices[9],
+                rectangleVertices[10], x, y);
+    }
 
+    /**
+     * Checks wether a two-dimensional point is within the boundaries of a rectangle given by its corners in the
+     * order of the <b>vertices</b> of a {@link Rectangle}, without reading any {@link Rectangle} instance.
+     * @param x1 the x coordinate of the first corner
+     * @param y1 the y coordinate of the first corner
+     * @param x2 the x coordinate of the second corner
+     * @param y2 the y coordinate of the second corner
+     * @param x3 the x coordinate of the third corner
+     * @param y3 the y coordinate of the third corner
+     * @param x4 the x coordinate of the fourth corner
+     * @param y4 the y coordinate of the fourth corner
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return wether the point lies within the boundaries of the rectangle
+     * @see MathUtil#isPointInRectangle(Rectangle, float, float, float)
+     */
+    public static boolean isPointInRectangle (float x1, float y1, float x2, float y2, float x3, float y3,
+                                              float x4, float y4, float x, float y)
+    {
         // First triangle
         // Calculate barycentric coordinates for the first triangle
         float detT1 = (y2 - y3) * (x1 - x3) + (x3 - x2) * (y1 - y3);
@@ -88,14 +194,27 @@ public class MathUtil
         // If z is not the same, collision is impossible
         if (triangleVertices[2] != z) return false;
 
-        // Extract vertices of the triangle
-        float x1 = triangleVertices[0];
-        float y1 = triangleVertices[1];
-        float x2 = triangleVertices[3];
-        float y2 = triangleVertices[4];
-        float x3 = triangleVertices[6];
-        float y3 = triangleVertices[7];
+        return isPointInTriangle(triangleVertices[0], triangleVertices[1], triangleVertices[3],
+                triangleVertices[4], triangleVertices[6], triangleVertices[7], x, y);
+    }
 
+    /**
+     * Checks wether a two-dimensional point is within the boundaries of a triangle given by its corners,
+     * without reading any {@link Triangle} instance.
+     * @param x1 the x coordinate of the first corner
+     * @param y1 the y coordinate of the first corner
+     * @param x2 the x coordinate of the second corner
+     * @param y2 the y coordinate of the second corner
+     * @param x3 the x coordinate of the third corner
+     * @param y3 the y coordinate of the third corner
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return wether the point lies within the boundaries of the triangle
+     * @see MathUtil#isPointInTriangle(Triangle, float, float, float)
+     */
+    public static boolean isPointInTriangle (float x1, float y1, float x2, float y2, float x3, float y3,
+                                             float x, float y)
+    {
         // Calculate barycentric coordinates
         float detT = (y2 - y3) * (x1 - x3) + (x3 - x2) * (y1 - y3);
         float alpha = ((y2 - y3) * (x - x3) + (x3 - x2) * (y - y3)) / detT;
@@ -113,21 +232,59 @@ public class MathUtil
      * @param y the y-coordinate of the point
      * @param z the z-coordinate of the point
      * @return a new {@link Vector3f} containing the rotated coordinates
+     * @see MathUtil#rotatePointOnZAxis(float, float, float, float, Vector3f)
      */
     public static Vector3f rotatePointOnZAxis (float rotationDegrees, float x, float y, float z)
     {
-        // rotation matrix
-        final float angleRadians = (float) Math.toRadians(rotationDegrees);
-        final float cosTheta = (float) Math.sin(angleRadians);
-        final float sinTheta = (float) Math.cos(angleRadians);
+        return rotatePointOnZAxis(rotationDegrees, x, y, z, new Vector3f());
+    }
 
-        final Vector3f rotatedPoint = new Vector3f();
+    /**
+     * Rotates a three-dimensional point around the Z-Axis using a <b>rotation matrix</b> without allocating.
+     * @param rotationDegrees the angle of rotation in degrees
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param z the z-coordinate of the point
+     * @param dest the {@link Vector3f} the rotated coordinates are written to
+     * @return <b>dest</b>
+     */
+    public static Vector3f rotatePointOnZAxis (float rotationDegrees, float x, float y, float z, Vector3f dest)
+    {
+        // rotation matrix
+        final float cosTheta = cos(rotationDegrees);
+        final float sinTheta = sin(rotationDegrees);
 
         // Apply rotation matrix for rotation around the z-axis
-        rotatedPoint.x = x * cosTheta - y * sinTheta;
-        rotatedPoint.y = x * sinTheta + y * cosTheta;
-        rotatedPoint.z = z;
+        return dest.set(rotateX(sinTheta, cosTheta, x, y), rotateY(sinTheta, cosTheta, x, y), z);
+    }
+
+    /**
+     * Returns the x-coordinate of a two-dimensional point rotated around the origin, using the already computed
+     * sine and cosine of the angle, for example those cached by {@link engine.dengine.ecs.Transform#getSin()}
+     * and {@link engine.dengine.ecs.Transform#getCos()}.
+     * @param sin the sine of the angle
+     * @param cos the cosine of the angle
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the rotated x-coordinate
+     */
+    public static float rotateX (float sin, float cos, float x, float y)
+    {
+        return x * cos - y * sin;
+    }
 
-        return rotatedPoint;
+    /**
+     * Returns the y-coordinate of a two-dimensional point rotated around the origin, using the already computed
+     * sine and cosine of the angle.
+     * @param sin the sine of the angle
+     * @param cos the cosine of the angle
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @return the rotated y-coordinate
+     * @see MathUtil#rotateX(float, float, float, float)
+     */
+    public static float rotateY (float sin, float cos, float x, float y)
+    {
+        return x * sin + y * cos;
     }
 }
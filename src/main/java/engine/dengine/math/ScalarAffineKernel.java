@@ -0,0 +1,94 @@
+package engine.dengine.math;
+
+import org.joml.Matrix3x2fc;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ScalarAffineKernel}</h2>
+ * <br>
+ * The {@link ScalarAffineKernel} class is the {@link AffineKernel} which transforms one point at a time. It is
+ * used whenever the <b>Vector API</b> is not available and for the remaining points of the
+ * {@link VectorAffineKernel}.
+ */
+final class ScalarAffineKernel extends AffineKernel
+{
+    @Override
+    public boolean isVectorized ()
+    {
+        return false;
+    }
+
+    @Override
+    public void transform (Matrix3x2fc matrix, float[] x, float[] y, float[] outX, float[] outY,
+                           int offset, int count)
+    {
+        transformRange(matrix.m00(), matrix.m01(), matrix.m10(), matrix.m11(), matrix.m20(), matrix.m21(),
+                x, y, outX, outY, offset, offset + count);
+    }
+
+    /**
+     * Transforms the points in a range by a single <b>matrix</b>.
+     * @param from the first point (inclusive)
+     * @param to the last point (exclusive)
+     */
+    static void transformRange (float m00, float m01, float m10, float m11, float m20, float m21,
+                           float[] x, float[] y, float[] outX, float[] outY, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final float px = x[i];
+            final float py = y[i];
+            outX[i] = m00 * px + m10 * py + m20;
+            outY[i] = m01 * px + m11 * py + m21;
+        }
+    }
+
+    @Override
+    public void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float[] x, float[] y, float[] outX, float[] outY, int offset, int count)
+    {
+        transformRange(m00, m01, m10, m11, m20, m21, x, y, outX, outY, offset, offset + count);
+    }
+
+    /**
+     * Transforms the points in a range by their own <b>matrices</b>.
+     * @param from the first point (inclusive)
+     * @param to the last point (exclusive)
+     */
+    static void transformRange (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float[] x, float[] y, float[] outX, float[] outY, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final float px = x[i];
+            final float py = y[i];
+            outX[i] = m00[i] * px + m10[i] * py + m20[i];
+            outY[i] = m01[i] * px + m11[i] * py + m21[i];
+        }
+    }
+
+    @Override
+    public void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float x, float y, float[] outX, float[] outY, int offset, int count)
+    {
+        transformRange(m00, m01, m10, m11, m20, m21, x, y, outX, outY, offset, offset + count);
+    }
+
+    /**
+     * Transforms a single point by the <b>matrices</b> in a range.
+     * @param from the first <b>matrix</b> (inclusive)
+     * @param to the last <b>matrix</b> (exclusive)
+     */
+    static void transformRange (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float x, float y, float[] outX, float[] outY, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            outX[i] = m00[i] * x + m10[i] * y + m20[i];
+            outY[i] = m01[i] * x + m11[i] * y + m21[i];
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package engine.dengine.math;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.joml.Matrix3x2fc;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link VectorAffineKernel}</h2>
+ * <br>
+ * The {@link VectorAffineKernel} class is the {@link AffineKernel} which transforms as many points at once as
+ * fit into the preferred <b>SIMD</b> register width, using the <b>Vector API</b>. The remaining points are
+ * transformed by the {@link ScalarAffineKernel}. Multiplications and additions are not fused, so the results
+ * are identical to the ones of the {@link ScalarAffineKernel}.
+ * <br>
+ * This class must only be loaded if the <b>jdk.incubator.vector</b> module is enabled, which is checked by
+ * {@link AffineKernel#getInstance()}.
+ */
+final class VectorAffineKernel extends AffineKernel
+{
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isVectorized ()
+    {
+        return true;
+    }
+
+    @Override
+    public void transform (Matrix3x2fc matrix, float[] x, float[] y, float[] outX, float[] outY,
+                           int offset, int count)
+    {
+        final float m00 = matrix.m00(), m01 = matrix.m01();
+        final float m10 = matrix.m10(), m11 = matrix.m11();
+        final float m20 = matrix.m20(), m21 = matrix.m21();
+
+        final int end = offset + count;
+        final int bound = offset + SPECIES.loopBound(count);
+        int i = offset;
+        if (bound > offset)
+        {
+            final FloatVector a = FloatVector.broadcast(SPECIES, m00), b = FloatVector.broadcast(SPECIES, m01);
+            final FloatVector c = FloatVector.broadcast(SPECIES, m10), d = FloatVector.broadcast(SPECIES, m11);
+            final FloatVector e = FloatVector.broadcast(SPECIES, m20), f = FloatVector.broadcast(SPECIES, m21);
+
+            for (; i < bound; i += SPECIES.length())
+            {
+                final FloatVector px = FloatVector.fromArray(SPECIES, x, i);
+                final FloatVector py = FloatVector.fromArray(SPECIES, y, i);
+                px.mul(a).add(py.mul(c)).add(e).intoArray(outX, i);
+                px.mul(b).add(py.mul(d)).add(f).intoArray(outY, i);
+            }
+        }
+
+        ScalarAffineKernel.transformRange(m00, m01, m10, m11, m20, m21, x, y, outX, outY, i, end);
+    }
+
+    @Override
+    public void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float[] x, float[] y, float[] outX, float[] outY, int offset, int count)
+    {
+        final int end = offset + count;
+        final int bound = offset + SPECIES.loopBound(count);
+        int i = offset;
+        for (; i < bound; i += SPECIES.length())
+        {
+            final FloatVector px = FloatVector.fromArray(SPECIES, x, i);
+            final FloatVector py = FloatVector.fromArray(SPECIES, y, i);
+            px.mul(FloatVector.fromArray(SPECIES, m00, i))
+                    .add(py.mul(FloatVector.fromArray(SPECIES, m10, i)))
+                    .add(FloatVector.fromArray(SPECIES, m20, i))
+                    .intoArray(outX, i);
+            px.mul(FloatVector.fromArray(SPECIES, m01, i))
+                    .add(py.mul(FloatVector.fromArray(SPECIES, m11, i)))
+                    .add(FloatVector.fromArray(SPECIES, m21, i))
+                    .intoArray(outY, i);
+        }
+
+        ScalarAffineKernel.transformRange(m00, m01, m10, m11, m20, m21, x, y, outX, outY, i, end);
+    }
+
+    @Override
+    public void transform (float[] m00, float[] m01, float[] m10, float[] m11, float[] m20, float[] m21,
+                           float x, float y, float[] outX, float[] outY, int offset, int count)
+    {
+        final int end = offset + count;
+        final int bound = offset + SPECIES.loopBound(count);
+        int i = offset;
+        for (; i < bound; i += SPECIES.length())
+        {
+            FloatVector.fromArray(SPECIES, m00, i).mul(x)
+                    .add(FloatVector.fromArray(SPECIES, m10, i).mul(y))
+                    .add(FloatVector.fromArray(SPECIES, m20, i))
+                    .intoArray(outX, i);
+            FloatVector.fromArray(SPECIES, m01, i).mul(x)
+                    .add(FloatVector.fromArray(SPECIES, m11, i).mul(y))
+                    .add(FloatVector.fromArray(SPECIES, m21, i))
+                    .intoArray(outY, i);
+        }
+
+        ScalarAffineKernel.transformRange(m00, m01, m10, m11, m20, m21, x, y, outX, outY, i, end);
+    }
+}
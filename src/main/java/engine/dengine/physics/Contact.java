@@ -0,0 +1,144 @@
+package engine.dengine.physics;
+
+import engine.dengine.collision.Collider;
+import engine.dengine.collision.Manifold;
+import engine.dengine.collision.NarrowPhase;
+import org.joml.Matrix3x2fc;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Contact}</h2>
+ * <br>
+ * The {@link Contact} class stores a <b>candidate pair</b> of the {@link engine.dengine.collision.CollisionWorld}
+ * which involves at least one <b>dynamic</b> {@link RigidBody}, together with its {@link Manifold} and the
+ * accumulated impulses of every <b>contact point</b>. A {@link Contact} lives as long as the <b>pair</b>, so the
+ * impulses of the previous <b>tick</b> can be matched by <b>feature id</b> and applied up front, which is called
+ * <b>warm starting</b>. {@link Contact} instances are pooled by the {@link PhysicsWorld}.
+ */
+final class Contact
+{
+    /** The {@link Collider} with the smaller <b>proxy</b> id, which the {@link Manifold} normal points away from */
+    Collider colliderA;
+    Collider colliderB;
+    /** The {@link RigidBody} instances of both {@link Collider} instances, or null if a {@link Collider} has none */
+    RigidBody rigidBodyA, rigidBodyB;
+    /** The body indices of both {@link Collider} instances, or -1 if a {@link Collider} has no {@link RigidBody} */
+    int bodyA, bodyB;
+    /** The body version of the {@link PhysicsWorld} the {@link RigidBody} instances were looked up for */
+    int bodyVersion;
+    /** Wether at least one of the {@link Collider} instances belongs to a <b>dynamic</b> {@link RigidBody} */
+    boolean enabled;
+    /** The packed <b>pair</b> */
+    long key;
+    /** The last {@link PhysicsWorld#step(float)} which found the <b>pair</b> */
+    int stamp;
+    /** The versions of both sides the {@link Manifold} is for, which notice when a <b>static</b> side moves */
+    int worldVersionA, worldVersionB;
+    /** Wether the {@link Manifold} has at least one <b>contact point</b> */
+    boolean touching;
+    /** The island mark of the last {@link PhysicsWorld#step(float)} which added this {@link Contact} to an island */
+    int islandMark;
+    float friction;
+    float restitution;
+    final Manifold manifold;
+    final float[] normalImpulse;
+    final float[] tangentImpulse;
+    final float[] normalMass;
+    final float[] tangentMass;
+    final float[] bias;
+    final float[] anchorAX, anchorAY, anchorBX, anchorBY;
+    /** Wether both <b>contact points</b> are solved together, which stops the impulse moving back and forth */
+    boolean blockSolve;
+    /** The <b>effective mass matrix</b> of both normal constraints */
+    float k11, k12, k22;
+    /** The inverse of the <b>effective mass matrix</b> */
+    float inverseK11, inverseK12, inverseK22;
+
+    /**
+     * Creates a new, unused {@link Contact} instance.
+     */
+    Contact ()
+    {
+        this.manifold = new Manifold();
+        this.normalImpulse = new float[Manifold.MAX_POINTS];
+        this.tangentImpulse = new float[Manifold.MAX_POINTS];
+        this.normalMass = new float[Manifold.MAX_POINTS];
+        this.tangentMass = new float[Manifold.MAX_POINTS];
+        this.bias = new float[Manifold.MAX_POINTS];
+        this.anchorAX = new float[Manifold.MAX_POINTS];
+        this.anchorAY = new float[Manifold.MAX_POINTS];
+        this.anchorBX = new float[Manifold.MAX_POINTS];
+        this.anchorBY = new float[Manifold.MAX_POINTS];
+    }
+
+    /**
+     * Prepares this {@link Contact} for a new <b>pair</b>.
+     */
+    void reset (Collider colliderA, Collider colliderB, long key)
+    {
+        this.colliderA = colliderA;
+        this.colliderB = colliderB;
+        this.key = key;
+        this.bodyVersion = -1;
+        this.worldVersionA = -1;
+        this.worldVersionB = -1;
+        this.touching = false;
+        this.islandMark = 0;
+        manifold.clear();
+    }
+
+    /**
+     * Releases the references of this {@link Contact}, so pooled instances do not keep removed {@link Collider}
+     * instances alive.
+     */
+    void release ()
+    {
+        colliderA = null;
+        colliderB = null;
+        rigidBodyA = null;
+        rigidBodyB = null;
+    }
+
+    /**
+     * Runs the {@link NarrowPhase} again and carries the impulses of <b>contact points</b> whose <b>feature id</b>
+     * did not change over to the new {@link Manifold}, all other impulses start at 0.
+     * @param narrowPhase the {@link NarrowPhase} of the calling thread
+     * @param matrixA the <b>local-to-world matrix</b> of {@link Contact#colliderA}
+     * @param matrixB the <b>local-to-world matrix</b> of {@link Contact#colliderB}
+     */
+    void update (NarrowPhase narrowPhase, Matrix3x2fc matrixA, Matrix3x2fc matrixB)
+    {
+        final int oldCount = touching ? manifold.getPointCount() : 0;
+        final int oldId0 = manifold.getId(0), oldId1 = manifold.getId(1);
+        final float oldNormal0 = normalImpulse[0], oldNormal1 = normalImpulse[1];
+        final float oldTangent0 = tangentImpulse[0], oldTangent1 = tangentImpulse[1];
+
+        touching = narrowPhase.collide(colliderA.getShape(), matrixA, colliderB.getShape(), matrixB,
+                PhysicsWorld.CONTACT_MARGIN, manifold)
+                && manifold.getPointCount() > 0;
+        for (int i = 0; i < Manifold.MAX_POINTS; i++)
+        {
+            normalImpulse[i] = 0;
+            tangentImpulse[i] = 0;
+        }
+        if (!touching) return;
+
+        for (int i = 0; i < manifold.getPointCount(); i++)
+        {
+            final int id = manifold.getId(i);
+            if (oldCount > 0 && id == oldId0)
+            {
+                normalImpulse[i] = oldNormal0;
+                tangentImpulse[i] = oldTangent0;
+            }
+            else if (oldCount > 1 && id == oldId1)
+            {
+                normalImpulse[i] = oldNormal1;
+                tangentImpulse[i] = oldTangent1;
+            }
+        }
+    }
+}
@@ -0,0 +1,1259 @@
+package engine.dengine.physics;
+
+import engine.dengine.collision.BroadPhase;
+import engine.dengine.collision.Collider;
+import engine.dengine.collision.CollisionWorld;
+import engine.dengine.collision.Manifold;
+import engine.dengine.collision.NarrowPhase;
+import engine.dengine.collision.PairMap;
+import engine.dengine.ecs.Archetype;
+import engine.dengine.ecs.ArchetypeStore;
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.ComponentMask;
+import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.Query;
+import engine.dengine.shapes.ConvexHull;
+import org.joml.Matrix3x2f;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PhysicsWorld}</h2>
+ * <br>
+ * The {@link PhysicsWorld} class simulates the {@link RigidBody} instances of an {@link ArchetypeStore}. Every
+ * {@link RigidBody} needs a {@link Collider} on the same {@link engine.dengine.ecs.Entity}, whose
+ * {@link engine.dengine.shapes.Shape} gives it its <b>mass</b>, and {@link Collider} instances without a
+ * {@link RigidBody} act as <b>static</b> bodies. The <b>candidate pairs</b> come from the {@link CollisionWorld}.
+ * <br>
+ * The state of all bodies is stored in primitive arrays, one array per attribute, which are indexed by the body
+ * index. {@link PhysicsWorld#step(float)} is called once per <b>tick</b> with the fixed delta time, before the
+ * <b>world matrices</b> are updated, and does the following:
+ * <ol>
+ *     <li>It adds and removes bodies to match the store, and reads the {@link engine.dengine.ecs.Transform} of
+ *     bodies which were moved by other code, which wakes them.</li>
+ *     <li>It keeps a {@link Contact} per <b>candidate pair</b> in a {@link PairMap} and runs the
+ *     {@link NarrowPhase} on all {@link Contact} instances with an awake body, in parallel.</li>
+ *     <li>It splits the awake <b>dynamic</b> bodies into <b>islands</b>, which are the groups of bodies connected
+ *     by touching {@link Contact} instances. <b>Static</b> and <b>kinematic</b> bodies do not connect islands.</li>
+ *     <li>It solves the islands in parallel, as they share no <b>dynamic</b> bodies. Each island integrates its
+ *     velocities, solves its {@link Contact} instances with <b>sequential impulses</b>, starting from the impulses
+ *     of the previous <b>tick</b> (<b>warm starting</b>), and integrates its positions. Both normal constraints of
+ *     a {@link Contact} with two points are solved together, so a resting box does not rock between its corners. An island whose bodies all
+ *     rested for {@link PhysicsWorld#TIME_TO_SLEEP} seconds falls asleep as a whole.</li>
+ *     <li>It writes the <b>position</b> and <b>rotation</b> of every moved body into its {@link Chunk}.</li>
+ * </ol>
+ * Sleeping bodies are neither integrated nor tested for contacts, so resting stacks cost only the lookup of their
+ * <b>pairs</b>. They are woken by touching an awake body, by being moved and through their {@link RigidBody}.
+ */
+public class PhysicsWorld
+{
+    /** The default gravity along the y-axis in units per second squared */
+    public static final float DEFAULT_GRAVITY = -9.81f;
+    /** The default number of <b>velocity iterations</b> per <b>tick</b> */
+    public static final int DEFAULT_VELOCITY_ITERATIONS = 8;
+    /** The time in seconds all bodies of an island have to rest before it falls asleep */
+    public static final float TIME_TO_SLEEP = 0.5f;
+    /** The penetration which is allowed, so touching bodies keep their <b>contact points</b> */
+    private static final float LINEAR_SLOP = 0.005f;
+    /**
+     * The distance below which shapes get <b>contact points</b>, so a resting contact keeps its points while the
+     * bodies part by tiny distances
+     */
+    static final float CONTACT_MARGIN = 4 * LINEAR_SLOP;
+    /** The fraction of the penetration which is resolved per <b>tick</b> */
+    private static final float BAUMGARTE = 0.2f;
+    /** The largest condition number of the <b>effective mass matrix</b> both points are solved together for */
+    private static final float MAX_CONDITION_NUMBER = 1000f;
+    /** The relative normal velocity below which contacts do not bounce */
+    private static final float RESTITUTION_THRESHOLD = 1f;
+    private static final float LINEAR_SLEEP_TOLERANCE = 0.01f;
+    private static final float ANGULAR_SLEEP_TOLERANCE = (float) Math.toRadians(2);
+    /** The number of {@link Contact} instances below which the narrow phase is not split any further */
+    private static final int CONTACTS_PER_TASK = 64;
+    /** The number of bodies below which the islands are not split any further */
+    private static final int BODIES_PER_TASK = 256;
+
+    private final CollisionWorld collisionWorld;
+    private final ArchetypeStore store;
+    private final Query query;
+    private final ForkJoinPool pool;
+    private float gravityX, gravityY;
+    private int velocityIterations;
+    private int stamp;
+    /** Incremented every time a body is added or removed, so {@link Contact} instances look their bodies up again */
+    private int bodyVersion;
+
+    private int bodyCount;
+    private RigidBody[] bodies;
+    private Collider[] colliders;
+    private RigidBody.Type[] types;
+    /** The {@link Chunk} and <b>row</b> every body is stored in, refreshed by every {@link PhysicsWorld#step} */
+    private Chunk[] chunks;
+    private int[] rows;
+    /** The {@link engine.dengine.ecs.Transform} <b>version</b> this {@link PhysicsWorld} last read or wrote */
+    private int[] versions;
+    /** The position of the <b>center of mass</b> in world space */
+    private float[] positionX, positionY;
+    /** The <b>rotation</b> in radians, with its cached cosine and sine */
+    private float[] angle, cos, sin;
+    private float[] scaleX, scaleY;
+    /** The <b>center of mass</b> relative to the {@link engine.dengine.ecs.Transform} position, before rotating */
+    private float[] localCenterX, localCenterY;
+    float[] velocityX, velocityY;
+    /** The angular velocity in radians per second */
+    float[] angularVelocity;
+    float[] forceX, forceY, torque;
+    float[] inverseMass, inverseInertia;
+    private float[] sleepTime;
+    boolean[] awake;
+    private boolean[] massValid;
+    /** Wether the body was integrated by the current {@link PhysicsWorld#step} */
+    private boolean[] moved;
+
+    private final PairMap contactMap;
+    private Contact[] contacts;
+    private int contactCount;
+    private Contact[] contactPool;
+    private int contactPoolSize;
+    /** The {@link Contact} instances the narrow phase runs on */
+    private Contact[] updated;
+    private int updatedCount;
+
+    private int islandMark;
+    private int[] bodyMarks;
+    /** The touching {@link Contact} instances of every body, as ranges of {@link PhysicsWorld#adjacency} */
+    private int[] adjacencyStart;
+    private int[] adjacency;
+    private int[] stack;
+    private int islandCount;
+    /** The bodies and {@link Contact} instances of all islands, one island after another */
+    private int[] islandBodies, islandContacts;
+    private int[] islandBodyStart, islandContactStart;
+    private final Matrix3x2f matrixA;
+    private final Matrix3x2f matrixB;
+
+    /**
+     * Creates a new {@link PhysicsWorld} instance which uses the {@link ForkJoinPool#commonPool()}.
+     * @param collisionWorld the {@link CollisionWorld}, whose store holds the bodies
+     */
+    public PhysicsWorld (CollisionWorld collisionWorld)
+    {
+        this(collisionWorld, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new {@link PhysicsWorld} instance with a gravity of {@link PhysicsWorld#DEFAULT_GRAVITY} and
+     * {@link PhysicsWorld#DEFAULT_VELOCITY_ITERATIONS}.
+     * @param collisionWorld the {@link CollisionWorld}, whose store holds the bodies
+     * @param pool the {@link ForkJoinPool} the narrow phase and the islands are run on
+     */
+    public PhysicsWorld (CollisionWorld collisionWorld, ForkJoinPool pool)
+    {
+        this.collisionWorld = collisionWorld;
+        this.store = collisionWorld.getStore();
+        this.query = store.query(ComponentMask.of(RigidBody.class, Collider.class), ComponentMask.EMPTY);
+        this.pool = pool;
+        this.gravityX = 0;
+        this.gravityY = DEFAULT_GRAVITY;
+        this.velocityIterations = DEFAULT_VELOCITY_ITERATIONS;
+
+        this.bodyCount = 0;
+        this.bodies = new RigidBody[0];
+        this.colliders = new Collider[0];
+        this.types = new RigidBody.Type[0];
+        this.chunks = new Chunk[0];
+        this.rows = new int[0];
+        this.versions = new int[0];
+        this.positionX = new float[0];
+        this.positionY = new float[0];
+        this.angle = new float[0];
+        this.cos = new float[0];
+        this.sin = new float[0];
+        this.scaleX = new float[0];
+        this.scaleY = new float[0];
+        this.localCenterX = new float[0];
+        this.localCenterY = new float[0];
+        this.velocityX = new float[0];
+        this.velocityY = new float[0];
+        this.angularVelocity = new float[0];
+        this.forceX = new float[0];
+        this.forceY = new float[0];
+        this.torque = new float[0];
+        this.inverseMass = new float[0];
+        this.inverseInertia = new float[0];
+        this.sleepTime = new float[0];
+        this.awake = new boolean[0];
+        this.massValid = new boolean[0];
+        this.moved = new boolean[0];
+        this.bodyMarks = new int[0];
+        reserveBodies(64);
+
+        this.contactMap = new PairMap();
+        this.contacts = new Contact[64];
+        this.contactPool = new Contact[64];
+        this.updated = new Contact[64];
+        this.adjacencyStart = new int[65];
+        this.adjacency = new int[128];
+        this.stack = new int[64];
+        this.islandBodies = new int[64];
+        this.islandContacts = new int[64];
+        this.islandBodyStart = new int[65];
+        this.islandContactStart = new int[65];
+        this.matrixA = new Matrix3x2f();
+        this.matrixB = new Matrix3x2f();
+    }
+
+    /**
+     * Advances the simulation by one <b>tick</b>.
+     * @param deltaTime the duration of the <b>tick</b> in seconds, which should be the same every <b>tick</b>
+     */
+    public void step (float deltaTime)
+    {
+        if (!(deltaTime > 0)) return;
+        stamp++;
+        syncBodies();
+        updateContacts();
+        buildIslands();
+        solveIslands(deltaTime);
+        integrateKinematicBodies(deltaTime);
+        writeTransforms();
+    }
+
+    private void syncBodies ()
+    {
+        for (int i = 0; i < query.getArchetypeCount(); i++)
+        {
+            final Archetype archetype = query.getArchetype(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                final Component[] bodyColumn = chunk.getColumn(RigidBody.class);
+                final Component[] colliderColumn = chunk.getColumn(Collider.class);
+
+                for (int row = 0; row < chunk.size(); row++)
+                {
+                    // Only roots are simulated, as the position of a child is relative to its parent
+                    if (chunk.getEntity(row).getParent() != null) continue;
+                    final RigidBody body = (RigidBody) bodyColumn[row];
+                    body.stamp = stamp;
+
+                    if (body.world != this)
+                    {
+                        createBody(body, (Collider) colliderColumn[row], chunk, row);
+                        continue;
+                    }
+                    final int index = body.index;
+                    chunks[index] = chunk;
+                    rows[index] = row;
+                    if (chunk.getVersion(row) == versions[index] && massValid[index]) continue;
+
+                    // Moved by other code, or its density changed
+                    readTransform(index);
+                    wake(index);
+                }
+            }
+        }
+
+        for (int i = bodyCount - 1; i >= 0; i--)
+            if (bodies[i].stamp != stamp) removeBody(i);
+    }
+
+    private void createBody (RigidBody body, Collider collider, Chunk chunk, int row)
+    {
+        if (bodyCount == bodies.length) reserveBodies(bodyCount * 2);
+        final int index = bodyCount++;
+        bodyVersion++;
+
+        bodies[index] = body;
+        colliders[index] = collider;
+        types[index] = body.getType();
+        chunks[index] = chunk;
+        rows[index] = row;
+        massValid[index] = false;
+        readTransform(index);
+
+        final boolean isStatic = types[index] == RigidBody.Type.STATIC;
+        velocityX[index] = isStatic ? 0 : body.velocityX;
+        velocityY[index] = isStatic ? 0 : body.velocityY;
+        angularVelocity[index] = isStatic ? 0 : (float) Math.toRadians(body.angularVelocity);
+        forceX[index] = body.forceX;
+        forceY[index] = body.forceY;
+        torque[index] = body.torque;
+        sleepTime[index] = 0;
+        awake[index] = !isStatic;
+        moved[index] = false;
+        bodyMarks[index] = 0;
+
+        body.velocityX = body.velocityY = body.angularVelocity = 0;
+        body.forceX = body.forceY = body.torque = 0;
+        body.world = this;
+        body.index = index;
+    }
+
+    private void removeBody (int index)
+    {
+        bodyVersion++;
+        final RigidBody body = bodies[index];
+        body.velocityX = velocityX[index];
+        body.velocityY = velocityY[index];
+        body.angularVelocity = (float) Math.toDegrees(angularVelocity[index]);
+        body.forceX = forceX[index];
+        body.forceY = forceY[index];
+        body.torque = torque[index];
+        body.world = null;
+        body.index = -1;
+
+        final int last = --bodyCount;
+        if (index != last)
+        {
+            copyBody(last, index);
+            bodies[index].index = index;
+        }
+        bodies[last] = null;
+        colliders[last] = null;
+        chunks[last] = null;
+    }
+
+    private void copyBody (int from, int to)
+    {
+        bodies[to] = bodies[from];
+        colliders[to] = colliders[from];
+        types[to] = types[from];
+        chunks[to] = chunks[from];
+        rows[to] = rows[from];
+        versions[to] = versions[from];
+        positionX[to] = positionX[from];
+        positionY[to] = positionY[from];
+        angle[to] = angle[from];
+        cos[to] = cos[from];
+        sin[to] = sin[from];
+        scaleX[to] = scaleX[from];
+        scaleY[to] = scaleY[from];
+        localCenterX[to] = localCenterX[from];
+        localCenterY[to] = localCenterY[from];
+        velocityX[to] = velocityX[from];
+        velocityY[to] = velocityY[from];
+        angularVelocity[to] = angularVelocity[from];
+        forceX[to] = forceX[from];
+        forceY[to] = forceY[from];
+        torque[to] = torque[from];
+        inverseMass[to] = inverseMass[from];
+        inverseInertia[to] = inverseInertia[from];
+        sleepTime[to] = sleepTime[from];
+        awake[to] = awake[from];
+        massValid[to] = massValid[from];
+        moved[to] = moved[from];
+        bodyMarks[to] = bodyMarks[from];
+    }
+
+    private void reserveBodies (int capacity)
+    {
+        bodies = Arrays.copyOf(bodies, capacity);
+        colliders = Arrays.copyOf(colliders, capacity);
+        types = Arrays.copyOf(types, capacity);
+        chunks = Arrays.copyOf(chunks, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        angle = Arrays.copyOf(angle, capacity);
+        cos = Arrays.copyOf(cos, capacity);
+        sin = Arrays.copyOf(sin, capacity);
+        scaleX = Arrays.copyOf(scaleX, capacity);
+        scaleY = Arrays.copyOf(scaleY, capacity);
+        localCenterX = Arrays.copyOf(localCenterX, capacity);
+        localCenterY = Arrays.copyOf(localCenterY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        angularVelocity = Arrays.copyOf(angularVelocity, capacity);
+        forceX = Arrays.copyOf(forceX, capacity);
+        forceY = Arrays.copyOf(forceY, capacity);
+        torque = Arrays.copyOf(torque, capacity);
+        inverseMass = Arrays.copyOf(inverseMass, capacity);
+        inverseInertia = Arrays.copyOf(inverseInertia, capacity);
+        sleepTime = Arrays.copyOf(sleepTime, capacity);
+        awake = Arrays.copyOf(awake, capacity);
+        massValid = Arrays.copyOf(massValid, capacity);
+        moved = Arrays.copyOf(moved, capacity);
+        bodyMarks = Arrays.copyOf(bodyMarks, capacity);
+    }
+
+    /**
+     * Reads the <b>position</b>, <b>rotation</b> and <b>scale</b> of a body from its {@link Chunk}, and recomputes
+     * its <b>mass</b> if the <b>scale</b> changed or the <b>mass</b> was invalidated.
+     */
+    private void readTransform (int index)
+    {
+        final Chunk chunk = chunks[index];
+        final int row = rows[index];
+        final float newScaleX = chunk.getScaleX()[row], newScaleY = chunk.getScaleY()[row];
+        if (!massValid[index] || newScaleX != scaleX[index] || newScaleY != scaleY[index])
+        {
+            scaleX[index] = newScaleX;
+            scaleY[index] = newScaleY;
+            computeMass(index);
+        }
+
+        final float radians = (float) Math.toRadians(chunk.getRotation()[row]);
+        angle[index] = radians;
+        cos[index] = (float) Math.cos(radians);
+        sin[index] = (float) Math.sin(radians);
+        positionX[index] = chunk.getPositionX()[row] + cos[index] * localCenterX[index] -
+                sin[index] * localCenterY[index];
+        positionY[index] = chunk.getPositionY()[row] + sin[index] * localCenterX[index] +
+                cos[index] * localCenterY[index];
+        versions[index] = chunk.getVersion(row);
+    }
+
+    /**
+     * Computes the <b>mass</b>, <b>center of mass</b> and <b>rotational inertia</b> of a body from the scaled
+     * <b>convex parts</b> of its {@link engine.dengine.shapes.Shape}. Every part is split into triangles with the
+     * origin, whose signed areas make the parts of the origin outside the part cancel out.
+     */
+    private void computeMass (int index)
+    {
+        final ConvexHull[] parts = colliders[index].getShape().getConvexParts();
+        final float sx = scaleX[index], sy = scaleY[index];
+
+        float area = 0, momentX = 0, momentY = 0, inertia = 0;
+        for (ConvexHull part : parts)
+        {
+            final int count = part.getCount();
+            for (int i = 0; i < count; i++)
+            {
+                final int next = i + 1 == count ? 0 : i + 1;
+                final float x1 = part.getX(i) * sx, y1 = part.getY(i) * sy;
+                final float x2 = part.getX(next) * sx, y2 = part.getY(next) * sy;
+                final float cross = x1 * y2 - y1 * x2;
+                area += cross * 0.5f;
+                momentX += cross * (x1 + x2) / 6f;
+                momentY += cross * (y1 + y2) / 6f;
+                inertia += cross * (x1 * x1 + x1 * x2 + x2 * x2 + y1 * y1 + y1 * y2 + y2 * y2) / 12f;
+            }
+        }
+        // Mirroring turns the counter-clockwise parts clockwise, which flips all signs
+        if (area < 0)
+        {
+            area = -area;
+            momentX = -momentX;
+            momentY = -momentY;
+            inertia = -inertia;
+        }
+
+        final float density = bodies[index].getDensity();
+        if (area > 0)
+        {
+            localCenterX[index] = momentX / area;
+            localCenterY[index] = momentY / area;
+        }
+        else
+        {
+            localCenterX[index] = 0;
+            localCenterY[index] = 0;
+        }
+        massValid[index] = true;
+
+        if (types[index] != RigidBody.Type.DYNAMIC)
+        {
+            inverseMass[index] = 0;
+            inverseInertia[index] = 0;
+            return;
+        }
+        // Shapes without an area get a mass of the density and can not rotate
+        final float mass = area > 0 ? density * area : density;
+        final float centerInertia = density * inertia - mass *
+                (localCenterX[index] * localCenterX[index] + localCenterY[index] * localCenterY[index]);
+        inverseMass[index] = 1 / mass;
+        inverseInertia[index] = centerInertia > 0 ? 1 / centerInertia : 0;
+    }
+
+    private void updateContacts ()
+    {
+        updatedCount = 0;
+        for (int i = 0; i < collisionWorld.getPairCount(); i++)
+        {
+            final long pair = collisionWorld.getPair(i);
+            final Collider a = collisionWorld.getCollider(BroadPhase.unpackA(pair));
+            final Collider b = collisionWorld.getCollider(BroadPhase.unpackB(pair));
+
+            int slot = contactMap.get(pair);
+            final Contact contact;
+            if (slot == PairMap.MISSING)
+            {
+                contact = obtainContact();
+                contact.reset(a, b, pair);
+                if (contactCount == contacts.length) contacts = Arrays.copyOf(contacts, contactCount * 2);
+                slot = contactCount++;
+                contacts[slot] = contact;
+                contactMap.put(pair, slot);
+            }
+            else
+            {
+                contact = contacts[slot];
+                // The proxy ids were reused by other colliders
+                if (contact.colliderA != a || contact.colliderB != b) contact.reset(a, b, pair);
+            }
+            contact.stamp = stamp;
+
+            if (!isStored(a) || !isStored(b))
+            {
+                contact.touching = false;
+                continue;
+            }
+            if (contact.bodyVersion != bodyVersion) resolveBodies(contact);
+            if (!contact.enabled) continue;
+
+            final int bodyA = contact.bodyA, bodyB = contact.bodyB;
+            if ((bodyA < 0 || !awake[bodyA]) && (bodyB < 0 || !awake[bodyB]))
+            {
+                // Both sides sleep or are static, so the manifold is still valid unless a static side was moved
+                if (contact.worldVersionA == getVersion(a, bodyA) && contact.worldVersionB == getVersion(b, bodyB))
+                    continue;
+                if (bodyA >= 0) wake(bodyA);
+                if (bodyB >= 0) wake(bodyB);
+            }
+
+            if (updatedCount == updated.length) updated = Arrays.copyOf(updated, updatedCount * 2);
+            updated[updatedCount++] = contact;
+        }
+
+        // Remove the contacts whose pair is gone
+        for (int i = contactCount - 1; i >= 0; i--)
+        {
+            final Contact contact = contacts[i];
+            if (contact.stamp == stamp) continue;
+
+            contactMap.remove(contact.key);
+            contact.release();
+            final int last = --contactCount;
+            if (i != last)
+            {
+                contacts[i] = contacts[last];
+                contactMap.put(contacts[i].key, i);
+            }
+            contacts[last] = null;
+            if (contactPoolSize == contactPool.length) contactPool = Arrays.copyOf(contactPool, contactPoolSize * 2);
+            contactPool[contactPoolSize++] = contact;
+        }
+
+        if (updatedCount <= CONTACTS_PER_TASK) updateContacts(0, updatedCount, NarrowPhase.local(), matrixA, matrixB);
+        else pool.invoke(new ContactTask(0, updatedCount));
+    }
+
+    private Contact obtainContact ()
+    {
+        if (contactPoolSize == 0) return new Contact();
+        final Contact contact = contactPool[--contactPoolSize];
+        contactPool[contactPoolSize] = null;
+        return contact;
+    }
+
+    private boolean isStored (Collider collider)
+    {
+        final Entity entity = collider.getEntity();
+        return entity != null && entity.getStore() == store;
+    }
+
+    /**
+     * Looks up the {@link RigidBody} instances of the {@link Collider} instances of a {@link Contact}. This is only
+     * done once per {@link Contact} and change of the bodies.
+     */
+    private void resolveBodies (Contact contact)
+    {
+        contact.rigidBodyA = contact.colliderA.getEntity().getComponent(RigidBody.class);
+        contact.rigidBodyB = contact.colliderB.getEntity().getComponent(RigidBody.class);
+        contact.bodyA = contact.rigidBodyA != null && contact.rigidBodyA.world == this ? contact.rigidBodyA.index : -1;
+        contact.bodyB = contact.rigidBodyB != null && contact.rigidBodyB.world == this ? contact.rigidBodyB.index : -1;
+        contact.enabled = (contact.bodyA >= 0 && types[contact.bodyA] == RigidBody.Type.DYNAMIC) ||
+                (contact.bodyB >= 0 && types[contact.bodyB] == RigidBody.Type.DYNAMIC);
+        contact.bodyVersion = bodyVersion;
+        if (!contact.enabled) contact.touching = false;
+
+        // Create the convex parts up front, so the parallel narrow phase does not race to create them
+        contact.colliderA.getShape().getConvexParts();
+        contact.colliderB.getShape().getConvexParts();
+    }
+
+    /**
+     * Runs the narrow phase on a range of the {@link Contact} instances of {@link PhysicsWorld#updated}.
+     */
+    private void updateContacts (int from, int to, NarrowPhase narrowPhase, Matrix3x2f matrixA, Matrix3x2f matrixB)
+    {
+        for (int i = from; i < to; i++)
+        {
+            final Contact contact = updated[i];
+            if (contact.bodyA >= 0) getBodyMatrix(contact.bodyA, matrixA);
+            else contact.colliderA.getEntity().getTransform().getWorldMatrix(matrixA);
+            if (contact.bodyB >= 0) getBodyMatrix(contact.bodyB, matrixB);
+            else contact.colliderB.getEntity().getTransform().getWorldMatrix(matrixB);
+            contact.worldVersionA = getVersion(contact.colliderA, contact.bodyA);
+            contact.worldVersionB = getVersion(contact.colliderB, contact.bodyB);
+            contact.update(narrowPhase, matrixA, matrixB);
+        }
+    }
+
+    /**
+     * Returns the version a {@link Contact} compares to notice that a <b>static</b> side was moved, which is the
+     * {@link engine.dengine.ecs.Transform} <b>version</b> of a <b>static</b> body and the <b>world version</b> of a
+     * {@link Collider} without a body. Moving any other body wakes it, so its version is always 0.
+     */
+    private int getVersion (Collider collider, int body)
+    {
+        if (body < 0) return collider.getEntity().getTransform().getWorldVersion();
+        return types[body] == RigidBody.Type.STATIC ? versions[body] : 0;
+    }
+
+    /**
+     * Computes the <b>local-to-world matrix</b> of a body from its simulated state, which translates, rotates and
+     * scales in this order like the <b>local matrix</b> of a {@link engine.dengine.ecs.Transform}.
+     */
+    private Matrix3x2f getBodyMatrix (int index, Matrix3x2f dest)
+    {
+        final float c = cos[index], s = sin[index];
+        final float originX = positionX[index] - (c * localCenterX[index] - s * localCenterY[index]);
+        final float originY = positionY[index] - (s * localCenterX[index] + c * localCenterY[index]);
+        return dest.set(c * scaleX[index], s * scaleX[index], -s * scaleY[index], c * scaleY[index],
+                originX, originY);
+    }
+
+    private void buildIslands ()
+    {
+        islandMark++;
+        islandCount = 0;
+        if (bodyCount + 1 > adjacencyStart.length)
+            adjacencyStart = new int[Math.max(bodyCount + 1, adjacencyStart.length * 2)];
+        Arrays.fill(adjacencyStart, 0, bodyCount + 1, 0);
+
+        // Count the touching contacts of every body, waking sleeping bodies touched by awake ones
+        int edgeCount = 0;
+        for (int i = 0; i < contactCount; i++)
+        {
+            final Contact contact = contacts[i];
+            if (!contact.enabled || !contact.touching) continue;
+            final int a = contact.bodyA, b = contact.bodyB;
+            if (a >= 0 && b >= 0 && (awake[a] || awake[b]))
+            {
+                if (!awake[a] && types[a] == RigidBody.Type.DYNAMIC) wake(a);
+                if (!awake[b] && types[b] == RigidBody.Type.DYNAMIC) wake(b);
+            }
+            if (a >= 0) adjacencyStart[a]++;
+            if (b >= 0) adjacencyStart[b]++;
+            edgeCount += (a >= 0 ? 1 : 0) + (b >= 0 ? 1 : 0);
+        }
+        // Turn the counts into the ends of the ranges, then fill every range from its end down to its start
+        for (int i = 1; i < bodyCount; i++)
+            adjacencyStart[i] += adjacencyStart[i - 1];
+        adjacencyStart[bodyCount] = edgeCount;
+        if (edgeCount > adjacency.length) adjacency = new int[Math.max(edgeCount, adjacency.length * 2)];
+        for (int i = 0; i < contactCount; i++)
+        {
+            final Contact contact = contacts[i];
+            if (!contact.enabled || !contact.touching) continue;
+            if (contact.bodyA >= 0) adjacency[--adjacencyStart[contact.bodyA]] = i;
+            if (contact.bodyB >= 0) adjacency[--adjacencyStart[contact.bodyB]] = i;
+        }
+
+        if (bodyCount > stack.length) stack = new int[Math.max(bodyCount, stack.length * 2)];
+        if (bodyCount > islandBodies.length) islandBodies = new int[Math.max(bodyCount, islandBodies.length * 2)];
+        if (contactCount > islandContacts.length)
+            islandContacts = new int[Math.max(contactCount, islandContacts.length * 2)];
+        if (bodyCount + 1 > islandBodyStart.length)
+        {
+            islandBodyStart = new int[Math.max(bodyCount + 1, islandBodyStart.length * 2)];
+            islandContactStart = new int[islandBodyStart.length];
+        }
+
+        int bodyTotal = 0, contactTotal = 0;
+        for (int seed = 0; seed < bodyCount; seed++)
+        {
+            if (bodyMarks[seed] == islandMark || !awake[seed] || types[seed] != RigidBody.Type.DYNAMIC) continue;
+
+            islandBodyStart[islandCount] = bodyTotal;
+            islandContactStart[islandCount] = contactTotal;
+            int size = 0;
+            stack[size++] = seed;
+            bodyMarks[seed] = islandMark;
+            while (size > 0)
+            {
+                final int body = stack[--size];
+                islandBodies[bodyTotal++] = body;
+                if (!awake[body]) wake(body);
+
+                for (int i = adjacencyStart[body]; i < adjacencyStart[body + 1]; i++)
+                {
+                    final Contact contact = contacts[adjacency[i]];
+                    if (contact.islandMark == islandMark) continue;
+                    contact.islandMark = islandMark;
+                    islandContacts[contactTotal++] = adjacency[i];
+
+                    // Static and kinematic bodies are solved like walls and do not connect islands
+                    final int other = contact.bodyA == body ? contact.bodyB : contact.bodyA;
+                    if (other < 0 || bodyMarks[other] == islandMark || types[other] != RigidBody.Type.DYNAMIC)
+                        continue;
+                    bodyMarks[other] = islandMark;
+                    stack[size++] = other;
+                }
+            }
+            islandCount++;
+        }
+        islandBodyStart[islandCount] = bodyTotal;
+        islandContactStart[islandCount] = contactTotal;
+    }
+
+    private void solveIslands (float deltaTime)
+    {
+        if (islandCount == 0) return;
+        if (islandCount == 1 || islandBodyStart[islandCount] <= BODIES_PER_TASK)
+        {
+            for (int i = 0; i < islandCount; i++)
+                solveIsland(i, deltaTime);
+            return;
+        }
+        pool.invoke(new IslandTask(0, islandCount, deltaTime));
+    }
+
+    /**
+     * Solves an island, which only writes the state of its own <b>dynamic</b> bodies and {@link Contact}
+     * instances, so different islands can be solved at the same time.
+     */
+    private void solveIsland (int island, float deltaTime)
+    {
+        final int bodyFrom = islandBodyStart[island], bodyTo = islandBodyStart[island + 1];
+        final int contactFrom = islandContactStart[island], contactTo = islandContactStart[island + 1];
+
+        for (int i = bodyFrom; i < bodyTo; i++)
+        {
+            final int body = islandBodies[i];
+            final RigidBody rigidBody = bodies[body];
+            final float gravityScale = rigidBody.getGravityScale();
+            float vx = velocityX[body] + deltaTime * (gravityScale * gravityX + inverseMass[body] * forceX[body]);
+            float vy = velocityY[body] + deltaTime * (gravityScale * gravityY + inverseMass[body] * forceY[body]);
+            float w = angularVelocity[body] + deltaTime * inverseInertia[body] * torque[body];
+
+            // Pade approximation of the exponential decay, which stays stable for large damping
+            final float linear = 1 / (1 + deltaTime * rigidBody.getLinearDamping());
+            final float angular = 1 / (1 + deltaTime * rigidBody.getAngularDamping());
+            velocityX[body] = vx * linear;
+            velocityY[body] = vy * linear;
+            angularVelocity[body] = w * angular;
+            forceX[body] = 0;
+            forceY[body] = 0;
+            torque[body] = 0;
+        }
+
+        for (int i = contactFrom; i < contactTo; i++)
+            prepareContact(contacts[islandContacts[i]], deltaTime);
+        for (int i = contactFrom; i < contactTo; i++)
+            warmStart(contacts[islandContacts[i]]);
+        for (int iteration = 0; iteration < velocityIterations; iteration++)
+            for (int i = contactFrom; i < contactTo; i++)
+                solveContact(contacts[islandContacts[i]]);
+
+        float minSleepTime = Float.POSITIVE_INFINITY;
+        for (int i = bodyFrom; i < bodyTo; i++)
+        {
+            final int body = islandBodies[i];
+            integratePosition(body, deltaTime);
+            minSleepTime = Math.min(minSleepTime, updateSleepTime(body, deltaTime));
+        }
+
+        if (minSleepTime < TIME_TO_SLEEP) return;
+        for (int i = bodyFrom; i < bodyTo; i++)
+            sleep(islandBodies[i]);
+    }
+
+    /**
+     * Computes the anchors, <b>effective masses</b> and <b>velocity bias</b> of every <b>contact point</b>.
+     */
+    private void prepareContact (Contact contact, float deltaTime)
+    {
+        final int a = contact.bodyA, b = contact.bodyB;
+        final Manifold manifold = contact.manifold;
+        final float normalX = manifold.getNormalX(), normalY = manifold.getNormalY();
+        final float tangentX = normalY, tangentY = -normalX;
+        final float massA = inverseMass(a), inertiaA = inverseInertia(a);
+        final float massB = inverseMass(b), inertiaB = inverseInertia(b);
+
+        final float frictionA = contact.rigidBodyA != null ? contact.rigidBodyA.getFriction() :
+                RigidBody.DEFAULT_FRICTION;
+        final float frictionB = contact.rigidBodyB != null ? contact.rigidBodyB.getFriction() :
+                RigidBody.DEFAULT_FRICTION;
+        contact.friction = (float) Math.sqrt(frictionA * frictionB);
+        contact.restitution = Math.max(contact.rigidBodyA != null ? contact.rigidBodyA.getRestitution() : 0,
+                contact.rigidBodyB != null ? contact.rigidBodyB.getRestitution() : 0);
+
+        for (int i = 0; i < manifold.getPointCount(); i++)
+        {
+            final float pointX = manifold.getPointX(i), pointY = manifold.getPointY(i);
+            // Bodies without a center of mass only need anchors for the relative velocity, which is 0 for them
+            final float rax = a >= 0 ? pointX - positionX[a] : 0, ray = a >= 0 ? pointY - positionY[a] : 0;
+            final float rbx = b >= 0 ? pointX - positionX[b] : 0, rby = b >= 0 ? pointY - positionY[b] : 0;
+            contact.anchorAX[i] = rax;
+            contact.anchorAY[i] = ray;
+            contact.anchorBX[i] = rbx;
+            contact.anchorBY[i] = rby;
+
+            final float rnA = rax * normalY - ray * normalX, rnB = rbx * normalY - rby * normalX;
+            final float normalK = massA + massB + inertiaA * rnA * rnA + inertiaB * rnB * rnB;
+            contact.normalMass[i] = normalK > 0 ? 1 / normalK : 0;
+            final float rtA = rax * tangentY - ray * tangentX, rtB = rbx * tangentY - rby * tangentX;
+            final float tangentK = massA + massB + inertiaA * rtA * rtA + inertiaB * rtB * rtB;
+            contact.tangentMass[i] = tangentK > 0 ? 1 / tangentK : 0;
+
+            // Let separated bodies approach until they touch, push penetrating bodies apart, and let fast bodies
+            // bounce off by their restitution
+            final float separation = manifold.getSeparation(i);
+            float bias = separation > 0 ? -separation / deltaTime :
+                    -BAUMGARTE / deltaTime * Math.min(0, separation + LINEAR_SLOP);
+            final float normalVelocity = relativeVelocityX(contact, i) * normalX +
+                    relativeVelocityY(contact, i) * normalY;
+            if (normalVelocity < -RESTITUTION_THRESHOLD)
+                bias = Math.max(bias, -contact.restitution * normalVelocity);
+            contact.bias[i] = bias;
+        }
+
+        contact.blockSolve = false;
+        if (manifold.getPointCount() < 2) return;
+        final float rn1A = contact.anchorAX[0] * normalY - contact.anchorAY[0] * normalX;
+        final float rn1B = contact.anchorBX[0] * normalY - contact.anchorBY[0] * normalX;
+        final float rn2A = contact.anchorAX[1] * normalY - contact.anchorAY[1] * normalX;
+        final float rn2B = contact.anchorBX[1] * normalY - contact.anchorBY[1] * normalX;
+        final float k11 = massA + massB + inertiaA * rn1A * rn1A + inertiaB * rn1B * rn1B;
+        final float k22 = massA + massB + inertiaA * rn2A * rn2A + inertiaB * rn2B * rn2B;
+        final float k12 = massA + massB + inertiaA * rn1A * rn2A + inertiaB * rn1B * rn2B;
+        final float determinant = k11 * k22 - k12 * k12;
+        // Points close to each other make the matrix almost singular, they are solved one after another then
+        if (k11 * k11 >= MAX_CONDITION_NUMBER * determinant) return;
+        final float inverseDeterminant = 1 / determinant;
+        contact.k11 = k11;
+        contact.k12 = k12;
+        contact.k22 = k22;
+        contact.inverseK11 = k22 * inverseDeterminant;
+        contact.inverseK12 = -k12 * inverseDeterminant;
+        contact.inverseK22 = k11 * inverseDeterminant;
+        contact.blockSolve = true;
+    }
+
+    private void warmStart (Contact contact)
+    {
+        final Manifold manifold = contact.manifold;
+        final float normalX = manifold.getNormalX(), normalY = manifold.getNormalY();
+        for (int i = 0; i < manifold.getPointCount(); i++)
+        {
+            final float impulseX = contact.normalImpulse[i] * normalX + contact.tangentImpulse[i] * normalY;
+            final float impulseY = contact.normalImpulse[i] * normalY - contact.tangentImpulse[i] * normalX;
+            applyImpulse(contact, i, impulseX, impulseY);
+        }
+    }
+
+    /**
+     * Runs one <b>velocity iteration</b> on a {@link Contact}. Friction is solved first, as the normal
+     * constraint is more important and the last one solved is met the best.
+     */
+    private void solveContact (Contact contact)
+    {
+        final Manifold manifold = contact.manifold;
+        final float normalX = manifold.getNormalX(), normalY = manifold.getNormalY();
+        final float tangentX = normalY, tangentY = -normalX;
+
+        for (int i = 0; i < manifold.getPointCount(); i++)
+        {
+            final float tangentVelocity = relativeVelocityX(contact, i) * tangentX +
+                    relativeVelocityY(contact, i) * tangentY;
+            final float maxFriction = contact.friction * contact.normalImpulse[i];
+            final float oldImpulse = contact.tangentImpulse[i];
+            final float newImpulse = Math.max(-maxFriction, Math.min(maxFriction,
+                    oldImpulse - contact.tangentMass[i] * tangentVelocity));
+            contact.tangentImpulse[i] = newImpulse;
+            final float lambda = newImpulse - oldImpulse;
+            applyImpulse(contact, i, lambda * tangentX, lambda * tangentY);
+        }
+
+        if (contact.blockSolve)
+        {
+            solveBlock(contact, normalX, normalY);
+            return;
+        }
+        for (int i = 0; i < manifold.getPointCount(); i++)
+        {
+            final float normalVelocity = relativeVelocityX(contact, i) * normalX +
+                    relativeVelocityY(contact, i) * normalY;
+            final float oldImpulse = contact.normalImpulse[i];
+            // The accumulated impulse may only push, but single iterations may take back what earlier ones pushed
+            final float newImpulse = Math.max(0, oldImpulse - contact.normalMass[i] *
+                    (normalVelocity - contact.bias[i]));
+            contact.normalImpulse[i] = newImpulse;
+            final float lambda = newImpulse - oldImpulse;
+            applyImpulse(contact, i, lambda * normalX, lambda * normalY);
+        }
+    }
+
+    /**
+     * Solves both normal constraints of a {@link Contact} together as a <b>linear complementarity problem</b>: the
+     * accumulated impulses must not be negative, and a point may only separate if its impulse is 0. The four
+     * cases of which points push are tried one after another, and the first one which meets the conditions is
+     * applied.
+     */
+    private void solveBlock (Contact contact, float normalX, float normalY)
+    {
+        final float oldImpulse1 = contact.normalImpulse[0], oldImpulse2 = contact.normalImpulse[1];
+        final float velocity1 = relativeVelocityX(contact, 0) * normalX + relativeVelocityY(contact, 0) * normalY;
+        final float velocity2 = relativeVelocityX(contact, 1) * normalX + relativeVelocityY(contact, 1) * normalY;
+        // The velocities the constraints would have without the accumulated impulses
+        final float b1 = velocity1 - contact.bias[0] - (contact.k11 * oldImpulse1 + contact.k12 * oldImpulse2);
+        final float b2 = velocity2 - contact.bias[1] - (contact.k12 * oldImpulse1 + contact.k22 * oldImpulse2);
+
+        float impulse1, impulse2;
+        // Both points push
+        impulse1 = -(contact.inverseK11 * b1 + contact.inverseK12 * b2);
+        impulse2 = -(contact.inverseK12 * b1 + contact.inverseK22 * b2);
+        if (impulse1 < 0 || impulse2 < 0)
+        {
+            // Only the first point pushes
+            impulse1 = -b1 / contact.k11;
+            impulse2 = 0;
+            if (impulse1 < 0 || contact.k12 * impulse1 + b2 < 0)
+            {
+                // Only the second point pushes
+                impulse1 = 0;
+                impulse2 = -b2 / contact.k22;
+                if (impulse2 < 0 || contact.k12 * impulse2 + b1 < 0)
+                {
+                    // Both points separate
+                    impulse1 = 0;
+                    impulse2 = 0;
+                    if (b1 < 0 || b2 < 0) return;
+                }
+            }
+        }
+
+        contact.normalImpulse[0] = impulse1;
+        contact.normalImpulse[1] = impulse2;
+        final float lambda1 = impulse1 - oldImpulse1, lambda2 = impulse2 - oldImpulse2;
+        applyImpulse(contact, 0, lambda1 * normalX, lambda1 * normalY);
+        applyImpulse(contact, 1, lambda2 * normalX, lambda2 * normalY);
+    }
+
+    /**
+     * Applies an impulse at a <b>contact point</b>, which pushes the second body along it and the first body
+     * against it. Only <b>dynamic</b> bodies are changed, so islands never write the state of shared bodies.
+     */
+    private void applyImpulse (Contact contact, int point, float impulseX, float impulseY)
+    {
+        final int a = contact.bodyA, b = contact.bodyB;
+        if (a >= 0 && types[a] == RigidBody.Type.DYNAMIC)
+        {
+            velocityX[a] -= inverseMass[a] * impulseX;
+            velocityY[a] -= inverseMass[a] * impulseY;
+            angularVelocity[a] -= inverseInertia[a] *
+                    (contact.anchorAX[point] * impulseY - contact.anchorAY[point] * impulseX);
+        }
+        if (b >= 0 && types[b] == RigidBody.Type.DYNAMIC)
+        {
+            velocityX[b] += inverseMass[b] * impulseX;
+            velocityY[b] += inverseMass[b] * impulseY;
+            angularVelocity[b] += inverseInertia[b] *
+                    (contact.anchorBX[point] * impulseY - contact.anchorBY[point] * impulseX);
+        }
+    }
+
+    /**
+     * Returns the x-coordinate of the velocity of the second body relative to the first one at a
+     * <b>contact point</b>.
+     */
+    private float relativeVelocityX (Contact contact, int point)
+    {
+        final int a = contact.bodyA, b = contact.bodyB;
+        final float velocityA = a >= 0 ? velocityX[a] - angularVelocity[a] * contact.anchorAY[point] : 0;
+        final float velocityB = b >= 0 ? velocityX[b] - angularVelocity[b] * contact.anchorBY[point] : 0;
+        return velocityB - velocityA;
+    }
+
+    /**
+     * Returns the y-coordinate of the velocity of the second body relative to the first one at a
+     * <b>contact point</b>.
+     */
+    private float relativeVelocityY (Contact contact, int point)
+    {
+        final int a = contact.bodyA, b = contact.bodyB;
+        final float velocityA = a >= 0 ? velocityY[a] + angularVelocity[a] * contact.anchorAX[point] : 0;
+        final float velocityB = b >= 0 ? velocityY[b] + angularVelocity[b] * contact.anchorBX[point] : 0;
+        return velocityB - velocityA;
+    }
+
+    private float inverseMass (int body)
+    {
+        return body >= 0 ? inverseMass[body] : 0;
+    }
+
+    private float inverseInertia (int body)
+    {
+        return body >= 0 ? inverseInertia[body] : 0;
+    }
+
+    private void integratePosition (int body, float deltaTime)
+    {
+        positionX[body] += deltaTime * velocityX[body];
+        positionY[body] += deltaTime * velocityY[body];
+
+        float radians = angle[body] + deltaTime * angularVelocity[body];
+        // Keep the angle small, so it does not lose precision after many turns
+        if (radians > Math.PI) radians -= (float) (2 * Math.PI);
+        else if (radians < -Math.PI) radians += (float) (2 * Math.PI);
+        angle[body] = radians;
+        cos[body] = (float) Math.cos(radians);
+        sin[body] = (float) Math.sin(radians);
+        moved[body] = true;
+    }
+
+    /**
+     * Adds the delta time to the time a body rested, or resets it if the body moves or may not sleep.
+     * @return the time the body rested
+     */
+    private float updateSleepTime (int body, float deltaTime)
+    {
+        final float vx = velocityX[body], vy = velocityY[body], w = angularVelocity[body];
+        if (!bodies[body].isSleepingAllowed() || vx * vx + vy * vy > LINEAR_SLEEP_TOLERANCE * LINEAR_SLEEP_TOLERANCE
+                || w * w > ANGULAR_SLEEP_TOLERANCE * ANGULAR_SLEEP_TOLERANCE)
+            sleepTime[body] = 0;
+        else sleepTime[body] += deltaTime;
+        return sleepTime[body];
+    }
+
+    /**
+     * Moves the awake <b>kinematic</b> bodies by their velocity. They are not part of any island, so this is
+     * done after all islands were solved with their old positions.
+     */
+    private void integrateKinematicBodies (float deltaTime)
+    {
+        for (int i = 0; i < bodyCount; i++)
+        {
+            if (types[i] != RigidBody.Type.KINEMATIC || !awake[i]) continue;
+            integratePosition(i, deltaTime);
+            if (updateSleepTime(i, deltaTime) >= TIME_TO_SLEEP) sleep(i);
+        }
+    }
+
+    /**
+     * Writes the <b>position</b> and <b>rotation</b> of every body moved by this <b>tick</b> into its
+     * {@link Chunk} and marks the <b>row</b> as changed, so its <b>world matrix</b> is recomputed.
+     */
+    private void writeTransforms ()
+    {
+        for (int i = 0; i < bodyCount; i++)
+        {
+            if (!moved[i]) continue;
+            moved[i] = false;
+
+            final Chunk chunk = chunks[i];
+            final int row = rows[i];
+            final float c = cos[i], s = sin[i];
+            chunk.getPositionX()[row] = positionX[i] - (c * localCenterX[i] - s * localCenterY[i]);
+            chunk.getPositionY()[row] = positionY[i] - (s * localCenterX[i] + c * localCenterY[i]);
+            chunk.getRotation()[row] = (float) Math.toDegrees(angle[i]);
+            chunk.markChanged(row);
+            versions[i] = chunk.getVersion(row);
+        }
+    }
+
+    /**
+     * Wakes a body which is not <b>static</b> up.
+     * @param index the body index
+     */
+    void wake (int index)
+    {
+        if (types[index] == RigidBody.Type.STATIC) return;
+        awake[index] = true;
+        sleepTime[index] = 0;
+    }
+
+    /**
+     * Puts a body to sleep and stops it.
+     * @param index the body index
+     */
+    void sleep (int index)
+    {
+        awake[index] = false;
+        sleepTime[index] = 0;
+        velocityX[index] = 0;
+        velocityY[index] = 0;
+        angularVelocity[index] = 0;
+        forceX[index] = 0;
+        forceY[index] = 0;
+        torque[index] = 0;
+    }
+
+    /**
+     * Makes the next {@link PhysicsWorld#step(float)} recompute the <b>mass</b> of a body.
+     * @param index the body index
+     */
+    void invalidateMass (int index)
+    {
+        massValid[index] = false;
+    }
+
+    /**
+     * Returns the gravity along the x-axis.
+     * @return the gravity in units per second squared
+     */
+    public float getGravityX ()
+    {
+        return gravityX;
+    }
+
+    /**
+     * Returns the gravity along the y-axis.
+     * @return the gravity in units per second squared
+     */
+    public float getGravityY ()
+    {
+        return gravityY;
+    }
+
+    /**
+     * Sets the gravity, which accelerates all <b>dynamic</b> bodies by their <b>gravity scale</b>. Sleeping
+     * bodies are not woken.
+     * @param gravityX the gravity along the x-axis in units per second squared
+     * @param gravityY the gravity along the y-axis in units per second squared
+     */
+    public void setGravity (float gravityX, float gravityY)
+    {
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+    }
+
+    /**
+     * Returns the number of <b>velocity iterations</b> per <b>tick</b>.
+     * @return the number of <b>velocity iterations</b>
+     */
+    public int getVelocityIterations ()
+    {
+        return velocityIterations;
+    }
+
+    /**
+     * Sets the number of <b>velocity iterations</b> per <b>tick</b>. More iterations make stacks more stable, but
+     * cost more time.
+     * @param velocityIterations the number of <b>velocity iterations</b>, which has to be positive
+     */
+    public void setVelocityIterations (int velocityIterations)
+    {
+        if (velocityIterations <= 0) throw new IllegalArgumentException("The number of velocity iterations has " +
+                "to be positive");
+        this.velocityIterations = velocityIterations;
+    }
+
+    /**
+     * Returns the number of bodies.
+     * @return the number of bodies
+     */
+    public int getBodyCount ()
+    {
+        return bodyCount;
+    }
+
+    /**
+     * Returns the number of awake bodies.
+     * @return the number of awake bodies
+     */
+    public int getAwakeBodyCount ()
+    {
+        int count = 0;
+        for (int i = 0; i < bodyCount; i++)
+            if (awake[i]) count++;
+        return count;
+    }
+
+    /**
+     * Returns the number of {@link Contact} instances, which is the number of <b>candidate pairs</b> found by the
+     * last {@link PhysicsWorld#step(float)}.
+     * @return the number of {@link Contact} instances
+     */
+    public int getContactCount ()
+    {
+        return contactCount;
+    }
+
+    /**
+     * Returns the number of islands solved by the last {@link PhysicsWorld#step(float)}.
+     * @return the number of islands
+     */
+    public int getIslandCount ()
+    {
+        return islandCount;
+    }
+
+    /**
+     * Returns the {@link CollisionWorld} the <b>candidate pairs</b> come from.
+     * @return the {@link CollisionWorld}
+     */
+    public CollisionWorld getCollisionWorld ()
+    {
+        return collisionWorld;
+    }
+
+    /**
+     * Runs the narrow phase on a range of {@link PhysicsWorld#updated}, splitting the range in halves until it is
+     * small enough.
+     */
+    private final class ContactTask extends RecursiveAction
+    {
+        private final int from, to;
+
+        private ContactTask (int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if (to - from <= CONTACTS_PER_TASK)
+            {
+                updateContacts(from, to, NarrowPhase.local(), new Matrix3x2f(), new Matrix3x2f());
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new ContactTask(from, mid), new ContactTask(mid, to));
+        }
+    }
+
+    /**
+     * Solves a range of islands, splitting the range in halves until it holds few enough bodies.
+     */
+    private final class IslandTask extends RecursiveAction
+    {
+        private final int from, to;
+        private final float deltaTime;
+
+        private IslandTask (int from, int to, float deltaTime)
+        {
+            this.from = from;
+            this.to = to;
+            this.deltaTime = deltaTime;
+        }
+
+        @Override
+        protected void compute ()
+        {
+            if (to - from == 1 || islandBodyStart[to] - islandBodyStart[from] <= BODIES_PER_TASK)
+            {
+                for (int i = from; i < to; i++)
+                    solveIsland(i, deltaTime);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new IslandTask(from, mid, deltaTime), new IslandTask(mid, to, deltaTime));
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package engine.dengine.physics;
+
+import engine.dengine.collision.Collider;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.Entity;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RigidBody}</h2>
+ * <br>
+ * The {@link RigidBody} class is the {@link Component} which makes its {@link Entity} move by the
+ * {@link PhysicsWorld}. The {@link Entity} also needs a {@link Collider}, whose {@link engine.dengine.shapes.Shape}
+ * gives the body its <b>mass</b>, <b>center of mass</b> and <b>rotational inertia</b>, and it has to be a root, as
+ * the {@link PhysicsWorld} writes the <b>position</b> and <b>rotation</b> of its {@link engine.dengine.ecs.Transform}.
+ * <br>
+ * Once the {@link Entity} is stored in the {@link engine.dengine.ecs.ArchetypeStore} of a {@link PhysicsWorld},
+ * the state of the body lives in the primitive arrays of the {@link PhysicsWorld} and this {@link RigidBody} is
+ * only a view of it, like a stored {@link engine.dengine.ecs.Transform} is a view of its
+ * {@link engine.dengine.ecs.Chunk}. Velocities and forces set before are applied once the body is created.
+ * <br>
+ * Changing the velocity, applying a force or an impulse and moving the {@link engine.dengine.ecs.Transform} wakes a
+ * sleeping body. Velocities are in units per second and angular velocities in degrees per second, matching the
+ * <b>rotation</b> of a {@link engine.dengine.ecs.Transform}.
+ */
+public class RigidBody extends Component
+{
+    /** The default <b>friction</b> coefficient, which is also used for {@link Collider} instances without a body */
+    public static final float DEFAULT_FRICTION = 0.4f;
+
+    private final Type type;
+    private float density;
+    private float friction;
+    private float restitution;
+    private float gravityScale;
+    private float linearDamping;
+    private float angularDamping;
+    private boolean sleepingAllowed;
+    /** The {@link PhysicsWorld} storing this body, or null if it is not stored in one */
+    PhysicsWorld world;
+    /** The index of this body in the arrays of {@link RigidBody#world} */
+    int index;
+    /** The last {@link PhysicsWorld#step(float)} which found this body in the store */
+    int stamp;
+    /** The state used while this body is not stored in a {@link PhysicsWorld} */
+    float velocityX, velocityY, angularVelocity, forceX, forceY, torque;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link RigidBody.Type}</h2>
+     * <br>
+     * The {@link RigidBody.Type} enum decides how a {@link RigidBody} is moved. <b>Static</b> bodies never move,
+     * <b>kinematic</b> bodies move by their velocity but ignore forces and contacts, and <b>dynamic</b> bodies are
+     * moved by gravity, forces and contacts.
+     */
+    public enum Type
+    {
+        STATIC,
+        KINEMATIC,
+        DYNAMIC
+    }
+
+    /**
+     * Creates a new <b>dynamic</b> {@link RigidBody} instance.
+     */
+    public RigidBody ()
+    {
+        this(Type.DYNAMIC);
+    }
+
+    /**
+     * Creates a new {@link RigidBody} instance with a <b>density</b> of 1, a <b>friction</b> of
+     * {@link RigidBody#DEFAULT_FRICTION}, no <b>restitution</b> and no <b>damping</b>.
+     * @param type the {@link RigidBody.Type}
+     */
+    public RigidBody (Type type)
+    {
+        this.type = type;
+        this.density = 1;
+        this.friction = DEFAULT_FRICTION;
+        this.restitution = 0;
+        this.gravityScale = 1;
+        this.linearDamping = 0;
+        this.angularDamping = 0;
+        this.sleepingAllowed = true;
+        this.index = -1;
+    }
+
+    /**
+     * Returns the {@link RigidBody.Type}.
+     * @return the {@link RigidBody.Type}
+     */
+    public Type getType ()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the <b>density</b>, which is the <b>mass</b> per area of the {@link engine.dengine.shapes.Shape}.
+     * @return the <b>density</b>
+     */
+    public float getDensity ()
+    {
+        return density;
+    }
+
+    /**
+     * Sets the <b>density</b>, which is the <b>mass</b> per area of the {@link engine.dengine.shapes.Shape}.
+     * Changing it recomputes the <b>mass</b> in the next {@link PhysicsWorld#step(float)}.
+     * @param density the new <b>density</b>, which has to be positive
+     */
+    public void setDensity (float density)
+    {
+        if (!(density > 0)) throw new IllegalArgumentException("The density has to be positive");
+        this.density = density;
+        if (world != null) world.invalidateMass(index);
+    }
+
+    /**
+     * Returns the <b>friction</b> coefficient.
+     * @return the <b>friction</b> coefficient
+     */
+    public float getFriction ()
+    {
+        return friction;
+    }
+
+    /**
+     * Sets the <b>friction</b> coefficient. The <b>friction</b> of a contact is the geometric mean of the
+     * <b>friction</b> of both bodies.
+     * @param friction the new <b>friction</b> coefficient
+     */
+    public void setFriction (float friction)
+    {
+        this.friction = friction;
+    }
+
+    /**
+     * Returns the <b>restitution</b>.
+     * @return the <b>restitution</b>, where 0 is inelastic and 1 perfectly elastic
+     */
+    public float getRestitution ()
+    {
+        return restitution;
+    }
+
+    /**
+     * Sets the <b>restitution</b>. The <b>restitution</b> of a contact is the larger <b>restitution</b> of both
+     * bodies.
+     * @param restitution the new <b>restitution</b>, where 0 is inelastic and 1 perfectly elastic
+     */
+    public void setRestitution (float restitution)
+    {
+        this.restitution = restitution;
+    }
+
+    /**
+     * Returns the factor the gravity of the {@link PhysicsWorld} is multiplied with for this body.
+     * @return the <b>gravity scale</b>
+     */
+    public float getGravityScale ()
+    {
+        return gravityScale;
+    }
+
+    /**
+     * Sets the factor the gravity of the {@link PhysicsWorld} is multiplied with for this body.
+     * @param gravityScale the new <b>gravity scale</b>
+     */
+    public void setGravityScale (float gravityScale)
+    {
+        this.gravityScale = gravityScale;
+    }
+
+    /**
+     * Returns the <b>linear damping</b>.
+     * @return the <b>linear damping</b>, which reduces the velocity by this fraction per second
+     */
+    public float getLinearDamping ()
+    {
+        return linearDamping;
+    }
+
+    /**
+     * Sets the <b>linear damping</b>.
+     * @param linearDamping the new <b>linear damping</b>, which reduces the velocity by this fraction per second
+     */
+    public void setLinearDamping (float linearDamping)
+    {
+        this.linearDamping = linearDamping;
+    }
+
+    /**
+     * Returns the <b>angular damping</b>.
+     * @return the <b>angular damping</b>, which reduces the angular velocity by this fraction per second
+     */
+    public float getAngularDamping ()
+    {
+        return angularDamping;
+    }
+
+    /**
+     * Sets the <b>angular damping</b>.
+     * @param angularDamping the new <b>angular damping</b>, which reduces the angular velocity by this fraction
+     * per second
+     */
+    public void setAngularDamping (float angularDamping)
+    {
+        this.angularDamping = angularDamping;
+    }
+
+    /**
+     * Returns wether this body may fall asleep once it and all bodies touching it come to rest.
+     * @return wether this body may fall asleep
+     */
+    public boolean isSleepingAllowed ()
+    {
+        return sleepingAllowed;
+    }
+
+    /**
+     * Sets wether this body may fall asleep once it and all bodies touching it come to rest.
+     * @param sleepingAllowed wether this body may fall asleep
+     */
+    public void setSleepingAllowed (boolean sleepingAllowed)
+    {
+        this.sleepingAllowed = sleepingAllowed;
+        if (!sleepingAllowed) setAwake(true);
+    }
+
+    /**
+     * Returns wether this body is awake. Sleeping bodies are neither integrated nor tested for contacts.
+     * @return wether this body is awake, which is true while it is not stored in a {@link PhysicsWorld}
+     */
+    public boolean isAwake ()
+    {
+        return world == null || world.awake[index];
+    }
+
+    /**
+     * Wakes this body up or puts it to sleep, which also sets its velocity to 0.
+     * @param awake wether this body is awake
+     */
+    public void setAwake (boolean awake)
+    {
+        if (world == null) return;
+        if (awake) world.wake(index);
+        else world.sleep(index);
+    }
+
+    /**
+     * Returns the x-coordinate of the velocity of the <b>center of mass</b>.
+     * @return the x-coordinate of the velocity in units per second
+     */
+    public float getVelocityX ()
+    {
+        return world != null ? world.velocityX[index] : velocityX;
+    }
+
+    /**
+     * Returns the y-coordinate of the velocity of the <b>center of mass</b>.
+     * @return the y-coordinate of the velocity in units per second
+     */
+    public float getVelocityY ()
+    {
+        return world != null ? world.velocityY[index] : velocityY;
+    }
+
+    /**
+     * Sets the velocity of the <b>center of mass</b>, which is ignored by <b>static</b> bodies.
+     * @param velocityX the x-coordinate of the velocity in units per second
+     * @param velocityY the y-coordinate of the velocity in units per second
+     */
+    public void setVelocity (float velocityX, float velocityY)
+    {
+        if (type == Type.STATIC) return;
+        if (world == null)
+        {
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
+            return;
+        }
+        world.velocityX[index] = velocityX;
+        world.velocityY[index] = velocityY;
+        world.wake(index);
+    }
+
+    /**
+     * Returns the angular velocity.
+     * @return the angular velocity in degrees per second
+     */
+    public float getAngularVelocity ()
+    {
+        return world != null ? (float) Math.toDegrees(world.angularVelocity[index]) : angularVelocity;
+    }
+
+    /**
+     * Sets the angular velocity, which is ignored by <b>static</b> bodies.
+     * @param angularVelocity the angular velocity in degrees per second
+     */
+    public void setAngularVelocity (float angularVelocity)
+    {
+        if (type == Type.STATIC) return;
+        if (world == null)
+        {
+            this.angularVelocity = angularVelocity;
+            return;
+        }
+        world.angularVelocity[index] = (float) Math.toRadians(angularVelocity);
+        world.wake(index);
+    }
+
+    /**
+     * Applies a force to the <b>center of mass</b> during the next {@link PhysicsWorld#step(float)}. Only
+     * <b>dynamic</b> bodies are affected by forces.
+     * @param forceX the x-coordinate of the force
+     * @param forceY the y-coordinate of the force
+     */
+    public void applyForce (float forceX, float forceY)
+    {
+        if (type != Type.DYNAMIC) return;
+        if (world == null)
+        {
+            this.forceX += forceX;
+            this.forceY += forceY;
+            return;
+        }
+        world.forceX[index] += forceX;
+        world.forceY[index] += forceY;
+        world.wake(index);
+    }
+
+    /**
+     * Applies a torque during the next {@link PhysicsWorld#step(float)}. Only <b>dynamic</b> bodies are affected
+     * by torques.
+     * @param torque the torque, which turns counter-clockwise if it is positive
+     */
+    public void applyTorque (float torque)
+    {
+        if (type != Type.DYNAMIC) return;
+        if (world == null)
+        {
+            this.torque += torque;
+            return;
+        }
+        world.torque[index] += torque;
+        world.wake(index);
+    }
+
+    /**
+     * Applies an impulse to the <b>center of mass</b>, which changes the velocity immediately. This only affects
+     * <b>dynamic</b> bodies stored in a {@link PhysicsWorld}, as the <b>mass</b> is not known before.
+     * @param impulseX the x-coordinate of the impulse
+     * @param impulseY the y-coordinate of the impulse
+     */
+    public void applyImpulse (float impulseX, float impulseY)
+    {
+        if (type != Type.DYNAMIC || world == null) return;
+        world.velocityX[index] += world.inverseMass[index] * impulseX;
+        world.velocityY[index] += world.inverseMass[index] * impulseY;
+        world.wake(index);
+    }
+
+    /**
+     * Applies an angular impulse, which changes the angular velocity immediately. This only affects
+     * <b>dynamic</b> bodies stored in a {@link PhysicsWorld}, as the <b>rotational inertia</b> is not known before.
+     * @param impulse the angular impulse, which turns counter-clockwise if it is positive
+     */
+    public void applyAngularImpulse (float impulse)
+    {
+        if (type != Type.DYNAMIC || world == null) return;
+        world.angularVelocity[index] += world.inverseInertia[index] * impulse;
+        world.wake(index);
+    }
+
+    /**
+     * Returns the <b>mass</b>.
+     * @return the <b>mass</b>, or 0 if this body is not <b>dynamic</b> or not stored in a {@link PhysicsWorld}
+     */
+    public float getMass ()
+    {
+        if (world == null) return 0;
+        final float inverseMass = world.inverseMass[index];
+        return inverseMass > 0 ? 1 / inverseMass : 0;
+    }
+
+    /**
+     * Returns the <b>rotational inertia</b> around the <b>center of mass</b>.
+     * @return the <b>rotational inertia</b>, or 0 if this body is not <b>dynamic</b> or not stored in a
+     * {@link PhysicsWorld}
+     */
+    public float getInertia ()
+    {
+        if (world == null) return 0;
+        final float inverseInertia = world.inverseInertia[index];
+        return inverseInertia > 0 ? 1 / inverseInertia : 0;
+    }
+
+    /**
+     * Returns the {@link Entity} this {@link RigidBody} belongs to.
+     * @return the {@link Entity}
+     */
+    public Entity getEntity ()
+    {
+        return entity;
+    }
+}
@@ -1,56 +1,166 @@
 package engine.dengine.scene;
 
+import engine.dengine.collision.CollisionWorld;
+import engine.dengine.ecs.Archetype;
+import engine.dengine.ecs.ArchetypeStore;
+import engine.dengine.ecs.Chunk;
+import engine.dengine.ecs.CommandBuffer;
+import engine.dengine.ecs.Component;
+import engine.dengine.ecs.ComponentMask;
 import engine.dengine.ecs.Entity;
+import engine.dengine.ecs.EntitySystem;
+import engine.dengine.ecs.Query;
+import engine.dengine.ecs.SystemScheduler;
+import engine.dengine.io.SceneSnapshot;
+import engine.dengine.physics.PhysicsWorld;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class Scene
 {
-    private List<Entity> entities;
+    private final ArchetypeStore store;
+    private final SystemScheduler scheduler;
+    private final CollisionWorld collisionWorld;
+    private final PhysicsWorld physicsWorld;
     private boolean initialized;
 
     public Scene ()
     {
         initialized = false;
-        entities = new ArrayList<>();
+        store = new ArchetypeStore();
+        scheduler = new SystemScheduler();
+        collisionWorld = new CollisionWorld(store);
+        physicsWorld = new PhysicsWorld(collisionWorld);
     }
 
     public void update (float deltaTime)
     {
         if (!initialized) init();
+        store.savePreviousWorldMatrices();
 
-        for (Entity entity : entities)
-            entity.update(deltaTime);
+        store.update(deltaTime);
+        scheduler.run(store, deltaTime);
+        store.playback();
+        physicsWorld.step(deltaTime);
+        store.updateWorldMatrices();
+        collisionWorld.update();
+        store.clearChanges();
     }
 
     public void init ()
     {
         initialized = true;
 
-        for (Entity entity : entities)
-            entity.init();
+        for (int i = 0; i < store.getArchetypeCount(); i++)
+        {
+            final Archetype archetype = store.getArchetype(i);
+            for (int j = 0; j < archetype.getChunkCount(); j++)
+            {
+                final Chunk chunk = archetype.getChunk(j);
+                for (int row = 0; row < chunk.size(); row++)
+                    chunk.getEntity(row).init();
+            }
+        }
+
+        for (EntitySystem system : scheduler.getSystems())
+            system.init();
     }
 
     public void addEntity (Entity entity)
     {
-        if (!entities.contains(entity)) entities.add(entity);
+        store.add(entity);
     }
 
     public void removeEntity (Entity entity)
     {
-        entities.remove(entity);
+        store.remove(entity);
+    }
+
+    public Entity spawnEntity ()
+    {
+        return store.spawn();
+    }
+
+    public void despawnEntity (Entity entity)
+    {
+        store.despawn(entity);
+    }
+
+    @SafeVarargs
+    public final Query query (Class<? extends Component>... required)
+    {
+        return store.query(ComponentMask.of(required), ComponentMask.EMPTY);
+    }
+
+    public CommandBuffer getCommandBuffer ()
+    {
+        return store.getCommandBuffer();
+    }
+
+    public Entity getEntity (long handle)
+    {
+        return store.getEntity(handle);
     }
 
     public List<Entity> getEntities ()
     {
+        final List<Entity> entities = new ArrayList<>(store.getEntityCount());
+        for (Archetype archetype : store.getArchetypes())
+            for (Chunk chunk : archetype.getChunks())
+                for (int row = 0; row < chunk.size(); row++)
+                    entities.add(chunk.getEntity(row));
         return Collections.unmodifiableList(entities);
     }
 
+    public void save (Path path) throws IOException
+    {
+        SceneSnapshot.write(store, path);
+    }
+
+    public Entity[] load (Path path) throws IOException
+    {
+        final Entity[] entities = SceneSnapshot.read(path, store);
+        if (initialized)
+            for (Entity entity : entities)
+                entity.init();
+        return entities;
+    }
+
+    public void addSystem (EntitySystem system)
+    {
+        scheduler.addSystem(system);
+        if (initialized) system.init();
+    }
+
+    public void removeSystem (EntitySystem system)
+    {
+        scheduler.removeSystem(system);
+    }
+
+    public ArchetypeStore getStore ()
+    {
+        return store;
+    }
+
+    public CollisionWorld getCollisionWorld ()
+    {
+        return collisionWorld;
+    }
+
+    public PhysicsWorld getPhysicsWorld ()
+    {
+        return physicsWorld;
+    }
+
     public void dispose ()
     {
-        for (Entity entity : entities)
+        for (Entity entity : getEntities())
             entity.dispose();
+        for (EntitySystem system : scheduler.getSystems())
+            system.dispose();
     }
 }
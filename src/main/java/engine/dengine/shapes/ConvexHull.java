@@ -0,0 +1,150 @@
+package engine.dengine.shapes;
+
+import java.util.Arrays;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link ConvexHull}</h2>
+ * <br>
+ * The {@link ConvexHull} class stores the <b>convex hull</b> of a set of points in the local space of a
+ * {@link Shape}, in counter-clockwise order, together with the outward <b>unit normal</b> of every edge. Edge
+ * <b>i</b> goes from point <b>i</b> to point <b>i + 1</b>, wrapping around at the end.
+ * <br>
+ * The <b>normals</b> are computed once, so the <b>narrow phase</b> only has to transform them by the
+ * <b>inverse transpose</b> of the <b>local-to-world matrix</b> instead of recomputing them from the transformed
+ * points. A {@link ConvexHull} is immutable.
+ */
+public final class ConvexHull
+{
+    private final float[] x;
+    private final float[] y;
+    private final float[] normalX;
+    private final float[] normalY;
+    private final int count;
+
+    /**
+     * Creates a new {@link ConvexHull} instance of points given as <b>vertices</b> with x, y and z coordinates.
+     * The z-coordinates are ignored. Points inside the hull and collinear points on its edges are dropped.
+     * @param vertices the <b>vertices</b>
+     * @param offset the index of the x-coordinate of the first <b>vertex</b>
+     * @param vertexCount the number of <b>vertices</b>
+     * @throws IllegalArgumentException if all points are equal
+     */
+    public ConvexHull (float[] vertices, int offset, int vertexCount)
+    {
+        // Sort the points by x, then by y, for the monotone chain algorithm
+        final float[] px = new float[vertexCount];
+        final float[] py = new float[vertexCount];
+        for (int i = 0; i < vertexCount; i++)
+        {
+            px[i] = vertices[offset + i * 3];
+            py[i] = vertices[offset + i * 3 + 1];
+        }
+        final Integer[] order = new Integer[vertexCount];
+        for (int i = 0; i < vertexCount; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> px[a] != px[b] ? Float.compare(px[a], px[b]) : Float.compare(py[a], py[b]));
+
+        // Andrew's monotone chain, building the lower hull and then the upper hull
+        final int[] hull = new int[vertexCount * 2];
+        int size = 0;
+        for (int i = 0; i < vertexCount; i++)
+        {
+            final int point = order[i];
+            while (size >= 2 && cross(px, py, hull[size - 2], hull[size - 1], point) <= 0) size--;
+            hull[size++] = point;
+        }
+        final int lower = size + 1;
+        for (int i = vertexCount - 2; i >= 0; i--)
+        {
+            final int point = order[i];
+            while (size >= lower && cross(px, py, hull[size - 2], hull[size - 1], point) <= 0) size--;
+            hull[size++] = point;
+        }
+        // The last point is the first one again
+        size = Math.max(size - 1, 1);
+
+        if (size < 2 || (px[hull[0]] == px[hull[1]] && py[hull[0]] == py[hull[1]]))
+            throw new IllegalArgumentException("Tried to create " + getClass().getName() +
+                    " of less than two distinct points");
+
+        this.count = size;
+        this.x = new float[count];
+        this.y = new float[count];
+        this.normalX = new float[count];
+        this.normalY = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            x[i] = px[hull[i]];
+            y[i] = py[hull[i]];
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            final int next = i + 1 == count ? 0 : i + 1;
+            final float edgeX = x[next] - x[i];
+            final float edgeY = y[next] - y[i];
+            final float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+            // Counter-clockwise order, so the outward normal is the edge rotated clockwise
+            normalX[i] = edgeY / length;
+            normalY[i] = -edgeX / length;
+        }
+    }
+
+    private static float cross (float[] px, float[] py, int o, int a, int b)
+    {
+        return (px[a] - px[o]) * (py[b] - py[o]) - (py[a] - py[o]) * (px[b] - px[o]);
+    }
+
+    /**
+     * Returns the number of points, which is also the number of edges. A hull of collinear points has two
+     * points and two opposite edges.
+     * @return the number of points
+     */
+    public int getCount ()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the x-coordinate of a point.
+     * @param index the index of the point
+     * @return the x-coordinate
+     */
+    public float getX (int index)
+    {
+        return x[index];
+    }
+
+    /**
+     * Returns the y-coordinate of a point.
+     * @param index the index of the point
+     * @return the y-coordinate
+     */
+    public float getY (int index)
+    {
+        return y[index];
+    }
+
+    /**
+     * Returns the x-coordinate of the outward <b>unit normal</b> of an edge.
+     * @param index the index of the edge
+     * @return the x-coordinate of the <b>normal</b>
+     */
+    public float getNormalX (int index)
+    {
+        return normalX[index];
+    }
+
+    /**
+     * Returns the y-coordinate of the outward <b>unit normal</b> of an edge.
+     * @param index the index of the edge
+     * @return the y-coordinate of the <b>normal</b>
+     */
+    public float getNormalY (int index)
+    {
+        return normalY[index];
+    }
+}
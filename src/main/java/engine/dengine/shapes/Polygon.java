@@ -2,6 +2,10 @@ package engine.dengine.shapes;
 
 import engine.dengine.Constants;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Anton Schoenfeld
  * @version 1.0
@@ -10,39 +14,234 @@ import engine.dengine.Constants;
  * <h2>{@link Polygon}</h2>
  * <br>
  * The {@link Polygon} class is used to represent a {@link Shape} which is made up of triangles.
- * A {@link Polygon} instance can be easily built using {@link Polygon.Builder}.
+ * A {@link Polygon} instance can be easily built using {@link Polygon.Builder}, from a triangle list, from
+ * unique <b>vertices</b> and <b>indices</b>, or from the <b>outline</b> of a <b>simple polygon</b> with
+ * {@link Polygon#fromOutline(float[])}, which is triangulated by <b>ear clipping</b>.
+ * <br>
+ * A {@link Polygon} stores every distinct corner once and renders its triangles through
+ * {@link Shape#getIndices()}. Its <b>convex parts</b> are the triangles merged into as few <b>convex pieces</b>
+ * as {@link Triangulator#decompose(float[], int[])} finds, so collision tests a few pieces instead of every
+ * triangle. The <b>vertices</b>, <b>indices</b> and <b>convex parts</b> are computed once per distinct input
+ * and cached by its content, so equal {@link Polygon} instances share them. The cache holds the
+ * {@link Polygon#CACHE_CAPACITY} most recently used inputs, so inputs which are only created once, like
+ * procedurally generated outlines, do not fill up memory.
  */
 public class Polygon extends Shape
 {
+    /** The number of distinct inputs whose {@link Polygon.Geometry} is cached at most */
+    public static final int CACHE_CAPACITY = 256;
+    /** The cached {@link Polygon.Geometry} of the most recently used inputs in access order, guarded by itself */
+    private static final Map<Key, Geometry> CACHE = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry (Map.Entry<Key, Geometry> eldest)
+        {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    private final Geometry geometry;
+
     /**
-     * Creates a new {@link Polygon} instance.
-     * @param vertices the <b>vertices</b> of the new {@link Polygon} instance
+     * Creates a new {@link Polygon} instance of a triangle list. Equal corners of different triangles are stored
+     * once.
+     * @param vertices the <b>vertices</b> of the triangles of the new {@link Polygon} instance, three per triangle
      */
     public Polygon (float[] vertices)
     {
-        super(vertices);
+        this(geometry(new Key(Key.TRIANGLES, vertices, null)));
+    }
+
+    /**
+     * Creates a new {@link Polygon} instance of unique <b>vertices</b> and the <b>indices</b> of its triangles.
+     * @param vertices the <b>vertices</b> of the new {@link Polygon} instance
+     * @param indices the <b>indices</b> of the triangles, three per triangle
+     * @throws IllegalArgumentException if the number of <b>indices</b> is not a multiple of three or an
+     * <b>index</b> is out of range
+     */
+    public Polygon (float[] vertices, int[] indices)
+    {
+        this(geometry(new Key(Key.INDEXED, vertices, indices)));
+    }
+
+    private Polygon (Geometry geometry)
+    {
+        // Copied, as the vertices of a shape may be modified and the geometry is shared
+        super(geometry.vertices.clone());
+        this.geometry = geometry;
+    }
+
+    /**
+     * Creates a new {@link Polygon} instance of the <b>outline</b> of a <b>simple polygon</b>.
+     * @param outline the <b>vertices</b> of the <b>outline</b> in clockwise or counter-clockwise order
+     * @return the {@link Polygon} instance
+     * @throws IllegalArgumentException if the <b>outline</b> cannot be triangulated
+     * @see Triangulator#triangulate(float[])
+     */
+    public static Polygon fromOutline (float[] outline)
+    {
+        return new Polygon(geometry(new Key(Key.OUTLINE, outline, null)));
+    }
+
+    private static Geometry geometry (Key key)
+    {
+        synchronized (CACHE)
+        {
+            final Geometry cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+        // Computed outside of the map and the lock, so an invalid input does not leave a broken entry behind
+        final Geometry geometry = new Geometry(key);
+        synchronized (CACHE)
+        {
+            final Geometry previous = CACHE.putIfAbsent(key.copy(), geometry);
+            return previous != null ? previous : geometry;
+        }
+    }
+
+    /**
+     * Removes all cached <b>vertices</b>, <b>indices</b> and <b>convex parts</b>. Existing {@link Polygon}
+     * instances keep theirs.
+     */
+    public static void clearCache ()
+    {
+        synchronized (CACHE)
+        {
+            CACHE.clear();
+        }
     }
 
     /**
-     * Checks wether this {@link Polygon} instance is <b>colliding</b> with another {@link Shape} instance.
-     * <b>Collision</b> means that at least one <b>vertex</b> of the other instance has to be in the area of
-     * this instance.
-     * @param anotherShape the {@link Shape} instance to check for collision with this one
-     * @return wether this instance is colliding with the other one
+     * Returns the number of distinct inputs whose <b>vertices</b>, <b>indices</b> and <b>convex parts</b> are
+     * cached, at most {@link Polygon#CACHE_CAPACITY}.
+     * @return the number of cached inputs
+     */
+    public static int getCacheSize ()
+    {
+        synchronized (CACHE)
+        {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Returns the cached <b>convex pieces</b> of the triangles, as the area of a {@link Polygon} does not have to
+     * be convex.
+     * @return the <b>convex parts</b>
      */
     @Override
-    public boolean collidesWith(Shape anotherShape)
+    protected ConvexHull[] createConvexParts ()
     {
-        for (int i = 0; i < vertices.length; i += Constants.TRIANGLE_SIZE)
+        return geometry.convexParts;
+    }
+
+    /**
+     * Returns the cached <b>indices</b> of the triangles.
+     * @return the <b>indices</b>
+     */
+    @Override
+    protected int[] createIndices ()
+    {
+        return geometry.indices;
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link Polygon.Key}</h2>
+     * <br>
+     * The {@link Polygon.Key} class identifies an input of a {@link Polygon} by its kind and content. Lookups
+     * use the arrays of the caller, only keys stored in the cache own a copy.
+     */
+    private static final class Key
+    {
+        static final byte TRIANGLES = 0;
+        static final byte INDEXED = 1;
+        static final byte OUTLINE = 2;
+
+        final byte kind;
+        final float[] vertices;
+        final int[] indices;
+        final int hash;
+
+        Key (byte kind, float[] vertices, int[] indices)
         {
-            float[] temp = new float[Constants.TRIANGLE_SIZE];
-            System.arraycopy(vertices, i, temp, 0, Constants.TRIANGLE_SIZE);
-            Triangle triangle = new Triangle(temp);
+            this.kind = kind;
+            this.vertices = vertices;
+            this.indices = indices;
+            this.hash = 31 * (31 * kind + Arrays.hashCode(vertices)) + Arrays.hashCode(indices);
+        }
 
-            if (triangle.collidesWith(anotherShape)) return true;
+        Key copy ()
+        {
+            return new Key(kind, vertices.clone(), indices != null ? indices.clone() : null);
+        }
+
+        @Override
+        public boolean equals (Object object)
+        {
+            return object instanceof Key key && kind == key.kind && hash == key.hash &&
+                    Arrays.equals(vertices, key.vertices) && Arrays.equals(indices, key.indices);
         }
 
-        return false;
+        @Override
+        public int hashCode ()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link Polygon.Geometry}</h2>
+     * <br>
+     * The {@link Polygon.Geometry} class stores the unique <b>vertices</b>, the triangle <b>indices</b> and the
+     * <b>convex parts</b> computed from one input of a {@link Polygon}.
+     */
+    private static final class Geometry
+    {
+        final float[] vertices;
+        final int[] indices;
+        final ConvexHull[] convexParts;
+
+        Geometry (Key key)
+        {
+            switch (key.kind)
+            {
+                case Key.TRIANGLES ->
+                {
+                    if (key.vertices.length % Constants.TRIANGLE_SIZE != 0)
+                        throw new IllegalArgumentException("Tried to create " + Polygon.class.getName() +
+                                " of a triangle list with " + key.vertices.length + " coordinates");
+                    indices = new int[key.vertices.length / Constants.POSITION_SIZE];
+                    vertices = Triangulator.weld(key.vertices, indices);
+                }
+                case Key.INDEXED ->
+                {
+                    final int vertexCount = key.vertices.length / Constants.POSITION_SIZE;
+                    if (key.indices.length % 3 != 0)
+                        throw new IllegalArgumentException("Tried to create " + Polygon.class.getName() + " with " +
+                                key.indices.length + " indices, which are not a multiple of three");
+                    for (int index : key.indices)
+                        if (index < 0 || index >= vertexCount)
+                            throw new IllegalArgumentException("Tried to create " + Polygon.class.getName() +
+                                    " with index " + index + " of " + vertexCount + " vertices");
+                    vertices = key.vertices.clone();
+                    indices = key.indices.clone();
+                }
+                default ->
+                {
+                    vertices = key.vertices.clone();
+                    indices = Triangulator.triangulate(vertices);
+                }
+            }
+            convexParts = Triangulator.decompose(vertices, indices);
+        }
     }
 
     /**
@@ -148,5 +347,17 @@ public class Polygon extends Shape
         {
             return new Polygon(vertices);
         }
+
+        /**
+         * Returns the {@link Polygon} instance whose <b>outline</b> are the vertices added with
+         * {@link Polygon.Builder#addVertex(float, float)}, in the order they were added in.
+         * @return the {@link Polygon} instance
+         * @throws IllegalArgumentException if the <b>outline</b> cannot be triangulated
+         * @see Polygon#fromOutline(float[])
+         */
+        public Polygon toOutlinePolygon ()
+        {
+            return fromOutline(Arrays.copyOf(vertices, index));
+        }
     }
 }
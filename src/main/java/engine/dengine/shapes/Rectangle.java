@@ -1,7 +1,5 @@
 package engine.dengine.shapes;
 
-import engine.dengine.math.MathUtil;
-
 /**
  * @author Anton Schoenfeld
  * @version 1.0
@@ -14,6 +12,9 @@ import engine.dengine.math.MathUtil;
  */
 public class Rectangle extends Shape
 {
+    /** The two triangles of the corners, which are not in the order of the outline */
+    private static final int[] INDICES = {0, 2, 1, 1, 2, 3};
+
     /**
      * Creates a new {@link Rectangle} instance with the given measurements.
      * @param x the x-coordinate of the top left corner
@@ -34,30 +35,13 @@ public class Rectangle extends Shape
     }
 
     /**
-     * Checks wether this {@link Shape} instance is <b>colliding</b> with another {@link Shape} instance.
-     * <b>Collision</b> means that at least one <b>vertex</b> of the other instance has to be in the area of
-     * this instance.
-     * @param anotherShape the {@link Shape} instance to check for collision with this one
-     * @return wether this instance is colliding with the other one
+     * Returns the <b>indices</b> of the two triangles which split the {@link Rectangle} along the diagonal from
+     * the top right to the bottom left corner.
+     * @return the <b>indices</b>
      */
     @Override
-    public boolean collidesWith(Shape anotherShape)
+    protected int[] createIndices ()
     {
-        float[] anotherVertices = anotherShape.getVertices();
-
-        // Loop through vertices of anotherShape
-        for (int i = 0; i < anotherVertices.length; i += 3) {
-            float x = anotherVertices[i];
-            float y = anotherVertices[i + 1];
-            float z = anotherVertices[i + 2];
-
-            // Check if the point (x, y, z) is inside the rectangle
-            if (MathUtil.isPointInRectangle(this, x, y, z))
-            {
-                return true; // Collision detected
-            }
-        }
-        // No collision detected
-        return false;
+        return INDICES;
     }
 }
@@ -1,9 +1,13 @@
 package engine.dengine.shapes;
 
 import engine.dengine.Constants;
+import engine.dengine.collision.NarrowPhase;
 import engine.dengine.ecs.Transform;
-import engine.dengine.math.MathUtil;
-import org.joml.Vector3f;
+import engine.dengine.math.AffineKernel;
+import org.joml.Matrix3x2f;
+import org.joml.Matrix3x2fc;
+
+import java.nio.FloatBuffer;
 
 /**
  * @author Anton Schoenfeld
@@ -15,12 +19,57 @@ import org.joml.Vector3f;
  * Subclasses of {@link Shape} should be two-dimensional geometric shapes with three-dimensional
  * vertices, so a flat shape in 3-dimensional space. Also, all the <b>vertices</b> should be on the
  * same <b>plane</b>. It also implements a method to check if it is colliding with another {@link Shape}
- * instance ({@link Shape#collidesWith(Shape)}).
+ * instance ({@link Shape#collidesWith(Shape)}), which tests the <b>convex parts</b>
+ * ({@link Shape#getConvexParts()}) of both instances with the {@link NarrowPhase}.
+ * <br>
+ * {@link Shape#collidesWith(Shape)} and {@link Shape#transformVertices(Matrix3x2fc, float[], int, int)} keep
+ * their intermediate results in arrays and <b>matrices</b> per thread, so they may be called by several threads at
+ * once, for example by read-only {@link engine.dengine.ecs.EntitySystem} instances which run in parallel. The
+ * cache of {@link Shape#getTransformedVertices()} however is owned by a single thread, usually the one which
+ * renders, and must not be read by other threads.
  */
 public abstract class Shape
 {
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     protected float[] vertices;
     protected Transform transform;
+    /** The cached result of {@link Shape#getTransformedVertices()}, owned by a single thread */
+    private float[] transformedVertices;
+    /** The {@link Transform} <b>world version</b> the cached <b>transformed vertices</b> were computed for */
+    private int transformedVersion;
+    /** The x-coordinates of the <b>vertices</b>, packed for the {@link AffineKernel} */
+    private final float[] localX;
+    /** The y-coordinates of the <b>vertices</b>, packed for the {@link AffineKernel} */
+    private final float[] localY;
+    /** The lazily created result of {@link Shape#createConvexParts()} */
+    private ConvexHull[] convexParts;
+    /** The lazily created result of {@link Shape#createIndices()} */
+    private int[] indices;
+
+    /**
+     * @author Anton Schoenfeld
+     * @version 1.0
+     * @since 1.0
+     * <br>
+     * <h2>{@link Shape.Scratch}</h2>
+     * <br>
+     * The {@link Shape.Scratch} class holds the intermediate results of one thread, so {@link Shape} instances
+     * can be transformed and tested for collision by several threads at once without allocating.
+     */
+    private static final class Scratch
+    {
+        /** The coordinates written by the {@link AffineKernel}, which only grow */
+        private float[] worldX = new float[16], worldY = new float[16];
+        private final Matrix3x2f matrixA = new Matrix3x2f(), matrixB = new Matrix3x2f();
+
+        private void ensureCapacity (int count)
+        {
+            if (worldX.length >= count) return;
+            worldX = new float[count];
+            worldY = new float[count];
+        }
+    }
 
     /**
      * Creates a new {@link Shape} instance with the given <b>vertices</b> with a default {@link Transform}
@@ -45,6 +94,17 @@ public abstract class Shape
 
         this.vertices = vertices;
         this.transform = transform;
+        this.transformedVertices = new float[vertices.length];
+        this.transformedVersion = transform.getWorldVersion() - 1;
+
+        final int count = vertices.length / 3;
+        this.localX = new float[count];
+        this.localY = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            localX[i] = vertices[i * 3];
+            localY[i] = vertices[i * 3 + 1];
+        }
     }
 
     private void validateVertices (float[] vertices)
@@ -71,32 +131,104 @@ public abstract class Shape
     /**
      * Returns the <b>transformed vertices</b> of this {@link Shape} instance
      * after applying <b>rotation</b>, <b>scaling</b>, and <b>translation</b>>.
-     * The <b>transformation</b> is based on the {@link Shape} instances {@link Transform} instance.
+     * The <b>transformation</b> is based on the <b>local-to-world matrix</b> of the {@link Shape} instances
+     * {@link Transform} instance. The result is cached and only recomputed once the <b>world version</b> of the
+     * {@link Transform} changed, so the returned array must not be modified. The cache is owned by a single
+     * thread, other threads have to use {@link Shape#transformVertices(Matrix3x2fc, float[])} instead.
      *
      * @return The <b>transformed vertices</b> as a float[].
-     * @see Transform
+     * @see Transform#getWorldMatrix(Matrix3x2f)
      */
     public float[] getTransformedVertices ()
     {
-        final int len = vertices.length;
-        final float[] transformedVertices = new float[len];
+        final int version = transform.getWorldVersion();
+        if (version == transformedVersion) return transformedVertices;
 
-        Vector3f rotatedVertex;
-        for (int i = 0; i < len; i+= 3)
+        transformVertices(transform.getWorldMatrix(SCRATCH.get().matrixA), transformedVertices);
+        transformedVersion = version;
+        return transformedVertices;
+    }
+
+    /**
+     * Writes the <b>transformed vertices</b> of this {@link Shape} instance into a caller-supplied float[]
+     * without allocating, for example directly into an interleaved <b>vertex buffer</b>. The cached
+     * <b>transformed vertices</b> are copied if they are up to date. Like {@link Shape#getTransformedVertices()},
+     * this must only be called by the thread which owns the cache.
+     * @param dest the float[] which is written to
+     * @param offset the index of the x-coordinate of the first <b>vertex</b> in <b>dest</b>
+     * @param stride the distance between the x-coordinates of two consecutive <b>vertices</b> in <b>dest</b>
+     * @see Shape#getTransformedVertices()
+     */
+    public void getTransformedVertices (float[] dest, int offset, int stride)
+    {
+        final float[] transformed = getTransformedVertices();
+        for (int i = 0, j = offset; i < transformed.length; i += 3, j += stride)
         {
-            rotatedVertex = MathUtil.rotatePointOnZAxis(
-                    transform.getRotation(),
-                    vertices[i],
-                    vertices[i + 1],
-                    vertices[i + 2]);
-
-            // Apply transformations on vertices
-            transformedVertices[i] = rotatedVertex.x * transform.getScale().x + transform.getPosition().x;
-            transformedVertices[i + 1] = rotatedVertex.y * transform.getScale().y + transform.getPosition().y;
-            transformedVertices[i + 2] = rotatedVertex.z;
+            dest[j] = transformed[i];
+            dest[j + 1] = transformed[i + 1];
+            dest[j + 2] = transformed[i + 2];
         }
+    }
 
-        return transformedVertices;
+    /**
+     * Transforms the <b>vertices</b> of this {@link Shape} instance by an affine <b>matrix</b> and writes the
+     * results into a float[]. The z-coordinates are copied unchanged.
+     * @param matrix the <b>matrix</b>, for example a <b>local-to-world matrix</b>
+     * @param dest the float[] which is written to, which has to be at least as long as the <b>vertices</b>
+     */
+    public void transformVertices (Matrix3x2fc matrix, float[] dest)
+    {
+        transformVertices(matrix, dest, 0, 3);
+    }
+
+    /**
+     * Transforms the <b>vertices</b> of this {@link Shape} instance by an affine <b>matrix</b> and writes the
+     * results into a float[] without allocating. The z-coordinates are copied unchanged. The positions are
+     * transformed by {@link AffineKernel#getInstance()} and then interleaved into <b>dest</b>. This method is
+     * thread safe as long as no thread writes to <b>dest</b> at the same time.
+     * @param matrix the <b>matrix</b>, for example a <b>local-to-world matrix</b>
+     * @param dest the float[] which is written to
+     * @param offset the index of the x-coordinate of the first <b>vertex</b> in <b>dest</b>
+     * @param stride the distance between the x-coordinates of two consecutive <b>vertices</b> in <b>dest</b>
+     */
+    public void transformVertices (Matrix3x2fc matrix, float[] dest, int offset, int stride)
+    {
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(localX.length);
+        final float[] worldX = scratch.worldX, worldY = scratch.worldY;
+        AffineKernel.getInstance().transform(matrix, localX, localY, worldX, worldY, 0, localX.length);
+
+        for (int i = 0, j = offset; i < localX.length; i++, j += stride)
+        {
+            dest[j] = worldX[i];
+            dest[j + 1] = worldY[i];
+            dest[j + 2] = vertices[i * 3 + 2];
+        }
+    }
+
+    /**
+     * Transforms the <b>vertices</b> of this {@link Shape} instance by an affine <b>matrix</b> and writes the
+     * results into a {@link FloatBuffer} with absolute puts, for example directly into a mapped or direct
+     * <b>vertex buffer</b>. The position of <b>dest</b> is not changed.
+     * @param matrix the <b>matrix</b>, for example a <b>local-to-world matrix</b>
+     * @param dest the {@link FloatBuffer} which is written to
+     * @param offset the index of the x-coordinate of the first <b>vertex</b> in <b>dest</b>
+     * @param stride the distance between the x-coordinates of two consecutive <b>vertices</b> in <b>dest</b>
+     * @see Shape#transformVertices(Matrix3x2fc, float[], int, int)
+     */
+    public void transformVertices (Matrix3x2fc matrix, FloatBuffer dest, int offset, int stride)
+    {
+        final Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(localX.length);
+        final float[] worldX = scratch.worldX, worldY = scratch.worldY;
+        AffineKernel.getInstance().transform(matrix, localX, localY, worldX, worldY, 0, localX.length);
+
+        for (int i = 0, j = offset; i < localX.length; i++, j += stride)
+        {
+            dest.put(j, worldX[i]);
+            dest.put(j + 1, worldY[i]);
+            dest.put(j + 2, vertices[i * 3 + 2]);
+        }
     }
 
     /**
@@ -110,14 +242,31 @@ public abstract class Shape
 
     /**
      * Sets this {@link Shape}s {@link Transform} to another {@link Transform} using {@link Transform#set(Transform)}.
+     * Callers are expected to only call this method once the <b>version</b> of the other {@link Transform}
+     * changed, instead of comparing the data of both {@link Transform} instances.
      * @param transform the other {@link Transform}
      */
     public void setTransform (Transform transform)
     {
-        if (this.transform.equals(transform)) return;
         this.transform.set(transform);
     }
 
+    /**
+     * Makes this {@link Shape} use another {@link Transform} instance instead of its own, without copying it.
+     * This is used to place a {@link Shape} by the {@link Transform} of the {@link engine.dengine.ecs.Entity} it
+     * belongs to, so {@link Shape#getTransformedVertices()} and {@link Shape#collidesWith(Shape)} use the cached
+     * <b>local-to-world matrix</b> and <b>world version</b> of its {@link engine.dengine.ecs.Chunk} <b>row</b>,
+     * including the <b>transformations</b> of all parents.
+     * @param transform the {@link Transform}, which is shared from now on
+     */
+    public void shareTransform (Transform transform)
+    {
+        if (transform == this.transform) return;
+        this.transform = transform;
+        // The versions of different Transform instances are unrelated, so the cache is invalidated
+        this.transformedVersion = transform.getWorldVersion() - 1;
+    }
+
     /**
      * Returns the count of <b>vertices</b> of this {@link Shape} instance.
      * A <b>vertex</b> contains an x, y and z coordinate.
@@ -128,12 +277,78 @@ public abstract class Shape
         return vertices.length / 3;
     }
 
+    /**
+     * Returns the <b>convex parts</b> of this {@link Shape} instance in its local space, whose union is the area
+     * of this instance. They are created on the first call and cached, together with their edge <b>normals</b>,
+     * so the returned array must not be modified.
+     * @return the <b>convex parts</b>
+     */
+    public ConvexHull[] getConvexParts ()
+    {
+        if (convexParts == null) convexParts = createConvexParts();
+        return convexParts;
+    }
+
+    /**
+     * Creates the <b>convex parts</b> of this {@link Shape} instance. By default this is the {@link ConvexHull} of
+     * all <b>vertices</b>, which subclasses whose area is not convex have to override.
+     * @return the <b>convex parts</b>
+     */
+    protected ConvexHull[] createConvexParts ()
+    {
+        return new ConvexHull[] {new ConvexHull(vertices, 0, getVertexCount())};
+    }
+
+    /**
+     * Returns the <b>indices</b> of the <b>vertices</b> of the triangles which cover the area of this
+     * {@link Shape} instance, three per triangle, for rendering with an <b>index buffer</b>. They are created on
+     * the first call and cached, so the returned array must not be modified.
+     * @return the <b>indices</b>
+     */
+    public int[] getIndices ()
+    {
+        if (indices == null) indices = createIndices();
+        return indices;
+    }
+
+    /**
+     * Returns the number of <b>indices</b> returned by {@link Shape#getIndices()}.
+     * @return the number of <b>indices</b>
+     */
+    public int getIndexCount ()
+    {
+        return getIndices().length;
+    }
+
+    /**
+     * Creates the <b>indices</b> of the triangles of this {@link Shape} instance. By default the <b>vertices</b>
+     * are treated as the <b>outline</b> of a <b>simple polygon</b> and triangulated by <b>ear clipping</b>, which
+     * subclasses whose <b>vertices</b> are in another order have to override.
+     * @return the <b>indices</b>
+     * @see Triangulator#triangulate(float[])
+     */
+    protected int[] createIndices ()
+    {
+        return Triangulator.triangulate(vertices);
+    }
+
     /**
      * Checks wether this {@link Shape} instance is <b>colliding</b> with another {@link Shape} instance.
-     * <b>Collision</b> means that at least one <b>vertex</b> of the other instance has to be in the area of
-     * this instance.
+     * <b>Collision</b> means that the areas of both instances, placed by the <b>local-to-world matrices</b> of
+     * their {@link Transform} instances, overlap or touch. Instances on different z-coordinates never collide.
+     * The test uses the <b>separating axis theorem</b> on the <b>convex parts</b> and does not allocate. It is
+     * thread safe as long as the {@link Transform} instances of both {@link Shape} instances are not changed.
      * @param anotherShape the {@link Shape} instance to check for collision with this one
      * @return wether this instance is colliding with the other one
+     * @see NarrowPhase#overlaps(Shape, Matrix3x2fc, Shape, Matrix3x2fc)
      */
-    public abstract boolean collidesWith (Shape anotherShape);
+    public boolean collidesWith (Shape anotherShape)
+    {
+        // Cant be colliding if they are on different z-coordinates
+        if (anotherShape.vertices[2] != vertices[2]) return false;
+
+        final Scratch scratch = SCRATCH.get();
+        return NarrowPhase.local().overlaps(this, transform.getWorldMatrix(scratch.matrixA),
+                anotherShape, anotherShape.transform.getWorldMatrix(scratch.matrixB));
+    }
 }
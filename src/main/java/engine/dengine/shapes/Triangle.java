@@ -1,7 +1,5 @@
 package engine.dengine.shapes;
 
-import engine.dengine.math.MathUtil;
-
 /**
  * @author Anton Schoenfeld
  * @version 1.0
@@ -14,6 +12,7 @@ import engine.dengine.math.MathUtil;
  */
 public class Triangle extends Shape
 {
+    private static final int[] INDICES = {0, 1, 2};
 
     /**
      * Creates a new {@link Triangle} instance with the given <b>vertices</b>.
@@ -29,31 +28,12 @@ public class Triangle extends Shape
     }
 
     /**
-     * Checks wether this {@link Shape} instance is <b>colliding</b> with another {@link Shape} instance.
-     * <b>Collision</b> means that at least one <b>vertex</b> of the other instance has to be in the area of
-     * this instance.
-     *
-     * @param anotherShape the {@link Shape} instance to check for collision with this one
-     * @return wether this instance is colliding with the other one
+     * Returns the <b>indices</b> of the only triangle.
+     * @return the <b>indices</b>
      */
     @Override
-    public boolean collidesWith (Shape anotherShape)
+    protected int[] createIndices ()
     {
-        // Cant be colliding if they are on different z-coordinates
-        if (anotherShape.getVertices()[2] != vertices[2]) return false;
-
-        float[] anotherVertices = anotherShape.getVertices();
-
-        // Loop through vertices of anotherShape
-        for (int i = 0; i < anotherVertices.length; i += 3) {
-            // Get the current vertex of anotherVertices
-            float x = anotherVertices[i];
-            float y = anotherVertices[i + 1];
-            float z = anotherVertices[i + 2];
-            // Check if the point (x, y, z) is inside the triangle
-            if (MathUtil.isPointInTriangle(this, x, y, z)) return true; // Collision detected
-        }
-        // No collision detected
-        return false;
+        return INDICES;
     }
 }
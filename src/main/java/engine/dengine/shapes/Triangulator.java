@@ -0,0 +1,304 @@
+package engine.dengine.shapes;
+
+import engine.dengine.Constants;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link Triangulator}</h2>
+ * <br>
+ * The {@link Triangulator} class splits polygons into triangles and merges triangles into <b>convex pieces</b>.
+ * <ul>
+ *     <li>{@link Triangulator#triangulate(float[])} splits a <b>simple polygon</b>, given as its <b>outline</b>,
+ *     into triangles by <b>ear clipping</b>: a corner whose triangle contains no other corner is an <b>ear</b>
+ *     and is cut off, until only one triangle remains.</li>
+ *     <li>{@link Triangulator#weld(float[], int[])} turns a flat triangle list into unique <b>vertices</b> and
+ *     <b>indices</b>, so triangles which share a corner share an index.</li>
+ *     <li>{@link Triangulator#decompose(float[], int[])} merges indexed triangles across their shared edges as
+ *     long as the result stays convex (<b>Hertel-Mehlhorn</b>), which gives at most four times the minimal
+ *     number of <b>convex pieces</b>.</li>
+ * </ul>
+ * All methods take <b>vertices</b> with x, y and z coordinates and ignore the z-coordinates. They allocate and
+ * run in quadratic time, so their results are meant to be computed once and cached, like {@link Polygon} does.
+ */
+public final class Triangulator
+{
+    private Triangulator () {}
+
+    /**
+     * Triangulates a <b>simple polygon</b>, whose edges do not cross, by <b>ear clipping</b>. The <b>outline</b>
+     * may be in clockwise or counter-clockwise order, and collinear corners are allowed.
+     * @param outline the <b>vertices</b> of the <b>outline</b> in order
+     * @return the <b>indices</b> of the <b>vertices</b> of the triangles, three per triangle in counter-clockwise
+     * order, without triangles of zero area
+     * @throws IllegalArgumentException if the <b>outline</b> has less than three <b>vertices</b> or no area, or if
+     * no <b>ear</b> is left because it crosses itself. Not every <b>outline</b> which crosses itself is noticed
+     */
+    public static int[] triangulate (float[] outline)
+    {
+        final int count = outline.length / Constants.POSITION_SIZE;
+        if (count < 3) throw new IllegalArgumentException("Tried to triangulate an outline of less than three " +
+                "vertices");
+
+        final float area = signedArea(outline, count);
+        if (area == 0) throw new IllegalArgumentException("Tried to triangulate an outline without area");
+
+        // The remaining corners as a doubly linked list in counter-clockwise order
+        final int[] previous = new int[count];
+        final int[] next = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            final int before = i == 0 ? count - 1 : i - 1, after = i + 1 == count ? 0 : i + 1;
+            previous[i] = area > 0 ? before : after;
+            next[i] = area > 0 ? after : before;
+        }
+
+        final int[] triangles = new int[(count - 2) * 3];
+        int triangleCount = 0;
+        int remaining = count;
+        int corner = 0;
+        // The number of corners visited since the last one was cut off
+        int visited = 0;
+        while (remaining > 3)
+        {
+            final int a = previous[corner], b = next[corner];
+            final float cross = cross(outline, a, corner, b);
+            final boolean degenerate = cross == 0;
+
+            if (degenerate || (cross > 0 && isEar(outline, previous, next, a, corner, b)))
+            {
+                // Collinear corners are cut off without a triangle
+                if (!degenerate)
+                {
+                    triangles[triangleCount++] = a;
+                    triangles[triangleCount++] = corner;
+                    triangles[triangleCount++] = b;
+                }
+                next[a] = b;
+                previous[b] = a;
+                remaining--;
+                visited = 0;
+                corner = b;
+                continue;
+            }
+
+            if (++visited > remaining) throw new IllegalArgumentException("Tried to triangulate an outline " +
+                    "which crosses itself");
+            corner = b;
+        }
+
+        final int a = previous[corner], b = next[corner];
+        if (cross(outline, a, corner, b) > 0)
+        {
+            triangles[triangleCount++] = a;
+            triangles[triangleCount++] = corner;
+            triangles[triangleCount++] = b;
+        }
+        return Arrays.copyOf(triangles, triangleCount);
+    }
+
+    /**
+     * Checks wether no remaining corner lies inside the triangle of a convex corner and its neighbours. Convex
+     * corners cannot be the only corners inside, so only <b>reflex</b> corners are tested.
+     */
+    private static boolean isEar (float[] outline, int[] previous, int[] next, int a, int corner, int b)
+    {
+        for (int i = next[b]; i != a; i = next[i])
+        {
+            if (cross(outline, previous[i], i, next[i]) > 0) continue;
+            if (samePoint(outline, i, a) || samePoint(outline, i, corner) || samePoint(outline, i, b)) continue;
+            if (cross(outline, a, corner, i) >= 0 && cross(outline, corner, b, i) >= 0 &&
+                    cross(outline, b, a, i) >= 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Merges triangles into <b>convex pieces</b>. Two pieces are merged across an edge they share if the result
+     * is convex, until no more pieces can be merged. Triangles only share an edge if they share both
+     * <b>indices</b>, see {@link Triangulator#weld(float[], int[])}.
+     * @param vertices the <b>vertices</b>
+     * @param triangles the <b>indices</b> of the triangles, three per triangle in any order
+     * @return the <b>convex pieces</b>, without pieces of triangles with zero area
+     * @throws IllegalArgumentException if the number of <b>indices</b> is not a multiple of three
+     */
+    public static ConvexHull[] decompose (float[] vertices, int[] triangles)
+    {
+        if (triangles.length % 3 != 0) throw new IllegalArgumentException("Tried to decompose " +
+                triangles.length + " indices, which are not a multiple of three");
+
+        // Pieces as index lists in counter-clockwise order, with null for merged pieces
+        final int[][] pieces = new int[triangles.length / 3][];
+        // Maps directed edges to the piece which has them
+        final Map<Long, Integer> edges = new HashMap<>();
+        for (int i = 0; i < pieces.length; i++)
+        {
+            int a = triangles[i * 3], b = triangles[i * 3 + 1], c = triangles[i * 3 + 2];
+            final float cross = cross(vertices, a, b, c);
+            if (cross == 0) continue;
+            if (cross < 0)
+            {
+                final int swap = b;
+                b = c;
+                c = swap;
+            }
+            pieces[i] = new int[] {a, b, c};
+            addEdges(edges, pieces[i], i);
+        }
+
+        for (int i = 0; i < pieces.length; i++)
+        {
+            boolean merged = true;
+            while (merged && pieces[i] != null)
+            {
+                merged = false;
+                final int[] piece = pieces[i];
+                for (int k = 0; k < piece.length; k++)
+                {
+                    final int a = piece[k], b = piece[k + 1 == piece.length ? 0 : k + 1];
+                    // The neighbour has the shared edge in the opposite direction
+                    final Integer other = edges.get(edge(b, a));
+                    if (other == null || other == i) continue;
+
+                    final int[] union = merge(piece, k, pieces[other], a);
+                    if (!isConvex(vertices, union)) continue;
+
+                    removeEdges(edges, piece);
+                    removeEdges(edges, pieces[other]);
+                    pieces[i] = union;
+                    pieces[other] = null;
+                    addEdges(edges, union, i);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int[] piece : pieces)
+            if (piece != null) count++;
+
+        final ConvexHull[] parts = new ConvexHull[count];
+        count = 0;
+        for (int[] piece : pieces)
+        {
+            if (piece == null) continue;
+            final float[] points = new float[piece.length * Constants.POSITION_SIZE];
+            for (int i = 0; i < piece.length; i++)
+                System.arraycopy(vertices, piece[i] * Constants.POSITION_SIZE, points, i * Constants.POSITION_SIZE,
+                        Constants.POSITION_SIZE);
+            parts[count++] = new ConvexHull(points, 0, piece.length);
+        }
+        return parts;
+    }
+
+    /**
+     * Joins two pieces which share the edge from <b>piece[k]</b> to the next <b>index</b> of the first piece:
+     * all <b>indices</b> of the first piece starting after that edge, followed by the <b>indices</b> of the
+     * other piece which are not on the edge.
+     */
+    private static int[] merge (int[] piece, int k, int[] other, int a)
+    {
+        final int[] union = new int[piece.length + other.length - 2];
+        int size = 0;
+        for (int i = 1; i <= piece.length; i++)
+            union[size++] = piece[(k + i) % piece.length];
+
+        int start = 0;
+        while (other[start] != a) start++;
+        // other[start] is a and the index before it is b, both are already added
+        for (int i = 1; i < other.length - 1; i++)
+            union[size++] = other[(start + i) % other.length];
+        return union;
+    }
+
+    /**
+     * Checks wether a polygon given as <b>indices</b> in counter-clockwise order has no <b>reflex</b> corner.
+     */
+    private static boolean isConvex (float[] vertices, int[] polygon)
+    {
+        for (int i = 0; i < polygon.length; i++)
+        {
+            final int a = polygon[i == 0 ? polygon.length - 1 : i - 1], b = polygon[i];
+            final int c = polygon[i + 1 == polygon.length ? 0 : i + 1];
+            if (cross(vertices, a, b, c) < 0) return false;
+        }
+        return true;
+    }
+
+    private static void addEdges (Map<Long, Integer> edges, int[] piece, int index)
+    {
+        for (int k = 0; k < piece.length; k++)
+            edges.put(edge(piece[k], piece[k + 1 == piece.length ? 0 : k + 1]), index);
+    }
+
+    private static void removeEdges (Map<Long, Integer> edges, int[] piece)
+    {
+        for (int k = 0; k < piece.length; k++)
+            edges.remove(edge(piece[k], piece[k + 1 == piece.length ? 0 : k + 1]));
+    }
+
+    private static long edge (int from, int to)
+    {
+        return (long) from << 32 | to & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Removes duplicate <b>vertices</b> from a flat triangle list, like the one {@link Polygon.Builder} builds.
+     * @param triangles the <b>vertices</b> of the triangles, three per triangle
+     * @param indices the int[] the <b>index</b> of every <b>vertex</b> of the triangle list is written to, which
+     * has to be at least as long as the number of <b>vertices</b>
+     * @return the unique <b>vertices</b>, in the order they first appear
+     */
+    public static float[] weld (float[] triangles, int[] indices)
+    {
+        final int count = triangles.length / Constants.POSITION_SIZE;
+        final Map<Long, Integer> unique = new HashMap<>();
+        final float[] vertices = new float[triangles.length];
+        int size = 0;
+        for (int i = 0; i < count; i++)
+        {
+            // Adding 0 turns -0 into 0, so both weld together. The z-coordinates are equal for all vertices
+            final float x = triangles[i * 3] + 0f, y = triangles[i * 3 + 1] + 0f;
+            final long key = (long) Float.floatToIntBits(x) << 32 | Float.floatToIntBits(y) & 0xFFFFFFFFL;
+            Integer index = unique.get(key);
+            if (index == null)
+            {
+                index = size++;
+                unique.put(key, index);
+                System.arraycopy(triangles, i * 3, vertices, index * 3, Constants.POSITION_SIZE);
+            }
+            indices[i] = index;
+        }
+        return Arrays.copyOf(vertices, size * Constants.POSITION_SIZE);
+    }
+
+    /**
+     * Returns twice the signed area of a polygon, which is positive for counter-clockwise order.
+     */
+    private static float signedArea (float[] vertices, int count)
+    {
+        float area = 0;
+        for (int i = 0, j = count - 1; i < count; j = i++)
+            area += vertices[j * 3] * vertices[i * 3 + 1] - vertices[i * 3] * vertices[j * 3 + 1];
+        return area;
+    }
+
+    private static float cross (float[] vertices, int o, int a, int b)
+    {
+        final float ox = vertices[o * 3], oy = vertices[o * 3 + 1];
+        return (vertices[a * 3] - ox) * (vertices[b * 3 + 1] - oy) -
+                (vertices[a * 3 + 1] - oy) * (vertices[b * 3] - ox);
+    }
+
+    private static boolean samePoint (float[] vertices, int a, int b)
+    {
+        return vertices[a * 3] == vertices[b * 3] && vertices[a * 3 + 1] == vertices[b * 3 + 1];
+    }
+}
@@ -0,0 +1,114 @@
+package engine.dengine.window;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link FixedTimestep}</h2>
+ * <br>
+ * The {@link FixedTimestep} class is used to run a <b>simulation</b> at a fixed <b>tick rate</b>, independent
+ * of the <b>frame rate</b>. The time of every rendered frame is added to an <b>accumulator</b>, and
+ * {@link FixedTimestep#advance(double)} returns how many <b>ticks</b> of {@link FixedTimestep#getDeltaTime()}
+ * seconds fit into it. The remaining fraction of a <b>tick</b> is returned by {@link FixedTimestep#getAlpha()}
+ * and is used to <b>interpolate</b> between the previous and the current state when rendering.
+ * <br>
+ * To prevent a <b>death spiral</b>, where slow <b>ticks</b> cause even more <b>ticks</b> in the next frame, at
+ * most {@link FixedTimestep#getMaxSteps()} <b>ticks</b> are run per frame. Any time beyond that is dropped, so
+ * the <b>simulation</b> slows down instead.
+ */
+public class FixedTimestep
+{
+    /** The default number of <b>ticks</b> per second */
+    public static final int DEFAULT_TICK_RATE = 60;
+    /** The default maximum number of <b>ticks</b> per frame */
+    public static final int DEFAULT_MAX_STEPS = 5;
+
+    private final double step;
+    private final int maxSteps;
+    private double accumulator;
+    private long droppedSteps;
+
+    /**
+     * Creates a new {@link FixedTimestep} instance with {@link FixedTimestep#DEFAULT_TICK_RATE} and
+     * {@link FixedTimestep#DEFAULT_MAX_STEPS}.
+     */
+    public FixedTimestep ()
+    {
+        this(DEFAULT_TICK_RATE, DEFAULT_MAX_STEPS);
+    }
+
+    /**
+     * Creates a new {@link FixedTimestep} instance.
+     * @param tickRate the number of <b>ticks</b> per second
+     * @param maxSteps the maximum number of <b>ticks</b> per frame
+     * @throws IllegalArgumentException if the <b>tick rate</b> or the maximum number of <b>ticks</b> is not
+     * positive
+     */
+    public FixedTimestep (int tickRate, int maxSteps)
+    {
+        if (tickRate <= 0 || maxSteps <= 0) throw new IllegalArgumentException("Tried to create " +
+                getClass().getName() + " with a non-positive tick rate or maximum number of steps");
+
+        this.step = 1.0 / tickRate;
+        this.maxSteps = maxSteps;
+        this.accumulator = 0;
+        this.droppedSteps = 0;
+    }
+
+    /**
+     * Adds the time of a frame to the <b>accumulator</b> and takes as many whole <b>ticks</b> out of it as
+     * allowed.
+     * @param frameTime the time of the frame in seconds
+     * @return the number of <b>ticks</b> which have to be run this frame
+     */
+    public int advance (double frameTime)
+    {
+        if (frameTime > 0) accumulator += frameTime;
+
+        final int steps = (int) (accumulator / step);
+        // Take all whole ticks out, including the dropped ones, so only the fraction for the interpolation is left
+        accumulator = Math.max(0, accumulator - steps * step);
+        if (steps <= maxSteps) return steps;
+
+        droppedSteps += steps - maxSteps;
+        return maxSteps;
+    }
+
+    /**
+     * Returns the fraction of a <b>tick</b> which is left in the <b>accumulator</b>, which is the
+     * <b>interpolation</b> factor between the previous and the current state.
+     * @return the <b>interpolation</b> factor from 0 (inclusive) to 1 (exclusive)
+     */
+    public float getAlpha ()
+    {
+        return Math.min((float) (accumulator / step), Math.nextDown(1f));
+    }
+
+    /**
+     * Returns the duration of a <b>tick</b>, which is passed as delta time to every <b>tick</b>.
+     * @return the duration of a <b>tick</b> in seconds
+     */
+    public float getDeltaTime ()
+    {
+        return (float) step;
+    }
+
+    /**
+     * Returns the maximum number of <b>ticks</b> per frame.
+     * @return the maximum number of <b>ticks</b>
+     */
+    public int getMaxSteps ()
+    {
+        return maxSteps;
+    }
+
+    /**
+     * Returns the total number of <b>ticks</b> which were dropped to prevent a <b>death spiral</b>.
+     * @return the number of dropped <b>ticks</b>
+     */
+    public long getDroppedSteps ()
+    {
+        return droppedSteps;
+    }
+}
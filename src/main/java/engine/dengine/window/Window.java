@@ -2,6 +2,9 @@ package engine.dengine.window;
 
 import engine.dengine.assets.AssetManager;
 import engine.dengine.assets.Shader;
+import engine.dengine.ecs.RenderComponent;
+import engine.dengine.graphics.RenderBatch;
+import engine.dengine.scene.Scene;
 import org.lwjgl.glfw.*;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.system.MemoryStack;
@@ -25,6 +28,12 @@ import static org.lwjgl.system.MemoryUtil.NULL;
  * The {@link Window} class serves as an abstraction of a <b>GLFW window</b>. It is a <b>singleton</b>, because
  * <b>EngineDengine</b> only supports a single window. To obtain the {@link Window} instance, use
  * {@link Window#getInstance()}.
+ * <br>
+ * The <b>rendering loop</b> of the {@link Window} also drives the <b>simulation</b> of its {@link Scene}
+ * ({@link Window#setScene(Scene)}) using a {@link FixedTimestep}, so {@link Scene#update(float)} is called at a
+ * fixed <b>tick rate</b> no matter how fast frames are rendered. Rendering code <b>interpolates</b> between the
+ * last two <b>ticks</b> using {@link FixedTimestep#getAlpha()}. Every frame the {@link RenderComponent} instances
+ * of the {@link Scene} are drawn by a {@link RenderBatch} with <b>default.vert</b> and <b>default.frag</b>.
  */
 public class Window
 {
@@ -46,10 +55,13 @@ public class Window
     private long window;
     protected int width, height;
     private String title;
+    private Scene scene;
+    private final FixedTimestep timestep;
 
     private Window ()
     {
         title = "EngineDengine application";
+        timestep = new FixedTimestep();
 
         // Set up an error callback which will print errors to System.err
         GLFWErrorCallback.createPrint(System.err).set();
@@ -119,52 +131,45 @@ public class Window
         // bindings available for use.
         GL.createCapabilities();
 
-        int VAO = glGenVertexArrays();
-        int VBO = glGenBuffers();
-        int EBO = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, VBO);
-        glBufferData(GL_ARRAY_BUFFER, new float[]{
-                0.5f, 0.5f, 0.0f,       1f, 1f, 1f, 1f, // Top right
-                0.5f, -0.5f, 0.0f,      0f, 1f, 0f, 1f, // Bottom right
-                -0.5f, -0.5f, 0.0f,     1f, 0f, 0f, 1f, // Bottom left
-                -0.5f, 0.5f, 0.0f,      0f, 0f, 1f, 1f // Top left
-        }, GL_STATIC_DRAW);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBO);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, new int[]{
-                0, 1, 3,   // first triangle
-                1, 2, 3    // second triangle
-        }, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
-
-        glBindVertexArray(VAO);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, EBO);
-        glBindBuffer(GL_ARRAY_BUFFER, VBO);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 7 * Float.BYTES, 0);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(1, 4, GL_FLOAT, false, 7 * Float.BYTES, 3 * Float.BYTES);
-        glEnableVertexAttribArray(1);
+        final RenderBatch batch = new RenderBatch();
+        batch.init();
 
         Shader shader = null;
         try {
-            shader = AssetManager.addShader("test.vert", "test.frag");
+            shader = AssetManager.addShader("default.vert", "default.frag");
         } catch (Exception e) {e.printStackTrace();}
 
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        // Opaque sprites are drawn front to back and rely on the depth test, equal depths keep their draw order
+        glEnable(GL_DEPTH_TEST);
+        glDepthFunc(GL_LEQUAL);
+
         // Set the clear color
         glClearColor(0f, 0f, 0f, 1f);
+        double lastTime = glfwGetTime();
         // Run the rendering loop until the user has attempted to close
         // the window or has pressed the ESCAPE key.
         while (!glfwWindowShouldClose(window))
         {
+            // Run the fixed ticks which fit into the time since the last frame
+            final double time = glfwGetTime();
+            final int steps = timestep.advance(time - lastTime);
+            lastTime = time;
+            if (scene != null)
+                for (int i = 0; i < steps; i++)
+                    scene.update(timestep.getDeltaTime());
+
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
 
             glViewport(0, 0, this.width, this.height); // Refresh viewport
 
-            shader.use();
-            glBindVertexArray(VAO);
-            glDrawElements(GL_TRIANGLES, 6, GL_UNSIGNED_INT, 0);
-            glUseProgram(0);
-            glBindVertexArray(0);
+            // Added and removed entities are picked up right away, the others keep their slots
+            if (scene != null)
+            {
+                batch.sync(scene.query(RenderComponent.class));
+                batch.render(shader, timestep.getAlpha());
+            }
 
             glfwSwapBuffers(window); // swap the color buffers
 
@@ -173,6 +178,8 @@ public class Window
             glfwPollEvents();
         }
 
+        batch.clear();
+        batch.dispose();
         System.out.println("\rGoodbye EngineDengine 1.0!");
     }
 
@@ -194,6 +201,7 @@ public class Window
      */
     public void dispose ()
     {
+        if (scene != null) scene.dispose();
         // Free all assets
         AssetManager.disposeAll();
         // Free the memory
@@ -206,6 +214,33 @@ public class Window
         if (c != null) c.free();
     }
 
+    /**
+     * Sets the {@link Scene} which is updated by the <b>rendering loop</b>.
+     * @param scene the {@link Scene}, or null to stop updating a {@link Scene}
+     */
+    public void setScene (Scene scene)
+    {
+        this.scene = scene;
+    }
+
+    /**
+     * Returns the {@link Scene} which is updated by the <b>rendering loop</b>.
+     * @return the {@link Scene}, or null if there is none
+     */
+    public Scene getScene ()
+    {
+        return scene;
+    }
+
+    /**
+     * Returns the {@link FixedTimestep} which is used to update the {@link Scene}.
+     * @return the {@link FixedTimestep}
+     */
+    public FixedTimestep getTimestep ()
+    {
+        return timestep;
+    }
+
     /**
      * Returns the window width.
      * @return the window width
@@ -3,17 +3,17 @@
 layout(location = 0) in vec3 vPos;
 layout(location = 1) in vec4 vCol;
 layout(location = 2) in vec2 vUv;
-layout(location = 3) in float vTexId;
+layout(location = 3) in int vTexIndex;
 
 out vec4 fCol;
 out vec2 fUv;
-out float fTexId;
+flat out int fTexIndex;
 
 void main()
 {
     fCol = vCol;
     fUv = vUv;
-    fTexId = vTexId;
+    fTexIndex = vTexIndex;
 
     gl_Position = vec4(vPos, 1.0);
 }
\ No newline at end of file
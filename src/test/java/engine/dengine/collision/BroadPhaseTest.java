@@ -0,0 +1,138 @@
+package engine.dengine.collision;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link BroadPhaseTest}</h2>
+ * <br>
+ * Tests that {@link BroadPhase#updatePairs(BroadPhase.PairCallback)} reports every <b>pair</b> of overlapping fat
+ * <b>AABBs</b> with a moved <b>proxy</b> exactly once, also if both <b>proxies</b> moved, compared against a
+ * brute force search over all <b>proxies</b>.
+ */
+class BroadPhaseTest
+{
+    private static final float WORLD = 60;
+
+    @Test
+    void updatePairsReportsEveryNewPairOnce ()
+    {
+        final Random random = new Random(5);
+        final BroadPhase broadPhase = new BroadPhase();
+        final DynamicAabbTree tree = broadPhase.getTree();
+        final List<Integer> proxies = new ArrayList<>();
+        final List<float[]> boxes = new ArrayList<>();
+
+        for (int frame = 0; frame < 300; frame++)
+        {
+            final Set<Integer> moved = new HashSet<>();
+            for (int i = 0; i < 20; i++)
+            {
+                final float[] box = randomBox(random);
+                final int proxy = broadPhase.createProxy(box[0], box[1], box[2], box[3], null);
+                proxies.add(proxy);
+                boxes.add(box);
+                moved.add(proxy);
+            }
+            for (int i = 0; i < 15 && !proxies.isEmpty(); i++)
+            {
+                final int index = random.nextInt(proxies.size());
+                final int proxy = proxies.get(index);
+                broadPhase.destroyProxy(proxy);
+                moved.remove(proxy);
+                // Swap remove, which keeps the ids of the boxes in the same order
+                proxies.set(index, proxies.get(proxies.size() - 1));
+                proxies.remove(proxies.size() - 1);
+                boxes.set(index, boxes.get(boxes.size() - 1));
+                boxes.remove(boxes.size() - 1);
+            }
+            for (int i = 0; i < 40 && !proxies.isEmpty(); i++)
+            {
+                final int index = random.nextInt(proxies.size());
+                final int proxy = proxies.get(index);
+                final float[] box = boxes.get(index);
+                final float dx = (random.nextFloat() - 0.5f) * 3, dy = (random.nextFloat() - 0.5f) * 3;
+                box[0] += dx;
+                box[1] += dy;
+                box[2] += dx;
+                box[3] += dy;
+
+                final float minX = tree.getFatMinX(proxy), minY = tree.getFatMinY(proxy);
+                final float maxX = tree.getFatMaxX(proxy), maxY = tree.getFatMaxY(proxy);
+                broadPhase.moveProxy(proxy, box[0], box[1], box[2], box[3], dx, dy);
+                // Only proxies which were reinserted with a new fat AABB are queried again
+                if (minX != tree.getFatMinX(proxy) || minY != tree.getFatMinY(proxy)
+                        || maxX != tree.getFatMaxX(proxy) || maxY != tree.getFatMaxY(proxy)) moved.add(proxy);
+            }
+            if (!proxies.isEmpty() && random.nextInt(4) == 0)
+                moved.add(touch(broadPhase, proxies.get(random.nextInt(proxies.size()))));
+
+            final List<Long> reported = new ArrayList<>();
+            broadPhase.updatePairs((a, b) -> {
+                assertTrue(a < b, "Pair " + a + ", " + b + " is not ordered");
+                reported.add(BroadPhase.pack(a, b));
+            });
+            assertEquals(0, broadPhase.getMoveCount());
+
+            final Set<Long> unique = new HashSet<>(reported);
+            assertEquals(unique.size(), reported.size(), "A pair was reported twice");
+
+            final Set<Long> expected = new HashSet<>();
+            for (int proxy : moved)
+                for (int other : proxies)
+                    if (other != proxy && tree.testOverlap(proxy, other)) expected.add(BroadPhase.pack(proxy, other));
+            assertEquals(expected, unique);
+        }
+    }
+
+    @Test
+    void destroyedProxiesAreNotReported ()
+    {
+        final BroadPhase broadPhase = new BroadPhase();
+        final int a = broadPhase.createProxy(0, 0, 1, 1, null);
+        final int b = broadPhase.createProxy(0.5f, 0.5f, 1.5f, 1.5f, null);
+        final int c = broadPhase.createProxy(0.5f, 0, 1.5f, 1, null);
+        broadPhase.destroyProxy(b);
+
+        final List<Long> reported = new ArrayList<>();
+        broadPhase.updatePairs((proxyA, proxyB) -> reported.add(BroadPhase.pack(proxyA, proxyB)));
+        assertEquals(List.of(BroadPhase.pack(a, c)), reported);
+
+        broadPhase.updatePairs((proxyA, proxyB) -> reported.add(BroadPhase.pack(proxyA, proxyB)));
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    void packIsSymmetric ()
+    {
+        final long pair = BroadPhase.pack(7, 3);
+        assertEquals(pair, BroadPhase.pack(3, 7));
+        assertEquals(3, BroadPhase.unpackA(pair));
+        assertEquals(7, BroadPhase.unpackB(pair));
+        assertEquals(Integer.MAX_VALUE, BroadPhase.unpackB(BroadPhase.pack(0, Integer.MAX_VALUE)));
+    }
+
+    private static int touch (BroadPhase broadPhase, int proxy)
+    {
+        broadPhase.touchProxy(proxy);
+        return proxy;
+    }
+
+    private static float[] randomBox (Random random)
+    {
+        final float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD;
+        return new float[] {x, y, x + 0.5f + random.nextFloat() * 3, y + 0.5f + random.nextFloat() * 3};
+    }
+}
@@ -0,0 +1,196 @@
+package engine.dengine.collision;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link DynamicAabbTreeTest}</h2>
+ * <br>
+ * Tests the {@link DynamicAabbTree} against a brute force search over all <b>proxies</b>, after random sequences
+ * of created, moved and destroyed <b>proxies</b> which trigger <b>rotations</b> and the reuse of freed nodes.
+ */
+class DynamicAabbTreeTest
+{
+    private static final float WORLD = 100;
+    private static final float EPSILON = 0.001f;
+
+    /** The tight <b>AABBs</b> of the live <b>proxies</b> by id */
+    private final Map<Integer, float[]> boxes = new HashMap<>();
+    private final List<Integer> proxies = new ArrayList<>();
+
+    @Test
+    void randomOperationsKeepTheTreeValid ()
+    {
+        final Random random = new Random(1);
+        final DynamicAabbTree tree = new DynamicAabbTree();
+
+        for (int step = 0; step < 20_000; step++)
+        {
+            final int operation = random.nextInt(10);
+            if (proxies.isEmpty() || operation < 4) create(tree, random);
+            else if (operation < 6) destroy(tree, random);
+            else move(tree, random);
+
+            tree.validate();
+            if (step % 100 == 0) assertQueriesMatchBruteForce(tree, random);
+        }
+
+        while (!proxies.isEmpty())
+        {
+            destroy(tree, random);
+            tree.validate();
+        }
+        assertEquals(-1, tree.getHeight());
+        assertEquals(0, tree.getNodeCount());
+    }
+
+    @Test
+    void sortedInsertionStaysBalanced ()
+    {
+        final DynamicAabbTree tree = new DynamicAabbTree();
+        for (int i = 0; i < 1024; i++)
+            tree.createProxy(i, 0, i + 0.5f, 0.5f, null);
+
+        tree.validate();
+        // A tree which is balanced by rotations is at most about 1.44 times as high as a perfectly balanced one
+        assertTrue(tree.getHeight() <= 15, "Height " + tree.getHeight());
+    }
+
+    @Test
+    void fatAabbContainsTheTightAabb ()
+    {
+        final Random random = new Random(2);
+        final DynamicAabbTree tree = new DynamicAabbTree();
+        for (int i = 0; i < 200; i++)
+            create(tree, random);
+
+        for (int step = 0; step < 5_000; step++)
+        {
+            final int proxy = move(tree, random);
+            final float[] box = boxes.get(proxy);
+            assertTrue(tree.getFatMinX(proxy) <= box[0] && tree.getFatMinY(proxy) <= box[1]
+                    && tree.getFatMaxX(proxy) >= box[2] && tree.getFatMaxY(proxy) >= box[3]);
+        }
+        tree.validate();
+    }
+
+    @Test
+    void destroyedProxiesAreRejected ()
+    {
+        final DynamicAabbTree tree = new DynamicAabbTree();
+        final int proxy = tree.createProxy(0, 0, 1, 1, null);
+        tree.destroyProxy(proxy);
+
+        assertTrue(!tree.isProxy(proxy));
+        assertThrows(IllegalArgumentException.class, () -> tree.destroyProxy(proxy));
+        assertThrows(IllegalArgumentException.class, () -> tree.moveProxy(proxy, 0, 0, 1, 1, 0, 0));
+    }
+
+    private void create (DynamicAabbTree tree, Random random)
+    {
+        final float[] box = randomBox(random);
+        final int proxy = tree.createProxy(box[0], box[1], box[2], box[3], box);
+        assertTrue(boxes.put(proxy, box) == null, "Proxy " + proxy + " was handed out twice");
+        proxies.add(proxy);
+    }
+
+    private void destroy (DynamicAabbTree tree, Random random)
+    {
+        final int proxy = proxies.remove(random.nextInt(proxies.size()));
+        boxes.remove(proxy);
+        tree.destroyProxy(proxy);
+    }
+
+    private int move (DynamicAabbTree tree, Random random)
+    {
+        final int proxy = proxies.get(random.nextInt(proxies.size()));
+        final float[] box = boxes.get(proxy);
+        // Mostly small steps which stay inside the fat AABB, sometimes jumps across the world
+        final float scale = random.nextInt(8) == 0 ? WORLD : 0.2f;
+        final float dx = (random.nextFloat() - 0.5f) * scale, dy = (random.nextFloat() - 0.5f) * scale;
+        box[0] += dx;
+        box[1] += dy;
+        box[2] += dx;
+        box[3] += dy;
+        tree.moveProxy(proxy, box[0], box[1], box[2], box[3], dx, dy);
+        return proxy;
+    }
+
+    private void assertQueriesMatchBruteForce (DynamicAabbTree tree, Random random)
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            final float[] box = randomBox(random);
+            final Set<Integer> found = new HashSet<>();
+            tree.query(box[0], box[1], box[2], box[3], proxy -> {
+                assertTrue(found.add(proxy), "Proxy " + proxy + " was reported twice");
+                return true;
+            });
+
+            final Set<Integer> expected = new HashSet<>();
+            for (int proxy : proxies)
+                if (tree.getFatMinX(proxy) <= box[2] && tree.getFatMaxX(proxy) >= box[0]
+                        && tree.getFatMinY(proxy) <= box[3] && tree.getFatMaxY(proxy) >= box[1])
+                    expected.add(proxy);
+            assertEquals(expected, found);
+
+            final float x1 = random.nextFloat() * WORLD, y1 = random.nextFloat() * WORLD;
+            final float x2 = random.nextFloat() * WORLD, y2 = random.nextFloat() * WORLD;
+            final Set<Integer> hit = new HashSet<>();
+            tree.raycast(x1, y1, x2, y2, 1, (proxy, maxFraction) -> {
+                hit.add(proxy);
+                return -1;
+            }, new DynamicAabbTree.Stack());
+
+            for (int proxy : proxies)
+            {
+                // Rays which graze a corner may go either way in floating point
+                if (hits(tree, proxy, -EPSILON, x1, y1, x2, y2))
+                    assertTrue(hit.contains(proxy), "Missed proxy " + proxy);
+                if (hit.contains(proxy)) assertTrue(hits(tree, proxy, EPSILON, x1, y1, x2, y2),
+                        "Proxy " + proxy + " was hit, but the ray misses it");
+            }
+        }
+    }
+
+    private static float[] randomBox (Random random)
+    {
+        final float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD;
+        return new float[] {x, y, x + 0.1f + random.nextFloat() * 4, y + 0.1f + random.nextFloat() * 4};
+    }
+
+    /**
+     * Checks wether the segment from the first to the second point hits the fat <b>AABB</b> of a <b>proxy</b>
+     * grown by a distance on every side, by intersecting the intervals between the planes of both axes.
+     */
+    private static boolean hits (DynamicAabbTree tree, int proxy, float grow, float x1, float y1, float x2, float y2)
+    {
+        final double[] near = {0}, far = {1};
+        return clip(tree.getFatMinX(proxy) - grow, tree.getFatMaxX(proxy) + grow, x1, x2 - x1, near, far)
+                && clip(tree.getFatMinY(proxy) - grow, tree.getFatMaxY(proxy) + grow, y1, y2 - y1, near, far);
+    }
+
+    private static boolean clip (double min, double max, double start, double delta, double[] near, double[] far)
+    {
+        if (delta == 0) return start >= min && start <= max;
+        final double t1 = (min - start) / delta, t2 = (max - start) / delta;
+        near[0] = Math.max(near[0], Math.min(t1, t2));
+        far[0] = Math.min(far[0], Math.max(t1, t2));
+        return near[0] <= far[0];
+    }
+}
@@ -0,0 +1,97 @@
+package engine.dengine.collision;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PairSetTest}</h2>
+ * <br>
+ * Tests the <b>backward shift deletion</b> of the {@link PairSet} against a {@link HashSet}. The <b>pairs</b> are
+ * taken from a few <b>proxies</b>, so probe sequences form long clusters which wrap around the end of the table.
+ */
+class PairSetTest
+{
+    @Test
+    void randomAddAndRemoveMatchHashSet ()
+    {
+        final Random random = new Random(3);
+        final PairSet set = new PairSet();
+        final Set<Long> expected = new HashSet<>();
+
+        for (int step = 0; step < 200_000; step++)
+        {
+            final long pair = BroadPhase.pack(random.nextInt(48), random.nextInt(48));
+            // Grow for the first half, then shrink, so rehashing and deletions from dense tables are both covered
+            final boolean add = random.nextInt(100) < (step < 100_000 ? 60 : 40);
+            if (add) assertEquals(expected.add(pair), set.add(pair));
+            else assertEquals(expected.remove(pair), set.remove(pair));
+            assertEquals(expected.size(), set.size());
+
+            if (step % 1_000 == 0) assertSameContents(expected, set);
+        }
+        assertSameContents(expected, set);
+    }
+
+    @Test
+    void removingEveryPairEmptiesTheSet ()
+    {
+        final Random random = new Random(4);
+        final PairSet set = new PairSet();
+        final List<Long> pairs = new ArrayList<>();
+        for (int a = 0; a < 40; a++)
+            for (int b = a; b < 40; b++)
+            {
+                final long pair = BroadPhase.pack(a, b);
+                assertTrue(set.add(pair));
+                pairs.add(pair);
+            }
+
+        while (!pairs.isEmpty())
+        {
+            final long pair = pairs.remove(random.nextInt(pairs.size()));
+            assertTrue(set.remove(pair));
+            assertFalse(set.contains(pair));
+            // Every remaining pair has to stay reachable from its home slot after the entries were shifted back
+            for (long remaining : pairs)
+                assertTrue(set.contains(remaining), "Lost " + Long.toHexString(remaining));
+        }
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    void clearRemovesEveryPair ()
+    {
+        final PairSet set = new PairSet();
+        for (int i = 0; i < 100; i++)
+            set.add(BroadPhase.pack(i, i + 1));
+        set.clear();
+
+        assertEquals(0, set.size());
+        for (int i = 0; i < 100; i++)
+            assertFalse(set.contains(BroadPhase.pack(i, i + 1)));
+        assertTrue(set.add(BroadPhase.pack(1, 2)));
+    }
+
+    private static void assertSameContents (Set<Long> expected, PairSet set)
+    {
+        for (int a = 0; a < 48; a++)
+            for (int b = a; b < 48; b++)
+            {
+                final long pair = BroadPhase.pack(a, b);
+                assertEquals(expected.contains(pair), set.contains(pair), "Pair " + a + ", " + b);
+            }
+    }
+}
@@ -0,0 +1,279 @@
+package engine.dengine.collision;
+
+import engine.dengine.ecs.ArchetypeStore;
+import engine.dengine.ecs.Entity;
+import engine.dengine.shapes.Rectangle;
+import engine.dengine.shapes.Shape;
+import org.joml.Matrix3x2f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link SpatialQueryTest}</h2>
+ * <br>
+ * Tests the queries of a {@link SpatialQuery} against a brute force search over the world corners of randomly
+ * placed, rotated and scaled {@link Rectangle} colliders. Points and rays which pass closer than
+ * {@link SpatialQueryTest#EPSILON} to an edge are skipped, as they may go either way in floating point.
+ */
+class SpatialQueryTest
+{
+    private static final float WORLD = 50;
+    private static final float EPSILON = 0.001f;
+    /** The corners of a {@link Rectangle} in the order of its outline */
+    private static final int[] OUTLINE = {0, 1, 3, 2};
+
+    private final ArchetypeStore store = new ArchetypeStore();
+    private final CollisionWorld world = new CollisionWorld(store);
+    private final List<Collider> colliders = new ArrayList<>();
+    /** The world corners of every {@link Collider} in the order of the outline, x and y interleaved */
+    private final List<float[]> corners = new ArrayList<>();
+
+    @Test
+    void queryAabbMatchesBruteForce ()
+    {
+        final Random random = new Random(6);
+        populate(random, 300);
+
+        for (int i = 0; i < 500; i++)
+        {
+            final float minX = random.nextFloat() * WORLD, minY = random.nextFloat() * WORLD;
+            final float maxX = minX + random.nextFloat() * 10, maxY = minY + random.nextFloat() * 10;
+            final int layers = 1 + random.nextInt(7);
+
+            final Set<Collider> expected = new HashSet<>();
+            for (Collider collider : colliders)
+                if ((collider.getLayers() & layers) != 0 && collider.getMinX() <= maxX && collider.getMaxX() >= minX
+                        && collider.getMinY() <= maxY && collider.getMaxY() >= minY) expected.add(collider);
+
+            assertEquals(expected, collect(callback -> world.getSpatialQuery().queryAabb(minX, minY, maxX, maxY,
+                    layers, callback)));
+        }
+    }
+
+    @Test
+    void tightAabbsContainTheCorners ()
+    {
+        populate(new Random(7), 300);
+        for (int i = 0; i < colliders.size(); i++)
+        {
+            final Collider collider = colliders.get(i);
+            final float[] points = corners.get(i);
+            for (int j = 0; j < points.length; j += 2)
+                assertTrue(points[j] >= collider.getMinX() - EPSILON && points[j] <= collider.getMaxX() + EPSILON
+                        && points[j + 1] >= collider.getMinY() - EPSILON
+                        && points[j + 1] <= collider.getMaxY() + EPSILON);
+        }
+    }
+
+    @Test
+    void queryPointMatchesBruteForce ()
+    {
+        final Random random = new Random(8);
+        populate(random, 300);
+
+        int tested = 0;
+        for (int i = 0; i < 5_000; i++)
+        {
+            final float x = random.nextFloat() * WORLD, y = random.nextFloat() * WORLD;
+            final Set<Collider> expected = new HashSet<>();
+            boolean ambiguous = false;
+            for (int j = 0; j < colliders.size(); j++)
+            {
+                final float distance = signedDistance(corners.get(j), x, y);
+                if (Math.abs(distance) < EPSILON) ambiguous = true;
+                if (distance < 0) expected.add(colliders.get(j));
+            }
+            if (ambiguous) continue;
+
+            tested++;
+            assertEquals(expected, collect(callback -> world.getSpatialQuery().queryPoint(x, y,
+                    SpatialQuery.ALL_LAYERS, callback)));
+        }
+        assertTrue(tested > 4_000);
+    }
+
+    @Test
+    void queryShapeMatchesBruteForce ()
+    {
+        final Random random = new Random(9);
+        populate(random, 300);
+        final Shape shape = new Rectangle(-1, 1, 0, 2, 2);
+
+        for (int i = 0; i < 500; i++)
+        {
+            final Matrix3x2f matrix = randomMatrix(random);
+            final Set<Collider> expected = new HashSet<>();
+            for (Collider collider : colliders)
+                if (NarrowPhase.local().overlaps(shape, matrix, collider.getShape(),
+                        collider.getEntity().getTransform().getWorldMatrix(new Matrix3x2f()))) expected.add(collider);
+
+            assertEquals(expected, collect(callback -> world.getSpatialQuery().queryShape(shape, matrix,
+                    SpatialQuery.ALL_LAYERS, callback)));
+        }
+    }
+
+    @Test
+    void raycastFirstFindsTheClosestHit ()
+    {
+        final Random random = new Random(10);
+        populate(random, 300);
+        final RaycastHit hit = new RaycastHit();
+
+        int tested = 0;
+        for (int i = 0; i < 2_000; i++)
+        {
+            final float x1 = random.nextFloat() * WORLD, y1 = random.nextFloat() * WORLD;
+            final float x2 = random.nextFloat() * WORLD, y2 = random.nextFloat() * WORLD;
+
+            float best = Float.POSITIVE_INFINITY, second = Float.POSITIVE_INFINITY;
+            Collider closest = null;
+            boolean ambiguous = false;
+            for (int j = 0; j < colliders.size(); j++)
+            {
+                final float[] points = corners.get(j);
+                final float distance = signedDistance(points, x1, y1);
+                if (Math.abs(distance) < EPSILON) ambiguous = true;
+                // Colliders which contain the start of the ray are not hit
+                if (distance < 0) continue;
+
+                final float fraction = raycast(points, x1, y1, x2, y2);
+                if (Float.isNaN(fraction)) ambiguous = true;
+                else if (fraction < best)
+                {
+                    second = best;
+                    best = fraction;
+                    closest = colliders.get(j);
+                }
+                else second = Math.min(second, fraction);
+            }
+            if (ambiguous || second - best < EPSILON || Math.abs(best - 1) < EPSILON) continue;
+
+            tested++;
+            final boolean found = world.getSpatialQuery().raycastFirst(x1, y1, x2, y2, SpatialQuery.ALL_LAYERS, hit);
+            assertEquals(closest != null, found);
+            assertEquals(closest, hit.getCollider());
+            if (closest != null) assertEquals(best, hit.getFraction(), EPSILON);
+        }
+        assertTrue(tested > 1_000);
+    }
+
+    private void populate (Random random, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final Entity entity = new Entity();
+            final Collider collider = new Collider(new Rectangle(-0.5f, 0.5f, 0, 1, 1));
+            collider.setLayers(1 << random.nextInt(3));
+            entity.addComponent(collider);
+            entity.getTransform().setPosition(new Vector3f(random.nextFloat() * WORLD, random.nextFloat() * WORLD, 0));
+            entity.getTransform().setRotation(random.nextFloat() * (float) Math.PI * 2);
+            entity.getTransform().setScale(new Vector2f(0.2f + random.nextFloat() * 3, 0.2f + random.nextFloat() * 3));
+            store.add(entity);
+            colliders.add(collider);
+        }
+        store.updateWorldMatrices();
+        world.update();
+        store.clearChanges();
+
+        for (Collider collider : colliders)
+        {
+            final float[] vertices = new float[12];
+            collider.getShape().transformVertices(collider.getEntity().getTransform().getWorldMatrix(new Matrix3x2f()),
+                    vertices);
+            final float[] points = new float[OUTLINE.length * 2];
+            for (int i = 0; i < OUTLINE.length; i++)
+            {
+                points[i * 2] = vertices[OUTLINE[i] * 3];
+                points[i * 2 + 1] = vertices[OUTLINE[i] * 3 + 1];
+            }
+            corners.add(points);
+        }
+    }
+
+    private static Matrix3x2f randomMatrix (Random random)
+    {
+        final float angle = random.nextFloat() * (float) Math.PI * 2;
+        final float scaleX = 0.2f + random.nextFloat() * 3, scaleY = 0.2f + random.nextFloat() * 3;
+        final float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+        return new Matrix3x2f().set(cos * scaleX, sin * scaleX, -sin * scaleY, cos * scaleY,
+                random.nextFloat() * WORLD, random.nextFloat() * WORLD);
+    }
+
+    private static Set<Collider> collect (Consumer<SpatialQuery.ColliderCallback> query)
+    {
+        final Set<Collider> found = new HashSet<>();
+        query.accept(collider -> {
+            assertTrue(found.add(collider), "A collider was reported twice");
+            return true;
+        });
+        return found;
+    }
+
+    /**
+     * Returns the distance of a point to the outline of a convex polygon, which is negative inside of it.
+     */
+    private static float signedDistance (float[] points, float x, float y)
+    {
+        final int count = points.length / 2;
+        // The winding depends on the sign of the scale, so the sign of the area decides which side is inside
+        float area = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int j = (i + 1) % count;
+            area += points[i * 2] * points[j * 2 + 1] - points[j * 2] * points[i * 2 + 1];
+        }
+
+        float distance = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++)
+        {
+            final int j = (i + 1) % count;
+            final float edgeX = points[j * 2] - points[i * 2], edgeY = points[j * 2 + 1] - points[i * 2 + 1];
+            final float cross = edgeX * (y - points[i * 2 + 1]) - edgeY * (x - points[i * 2]);
+            final float outward = (area > 0 ? -cross : cross) / (float) Math.hypot(edgeX, edgeY);
+            distance = Math.max(distance, outward);
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the smallest fraction at which a segment crosses the outline of a polygon, positive infinity if it
+     * does not, or NaN if it passes closer than {@link SpatialQueryTest#EPSILON} to a corner.
+     */
+    private static float raycast (float[] points, float x1, float y1, float x2, float y2)
+    {
+        final int count = points.length / 2;
+        final float dx = x2 - x1, dy = y2 - y1;
+        float best = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++)
+        {
+            final int j = (i + 1) % count;
+            final float ax = points[i * 2], ay = points[i * 2 + 1];
+            final float ex = points[j * 2] - ax, ey = points[j * 2 + 1] - ay;
+            final float denominator = dx * ey - dy * ex;
+            if (denominator == 0) continue;
+
+            final float t = ((ax - x1) * ey - (ay - y1) * ex) / denominator;
+            final float u = ((ax - x1) * dy - (ay - y1) * dx) / denominator;
+            final float length = (float) Math.hypot(ex, ey);
+            if (t < 0 || t > 1) continue;
+            if (Math.abs(u * length) < EPSILON || Math.abs((1 - u) * length) < EPSILON) return Float.NaN;
+            if (u > 0 && u < 1) best = Math.min(best, t);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,362 @@
+package engine.dengine.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link AtlasPackerTest}</h2>
+ * <br>
+ * Tests the packing of a {@link TextureAtlas} without an <b>OpenGL context</b>. Random inserts and removals are
+ * checked against the placed rectangles after every step: no two overlap, all lie inside their <b>page</b>, no
+ * free rectangle covers a placed one, and no free area is lost. A repack which does not fit has to leave every
+ * rectangle where it was.
+ */
+class AtlasPackerTest
+{
+    private static final int PAGE_SIZE = 256;
+
+    @Test
+    void randomPlaceAndFreeKeepPagesConsistent ()
+    {
+        final Random random = new Random(25);
+        for (int round = 0; round < 8; round++)
+        {
+            final AtlasPacker.Page page = new AtlasPacker.Page(PAGE_SIZE);
+            final List<int[]> placed = new ArrayList<>();
+            // Freed rectangles are not merged with the free area around them, so only a page which nothing was
+            // freed from finds every room there is
+            boolean freed = false;
+            for (int step = 0; step < 400; step++)
+            {
+                if (placed.isEmpty() || random.nextInt(3) != 0)
+                {
+                    final int width = 1 + random.nextInt(64), height = 1 + random.nextInt(64);
+                    if (!page.find(width, height))
+                    {
+                        if (!freed) assertFalse(fitsAnywhere(placed, width, height), "Found no room for " + width +
+                                "x" + height + " although there is some");
+                        continue;
+                    }
+                    final int[] rect = {page.getFoundX(), page.getFoundY(), width, height};
+                    assertInside(rect);
+                    for (int[] other : placed)
+                        assertFalse(overlaps(rect, other), "Placed " + Arrays.toString(rect) + " over " +
+                                Arrays.toString(other));
+                    page.place(rect[0], rect[1], width, height);
+                    placed.add(rect);
+                }
+                else
+                {
+                    final int[] rect = placed.remove(random.nextInt(placed.size()));
+                    page.free(rect[0], rect[1], rect[2], rect[3]);
+                    freed = !placed.isEmpty();
+                }
+                assertConsistent(page, placed);
+                if (!freed && step % 10 == 0) assertCovered(page, placed);
+            }
+        }
+    }
+
+    @Test
+    void emptyPageIsOneFreeRectangle ()
+    {
+        final AtlasPacker.Page page = new AtlasPacker.Page(PAGE_SIZE);
+        page.place(0, 0, 10, 20);
+        page.place(10, 0, 30, 5);
+        page.free(0, 0, 10, 20);
+        page.free(10, 0, 30, 5);
+
+        assertArrayEquals(new int[] {0, 0, PAGE_SIZE, PAGE_SIZE}, page.getFree());
+        assertEquals(0, page.getUsedArea());
+    }
+
+    @Test
+    void randomInsertAndRemoveKeepRectanglesApart ()
+    {
+        final Random random = new Random(52);
+        final int[] layers = new int[1];
+        final AtlasPacker packer = new AtlasPacker("test", PAGE_SIZE, 4, () -> layers[0]++);
+        final List<AtlasPacker.Rect> rects = new ArrayList<>();
+        for (int step = 0; step < 3000; step++)
+        {
+            if (rects.isEmpty() || random.nextInt(5) < 3)
+            {
+                final AtlasPacker.Rect rect = new AtlasPacker.Rect(1 + random.nextInt(80), 1 + random.nextInt(80));
+                if (packer.insert(rect)) rects.add(rect);
+                else if (packer.canOpenPage())
+                {
+                    packer.openPage();
+                    assertTrue(packer.insert(rect));
+                    rects.add(rect);
+                }
+                else
+                {
+                    final List<AtlasPacker.Rect> all = new ArrayList<>(rects);
+                    all.add(rect);
+                    try
+                    {
+                        packer.repack(all);
+                        rects.add(rect);
+                    }
+                    catch (IllegalStateException e)
+                    {
+                        // Too full, remove some below
+                    }
+                }
+            }
+            else packer.remove(rects.remove(random.nextInt(rects.size())));
+
+            assertApart(packer, rects);
+        }
+        assertEquals(4, layers[0]);
+    }
+
+    @Test
+    void repackFillsHolesAndKeepsLayers ()
+    {
+        final int[] layers = new int[1];
+        final AtlasPacker packer = new AtlasPacker("test", 64, 3, () -> layers[0]++);
+        final List<AtlasPacker.Rect> rects = new ArrayList<>();
+        for (int i = 0; i < 48; i++)
+        {
+            final AtlasPacker.Rect rect = new AtlasPacker.Rect(16, 16);
+            if (!packer.insert(rect))
+            {
+                packer.openPage();
+                assertTrue(packer.insert(rect));
+            }
+            rects.add(rect);
+        }
+        assertEquals(3, packer.getPageCount());
+
+        // Leave every page half empty, which fits into two pages again
+        for (int i = rects.size() - 1; i >= 0; i -= 2)
+            packer.remove(rects.remove(i));
+        final List<AtlasPacker.Page> before = new ArrayList<>(packer.getPages());
+        packer.repack(rects);
+
+        assertEquals(2, packer.getPageCount());
+        assertEquals(3, packer.getPages().size());
+        for (int i = 0; i < before.size(); i++)
+            assertEquals(before.get(i).getLayer(), packer.getPages().get(i).getLayer());
+        assertEquals(3, layers[0]);
+        assertApart(packer, rects);
+    }
+
+    @Test
+    void failedRepackChangesNothing ()
+    {
+        final int[] layers = new int[1];
+        final AtlasPacker packer = new AtlasPacker("test", 64, 2, () -> layers[0]++);
+        final List<AtlasPacker.Rect> rects = new ArrayList<>();
+        final Random random = new Random(7);
+        while (true)
+        {
+            final AtlasPacker.Rect rect = new AtlasPacker.Rect(4 + random.nextInt(20), 4 + random.nextInt(20));
+            if (!packer.insert(rect))
+            {
+                if (!packer.canOpenPage()) break;
+                packer.openPage();
+                assertTrue(packer.insert(rect));
+            }
+            rects.add(rect);
+        }
+        for (int i = rects.size() - 1; i >= 0; i -= 3)
+            packer.remove(rects.remove(i));
+
+        final List<AtlasPacker.Page> pages = new ArrayList<>(packer.getPages());
+        final int[][] free = new int[pages.size()][];
+        for (int i = 0; i < pages.size(); i++)
+            free[i] = pages.get(i).getFree();
+        final AtlasPacker.Page[] rectPages = new AtlasPacker.Page[rects.size()];
+        final int[] positions = new int[rects.size() * 2];
+        for (int i = 0; i < rects.size(); i++)
+        {
+            rectPages[i] = rects.get(i).page;
+            positions[i * 2] = rects.get(i).x;
+            positions[i * 2 + 1] = rects.get(i).y;
+        }
+        final float fragmentation = packer.getFragmentation();
+
+        // The whole area of both pages does not fit next to the remaining rectangles
+        final List<AtlasPacker.Rect> all = new ArrayList<>(rects);
+        all.add(new AtlasPacker.Rect(64, 64));
+        all.add(new AtlasPacker.Rect(64, 64));
+        assertThrows(IllegalStateException.class, () -> packer.repack(all));
+
+        assertEquals(pages.size(), packer.getPages().size());
+        for (int i = 0; i < pages.size(); i++)
+        {
+            assertSame(pages.get(i), packer.getPages().get(i));
+            assertArrayEquals(free[i], pages.get(i).getFree());
+        }
+        for (int i = 0; i < rects.size(); i++)
+        {
+            assertSame(rectPages[i], rects.get(i).page);
+            assertEquals(positions[i * 2], rects.get(i).x);
+            assertEquals(positions[i * 2 + 1], rects.get(i).y);
+        }
+        assertEquals(fragmentation, packer.getFragmentation(), 0);
+        assertEquals(2, layers[0]);
+        assertApart(packer, rects);
+    }
+
+    @Test
+    void openingTooManyPagesThrows ()
+    {
+        final AtlasPacker packer = new AtlasPacker("test", 64, 1, () -> 0);
+        packer.openPage();
+        assertFalse(packer.canOpenPage());
+        assertThrows(IllegalStateException.class, packer::openPage);
+    }
+
+    /**
+     * Checks that all placed rectangles lie inside their open <b>page</b> and that no two on a <b>page</b>
+     * overlap, and the invariants of every <b>page</b>.
+     */
+    private static void assertApart (AtlasPacker packer, List<AtlasPacker.Rect> rects)
+    {
+        for (AtlasPacker.Page page : packer.getPages())
+        {
+            final List<int[]> placed = new ArrayList<>();
+            for (AtlasPacker.Rect rect : rects)
+            {
+                assertTrue(packer.getPages().contains(rect.page));
+                if (rect.page != page) continue;
+                final int[] bounds = {rect.x, rect.y, rect.reservedWidth, rect.reservedHeight};
+                assertInside(bounds);
+                for (int[] other : placed)
+                    assertFalse(overlaps(bounds, other));
+                placed.add(bounds);
+            }
+            assertConsistent(page, placed);
+        }
+    }
+
+    /**
+     * Checks that the free rectangles of a <b>page</b> lie inside it, do not overlap the placed rectangles and do
+     * not contain each other, and that the used area is the area of the placed rectangles.
+     */
+    private static void assertConsistent (AtlasPacker.Page page, List<int[]> placed)
+    {
+        final int[] free = page.getFree();
+        long area = 0;
+        for (int[] rect : placed)
+            area += (long) rect[2] * rect[3];
+        assertEquals(area, page.getUsedArea());
+
+        for (int i = 0; i < free.length; i += 4)
+        {
+            final int[] rect = Arrays.copyOfRange(free, i, i + 4);
+            assertTrue(rect[2] > 0 && rect[3] > 0);
+            assertInside(rect);
+            for (int[] other : placed)
+                assertFalse(overlaps(rect, other), "Free " + Arrays.toString(rect) + " covers " +
+                        Arrays.toString(other));
+            for (int j = 0; j < free.length; j += 4)
+                if (j != i) assertFalse(contains(Arrays.copyOfRange(free, j, j + 4), rect));
+        }
+    }
+
+    /**
+     * Checks that every point of a <b>page</b> lies in a placed or a free rectangle. The edges of all rectangles
+     * split the <b>page</b> into cells which are either covered as a whole or not at all, so one point per cell is
+     * tested.
+     */
+    private static void assertCovered (AtlasPacker.Page page, List<int[]> placed)
+    {
+        final int[] free = page.getFree();
+        final List<int[]> rects = new ArrayList<>(placed);
+        for (int i = 0; i < free.length; i += 4)
+            rects.add(Arrays.copyOfRange(free, i, i + 4));
+
+        final int[] xs = edges(rects, 0), ys = edges(rects, 1);
+        for (int i = 0; i < xs.length - 1; i++)
+            for (int j = 0; j < ys.length - 1; j++)
+            {
+                final int[] cell = {xs[i], ys[j], 1, 1};
+                boolean covered = false;
+                for (int[] rect : rects)
+                    if (contains(rect, cell))
+                    {
+                        covered = true;
+                        break;
+                    }
+                assertTrue(covered, "Lost the free area at " + xs[i] + ", " + ys[j]);
+            }
+    }
+
+    private static int[] edges (List<int[]> rects, int axis)
+    {
+        final int[] edges = new int[rects.size() * 2 + 2];
+        edges[0] = 0;
+        edges[1] = PAGE_SIZE;
+        for (int i = 0; i < rects.size(); i++)
+        {
+            edges[i * 2 + 2] = rects.get(i)[axis];
+            edges[i * 2 + 3] = rects.get(i)[axis] + rects.get(i)[axis + 2];
+        }
+        return Arrays.stream(edges).sorted().distinct().toArray();
+    }
+
+    private static void assertInside (int[] rect)
+    {
+        assertTrue(rect[0] >= 0 && rect[1] >= 0 && rect[0] + rect[2] <= PAGE_SIZE && rect[1] + rect[3] <= PAGE_SIZE,
+                Arrays.toString(rect) + " is outside of the page");
+    }
+
+    /**
+     * Checks wether a rectangle fits next to the placed ones anywhere on a <b>page</b>. A rectangle which fits
+     * can be moved left and down until it touches a placed one or the border, so only those positions are tried.
+     */
+    private static boolean fitsAnywhere (List<int[]> placed, int width, int height)
+    {
+        final List<Integer> xs = new ArrayList<>(List.of(0)), ys = new ArrayList<>(List.of(0));
+        for (int[] rect : placed)
+        {
+            xs.add(rect[0] + rect[2]);
+            ys.add(rect[1] + rect[3]);
+        }
+        for (int x : xs)
+            for (int y : ys)
+            {
+                final int[] candidate = {x, y, width, height};
+                if (x + width > PAGE_SIZE || y + height > PAGE_SIZE) continue;
+                boolean free = true;
+                for (int[] rect : placed)
+                    if (overlaps(candidate, rect))
+                    {
+                        free = false;
+                        break;
+                    }
+                if (free) return true;
+            }
+        return false;
+    }
+
+    private static boolean overlaps (int[] a, int[] b)
+    {
+        return a[0] < b[0] + b[2] && b[0] < a[0] + a[2] && a[1] < b[1] + b[3] && b[1] < a[1] + a[3];
+    }
+
+    private static boolean contains (int[] outer, int[] inner)
+    {
+        return inner[0] >= outer[0] && inner[1] >= outer[1] && inner[0] + inner[2] <= outer[0] + outer[2]
+                && inner[1] + inner[3] <= outer[1] + outer[3];
+    }
+}
@@ -0,0 +1,190 @@
+package engine.dengine.graphics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link RenderQueueTest}</h2>
+ * <br>
+ * Tests the <b>radix sort</b> of the {@link RenderQueue} against {@link Arrays#sort(Object[], java.util.Comparator)}
+ * with {@link Long#compareUnsigned(long, long)}, for queues which are sorted in a single range and for queues which
+ * are split into ranges of 16384 <b>submissions</b>, and the order the <b>sort keys</b> put <b>items</b> in.
+ */
+class RenderQueueTest
+{
+    /** Sizes around the number of <b>submissions</b> of one range of the parallel sort */
+    private static final int[] SIZES = {0, 1, 2, 3, 255, 256, 1000, 16383, 16384, 16385, 40000, 100000};
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @Test
+    void sortMatchesUnsignedSortOfRandomKeys ()
+    {
+        final Random random = new Random(11);
+        for (int size : SIZES)
+        {
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = random.nextLong();
+            assertSortsLikeArraysSort(keys);
+        }
+    }
+
+    @Test
+    void sortIsStableForEqualKeys ()
+    {
+        final Random random = new Random(12);
+        for (int size : SIZES)
+        {
+            // Few distinct keys, which only differ in some bytes, so passes are skipped and keys repeat
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = (long) random.nextInt(8) << 56 | (long) random.nextInt(16) << 8;
+            assertSortsLikeArraysSort(keys);
+        }
+    }
+
+    @Test
+    void sortOfRealKeysMatchesUnsignedSort ()
+    {
+        final Random random = new Random(13);
+        for (int size : SIZES)
+        {
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = RenderQueue.key(random.nextInt(5) - 2, random.nextBoolean(), 1 + random.nextInt(3),
+                        random.nextInt(20), (random.nextFloat() - 0.5f) * 200);
+            assertSortsLikeArraysSort(keys);
+        }
+    }
+
+    @Test
+    void sortSkipsBytesWhichAreEqualForAllKeys ()
+    {
+        final RenderQueue queue = new RenderQueue(pool);
+        for (int i = 0; i < 1000; i++)
+            queue.submit(0x1234_5678_0000_0000L | (i * 7919 & 0xFF), i);
+        queue.sort();
+
+        assertTrue(queue.isSorted());
+        assertEquals(1, queue.getPassCount());
+    }
+
+    @Test
+    void opaqueItemsAreOrderedFrontToBack ()
+    {
+        final long behind = RenderQueue.key(0, false, 1, 1, 1);
+        final long middle = RenderQueue.key(0, false, 1, 1, 0);
+        final long front = RenderQueue.key(0, false, 1, 1, -1);
+
+        assertTrue(Long.compareUnsigned(front, middle) < 0);
+        assertTrue(Long.compareUnsigned(middle, behind) < 0);
+        assertTrue(Long.compareUnsigned(RenderQueue.key(0, false, 1, 1, -100), front) < 0);
+        assertTrue(Long.compareUnsigned(behind, RenderQueue.key(0, false, 1, 1, 100)) < 0);
+        assertEquals(middle, RenderQueue.key(0, false, 1, 1, -0f));
+    }
+
+    @Test
+    void translucentItemsAreOrderedBackToFront ()
+    {
+        final long behind = RenderQueue.key(0, true, 1, 1, 1);
+        final long middle = RenderQueue.key(0, true, 1, 1, 0);
+        final long front = RenderQueue.key(0, true, 1, 1, -1);
+
+        assertTrue(Long.compareUnsigned(behind, middle) < 0);
+        assertTrue(Long.compareUnsigned(middle, front) < 0);
+        assertTrue(Long.compareUnsigned(RenderQueue.key(0, true, 1, 1, 100), behind) < 0);
+        assertEquals(middle, RenderQueue.key(0, true, 1, 1, -0f));
+    }
+
+    @Test
+    void opaqueItemsComeBeforeTranslucentOnesOfTheSameLayer ()
+    {
+        final long opaque = RenderQueue.key(0, false, 4095, 65535, 1000);
+        final long translucent = RenderQueue.key(0, true, 0, 0, -1000);
+
+        assertTrue(Long.compareUnsigned(opaque, translucent) < 0);
+        assertFalse(RenderQueue.isTranslucent(opaque));
+        assertTrue(RenderQueue.isTranslucent(translucent));
+    }
+
+    @Test
+    void lowerLayersComeFirst ()
+    {
+        long previous = RenderQueue.key(RenderQueue.MIN_LAYER, true, 4095, 65535, -1000);
+        assertEquals(RenderQueue.MIN_LAYER, RenderQueue.getLayer(previous));
+        for (int layer = RenderQueue.MIN_LAYER + 1; layer <= RenderQueue.MAX_LAYER; layer++)
+        {
+            final long key = RenderQueue.key(layer, false, 0, 0, -1000);
+            assertTrue(Long.compareUnsigned(previous, key) < 0, "Layer " + layer);
+            assertEquals(layer, RenderQueue.getLayer(key));
+            previous = RenderQueue.key(layer, true, 4095, 65535, -1000);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> RenderQueue.key(RenderQueue.MAX_LAYER + 1, false, 0,
+                0, 0));
+        assertThrows(IllegalArgumentException.class, () -> RenderQueue.key(RenderQueue.MIN_LAYER - 1, false, 0,
+                0, 0));
+    }
+
+    @Test
+    void opaqueItemsAreGroupedByShaderAndTexture ()
+    {
+        final long[] keys = {
+                RenderQueue.key(0, false, 2, 1, -5),
+                RenderQueue.key(0, false, 1, 2, -5),
+                RenderQueue.key(0, false, 1, 1, 5),
+                RenderQueue.key(0, false, 1, 1, -5)
+        };
+        final RenderQueue queue = new RenderQueue(pool);
+        for (int i = 0; i < keys.length; i++)
+            queue.submit(keys[i], i);
+        queue.sort();
+
+        assertEquals(3, queue.getItem(0));
+        assertEquals(2, queue.getItem(1));
+        assertEquals(1, queue.getItem(2));
+        assertEquals(0, queue.getItem(3));
+    }
+
+    /**
+     * Sorts the <b>sort keys</b> with their indices as <b>items</b> twice, also after clearing the queue, and
+     * compares the order with a stable sort.
+     */
+    private void assertSortsLikeArraysSort (long[] keys)
+    {
+        final Integer[] expected = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            expected[i] = i;
+        Arrays.sort(expected, (a, b) -> Long.compareUnsigned(keys[a], keys[b]));
+
+        final RenderQueue queue = new RenderQueue(pool);
+        for (int round = 0; round < 2; round++)
+        {
+            queue.clear();
+            for (int i = 0; i < keys.length; i++)
+                queue.submit(keys[i], i);
+            queue.sort();
+
+            assertEquals(keys.length, queue.getCount());
+            assertTrue(queue.isSorted());
+            for (int i = 0; i < keys.length; i++)
+            {
+                assertEquals((int) expected[i], queue.getItem(i), "Item " + i + " of " + keys.length);
+                assertEquals(keys[expected[i]], queue.getKey(i));
+            }
+        }
+    }
+}
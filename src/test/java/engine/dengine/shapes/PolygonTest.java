@@ -0,0 +1,59 @@
+package engine.dengine.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link PolygonTest}</h2>
+ * <br>
+ * Tests that the cache of {@link Polygon} shares the geometry of equal inputs and keeps at most
+ * {@link Polygon#CACHE_CAPACITY} of the most recently used ones.
+ */
+class PolygonTest
+{
+    @Test
+    void equalOutlinesShareTheirGeometry ()
+    {
+        Polygon.clearCache();
+        final Polygon a = Polygon.fromOutline(triangle(0));
+        final Polygon b = Polygon.fromOutline(triangle(0));
+
+        assertSame(a.getIndices(), b.getIndices());
+        assertSame(a.getConvexParts(), b.getConvexParts());
+        assertEquals(1, Polygon.getCacheSize());
+    }
+
+    @Test
+    void cacheEvictsTheLeastRecentlyUsedOutline ()
+    {
+        Polygon.clearCache();
+        final Polygon first = Polygon.fromOutline(triangle(0));
+        final Polygon second = Polygon.fromOutline(triangle(1));
+        for (int i = 2; i < Polygon.CACHE_CAPACITY; i++)
+            Polygon.fromOutline(triangle(i));
+        assertEquals(Polygon.CACHE_CAPACITY, Polygon.getCacheSize());
+
+        // Using the first outline again makes the second one the least recently used
+        Polygon.fromOutline(triangle(0));
+        Polygon.fromOutline(triangle(Polygon.CACHE_CAPACITY));
+        assertEquals(Polygon.CACHE_CAPACITY, Polygon.getCacheSize());
+
+        assertSame(first.getIndices(), Polygon.fromOutline(triangle(0)).getIndices());
+        assertNotSame(second.getIndices(), Polygon.fromOutline(triangle(1)).getIndices());
+        Polygon.clearCache();
+        assertEquals(0, Polygon.getCacheSize());
+    }
+
+    private static float[] triangle (int size)
+    {
+        final float width = 1 + size;
+        return new float[] {0, 0, 0, width, 0, 0, 0, 1, 0};
+    }
+}
@@ -0,0 +1,250 @@
+package engine.dengine.shapes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Anton Schoenfeld
+ * @version 1.0
+ * @since 1.0
+ * <br>
+ * <h2>{@link TriangulatorTest}</h2>
+ * <br>
+ * Tests the {@link Triangulator} on convex, concave and collinear <b>outlines</b> in both orders, and on random
+ * star-shaped ones. A triangulation is correct if all triangles are counter-clockwise, lie inside the
+ * <b>outline</b> and cover its area exactly, and a decomposition is correct if the hulls of its pieces cover the
+ * same area, which they only do if every piece is convex.
+ */
+class TriangulatorTest
+{
+    private static final float EPSILON = 1e-3f;
+
+    private static final float[] SQUARE = outline(0, 0, 2, 0, 2, 2, 0, 2);
+    private static final float[] L_SHAPE = outline(0, 0, 3, 0, 3, 1, 1, 1, 1, 3, 0, 3);
+    /** A spine with three teeth */
+    private static final float[] COMB = outline(0, 0, 5, 0, 5, 3, 4, 3, 4, 1, 3, 1, 3, 3, 2, 3, 2, 1, 1, 1, 1, 3,
+            0, 3);
+    /** A square with corners in the middle of its edges, which are collinear with their neighbours */
+    private static final float[] COLLINEAR = outline(0, 0, 1, 0, 2, 0, 2, 1, 2, 2, 1, 2, 0, 2, 0, 1);
+    /** An arrow whose reflex corner is collinear with two other corners */
+    private static final float[] ARROW = outline(0, 0, 2, 1, 4, 0, 2, 4);
+
+    @Test
+    void triangulatesOutlinesInBothOrders ()
+    {
+        for (float[] outline : new float[][] {SQUARE, L_SHAPE, COMB, COLLINEAR, ARROW})
+        {
+            assertTriangulation(outline);
+            assertTriangulation(reverse(outline));
+        }
+    }
+
+    @Test
+    void collinearCornersDoNotCreateTrianglesWithoutArea ()
+    {
+        final int[] triangles = Triangulator.triangulate(COLLINEAR);
+        for (int i = 0; i < triangles.length; i += 3)
+            assertTrue(cross(COLLINEAR, triangles[i], triangles[i + 1], triangles[i + 2]) > 0);
+        assertTriangulation(COLLINEAR);
+    }
+
+    @Test
+    void triangulatesRandomStarShapedOutlines ()
+    {
+        final Random random = new Random(14);
+        for (int round = 0; round < 500; round++)
+        {
+            final int count = 3 + random.nextInt(30);
+            final float[] outline = new float[count * 3];
+            for (int i = 0; i < count; i++)
+            {
+                // Sorted angles around the center make a simple outline, random radii make it concave
+                final double angle = Math.PI * 2 * (i + 0.1 + random.nextDouble() * 0.8) / count;
+                final double radius = 0.5 + random.nextDouble() * 4;
+                outline[i * 3] = (float) (Math.cos(angle) * radius);
+                outline[i * 3 + 1] = (float) (Math.sin(angle) * radius);
+            }
+            assertTriangulation(round % 2 == 0 ? outline : reverse(outline));
+        }
+    }
+
+    @Test
+    void rejectsOutlinesWithoutArea ()
+    {
+        assertThrows(IllegalArgumentException.class, () -> Triangulator.triangulate(outline(0, 0, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> Triangulator.triangulate(outline(0, 0, 1, 1, 2, 2)));
+    }
+
+    @Test
+    void decomposesConvexOutlinesIntoOnePiece ()
+    {
+        for (float[] outline : new float[][] {SQUARE, COLLINEAR, reverse(SQUARE)})
+        {
+            final ConvexHull[] pieces = Triangulator.decompose(outline, Triangulator.triangulate(outline));
+            assertEquals(1, pieces.length);
+            assertEquals(Math.abs(area(outline)), hullArea(pieces[0]), EPSILON);
+        }
+    }
+
+    @Test
+    void decomposesConcaveOutlinesIntoConvexPieces ()
+    {
+        assertDecomposition(L_SHAPE, 2);
+        assertDecomposition(reverse(L_SHAPE), 2);
+        assertDecomposition(ARROW, 2);
+        // Every tooth and the spine need a piece of their own
+        assertDecomposition(COMB, 4);
+        assertDecomposition(reverse(COMB), 4);
+    }
+
+    @Test
+    void rejectsIndicesWhichAreNotTriangles ()
+    {
+        assertThrows(IllegalArgumentException.class, () -> Triangulator.decompose(SQUARE, new int[] {0, 1}));
+    }
+
+    @Test
+    void weldsEqualCorners ()
+    {
+        final float[] triangles = outline(0, 0, 1, 0, 0, 1, 1, 0, 1, 1, -0f, 1);
+        final int[] indices = new int[6];
+        final float[] vertices = Triangulator.weld(triangles, indices);
+
+        assertArrayEquals(outline(0, 0, 1, 0, 0, 1, 1, 1), vertices);
+        assertArrayEquals(new int[] {0, 1, 2, 1, 3, 2}, indices);
+    }
+
+    @Test
+    void weldedTrianglesDecomposeAcrossSharedEdges ()
+    {
+        // The triangle list of the L shape, as a Polygon.Builder would build it
+        final int[] triangulation = Triangulator.triangulate(L_SHAPE);
+        final float[] triangles = new float[triangulation.length * 3];
+        for (int i = 0; i < triangulation.length; i++)
+            System.arraycopy(L_SHAPE, triangulation[i] * 3, triangles, i * 3, 3);
+
+        final int[] indices = new int[triangulation.length];
+        final float[] vertices = Triangulator.weld(triangles, indices);
+        assertEquals(L_SHAPE.length, vertices.length);
+
+        final ConvexHull[] pieces = Triangulator.decompose(vertices, indices);
+        assertEquals(2, pieces.length);
+        float area = 0;
+        for (ConvexHull piece : pieces)
+            area += hullArea(piece);
+        assertEquals(Math.abs(area(L_SHAPE)), area, EPSILON);
+    }
+
+    private static void assertTriangulation (float[] outline)
+    {
+        final int[] triangles = Triangulator.triangulate(outline);
+        assertEquals(0, triangles.length % 3);
+        assertTrue(triangles.length / 3 <= outline.length / 3 - 2);
+
+        float area = 0;
+        for (int i = 0; i < triangles.length; i += 3)
+        {
+            final float cross = cross(outline, triangles[i], triangles[i + 1], triangles[i + 2]);
+            assertTrue(cross > 0, "Triangle " + i / 3 + " is not counter-clockwise in " + Arrays.toString(outline));
+            area += cross / 2;
+
+            final float centerX = (outline[triangles[i] * 3] + outline[triangles[i + 1] * 3] +
+                    outline[triangles[i + 2] * 3]) / 3;
+            final float centerY = (outline[triangles[i] * 3 + 1] + outline[triangles[i + 1] * 3 + 1] +
+                    outline[triangles[i + 2] * 3 + 1]) / 3;
+            assertTrue(contains(outline, centerX, centerY), "Triangle " + i / 3 + " lies outside of " +
+                    Arrays.toString(outline));
+        }
+        // Triangles inside the outline which cover its area cannot overlap
+        assertEquals(Math.abs(area(outline)), area, EPSILON * Math.abs(area(outline)));
+
+        assertDecomposition(outline, -1);
+    }
+
+    /**
+     * Decomposes a triangulated <b>outline</b> and checks that the hulls of the pieces cover its area.
+     * @param pieceCount the expected number of pieces, or -1 for any number
+     */
+    private static void assertDecomposition (float[] outline, int pieceCount)
+    {
+        final int[] triangles = Triangulator.triangulate(outline);
+        final ConvexHull[] pieces = Triangulator.decompose(outline, triangles);
+        assertTrue(pieces.length >= 1 && pieces.length <= triangles.length / 3);
+        if (pieceCount >= 0) assertEquals(pieceCount, pieces.length);
+
+        float area = 0;
+        for (ConvexHull piece : pieces)
+            area += hullArea(piece);
+        assertEquals(Math.abs(area(outline)), area, EPSILON * Math.abs(area(outline)),
+                "A piece of " + Arrays.toString(outline) + " is not convex");
+    }
+
+    private static float[] outline (float... coordinates)
+    {
+        final float[] vertices = new float[coordinates.length / 2 * 3];
+        for (int i = 0; i < coordinates.length / 2; i++)
+        {
+            vertices[i * 3] = coordinates[i * 2];
+            vertices[i * 3 + 1] = coordinates[i * 2 + 1];
+        }
+        return vertices;
+    }
+
+    private static float[] reverse (float[] outline)
+    {
+        final int count = outline.length / 3;
+        final float[] reversed = new float[outline.length];
+        for (int i = 0; i < count; i++)
+            System.arraycopy(outline, (count - 1 - i) * 3, reversed, i * 3, 3);
+        return reversed;
+    }
+
+    private static float cross (float[] vertices, int o, int a, int b)
+    {
+        return (vertices[a * 3] - vertices[o * 3]) * (vertices[b * 3 + 1] - vertices[o * 3 + 1]) -
+                (vertices[a * 3 + 1] - vertices[o * 3 + 1]) * (vertices[b * 3] - vertices[o * 3]);
+    }
+
+    /**
+     * Returns the signed area of an <b>outline</b>, which is positive for counter-clockwise order.
+     */
+    private static float area (float[] outline)
+    {
+        final int count = outline.length / 3;
+        float area = 0;
+        for (int i = 0, j = count - 1; i < count; j = i++)
+            area += outline[j * 3] * outline[i * 3 + 1] - outline[i * 3] * outline[j * 3 + 1];
+        return area / 2;
+    }
+
+    private static float hullArea (ConvexHull hull)
+    {
+        float area = 0;
+        for (int i = 0, j = hull.getCount() - 1; i < hull.getCount(); j = i++)
+            area += hull.getX(j) * hull.getY(i) - hull.getX(i) * hull.getY(j);
+        return area / 2;
+    }
+
+    /**
+     * Checks wether a point lies inside an <b>outline</b> by counting the edges a ray to the right crosses.
+     */
+    private static boolean contains (float[] outline, float x, float y)
+    {
+        final int count = outline.length / 3;
+        boolean inside = false;
+        for (int i = 0, j = count - 1; i < count; j = i++)
+        {
+            final float xi = outline[i * 3], yi = outline[i * 3 + 1];
+            final float xj = outline[j * 3], yj = outline[j * 3 + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) inside = !inside;
+        }
+        return inside;
+    }
+}